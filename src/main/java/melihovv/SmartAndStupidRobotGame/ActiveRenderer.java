@@ -0,0 +1,286 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame;
+
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.field.RenderContext;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.logging.Logger;
+
+/**
+ * The <code>ActiveRenderer</code> class draws the game on its own thread at
+ * fixed frame rate. It draws the latest published snapshot of the model into
+ * a buffer strategy, so painting does not contend with input and season
+ * changes on the EDT. The camera follows the smart robot.
+ */
+public class ActiveRenderer extends Canvas implements Runnable {
+
+    // Number of buffers of the buffer strategy.
+    private static final int BUFFERS = 2;
+    // Default cell size.
+    private static final int CELL_SIZE = 30;
+    // Nanoseconds in a second.
+    private static final long NANOS_IN_SECOND = 1_000_000_000;
+    // Time between frames, ns.
+    private final long _period;
+    // The latest published snapshot.
+    private volatile FieldSnapshot _snapshot;
+    // Cell size.
+    private volatile int _cellSize = CELL_SIZE;
+    // Is rendering running?
+    private volatile boolean _isRunning;
+    // Rendering thread.
+    private Thread _thread;
+    // Base font of labels.
+    private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+    // Cell size, font and colors, it is used only by rendering thread.
+    private final RenderContext _context = new RenderContext();
+    // Time between consecutive frames.
+    private final TimingStats _frameStats = new TimingStats();
+    // Time of drawing of a frame.
+    private final TimingStats _renderStats = new TimingStats();
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            ActiveRenderer.class.getName()
+    );
+
+    /**
+     * Constructs active renderer.
+     *
+     * @param fps Target frame rate.
+     */
+    public ActiveRenderer(final int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+
+        _period = NANOS_IN_SECOND / fps;
+        super.setIgnoreRepaint(true);
+    }
+
+    /**
+     * Publishes snapshot which is drawn in the next frames.
+     *
+     * @param snapshot Snapshot of the model.
+     */
+    public void update(final FieldSnapshot snapshot) {
+        _snapshot = snapshot;
+    }
+
+    /**
+     * Sets cell size.
+     *
+     * @param cellSize Cell size.
+     */
+    public void setCellSize(final int cellSize) {
+        _cellSize = cellSize;
+    }
+
+    /**
+     * Returns statistics of time between consecutive frames.
+     *
+     * @return Frame time statistics.
+     */
+    public TimingStats frameStats() {
+        return _frameStats;
+    }
+
+    /**
+     * Returns statistics of time of drawing of a frame.
+     *
+     * @return Render time statistics.
+     */
+    public TimingStats renderStats() {
+        return _renderStats;
+    }
+
+    /**
+     * Starts rendering thread. Renderer must be displayable.
+     */
+    public synchronized void start() {
+        if (_isRunning) {
+            return;
+        }
+
+        super.createBufferStrategy(BUFFERS);
+        _isRunning = true;
+        _thread = new Thread(this, "Render");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops rendering thread and waits until it is finished.
+     */
+    public synchronized void stop() {
+        if (!_isRunning) {
+            return;
+        }
+
+        _isRunning = false;
+        _thread.interrupt();
+        try {
+            _thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _thread = null;
+        log.fine("Rendering is stopped, frames: " + _frameStats);
+    }
+
+    /**
+     * Draws frames until rendering is stopped. If a frame is late, the next
+     * one is drawn immediately, but missed frames are not caught up.
+     */
+    @Override
+    public void run() {
+        final BufferStrategy strategy = super.getBufferStrategy();
+        long deadline = System.nanoTime();
+        long previous = deadline;
+
+        while (_isRunning) {
+            final long start = System.nanoTime();
+            render(strategy);
+            final long end = System.nanoTime();
+            _renderStats.record(end - start);
+            _frameStats.record(end - previous);
+            previous = end;
+
+            deadline += _period;
+            final long sleep = deadline - System.nanoTime();
+            if (sleep <= 0) {
+                deadline = System.nanoTime();
+                continue;
+            }
+
+            try {
+                Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draws one frame and shows it.
+     *
+     * @param strategy Buffer strategy.
+     */
+    private void render(final BufferStrategy strategy) {
+        do {
+            do {
+                final Graphics g = strategy.getDrawGraphics();
+                try {
+                    draw(g, _snapshot);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Draws snapshot.
+     *
+     * @param g        Graphic context.
+     * @param snapshot Snapshot of the model.
+     */
+    private void draw(final Graphics g, final FieldSnapshot snapshot) {
+        final int width = super.getWidth();
+        final int height = super.getHeight();
+        if (snapshot == null || snapshot.season() == null) {
+            g.setColor(super.getBackground());
+            g.fillRect(0, 0, width, height);
+            return;
+        }
+
+        final int cellSize = _cellSize;
+        _context.update(cellSize, FONT, snapshot.season().colors());
+        final int offsetX = offset(
+                width,
+                cellSize * snapshot.width(),
+                snapshot.smartRobotX(),
+                cellSize
+        );
+        final int offsetY = offset(
+                height,
+                cellSize * snapshot.height(),
+                snapshot.smartRobotY(),
+                cellSize
+        );
+
+        g.setColor(_context.fieldColor());
+        g.fillRect(0, 0, width, height);
+
+        // Visible cells.
+        final int x1 = Math.max(1, Math.floorDiv(-offsetX, cellSize) + 1);
+        final int y1 = Math.max(1, Math.floorDiv(-offsetY, cellSize) + 1);
+        final int x2 = Math.min(
+                snapshot.width(),
+                Math.floorDiv(width - 1 - offsetX, cellSize) + 1
+        );
+        final int y2 = Math.min(
+                snapshot.height(),
+                Math.floorDiv(height - 1 - offsetY, cellSize) + 1
+        );
+
+        SnapshotPainter.paintCells(g, snapshot, _context,
+                offsetX, offsetY, x1, y1, x2, y2);
+        SnapshotPainter.paintObjects(g, snapshot, _context,
+                offsetX, offsetY, x1, y1, x2, y2);
+    }
+
+    /**
+     * Returns offset of the field along one axis. The field is centered if it
+     * fits the renderer, otherwise the smart robot is centered, but the field
+     * does not leave the renderer.
+     *
+     * @param view     Size of the renderer.
+     * @param field    Size of the field.
+     * @param robot    Column or row of the smart robot.
+     * @param cellSize Cell size.
+     * @return Offset of the field.
+     */
+    private static int offset(
+            final int view,
+            final int field,
+            final int robot,
+            final int cellSize
+    ) {
+        if (field < view) {
+            return (view - field - 1) / 2;
+        }
+
+        final int centered = view / 2 - cellSize * (robot - 1) - cellSize / 2;
+        return Math.max(view - field - 1, Math.min(0, centered));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame;
+
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * The <code>Campaign</code> class defines sequence of levels: all situation
+ * files of one directory ordered by name. The next level is loaded in
+ * background while the current one is played, so transition is instant.
+ */
+public class Campaign {
+
+    // Executor which loads levels.
+    private final ExecutorService _executor;
+    // Path of prefetched level.
+    private String _prefetchedPath;
+    // Prefetched level.
+    private Future<Field> _prefetched;
+
+    /**
+     * Constructs campaign.
+     */
+    public Campaign() {
+        _executor = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "Level prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads situation file and creates field with it. Loading is cancelled if
+     * the current thread is interrupted.
+     *
+     * @param path     Path of the situation file.
+     * @param progress Receives percent of loading.
+     * @return New field with the situation.
+     * @throws IOException If it is impossible to read file.
+     * @throws IllegalArgumentException If json file is invalid.
+     */
+    public static Field load(final String path, final IntConsumer progress)
+            throws IOException, IllegalArgumentException {
+        return Situation.load(path, percent -> progress.accept(percent / 2))
+                .createField(percent -> progress.accept(50 + percent / 2));
+    }
+
+    /**
+     * Returns path of the level which follows level <code>path</code>.
+     *
+     * @param path Path of the situation file.
+     * @return Path of the next level or null if it is the last one.
+     */
+    public String next(final String path) {
+        final File current = new File(path).getAbsoluteFile();
+        final File[] files = current.getParentFile().listFiles(
+                (dir, name) -> name.endsWith(".json")
+        );
+        if (files == null) {
+            return null;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.getName().compareTo(current.getName()) > 0) {
+                return file.getPath();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts loading of level <code>path</code> in background. Previous
+     * prefetched level is dropped.
+     *
+     * @param path Path of the situation file.
+     */
+    public synchronized void prefetch(final String path) {
+        if (_prefetched != null) {
+            _prefetched.cancel(true);
+        }
+
+        _prefetchedPath = path;
+        _prefetched = path == null ?
+                null :
+                _executor.submit(() -> load(path, percent -> {
+                }));
+    }
+
+    /**
+     * Returns prefetched level <code>path</code>. Level can be taken only
+     * once.
+     *
+     * @param path Path of the situation file.
+     * @return Prefetched level or null if level <code>path</code> was not
+     * prefetched.
+     */
+    public synchronized Future<Field> take(final String path) {
+        if (_prefetched == null ||
+                !new File(path).getAbsoluteFile().equals(
+                        new File(_prefetchedPath).getAbsoluteFile())) {
+            return null;
+        }
+
+        final Future<Field> prefetched = _prefetched;
+        _prefetched = null;
+        _prefetchedPath = null;
+        return prefetched;
+    }
+}
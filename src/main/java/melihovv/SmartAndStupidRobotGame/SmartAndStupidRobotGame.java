@@ -24,32 +24,48 @@
 
 package melihovv.SmartAndStupidRobotGame;
 
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
+import melihovv.SmartAndStupidRobotGame.levels.SituationWatcher;
+import melihovv.SmartAndStupidRobotGame.levels.SituationWatcher.SituationEvent;
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.History;
 import melihovv.SmartAndStupidRobotGame.model.Model;
 import melihovv.SmartAndStupidRobotGame.model.Model.ModelEvent;
-import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.Simulation.SimulationEvent;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.RenderContext;
 import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot;
 import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot.SmartRobotActionEvent;
 import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot;
 import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot.StupidRobotActionEvent;
 import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
-import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
 import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
 import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
 import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager.SeasonsEvent;
 import melihovv.SmartAndStupidRobotGame.model.seasons.downfall.Downfall;
+import melihovv.SmartAndStupidRobotGame.save.Autosave;
+import melihovv.SmartAndStupidRobotGame.save.SavedGame;
 
 import javax.swing.*;
 import javax.swing.border.MatteBorder;
+import javax.swing.event.ChangeEvent;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -67,15 +83,52 @@ public class SmartAndStupidRobotGame extends JFrame {
     final Logger _log = Logger.getLogger(View.class.getName());
     // File path with game situation.
     private String _path;
+    // Sequence of levels.
+    private final Campaign _campaign;
+    // Worker which loads level.
+    private LoadWorker _loader;
+    // Menu item which turns on watching of the situation file.
+    private JCheckBoxMenuItem _watchItem;
+    // Watcher of the situation file.
+    private SituationWatcher _watcher;
+    // Target frame rate of active rendering.
+    private static final int TARGET_FPS = 60;
+    // Tick rate of real-time game.
+    private static final int TICK_RATE = 20;
+    // Scroll pane with the view.
+    private final JScrollPane _scrollPane;
+    // Menu item which turns on active rendering.
+    private JCheckBoxMenuItem _activeItem;
+    // Renderer which is used instead of the view in active rendering mode.
+    private ActiveRenderer _renderer;
+    // Menu item which turns on real-time game.
+    private JCheckBoxMenuItem _realTimeItem;
+    // Label with frame and tick statistics.
+    private JLabel _statsLabel;
+    // Timer which updates frame and tick statistics.
+    private final Timer _statsTimer;
+    // Slider of turns of the history.
+    private JSlider _historySlider;
+    // Periodic autosave of the game.
+    private final Autosave _autosave;
+    // File of the autosave in the working directory.
+    private static final String AUTOSAVE_FILE = "autosave" +
+            SavedGame.EXTENSION;
 
     /**
      * Constructs <code>SmartAndStupidRobotGame</code>.
      */
     public SmartAndStupidRobotGame() {
         _view = new View();
+        _campaign = new Campaign();
+        _scrollPane = new JScrollPane(_view);
+        _statsTimer = new Timer(1000, e -> showStats());
+        _statsTimer.start();
+        _autosave = new Autosave(_view._simulation, Paths.get(AUTOSAVE_FILE));
+        _autosave.start(Autosave.DEFAULT_PERIOD);
 
         final JPanel wrapper = new JPanel(new BorderLayout());
-        wrapper.add(_view);
+        wrapper.add(_scrollPane);
         wrapper.add(createStatusBar(), BorderLayout.SOUTH);
 
         createMenu();
@@ -86,7 +139,6 @@ public class SmartAndStupidRobotGame extends JFrame {
         super.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         super.pack();
         super.setLocationRelativeTo(null);
-        super.setResizable(false);
         super.setVisible(true);
     }
 
@@ -104,6 +156,16 @@ public class SmartAndStupidRobotGame extends JFrame {
         _infoLabel.setHorizontalAlignment(SwingConstants.LEFT);
         panel.add(_infoLabel);
 
+        panel.add(Box.createHorizontalGlue());
+        _historySlider = new JSlider(0, 0, 0);
+        _historySlider.setFocusable(false);
+        _historySlider.setToolTipText("Rewind turns");
+        _historySlider.addChangeListener(this::historySliderIsMoved);
+        panel.add(_historySlider);
+
+        _statsLabel = new JLabel("");
+        panel.add(_statsLabel);
+
         final int HEIGHT = 20;
         panel.setPreferredSize(new Dimension(super.getWidth(), HEIGHT));
 
@@ -116,7 +178,7 @@ public class SmartAndStupidRobotGame extends JFrame {
     private void createMenu() {
         _menuBar = new JMenuBar();
         final JMenu menu = new JMenu("Game");
-        final String menuItems[] = new String[]{"New", "Exit"};
+        final String menuItems[] = new String[]{"New", "Next", "Exit"};
 
         for (String menuItem : menuItems) {
             final JMenuItem item = new JMenuItem(menuItem);
@@ -125,7 +187,62 @@ public class SmartAndStupidRobotGame extends JFrame {
             menu.add(item);
         }
 
-        menu.insertSeparator(1);
+        _watchItem = new JCheckBoxMenuItem("Watch file");
+        _watchItem.setActionCommand("watch");
+        _watchItem.addActionListener(new MenuItemsListener());
+        menu.insert(_watchItem, 2);
+
+        _activeItem = new JCheckBoxMenuItem("Active rendering");
+        _activeItem.setActionCommand("active");
+        _activeItem.addActionListener(new MenuItemsListener());
+        menu.insert(_activeItem, 3);
+
+        _realTimeItem = new JCheckBoxMenuItem("Real-time");
+        _realTimeItem.setActionCommand("real-time");
+        _realTimeItem.addActionListener(new MenuItemsListener());
+        menu.insert(_realTimeItem, 4);
+
+        menu.insertSeparator(5);
+
+        final JMenuItem backItem = new JMenuItem("Step back");
+        backItem.setActionCommand("back");
+        backItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_Z,
+                InputEvent.CTRL_DOWN_MASK
+        ));
+        backItem.addActionListener(new MenuItemsListener());
+        menu.insert(backItem, 6);
+
+        final JMenuItem forwardItem = new JMenuItem("Step forward");
+        forwardItem.setActionCommand("forward");
+        forwardItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_Y,
+                InputEvent.CTRL_DOWN_MASK
+        ));
+        forwardItem.addActionListener(new MenuItemsListener());
+        menu.insert(forwardItem, 7);
+
+        menu.insertSeparator(8);
+
+        final JMenuItem saveItem = new JMenuItem("Save");
+        saveItem.setActionCommand("save");
+        saveItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_S,
+                InputEvent.CTRL_DOWN_MASK
+        ));
+        saveItem.addActionListener(new MenuItemsListener());
+        menu.insert(saveItem, 9);
+
+        final JMenuItem resumeItem = new JMenuItem("Load saved");
+        resumeItem.setActionCommand("resume");
+        resumeItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_O,
+                InputEvent.CTRL_DOWN_MASK
+        ));
+        resumeItem.addActionListener(new MenuItemsListener());
+        menu.insert(resumeItem, 10);
+
+        menu.insertSeparator(11);
         _menuBar.add(menu);
     }
 
@@ -139,69 +256,128 @@ public class SmartAndStupidRobotGame extends JFrame {
     }
 
     /**
-     * The <code>View</code> defines view of <code>Model</code> class.
+     * The <code>View</code> defines view of <code>Model</code> class. The view
+     * is placed in a scroll pane and paints only visible cells, so painting
+     * time does not depend on the field size. It paints the latest snapshot
+     * published by the simulation, so it never sees the model in the middle
+     * of a command, e.g. between cleaning influence of the previous season
+     * and influence of the next one.
      */
-    private class View extends JPanel implements KeyListener {
+    private class View extends JPanel implements KeyListener, Scrollable {
 
         // Model.
         private final Model _model;
+        // Simulation which owns the model, its commands are executed on the
+        // EDT.
+        private final Simulation _simulation;
+        // History of turns which can be rewound.
+        private final History _history;
         // Is game started?
         private boolean _isGameStarted;
 
-        // Cell size.
+        // Default cell size.
         private static final int CELL_SIZE = 30;
-        // Font height.
-        private static final int FONT_HEIGHT = 15;
-        // Constants.
-        private Map<String, Integer> _constants =
-                new HashMap<String, Integer>() {{
-                    put("cell size", CELL_SIZE);
-                    put("font size", FONT_HEIGHT);
-                }};
-        // Colors for field objects draw.
-        private Map<String, Color> _colors = new HashMap<>();
+        // Minimal cell size.
+        private static final int MIN_CELL_SIZE = 10;
+        // Maximal cell size.
+        private static final int MAX_CELL_SIZE = 60;
+        // Cell size step of zooming.
+        private static final int ZOOM_STEP = 5;
+        // Number of cells which are kept visible around the smart robot.
+        private static final int FOLLOW_MARGIN = 3;
+        // Cell size.
+        private int _cellSize = CELL_SIZE;
+        // Cell size, font and colors for field objects draw.
+        private final RenderContext _context = new RenderContext();
 
         // Width of field.
-        private final int _width;
+        private int _width;
         // Height of field.
-        private final int _height;
+        private int _height;
         // Offset from left and right side of frame.
         private int _offsetX;
         // Offset from top and bottom side of frame.
         private int _offsetY;
+        // Static layers (background, grid, walls and mires) of the visible
+        // area.
+        private BufferedImage _background;
+        // Snapshot which static layers are cached.
+        private FieldSnapshot _cachedSnapshot;
+        // Visible area which static layers are cached.
+        private Rectangle _cachedArea;
 
         /**
          * Constructs view.
          */
         public View() {
-            _model = new Model();
-            _model.addListener(new ModelListener());
+            _model = new Model(new EventBus(SwingUtilities::invokeLater));
+            _model.eventBus().subscribeAsync(
+                    Model.GAME_OVER,
+                    SmartAndStupidRobotGame.this::gameIsOver
+            );
+            _model.eventBus().subscribeAsync(
+                    SeasonsManager.CHANGED,
+                    SmartAndStupidRobotGame.this::seasonIsChanged
+            );
+            _model.eventBus().subscribeAsync(
+                    SmartRobot.MOVED,
+                    this::smartRobotMadeMove
+            );
+            _model.eventBus().subscribeAsync(
+                    StupidRobot.MOVED,
+                    this::stupidRobotMadeMove
+            );
+            _model.eventBus().subscribeAsync(
+                    StupidRobot.CAUGHT,
+                    this::smartRobotIsCaught
+            );
+            _simulation = new Simulation(_model, SwingUtilities::invokeLater);
+            _history = new History(_model);
+            _simulation.addListener(_history);
+            _simulation.addListener(new SimulationListener());
             _isGameStarted = false;
 
-            _width = CELL_SIZE * _model.field().width();
-            _height = CELL_SIZE * _model.field().height();
-            setPreferredSize(new Dimension(_width, _height));
-            setMaximumSize(new Dimension(_width, _height));
-            setMinimumSize(new Dimension(_width, _height));
+            updateSize();
             setFocusable(true);
 
             addKeyListener(this);
         }
 
         /**
-         * Starts the game.
+         * Starts the game on the field with loaded situation.
+         *
+         * @param field The game field.
+         */
+        public void start(final Field field) {
+            _simulation.load(field);
+        }
+
+        /**
+         * Resumes the saved game on the field which is created by it.
          *
-         * @throws IOException If it is impossible to read file.
-         * @throws IllegalArgumentException If json file is invalid.
+         * @param game  Saved game.
+         * @param field The game field.
          */
-        public void start() throws IOException, IllegalArgumentException {
+        public void resume(final SavedGame game, final Field field) {
+            _simulation.load(field, game::restore, game.seasonElapsed());
+        }
 
+        /**
+         * Shows the game which is started by the simulation.
+         */
+        private void showGame() {
             _isGameStarted = true;
-            _model.start(_path);
-            _model.smartRobot().addListener(new SmartRobotListener());
-            _model.stupidRobot().addListener(new StupidRobotListener());
+            updateSize();
             super.repaint();
+            SmartAndStupidRobotGame.this.pack();
+            SwingUtilities.invokeLater(this::follow);
+            showSeason();
+        }
 
+        /**
+         * Shows active season and its downfall.
+         */
+        private void showSeason() {
             Season activeSeason = _model.seasonsManager().activeSeason();
             String downfall = "";
             if (activeSeason.downfall().size() != 0) {
@@ -215,6 +391,88 @@ public class SmartAndStupidRobotGame extends JFrame {
                     " is now" + downfall);
         }
 
+        /**
+         * Returns the game to the state at the turn. Turns which are not in
+         * the history any more are ignored.
+         *
+         * @param turn Turn of the history.
+         */
+        private void rewind(final long turn) {
+            _simulation.submit(model -> {
+                if (turn >= _history.first() &&
+                        turn <= _history.last() &&
+                        turn != _history.current()) {
+                    _history.restore(turn);
+                    super.repaint();
+                    showSeason();
+                }
+            });
+        }
+
+        /**
+         * Updates size of the view according to the field size and the cell
+         * size.
+         */
+        private void updateSize() {
+            _width = _cellSize * _model.field().width();
+            _height = _cellSize * _model.field().height();
+            _background = null;
+
+            setPreferredSize(new Dimension(_width + 1, _height + 1));
+            revalidate();
+        }
+
+        /**
+         * Changes cell size by <code>delta</code>.
+         *
+         * @param delta Difference of the cell size.
+         */
+        private void zoom(final int delta) {
+            final int cellSize = Math.max(
+                    MIN_CELL_SIZE,
+                    Math.min(MAX_CELL_SIZE, _cellSize + delta)
+            );
+            if (cellSize == _cellSize) {
+                return;
+            }
+
+            _cellSize = cellSize;
+            if (_renderer != null) {
+                _renderer.setCellSize(_cellSize);
+            }
+            updateSize();
+            super.repaint();
+            SwingUtilities.invokeLater(this::follow);
+        }
+
+        /**
+         * Scrolls the view so the smart robot and cells around it are
+         * visible.
+         */
+        private void follow() {
+            if (!_isGameStarted || _model.smartRobot() == null) {
+                return;
+            }
+
+            updateOffsets();
+            final CellPosition pos = _model.smartRobot().pos();
+            final int margin = FOLLOW_MARGIN * _cellSize;
+            scrollRectToVisible(new Rectangle(
+                    cellX(pos) - margin,
+                    cellY(pos) - margin,
+                    _cellSize + 2 * margin,
+                    _cellSize + 2 * margin
+            ));
+        }
+
+        /**
+         * Updates offsets of the field, it is centered if the view is larger.
+         */
+        private void updateOffsets() {
+            _offsetX = Math.max(0, super.getWidth() - _width - 1) / 2;
+            _offsetY = Math.max(0, super.getHeight() - _height - 1) / 2;
+        }
+
         /**
          * Paints view.
          *
@@ -222,73 +480,211 @@ public class SmartAndStupidRobotGame extends JFrame {
          */
         @Override
         public void paintComponent(final Graphics g) {
-            if (_isGameStarted) {
-                _colors = _model.seasonsManager().activeSeason().colors();
-                g.setColor(_colors.get("field"));
-                g.fillRect(0, 0, super.getWidth(), getHeight());
-
-                _offsetX = Math.abs(super.getWidth() - _width) / 2;
-                _offsetY = Math.abs(super.getHeight() - _height) / 2;
-
-                drawGrid(g);
-                for (FieldObject obj : _model.field().objects()) {
-                    if (obj.pos() instanceof CellPosition) {
-                        obj.draw(
-                                g,
-                                leftTopCorner((CellPosition) obj.pos()),
-                                _constants,
-                                _colors
-                        );
-                    } else if (obj.pos() instanceof MiddlePosition) {
-                        obj.draw(
-                                g,
-                                leftTopCorner(
-                                        ((MiddlePosition) obj.pos()).cellPos()
-                                ),
-                                _constants,
-                                _colors
-                        );
-                    }
-                }
+            final FieldSnapshot snapshot = _simulation.snapshot();
+            final Rectangle visible = getVisibleRect();
+            if (!_isGameStarted ||
+                    snapshot == null ||
+                    snapshot.season() == null ||
+                    visible.isEmpty()) {
+                return;
             }
+
+            _context.update(_cellSize, getFont(), snapshot.season().colors());
+            updateOffsets();
+
+            g.drawImage(
+                    background(snapshot, visible),
+                    visible.x,
+                    visible.y,
+                    null
+            );
+
+            final Rectangle area = cells(g.getClipBounds());
+            SnapshotPainter.paintObjects(
+                    g,
+                    snapshot,
+                    _context,
+                    _offsetX,
+                    _offsetY,
+                    area.x,
+                    area.y,
+                    area.x + area.width - 1,
+                    area.y + area.height - 1
+            );
         }
 
         /**
-         * Draws grid.
+         * Returns static layers of the visible area: background, grid, walls
+         * and mires. They are redrawn only when the view is scrolled or zoomed
+         * or when walls, mires or season are changed.
          *
-         * @param g Graphic context.
+         * @param snapshot Snapshot of the model.
+         * @param visible  Visible area.
+         * @return Image with static layers.
          */
-        private void drawGrid(final Graphics g) {
-            Color preserved = g.getColor();
-            g.setColor(_colors.get("grid"));
+        private BufferedImage background(
+                final FieldSnapshot snapshot,
+                final Rectangle visible
+        ) {
+            if (_background != null &&
+                    snapshot.hasSameCells(_cachedSnapshot) &&
+                    visible.equals(_cachedArea)) {
+                return _background;
+            }
 
-            final int height = super.getHeight();
-            final int width = super.getWidth();
+            final BufferedImage image = new BufferedImage(
+                    visible.width,
+                    visible.height,
+                    BufferedImage.TYPE_INT_RGB
+            );
+            final Graphics g = image.getGraphics();
+            g.translate(-visible.x, -visible.y);
 
-            for (int i = 1; i <= _model.field().width() + 1; ++i) {
-                int x = _offsetX + CELL_SIZE * (i - 1);
-                g.drawLine(x, 0, x, height);
+            g.setColor(_context.fieldColor());
+            g.fillRect(visible.x, visible.y, visible.width, visible.height);
 
-                int y = _offsetY + CELL_SIZE * (i - 1);
-                g.drawLine(0, y, width, y);
-            }
+            final Rectangle area = cells(visible);
+            SnapshotPainter.paintCells(
+                    g,
+                    snapshot,
+                    _context,
+                    _offsetX,
+                    _offsetY,
+                    area.x,
+                    area.y,
+                    area.x + area.width - 1,
+                    area.y + area.height - 1
+            );
+            g.dispose();
+
+            _background = image;
+            _cachedSnapshot = snapshot;
+            _cachedArea = visible;
+            return image;
+        }
+
+        /**
+         * Returns cells which are in the rectangle <code>r</code> of the view.
+         * One cell is added around, so walls of the neighbour cells are
+         * included.
+         *
+         * @param r Rectangle of the view.
+         * @return Rectangle of cells, cells are numbered from 1.
+         */
+        private Rectangle cells(final Rectangle r) {
+            final int x1 = Math.floorDiv(r.x - _offsetX, _cellSize);
+            final int y1 = Math.floorDiv(r.y - _offsetY, _cellSize);
+            final int x2 = Math.floorDiv(r.x + r.width - _offsetX, _cellSize);
+            final int y2 = Math.floorDiv(r.y + r.height - _offsetY, _cellSize);
+            return new Rectangle(x1, y1, x2 - x1 + 3, y2 - y1 + 3);
+        }
 
-            g.setColor(preserved);
+        /**
+         * Repaints only the cell <code>c</code>, including its borders.
+         *
+         * @param c Position of cell.
+         */
+        private void repaintCell(final CellPosition c) {
+            repaint(cellX(c), cellY(c), _cellSize + 1, _cellSize + 1);
         }
 
         /**
-         * Returns left top corner coordinates of the cell.
+         * Returns left side of the cell.
          *
          * @param c Position of cell.
-         * @return Left top corner coordinates of the cell.
+         * @return Left side of the cell.
+         */
+        private int cellX(final CellPosition c) {
+            return _offsetX + _cellSize * (c.pos().x - 1);
+        }
+
+        /**
+         * Returns top side of the cell.
+         *
+         * @param c Position of cell.
+         * @return Top side of the cell.
+         */
+        private int cellY(final CellPosition c) {
+            return _offsetY + _cellSize * (c.pos().y - 1);
+        }
+
+        /**
+         * Returns preferred size of the viewport: the whole field, but not
+         * larger than three quarters of the screen.
+         *
+         * @return Preferred size of the viewport.
          */
-        private Point leftTopCorner(final CellPosition c) {
-            return new Point(
-                    _offsetX + CELL_SIZE * ((int) c.pos().getX() - 1),
-                    _offsetY + CELL_SIZE * ((int) c.pos().getY() - 1)
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            final Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+            final Dimension size = getPreferredSize();
+            return new Dimension(
+                    Math.min(size.width, screen.width * 3 / 4),
+                    Math.min(size.height, screen.height * 3 / 4)
             );
         }
 
+        /**
+         * Returns scroll distance of arrow buttons: one cell.
+         *
+         * @param visibleRect Visible area.
+         * @param orientation Orientation of scrolling.
+         * @param direction   Direction of scrolling.
+         * @return Scroll distance.
+         */
+        @Override
+        public int getScrollableUnitIncrement(
+                final Rectangle visibleRect,
+                final int orientation,
+                final int direction
+        ) {
+            return _cellSize;
+        }
+
+        /**
+         * Returns scroll distance of page scrolling: visible area without one
+         * cell.
+         *
+         * @param visibleRect Visible area.
+         * @param orientation Orientation of scrolling.
+         * @param direction   Direction of scrolling.
+         * @return Scroll distance.
+         */
+        @Override
+        public int getScrollableBlockIncrement(
+                final Rectangle visibleRect,
+                final int orientation,
+                final int direction
+        ) {
+            return (orientation == SwingConstants.HORIZONTAL ?
+                    visibleRect.width :
+                    visibleRect.height) - _cellSize;
+        }
+
+        /**
+         * Returns true if viewport is wider than the field, so the view is
+         * stretched and the field is centered.
+         *
+         * @return True if viewport is wider than the field.
+         */
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return getParent() instanceof JViewport &&
+                    getParent().getWidth() > getPreferredSize().width;
+        }
+
+        /**
+         * Returns true if viewport is higher than the field, so the view is
+         * stretched and the field is centered.
+         *
+         * @return True if viewport is higher than the field.
+         */
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return getParent() instanceof JViewport &&
+                    getParent().getHeight() > getPreferredSize().height;
+        }
+
         /**
          * This method is invoked when the key is typed.
          *
@@ -309,6 +705,17 @@ public class SmartAndStupidRobotGame extends JFrame {
                 return;
             }
 
+            if (e.getKeyCode() == KeyEvent.VK_EQUALS ||
+                    e.getKeyCode() == KeyEvent.VK_PLUS ||
+                    e.getKeyCode() == KeyEvent.VK_ADD) {
+                zoom(ZOOM_STEP);
+                return;
+            } else if (e.getKeyCode() == KeyEvent.VK_MINUS ||
+                    e.getKeyCode() == KeyEvent.VK_SUBTRACT) {
+                zoom(-ZOOM_STEP);
+                return;
+            }
+
             Direction dir = null;
             if (e.getKeyCode() == KeyEvent.VK_UP) {
                 dir = Direction.north();
@@ -321,7 +728,9 @@ public class SmartAndStupidRobotGame extends JFrame {
             }
 
             if (dir != null) {
-                _model.makeMove(dir);
+                // Arrows must not scroll the view.
+                e.consume();
+                _simulation.move(dir);
             }
         }
 
@@ -335,37 +744,203 @@ public class SmartAndStupidRobotGame extends JFrame {
         }
 
         /**
-         * Smart robot listener.
+         * Simulation listener.
          */
-        private class SmartRobotListener
-                implements SmartRobot.SmartRobotActionListener {
+        private class SimulationListener
+                implements Simulation.SimulationListener {
 
             @Override
-            public void smartRobotMadeMove(final SmartRobotActionEvent e) {
-                _log.fine("Smart robot made move");
-                repaint();
+            public void gameIsStarted(final SimulationEvent e) {
+                showGame();
+            }
+
+            @Override
+            public void snapshotIsPublished(final SimulationEvent e) {
+                if (_renderer != null) {
+                    _renderer.update(e.snapshot());
+                }
+                showHistory();
             }
         }
 
         /**
-         * Stupid robot listener.
+         * Repaints cells of the move of the smart robot.
+         *
+         * @param e The smart robot action event.
          */
-        private class StupidRobotListener
-                implements StupidRobot.StupidRobotActionListener {
+        private void smartRobotMadeMove(final SmartRobotActionEvent e) {
+            _log.fine("Smart robot made move");
+            repaintCell(e.from());
+            repaintCell(e.to());
+            follow();
+        }
 
-            @Override
-            public void stupidRobotMadeMove(final StupidRobotActionEvent e) {
-                _log.fine("Stupid robot made move");
-                repaint();
-            }
+        /**
+         * Repaints cells of the move of the stupid robot.
+         *
+         * @param e The stupid robot action event.
+         */
+        private void stupidRobotMadeMove(final StupidRobotActionEvent e) {
+            _log.fine("Stupid robot made move");
+            repaintCell(e.from());
+            repaintCell(e.to());
+        }
 
-            @Override
-            public void smartRobotIsCaught(final StupidRobotActionEvent e) {
-                _infoLabel.setText("Game is over");
+        /**
+         * Repaints cells of the catch and shows that game is over.
+         *
+         * @param e The stupid robot action event.
+         */
+        private void smartRobotIsCaught(final StupidRobotActionEvent e) {
+            repaintCell(e.from());
+            repaintCell(e.to());
+            _infoLabel.setText("Game is over");
+        }
+    }
+
+    /**
+     * Loads level <code>path</code> in background and starts it.
+     *
+     * @param path Path of the situation file.
+     */
+    private void load(final String path) {
+        if (_loader != null) {
+            _loader.cancel(true);
+        }
+        _loader = new LoadWorker(path);
+        _loader.execute();
+    }
+
+    /**
+     * Captures state of the game and writes it to the file in background.
+     *
+     * @param file Path of the file.
+     */
+    private void save(final Path file) {
+        final Simulation simulation = _view._simulation;
+        simulation.submit(model -> {
+            if (model.smartRobot() != null) {
+                new SaveWorker(
+                        SavedGame.capture(
+                                model,
+                                _path,
+                                simulation.seasonElapsed()
+                        ),
+                        file
+                ).execute();
             }
+        });
+    }
+
+    /**
+     * Shows error of loading or saving.
+     *
+     * @param exception Exception.
+     * @param message   Message if exception has no message.
+     */
+    private void showError(final Exception exception, final String message) {
+        final Throwable cause = exception instanceof ExecutionException ?
+                exception.getCause() :
+                exception;
+        JOptionPane.showMessageDialog(
+                SmartAndStupidRobotGame.this,
+                cause.getMessage() == null ? message : cause.getMessage()
+        );
+    }
+
+    /**
+     * Starts watching of the current situation file if it is turned on,
+     * otherwise stops watching.
+     */
+    private void watch() {
+        if (_watcher != null) {
+            _watcher.stop();
+            _watcher = null;
+        }
+
+        if (!_watchItem.isSelected() || _path == null) {
+            return;
+        }
+
+        try {
+            _watcher = new SituationWatcher(_path);
+            _watcher.addListener(new WatcherListener(_watcher));
+            _watcher.start();
+        } catch (Exception exception) {
+            _watchItem.setSelected(false);
+            JOptionPane.showMessageDialog(
+                    SmartAndStupidRobotGame.this,
+                    exception.getMessage() == null ?
+                            "Cannot watch specified file" :
+                            exception.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Turns on or off active rendering. In active rendering mode the game is
+     * drawn by the renderer on its own thread instead of the view.
+     *
+     * @param isActive Is active rendering turned on?
+     */
+    private void setActiveRendering(final boolean isActive) {
+        final Container wrapper = super.getContentPane();
+        if (isActive && _renderer == null) {
+            _renderer = new ActiveRenderer(TARGET_FPS);
+            _renderer.setCellSize(_view._cellSize);
+            _renderer.setPreferredSize(_scrollPane.getSize());
+            _renderer.addKeyListener(_view);
+            wrapper.remove(_scrollPane);
+            wrapper.add(_renderer, BorderLayout.CENTER);
+            wrapper.validate();
+
+            _renderer.update(_view._simulation.snapshot());
+            _renderer.start();
+            _renderer.requestFocusInWindow();
+        } else if (!isActive && _renderer != null) {
+            _renderer.stop();
+            wrapper.remove(_renderer);
+            wrapper.add(_scrollPane, BorderLayout.CENTER);
+            wrapper.validate();
+            _renderer = null;
+
+            _view.requestFocusInWindow();
         }
     }
 
+    /**
+     * Shows frame and tick statistics since the previous update.
+     */
+    private void showStats() {
+        String stats = "";
+        if (_renderer != null) {
+            final TimingStats frames = _renderer.frameStats().drain();
+            final TimingStats render = _renderer.renderStats().drain();
+            stats += String.format(
+                    Locale.ROOT,
+                    "%d fps, frame p99 %.1f ms, max %.1f ms, render %.1f ms ",
+                    frames.count(),
+                    frames.percentile(99),
+                    frames.max(),
+                    render.mean()
+            );
+        }
+
+        final Simulation simulation = _view._simulation;
+        if (simulation.tickRate() != 0) {
+            final TimingStats ticks = simulation.tickStats().drain();
+            stats += String.format(
+                    Locale.ROOT,
+                    "%d ticks, p99 %.2f ms, overruns %d, skipped %d ",
+                    ticks.count(),
+                    ticks.percentile(99),
+                    simulation.overruns(),
+                    simulation.skippedTicks()
+            );
+        }
+        _statsLabel.setText(stats);
+    }
+
     /**
      * Menu listener.
      */
@@ -383,61 +958,337 @@ public class SmartAndStupidRobotGame extends JFrame {
 
                 if (chooser.showOpenDialog(SmartAndStupidRobotGame.this) ==
                         JFileChooser.APPROVE_OPTION) {
+                    load(chooser.getSelectedFile().toString());
+                }
+            }
 
-                    try {
-                        _path = chooser.getSelectedFile().toString();
-                        _view.start();
-                        _view._model.seasonsManager().addListener(
-                                new SeasonsListener()
-                        );
-                    } catch (Exception exception) {
-                        _view._isGameStarted = false;
-                        _infoLabel.setText("");
-                        JOptionPane.showMessageDialog(
-                                SmartAndStupidRobotGame.this,
-                                exception.getMessage() == null ?
-                                        "Cannot load specified file" :
-                                        exception.getMessage()
-                        );
-                    }
+            if ("watch".equals(command)) {
+                watch();
+            }
+
+            if ("active".equals(command)) {
+                setActiveRendering(_activeItem.isSelected());
+            }
+
+            if ("real-time".equals(command)) {
+                if (_realTimeItem.isSelected()) {
+                    _view._simulation.startRealTime(TICK_RATE);
+                } else {
+                    _view._simulation.stopRealTime();
+                }
+            }
+
+            if ("back".equals(command) && _view._isGameStarted) {
+                _view.rewind(_view._history.current() - 1);
+            }
+
+            if ("forward".equals(command) && _view._isGameStarted) {
+                _view.rewind(_view._history.current() + 1);
+            }
+
+            if ("save".equals(command) && _view._isGameStarted) {
+                final JFileChooser chooser = new JFileChooser();
+                chooser.setCurrentDirectory(new File("."));
+                if (chooser.showSaveDialog(SmartAndStupidRobotGame.this) ==
+                        JFileChooser.APPROVE_OPTION) {
+                    save(chooser.getSelectedFile().toPath());
+                }
+            }
+
+            if ("resume".equals(command)) {
+                final JFileChooser chooser = new JFileChooser();
+                chooser.setCurrentDirectory(new File("."));
+                if (chooser.showOpenDialog(SmartAndStupidRobotGame.this) ==
+                        JFileChooser.APPROVE_OPTION) {
+                    new ResumeWorker(chooser.getSelectedFile().toPath())
+                            .execute();
+                }
+            }
+
+            if ("next".equals(command) && _path != null) {
+                final String next = _campaign.next(_path);
+                if (next != null) {
+                    load(next);
+                } else {
+                    JOptionPane.showMessageDialog(
+                            SmartAndStupidRobotGame.this,
+                            "There are no more levels"
+                    );
                 }
             }
         }
     }
 
     /**
-     * Seasons listener.
+     * Level loader. Situation file is parsed and the field is built in
+     * background, then the ready field is passed to the view.
      */
-    private class SeasonsListener implements SeasonsManager.SeasonsListener {
+    private class LoadWorker extends SwingWorker<Field, Void> {
+
+        // Path of the situation file.
+        private final String _levelPath;
+        // Progress dialog.
+        private final ProgressMonitor _monitor;
+
+        /**
+         * Constructs level loader.
+         *
+         * @param path Path of the situation file.
+         */
+        LoadWorker(final String path) {
+            _levelPath = path;
+            _monitor = new ProgressMonitor(
+                    SmartAndStupidRobotGame.this,
+                    "Loading " + new File(path).getName(),
+                    null,
+                    0,
+                    100
+            );
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    _monitor.setProgress((Integer) e.getNewValue());
+                    if (_monitor.isCanceled()) {
+                        cancel(true);
+                    }
+                }
+            });
+        }
 
         @Override
-        public void seasonIsChanged(final SeasonsEvent e) {
-            if (_view._model.isGameFinished()) {
+        protected Field doInBackground() throws Exception {
+            final Future<Field> prefetched = _campaign.take(_levelPath);
+            if (prefetched != null) {
+                try {
+                    return prefetched.get();
+                } catch (ExecutionException | CancellationException e) {
+                    _log.fine("Prefetch of " + _levelPath + " failed");
+                }
+            }
+
+            return Campaign.load(_levelPath, this::setProgress);
+        }
+
+        @Override
+        protected void done() {
+            _monitor.close();
+            if (isCancelled()) {
                 return;
             }
 
-            String downfall = "";
-            if (e.downfall().size() != 0) {
-                downfall += ", downfall:";
-                for (String s : e.downfall()) {
-                    downfall += " " + s + ",";
-                }
-                downfall = downfall.substring(0, downfall.length() - 1);
+            try {
+                _view.start(get());
+                _path = _levelPath;
+                _autosave.setLevel(_path);
+                _campaign.prefetch(_campaign.next(_path));
+                watch();
+            } catch (Exception exception) {
+                final Throwable cause =
+                        exception instanceof ExecutionException ?
+                                exception.getCause() :
+                                exception;
+                _view._isGameStarted = false;
+                _view._simulation.stop();
+                _infoLabel.setText("");
+                JOptionPane.showMessageDialog(
+                        SmartAndStupidRobotGame.this,
+                        cause.getMessage() == null ?
+                                "Cannot load specified file" :
+                                cause.getMessage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Writes saved game in background.
+     */
+    private class SaveWorker extends SwingWorker<Void, Void> {
+
+        // Saved game.
+        private final SavedGame _game;
+        // Path of the file.
+        private final Path _file;
+
+        /**
+         * Constructs game writer.
+         *
+         * @param game Saved game.
+         * @param file Path of the file.
+         */
+        SaveWorker(final SavedGame game, final Path file) {
+            _game = game;
+            _file = file;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            _game.save(_file);
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+            } catch (Exception exception) {
+                showError(exception, "Cannot save game");
             }
-            _infoLabel.setText(e.name() + " is now" + downfall);
-            repaint();
         }
     }
 
     /**
-     * Model listener.
+     * Saved game loader. File is read and the field is built in background,
+     * then the game is resumed by the view.
      */
-    private class ModelListener implements Model.ModelListener {
+    private class ResumeWorker extends SwingWorker<SavedGame, Void> {
+
+        // Path of the file.
+        private final Path _file;
+        // Field which is created by the saved game.
+        private Field _field;
+
+        /**
+         * Constructs saved game loader.
+         *
+         * @param file Path of the file.
+         */
+        ResumeWorker(final Path file) {
+            _file = file;
+        }
+
+        @Override
+        protected SavedGame doInBackground() throws Exception {
+            final SavedGame game = SavedGame.load(_file);
+            _field = game.createField();
+            return game;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                final SavedGame game = get();
+                _view.resume(game, _field);
+                _path = game.level().isEmpty() ? null : game.level();
+                _autosave.setLevel(_path);
+                watch();
+            } catch (Exception exception) {
+                showError(exception, "Cannot load saved game");
+            }
+        }
+    }
+
+    /**
+     * Situation watcher listener. Changes are applied on the EDT.
+     */
+    private class WatcherListener
+            implements SituationWatcher.SituationListener {
+
+        // Watcher which events are handled.
+        private final SituationWatcher _source;
+
+        /**
+         * Constructs situation watcher listener.
+         *
+         * @param source Watcher which events are handled.
+         */
+        WatcherListener(final SituationWatcher source) {
+            _source = source;
+        }
 
         @Override
-        public void gameIsOver(final ModelEvent e) {
-            repaint();
-            _infoLabel.setText(e.message());
+        public void situationIsChanged(final SituationEvent e) {
+            SwingUtilities.invokeLater(() -> {
+                if (_watcher != _source || !_view._isGameStarted) {
+                    return;
+                }
+
+                _view._simulation.submit(model -> {
+                    try {
+                        model.apply(e.diff());
+                        _infoLabel.setText("Situation is reloaded");
+                    } catch (IllegalArgumentException exception) {
+                        _infoLabel.setText(exception.getMessage());
+                    }
+                    repaint();
+                });
+            });
+        }
+
+        @Override
+        public void situationIsInvalid(final SituationEvent e) {
+            SwingUtilities.invokeLater(() -> {
+                if (_watcher == _source) {
+                    _infoLabel.setText(e.message());
+                }
+            });
+        }
+    }
+
+    /**
+     * Shows new season.
+     *
+     * @param e Seasons event.
+     */
+    private void seasonIsChanged(final SeasonsEvent e) {
+        if (_view._model.isGameFinished()) {
+            return;
+        }
+
+        String downfall = "";
+        if (e.downfall().size() != 0) {
+            downfall += ", downfall:";
+            for (String s : e.downfall()) {
+                downfall += " " + s + ",";
+            }
+            downfall = downfall.substring(0, downfall.length() - 1);
+        }
+        _infoLabel.setText(e.name() + " is now" + downfall);
+        repaint();
+    }
+
+    /**
+     * Shows range of turns of the history and the current turn.
+     */
+    private void showHistory() {
+        final History history = _view._history;
+        final long first = history.first();
+        final int max = (int) Math.max(0, history.last() - first);
+        final int value = (int) Math.max(0, history.current() - first);
+        if (_historySlider.getMaximum() != max ||
+                _historySlider.getValue() != value) {
+            // Range and value are changed at once, so the slider does not
+            // see intermediate turns.
+            _historySlider.getModel().setRangeProperties(
+                    value,
+                    0,
+                    0,
+                    max,
+                    false
+            );
         }
     }
+
+    /**
+     * Rewinds the game to the turn which is chosen by the slider. Value of
+     * the slider is the turn from the oldest one in the history.
+     *
+     * @param e Change event.
+     */
+    private void historySliderIsMoved(final ChangeEvent e) {
+        final History history = _view._history;
+        final long turn = history.first() + _historySlider.getValue();
+        if (history.first() >= 0 && turn != history.current()) {
+            _view.rewind(turn);
+        }
+    }
+
+    /**
+     * Shows that game is over.
+     *
+     * @param e Model event.
+     */
+    private void gameIsOver(final ModelEvent e) {
+        repaint();
+        _infoLabel.setText(e.message());
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.field.RenderContext;
+
+import java.awt.*;
+
+/**
+ * The <code>SnapshotPainter</code> class draws snapshot of the model. It is
+ * shared by the view and the active renderer. Only cells from
+ * (<code>x1</code>, <code>y1</code>) to (<code>x2</code>, <code>y2</code>)
+ * are drawn, cells are numbered from 1 and the range is clipped by the field.
+ */
+public class SnapshotPainter {
+
+    /**
+     * Draws static layers of cells: grid, mires and walls.
+     *
+     * @param g        Graphic context.
+     * @param snapshot Snapshot of the model.
+     * @param context  Cell size, font and colors.
+     * @param offsetX  Offset of the field from the left side.
+     * @param offsetY  Offset of the field from the top side.
+     * @param x1       The first column.
+     * @param y1       The first row.
+     * @param x2       The last column.
+     * @param y2       The last row.
+     */
+    public static void paintCells(
+            final Graphics g,
+            final FieldSnapshot snapshot,
+            final RenderContext context,
+            final int offsetX,
+            final int offsetY,
+            final int x1,
+            final int y1,
+            final int x2,
+            final int y2
+    ) {
+        final int left = Math.max(1, x1);
+        final int top = Math.max(1, y1);
+        final int right = Math.min(snapshot.width(), x2);
+        final int bottom = Math.min(snapshot.height(), y2);
+        if (left > right || top > bottom) {
+            return;
+        }
+
+        final int size = context.cellSize();
+        g.setColor(context.gridColor());
+        for (int x = left; x <= right + 1; ++x) {
+            final int px = offsetX + size * (x - 1);
+            g.drawLine(
+                    px,
+                    offsetY + size * (top - 1),
+                    px,
+                    offsetY + size * bottom
+            );
+        }
+        for (int y = top; y <= bottom + 1; ++y) {
+            final int py = offsetY + size * (y - 1);
+            g.drawLine(
+                    offsetX + size * (left - 1),
+                    py,
+                    offsetX + size * right,
+                    py
+            );
+        }
+
+        for (int y = top; y <= bottom; ++y) {
+            for (int x = left; x <= right; ++x) {
+                final int cell = snapshot.cell(x, y);
+                if (cell == 0) {
+                    continue;
+                }
+
+                final int px = offsetX + size * (x - 1);
+                final int py = offsetY + size * (y - 1);
+                if ((cell & FieldSnapshot.MIRE) != 0) {
+                    g.setColor(context.mireColor());
+                    g.fillRect(px + 1, py + 1, size - 1, size - 1);
+                }
+
+                g.setColor(context.wallColor());
+                if ((cell & FieldSnapshot.WALL_NORTH) != 0) {
+                    g.drawLine(px + 1, py, px + size - 1, py);
+                }
+                if ((cell & FieldSnapshot.WALL_SOUTH) != 0) {
+                    g.drawLine(px + 1, py + size, px + size - 1, py + size);
+                }
+                if ((cell & FieldSnapshot.WALL_WEST) != 0) {
+                    g.drawLine(px, py + 1, px, py + size - 1);
+                }
+                if ((cell & FieldSnapshot.WALL_EAST) != 0) {
+                    g.drawLine(px + size, py + 1, px + size, py + size - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws labels of the target and robots.
+     *
+     * @param g        Graphic context.
+     * @param snapshot Snapshot of the model.
+     * @param context  Cell size, font and colors.
+     * @param offsetX  Offset of the field from the left side.
+     * @param offsetY  Offset of the field from the top side.
+     * @param x1       The first column.
+     * @param y1       The first row.
+     * @param x2       The last column.
+     * @param y2       The last row.
+     */
+    public static void paintObjects(
+            final Graphics g,
+            final FieldSnapshot snapshot,
+            final RenderContext context,
+            final int offsetX,
+            final int offsetY,
+            final int x1,
+            final int y1,
+            final int x2,
+            final int y2
+    ) {
+        paintGlyph(g, context, RenderContext.Glyph.TARGET,
+                snapshot.targetX(), snapshot.targetY(),
+                offsetX, offsetY, x1, y1, x2, y2);
+        paintGlyph(g, context, RenderContext.Glyph.STUPID_ROBOT,
+                snapshot.stupidRobotX(), snapshot.stupidRobotY(),
+                offsetX, offsetY, x1, y1, x2, y2);
+        paintGlyph(g, context, RenderContext.Glyph.SMART_ROBOT,
+                snapshot.smartRobotX(), snapshot.smartRobotY(),
+                offsetX, offsetY, x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws label in cell (<code>x</code>, <code>y</code>) if the cell is in
+     * the range.
+     *
+     * @param g       Graphic context.
+     * @param context Cell size, font and colors.
+     * @param glyph   Label.
+     * @param x       Column of the cell, 0 if there is no object.
+     * @param y       Row of the cell, 0 if there is no object.
+     * @param offsetX Offset of the field from the left side.
+     * @param offsetY Offset of the field from the top side.
+     * @param x1      The first column.
+     * @param y1      The first row.
+     * @param x2      The last column.
+     * @param y2      The last row.
+     */
+    private static void paintGlyph(
+            final Graphics g,
+            final RenderContext context,
+            final RenderContext.Glyph glyph,
+            final int x,
+            final int y,
+            final int offsetX,
+            final int offsetY,
+            final int x1,
+            final int y1,
+            final int x2,
+            final int y2
+    ) {
+        if (x == 0 || x < x1 || x > x2 || y < y1 || y > y2) {
+            return;
+        }
+
+        context.drawGlyph(
+                g,
+                glyph,
+                offsetX + context.cellSize() * (x - 1),
+                offsetY + context.cellSize() * (y - 1)
+        );
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.concurrent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The <code>MpscQueue</code> class defines unbounded lock-free queue for many
+ * producers and a single consumer. Producers only swap the head, so they do
+ * not wait for each other or for the consumer.
+ *
+ * Only one thread at a time may poll the queue, consumers which take turns
+ * must be ordered by happens-before, e.g. by an executor.
+ *
+ * @param <T> Type of elements.
+ */
+public class MpscQueue<T> {
+
+    // Last added node, producers swap it.
+    private final AtomicReference<Node<T>> _head;
+    // Node before the first element, it is used only by the consumer.
+    private Node<T> _tail;
+
+    /**
+     * Constructs empty queue.
+     */
+    public MpscQueue() {
+        final Node<T> stub = new Node<>(null);
+        _head = new AtomicReference<>(stub);
+        _tail = stub;
+    }
+
+    /**
+     * Adds element to the queue. Can be invoked by any thread.
+     *
+     * @param value Element, not null.
+     */
+    public void offer(final T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Element must not be null");
+        }
+
+        final Node<T> node = new Node<>(value);
+        _head.getAndSet(node)._next = node;
+    }
+
+    /**
+     * Removes and returns the first element. Can be invoked only by the
+     * consumer.
+     *
+     * @return The first element or null if there are no elements which are
+     * completely added.
+     */
+    public T poll() {
+        final Node<T> next = _tail._next;
+        if (next == null) {
+            return null;
+        }
+
+        final T value = next._value;
+        next._value = null;
+        _tail = next;
+        return value;
+    }
+
+    /**
+     * Returns true if there are no elements, including elements which are
+     * being added right now, otherwise - false. Can be invoked only by the
+     * consumer.
+     *
+     * @return True if there are no elements.
+     */
+    public boolean isEmpty() {
+        return _head.get() == _tail;
+    }
+
+    /**
+     * Node of the queue.
+     *
+     * @param <T> Type of elements.
+     */
+    private static final class Node<T> {
+
+        // Element.
+        private T _value;
+        // Next node.
+        private volatile Node<T> _next;
+
+        /**
+         * Constructs node.
+         *
+         * @param value Element.
+         */
+        Node(final T value) {
+            _value = value;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>TimingWheel</code> class defines hierarchical timing wheel: a
+ * scheduler of delayed and periodic tasks for any number of timers with O(1)
+ * insert and cancel.
+ *
+ * Time is divided into ticks. Each level of the wheel is a ring of buckets,
+ * a bucket of level <code>k</code> covers <code>size^k</code> ticks. Timer is
+ * added to the bucket of the lowest level which covers its delay, and it is
+ * moved to lower levels when the wheel comes to its bucket. So each timer is
+ * moved at most once per level.
+ *
+ * Buckets are changed only by the thread of the wheel: other threads add and
+ * cancel timers through lock-free queues. Tasks are executed by the thread of
+ * the wheel, so they must be short, e.g. submit work to another executor.
+ */
+public class TimingWheel implements Runnable {
+
+    // Number of bits of bucket index, there are 64 buckets on a level.
+    private static final int BITS = 6;
+    // Number of buckets on a level.
+    private static final int SIZE = 1 << BITS;
+    // Mask of bucket index.
+    private static final int MASK = SIZE - 1;
+    // Number of levels, they cover 2^24 ticks.
+    private static final int LEVELS = 4;
+    // Duration of a tick, ns.
+    private final long _tickNanos;
+    // Time of the tick 0, ns.
+    private final long _start;
+    // Number of the current tick.
+    private long _now;
+    // Buckets by levels.
+    private final Timeout[][] _buckets;
+    // Timers which are not added to buckets yet.
+    private final MpscQueue<Timeout> _added;
+    // Timers which are cancelled after they were added to buckets.
+    private final MpscQueue<Timeout> _cancelled;
+    // Number of active timers.
+    private final AtomicInteger _size;
+    // Thread of the wheel.
+    private final Thread _thread;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            TimingWheel.class.getName()
+    );
+
+    /**
+     * Constructs timing wheel and starts its thread.
+     *
+     * @param name Name of the thread.
+     * @param tick Duration of a tick.
+     * @param unit Unit of the duration.
+     */
+    public TimingWheel(final String name, final long tick, final TimeUnit unit) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+
+        _tickNanos = unit.toNanos(tick);
+        _start = System.nanoTime();
+        _buckets = new Timeout[LEVELS][SIZE];
+        _added = new MpscQueue<>();
+        _cancelled = new MpscQueue<>();
+        _size = new AtomicInteger();
+        _thread = new Thread(this, name);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Schedules task which is executed once after delay. Can be invoked by
+     * any thread.
+     *
+     * @param task  Task.
+     * @param delay Delay.
+     * @param unit  Unit of the delay.
+     * @return Timer which can be cancelled.
+     */
+    public Timeout schedule(
+            final Runnable task,
+            final long delay,
+            final TimeUnit unit
+    ) {
+        return add(new Timeout(this, task, deadline(delay, unit), 0));
+    }
+
+    /**
+     * Schedules task which is executed periodically at fixed rate. Can be
+     * invoked by any thread.
+     *
+     * @param task   Task.
+     * @param delay  Delay of the first execution.
+     * @param period Time between executions.
+     * @param unit   Unit of the delay and the period.
+     * @return Timer which can be cancelled.
+     */
+    public Timeout scheduleAtFixedRate(
+            final Runnable task,
+            final long delay,
+            final long period,
+            final TimeUnit unit
+    ) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return add(new Timeout(
+                this,
+                task,
+                deadline(delay, unit),
+                Math.max(1, unit.toNanos(period) / _tickNanos)
+        ));
+    }
+
+    /**
+     * Returns number of active timers.
+     *
+     * @return Number of timers.
+     */
+    public int size() {
+        return _size.get();
+    }
+
+    /**
+     * Advances the wheel each tick.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            final long next = _start + (_now + 1) * _tickNanos;
+            long delay;
+            while ((delay = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, delay);
+            }
+
+            Timeout timeout;
+            while ((timeout = _cancelled.poll()) != null) {
+                unlink(timeout);
+            }
+            while ((timeout = _added.poll()) != null) {
+                if (!timeout.isCancelled()) {
+                    insert(timeout);
+                }
+            }
+
+            advance();
+        }
+    }
+
+    /**
+     * Returns tick in which time <code>delay</code> from now elapses.
+     *
+     * @param delay Delay.
+     * @param unit  Unit of the delay.
+     * @return Number of the tick.
+     */
+    private long deadline(final long delay, final TimeUnit unit) {
+        final long nanos = System.nanoTime() + unit.toNanos(Math.max(0, delay));
+        return (nanos - _start + _tickNanos - 1) / _tickNanos;
+    }
+
+    /**
+     * Passes timer to the thread of the wheel.
+     *
+     * @param timeout Timer.
+     * @return The timer.
+     */
+    private Timeout add(final Timeout timeout) {
+        _size.incrementAndGet();
+        _added.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Adds timer to the bucket which covers its deadline. It is invoked by
+     * the thread of the wheel.
+     *
+     * @param timeout Timer.
+     */
+    private void insert(final Timeout timeout) {
+        final long deadline = Math.max(timeout._deadline, _now + 1);
+        final long delta = deadline - _now;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            ++level;
+        }
+
+        // Timers beyond the last level wait in its farthest bucket.
+        final long slot = delta >= 1L << (BITS * LEVELS) ?
+                (_now >> (BITS * level)) - 1 :
+                deadline >> (BITS * level);
+        final int index = (int) slot & MASK;
+
+        final Timeout head = _buckets[level][index];
+        timeout._level = level;
+        timeout._index = index;
+        timeout._prev = null;
+        timeout._next = head;
+        if (head != null) {
+            head._prev = timeout;
+        }
+        _buckets[level][index] = timeout;
+    }
+
+    /**
+     * Removes timer from its bucket. It is invoked by the thread of the wheel.
+     *
+     * @param timeout Timer.
+     */
+    private void unlink(final Timeout timeout) {
+        if (timeout._level < 0) {
+            return;
+        }
+
+        if (timeout._prev != null) {
+            timeout._prev._next = timeout._next;
+        } else {
+            _buckets[timeout._level][timeout._index] = timeout._next;
+        }
+        if (timeout._next != null) {
+            timeout._next._prev = timeout._prev;
+        }
+        timeout._level = -1;
+        timeout._prev = null;
+        timeout._next = null;
+    }
+
+    /**
+     * Removes all timers from the bucket.
+     *
+     * @param level Level of the bucket.
+     * @param index Index of the bucket.
+     * @return The first timer of the bucket, timers are linked by next.
+     */
+    private Timeout takeBucket(final int level, final int index) {
+        final Timeout head = _buckets[level][index];
+        _buckets[level][index] = null;
+        for (Timeout t = head; t != null; t = t._next) {
+            t._level = -1;
+        }
+        return head;
+    }
+
+    /**
+     * Moves to the next tick: moves timers of higher levels which come to
+     * this tick down and executes expired timers.
+     */
+    private void advance() {
+        ++_now;
+
+        for (int level = 1; level < LEVELS; ++level) {
+            if ((_now & ((1L << (BITS * level)) - 1)) != 0) {
+                break;
+            }
+
+            Timeout t = takeBucket(
+                    level,
+                    (int) (_now >> (BITS * level)) & MASK
+            );
+            while (t != null) {
+                final Timeout next = t._next;
+                if (t._deadline > _now) {
+                    insert(t);
+                } else {
+                    expire(t);
+                }
+                t = next;
+            }
+        }
+
+        Timeout t = takeBucket(0, (int) _now & MASK);
+        while (t != null) {
+            final Timeout next = t._next;
+            if (t._deadline > _now) {
+                insert(t);
+            } else {
+                expire(t);
+            }
+            t = next;
+        }
+    }
+
+    /**
+     * Executes task of the timer and adds periodic timer again.
+     *
+     * @param timeout Expired timer.
+     */
+    private void expire(final Timeout timeout) {
+        if (timeout.isCancelled()) {
+            return;
+        }
+
+        try {
+            timeout._task.run();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Timer task has failed", e);
+        }
+
+        if (timeout._period == 0) {
+            if (timeout._state.compareAndSet(Timeout.ACTIVE, Timeout.EXPIRED)) {
+                _size.decrementAndGet();
+            }
+        } else if (!timeout.isCancelled()) {
+            timeout._deadline += timeout._period;
+            insert(timeout);
+        }
+    }
+
+    /**
+     * Timer of the wheel.
+     */
+    public static final class Timeout {
+
+        // Timer is waiting.
+        private static final int ACTIVE = 0;
+        // Timer is cancelled.
+        private static final int CANCELLED = 1;
+        // Task of the timer is executed.
+        private static final int EXPIRED = 2;
+        // Wheel of the timer.
+        private final TimingWheel _wheel;
+        // Task.
+        private final Runnable _task;
+        // Tick in which the task is executed.
+        private long _deadline;
+        // Ticks between executions, 0 if the task is executed once.
+        private final long _period;
+        // State of the timer.
+        private final AtomicInteger _state;
+        // Level of the bucket, -1 if the timer is not in a bucket.
+        private int _level;
+        // Index of the bucket.
+        private int _index;
+        // Previous timer of the bucket.
+        private Timeout _prev;
+        // Next timer of the bucket.
+        private Timeout _next;
+
+        /**
+         * Constructs timer.
+         *
+         * @param wheel    Wheel of the timer.
+         * @param task     Task.
+         * @param deadline Tick in which the task is executed.
+         * @param period   Ticks between executions, 0 if the task is
+         *                 executed once.
+         */
+        private Timeout(
+                final TimingWheel wheel,
+                final Runnable task,
+                final long deadline,
+                final long period
+        ) {
+            _wheel = wheel;
+            _task = task;
+            _deadline = deadline;
+            _period = period;
+            _state = new AtomicInteger(ACTIVE);
+            _level = -1;
+        }
+
+        /**
+         * Cancels the timer. Can be invoked by any thread.
+         *
+         * @return True if the timer was active, otherwise - false.
+         */
+        public boolean cancel() {
+            if (!_state.compareAndSet(ACTIVE, CANCELLED)) {
+                return false;
+            }
+            _wheel._size.decrementAndGet();
+            _wheel._cancelled.offer(this);
+            return true;
+        }
+
+        /**
+         * Returns true if the timer is cancelled, otherwise - false.
+         *
+         * @return Is the timer cancelled?
+         */
+        public boolean isCancelled() {
+            return _state.get() == CANCELLED;
+        }
+    }
+}
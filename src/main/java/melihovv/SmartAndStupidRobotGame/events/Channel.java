@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.events;
+
+import java.util.EventObject;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>Channel</code> class defines typed channel of the event bus.
+ * Channels are usually constants of the class which publishes events, the
+ * same channel can be used by any number of buses.
+ *
+ * Events of a coalesced channel are delivered to asynchronous subscribers at
+ * most once per tick: only the latest event of the tick is delivered.
+ *
+ * @param <E> Type of events.
+ */
+public final class Channel<E extends EventObject> {
+
+    // Number of created channels.
+    private static final AtomicInteger COUNT = new AtomicInteger();
+    // Index of the channel, buses keep subscribers in arrays by it.
+    private final int _id;
+    // Name of the channel.
+    private final String _name;
+    // Is only the latest event of a tick delivered asynchronously?
+    private final boolean _isCoalesced;
+
+    /**
+     * Constructs channel.
+     *
+     * @param name        Name of the channel.
+     * @param isCoalesced Is only the latest event of a tick delivered
+     *                    asynchronously?
+     */
+    private Channel(final String name, final boolean isCoalesced) {
+        _id = COUNT.getAndIncrement();
+        _name = name;
+        _isCoalesced = isCoalesced;
+    }
+
+    /**
+     * Creates channel which delivers all the events.
+     *
+     * @param name Name of the channel.
+     * @param <E>  Type of events.
+     * @return Channel.
+     */
+    public static <E extends EventObject> Channel<E> of(final String name) {
+        return new Channel<>(name, false);
+    }
+
+    /**
+     * Creates channel which delivers to asynchronous subscribers only the
+     * latest event of a tick.
+     *
+     * @param name Name of the channel.
+     * @param <E>  Type of events.
+     * @return Coalesced channel.
+     */
+    public static <E extends EventObject> Channel<E> latest(final String name) {
+        return new Channel<>(name, true);
+    }
+
+    /**
+     * Returns index of the channel.
+     *
+     * @return Index of the channel.
+     */
+    int id() {
+        return _id;
+    }
+
+    /**
+     * Returns name of the channel.
+     *
+     * @return Name of the channel.
+     */
+    public String name() {
+        return _name;
+    }
+
+    /**
+     * Returns true if only the latest event of a tick is delivered
+     * asynchronously, otherwise - false.
+     *
+     * @return Is channel coalesced?
+     */
+    public boolean isCoalesced() {
+        return _isCoalesced;
+    }
+
+    /**
+     * Returns name of the channel.
+     *
+     * @return Name of the channel.
+     */
+    @Override
+    public String toString() {
+        return _name;
+    }
+}
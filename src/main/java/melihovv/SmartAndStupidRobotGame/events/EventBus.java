@@ -0,0 +1,409 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EventListener;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>EventBus</code> class delivers events of a game to subscribers of
+ * typed channels.
+ *
+ * Synchronous subscribers are invoked right inside <code>publish</code>, they
+ * are used for game rules which must be applied in the same move. Other
+ * subscribers, e.g. view and logging, are asynchronous: events are added to
+ * a ring buffer and delivered by the executor of the bus after
+ * <code>flush</code>, which is invoked once per tick. So slow asynchronous
+ * subscribers do not add latency to the move.
+ *
+ * The bus does not flush itself: it is done by the owner of the game, e.g.
+ * <code>Simulation</code>. If the game is changed directly, e.g. by
+ * <code>Model.makeMove</code> in training, asynchronous subscribers get no
+ * events until the caller flushes the bus.
+ *
+ * Events are published and flushed by a single thread at a time, the thread
+ * which changes the game. If the ring buffer is full, events are dropped and
+ * counted instead of blocking the game.
+ */
+public class EventBus {
+
+    // Default capacity of the ring buffer, power of two.
+    private static final int CAPACITY = 4096;
+    // Shared thread which delivers events of buses without own executor.
+    private static final ExecutorService DELIVERY =
+            Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "Event delivery");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Executor which delivers events to asynchronous subscribers.
+    private final Executor _executor;
+    // Synchronous subscribers by index of channel.
+    private volatile Subscriber<?>[][] _sync;
+    // Asynchronous subscribers by index of channel.
+    private volatile Subscriber<?>[][] _async;
+    // Capacity of the ring buffer.
+    private final int _capacity;
+    // Channels of the buffered events, the ring is created lazily.
+    private Channel<?>[] _channels;
+    // Buffered events.
+    private EventObject[] _events;
+    // Number of events which are written by the publisher.
+    private long _written;
+    // Number of events which are visible to the delivery, it is changed by
+    // flush.
+    private final AtomicLong _head;
+    // Number of delivered events.
+    private final AtomicLong _tail;
+    // Latest events of coalesced channels by index of channel.
+    private EventObject[] _latest;
+    // Coalesced channels which have event in the current tick.
+    private final List<Channel<?>> _coalesced;
+    // Is delivery scheduled on the executor?
+    private final AtomicBoolean _isScheduled;
+    // Delivers events, it is created once.
+    private final Runnable _deliver;
+    // Number of events which are dropped because the ring buffer was full.
+    private final AtomicLong _dropped;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            EventBus.class.getName()
+    );
+
+    /**
+     * Constructs event bus which delivers events by the shared delivery
+     * thread.
+     */
+    public EventBus() {
+        this(DELIVERY);
+    }
+
+    /**
+     * Constructs event bus.
+     *
+     * @param executor Executor which delivers events to asynchronous
+     *                 subscribers, e.g. the EDT.
+     */
+    public EventBus(final Executor executor) {
+        this(executor, CAPACITY);
+    }
+
+    /**
+     * Constructs event bus.
+     *
+     * @param executor Executor which delivers events to asynchronous
+     *                 subscribers, e.g. the EDT.
+     * @param capacity Capacity of the ring buffer, it is rounded up to power
+     *                 of two.
+     */
+    public EventBus(final Executor executor, final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        _executor = executor;
+        _capacity = Integer.bitCount(capacity) == 1 ?
+                capacity :
+                Integer.highestOneBit(capacity) << 1;
+        _sync = new Subscriber<?>[0][];
+        _async = new Subscriber<?>[0][];
+        _head = new AtomicLong();
+        _tail = new AtomicLong();
+        _latest = new EventObject[0];
+        _coalesced = new ArrayList<>();
+        _isScheduled = new AtomicBoolean();
+        _deliver = this::deliver;
+        _dropped = new AtomicLong();
+    }
+
+    /**
+     * Adds synchronous subscriber of the channel. It is invoked by the
+     * publishing thread inside <code>publish</code>.
+     *
+     * @param channel    Channel.
+     * @param subscriber Subscriber.
+     * @param <E>        Type of events.
+     */
+    public synchronized <E extends EventObject> void subscribe(
+            final Channel<E> channel,
+            final Subscriber<? super E> subscriber
+    ) {
+        _sync = add(_sync, channel, subscriber);
+    }
+
+    /**
+     * Adds asynchronous subscriber of the channel. It is invoked by the
+     * executor of the bus after the tick in which event is published, i.e.
+     * after <code>flush</code>.
+     *
+     * @param channel    Channel.
+     * @param subscriber Subscriber.
+     * @param <E>        Type of events.
+     */
+    public synchronized <E extends EventObject> void subscribeAsync(
+            final Channel<E> channel,
+            final Subscriber<? super E> subscriber
+    ) {
+        _async = add(_async, channel, subscriber);
+    }
+
+    /**
+     * Removes subscriber of the channel, both synchronous and asynchronous.
+     *
+     * @param channel    Channel.
+     * @param subscriber Subscriber.
+     */
+    public synchronized void unsubscribe(
+            final Channel<?> channel,
+            final Subscriber<?> subscriber
+    ) {
+        _sync = remove(_sync, channel, subscriber);
+        _async = remove(_async, channel, subscriber);
+    }
+
+    /**
+     * Publishes event: invokes synchronous subscribers and buffers event for
+     * asynchronous ones. Can be invoked only by the thread which changes the
+     * game.
+     *
+     * @param channel Channel.
+     * @param event   Event, it must not be changed after publishing.
+     * @param <E>     Type of events.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends EventObject> void publish(
+            final Channel<E> channel,
+            final E event
+    ) {
+        final int id = channel.id();
+
+        final Subscriber<?>[][] sync = _sync;
+        if (id < sync.length && sync[id] != null) {
+            for (Subscriber<?> subscriber : sync[id]) {
+                ((Subscriber<E>) subscriber).handle(event);
+            }
+        }
+
+        final Subscriber<?>[][] async = _async;
+        if (id >= async.length || async[id] == null) {
+            return;
+        }
+
+        if (!channel.isCoalesced()) {
+            write(channel, event);
+            return;
+        }
+
+        if (id >= _latest.length) {
+            _latest = Arrays.copyOf(_latest, id + 1);
+        }
+        if (_latest[id] == null) {
+            _coalesced.add(channel);
+        }
+        _latest[id] = event;
+    }
+
+    /**
+     * Ends the tick: makes buffered events visible to the delivery and
+     * schedules it. Events of coalesced channels are added after other
+     * events of the tick. Can be invoked only by the thread which changes the
+     * game.
+     */
+    public void flush() {
+        for (int i = 0; i < _coalesced.size(); ++i) {
+            final Channel<?> channel = _coalesced.get(i);
+            write(channel, _latest[channel.id()]);
+            _latest[channel.id()] = null;
+        }
+        _coalesced.clear();
+
+        if (_written == _head.get()) {
+            return;
+        }
+
+        _head.set(_written);
+        if (_isScheduled.compareAndSet(false, true)) {
+            _executor.execute(_deliver);
+        }
+    }
+
+    /**
+     * Returns number of events which are dropped because the ring buffer was
+     * full.
+     *
+     * @return Number of dropped events.
+     */
+    public long dropped() {
+        return _dropped.get();
+    }
+
+    /**
+     * Writes event to the ring buffer. The event is not visible to the
+     * delivery until flush.
+     *
+     * @param channel Channel.
+     * @param event   Event.
+     */
+    private void write(final Channel<?> channel, final EventObject event) {
+        if (_events == null) {
+            _channels = new Channel<?>[_capacity];
+            _events = new EventObject[_capacity];
+        }
+
+        if (_written - _tail.get() == _capacity) {
+            if (_dropped.getAndIncrement() == 0) {
+                log.warning("Event buffer is full, events are dropped");
+            }
+            return;
+        }
+
+        final int index = (int) _written & (_capacity - 1);
+        _channels[index] = channel;
+        _events[index] = event;
+        ++_written;
+    }
+
+    /**
+     * Delivers flushed events to asynchronous subscribers.
+     */
+    @SuppressWarnings("unchecked")
+    private void deliver() {
+        do {
+            final long head = _head.get();
+            long tail = _tail.get();
+            while (tail != head) {
+                final int index = (int) tail & (_capacity - 1);
+                final Channel<?> channel = _channels[index];
+                final EventObject event = _events[index];
+                _channels[index] = null;
+                _events[index] = null;
+                _tail.lazySet(++tail);
+
+                final Subscriber<?>[][] async = _async;
+                if (channel.id() >= async.length ||
+                        async[channel.id()] == null) {
+                    continue;
+                }
+                for (Subscriber<?> subscriber : async[channel.id()]) {
+                    try {
+                        ((Subscriber<EventObject>) subscriber).handle(event);
+                    } catch (RuntimeException e) {
+                        log.log(
+                                Level.WARNING,
+                                "Subscriber of " + channel + " has failed",
+                                e
+                        );
+                    }
+                }
+            }
+
+            _isScheduled.set(false);
+        } while (_tail.get() != _head.get() &&
+                _isScheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Returns copy of subscribers with the subscriber added.
+     *
+     * @param subscribers Subscribers by index of channel.
+     * @param channel     Channel.
+     * @param subscriber  Subscriber.
+     * @return New subscribers.
+     */
+    private static Subscriber<?>[][] add(
+            final Subscriber<?>[][] subscribers,
+            final Channel<?> channel,
+            final Subscriber<?> subscriber
+    ) {
+        final int id = channel.id();
+        final Subscriber<?>[][] result = Arrays.copyOf(
+                subscribers,
+                Math.max(subscribers.length, id + 1)
+        );
+        final Subscriber<?>[] old = result[id] == null ?
+                new Subscriber<?>[0] :
+                result[id];
+        result[id] = Arrays.copyOf(old, old.length + 1);
+        result[id][old.length] = subscriber;
+        return result;
+    }
+
+    /**
+     * Returns copy of subscribers with the subscriber removed.
+     *
+     * @param subscribers Subscribers by index of channel.
+     * @param channel     Channel.
+     * @param subscriber  Subscriber.
+     * @return New subscribers.
+     */
+    private static Subscriber<?>[][] remove(
+            final Subscriber<?>[][] subscribers,
+            final Channel<?> channel,
+            final Subscriber<?> subscriber
+    ) {
+        final int id = channel.id();
+        if (id >= subscribers.length || subscribers[id] == null) {
+            return subscribers;
+        }
+
+        final List<Subscriber<?>> rest = new ArrayList<>();
+        for (Subscriber<?> s : subscribers[id]) {
+            if (s != subscriber) {
+                rest.add(s);
+            }
+        }
+
+        final Subscriber<?>[][] result = subscribers.clone();
+        result[id] = rest.isEmpty() ?
+                null :
+                rest.toArray(new Subscriber<?>[rest.size()]);
+        return result;
+    }
+
+    /**
+     * Subscriber of a channel.
+     *
+     * @param <E> Type of events.
+     */
+    public interface Subscriber<E extends EventObject> extends EventListener {
+
+        /**
+         * This method is invoked when event is published.
+         *
+         * @param e Event.
+         */
+        void handle(final E e);
+    }
+}
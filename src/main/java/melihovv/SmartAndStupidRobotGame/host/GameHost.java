@@ -0,0 +1,312 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.host;
+
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.replay.ReplayRecorder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * The <code>GameHost</code> class runs many independent games in one JVM.
+ * Each game is a lightweight actor: it has its own mailbox (the simulation
+ * queue), but no thread of its own. Mailboxes are drained by a shared pool,
+ * so an idle game costs only memory.
+ *
+ * The host accounts estimated memory of each game and rejects new games
+ * when the limit of games or memory is reached.
+ *
+ * If replay directory is set, each game is recorded into it.
+ */
+public class GameHost {
+
+    // Estimated memory of a game without field: model, simulation, event bus
+    // and seasons, bytes.
+    private static final long GAME_BYTES = 8 * 1024;
+    // Estimated memory of a cell: index of the field and snapshot, bytes.
+    private static final long CELL_BYTES = 16;
+    // Estimated memory of an object on the field with its position, bytes.
+    private static final long OBJECT_BYTES = 96;
+    // Executor which drains mailboxes of the games.
+    private final Executor _executor;
+    // Maximal number of games.
+    private final int _maxGames;
+    // Maximal estimated memory of all the games, bytes.
+    private final long _maxMemory;
+    // Running games by identifiers.
+    private final Map<Long, HostedGame> _games;
+    // Estimated memory of the running games, bytes.
+    private long _memory;
+    // Identifier of the next game.
+    private long _nextId;
+    // Number of rejected games.
+    private final AtomicLong _rejected;
+    // Durations of moves, striped by threads, so threads of the pool rarely
+    // contend.
+    private final TimingStats[] _moveStats;
+    // Directory of replays, null if games are not recorded.
+    private volatile Path _replays;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            GameHost.class.getName()
+    );
+
+    /**
+     * Constructs game host which runs games on the pool with a thread per
+     * processor.
+     *
+     * @param maxGames  Maximal number of games.
+     * @param maxMemory Maximal estimated memory of all the games, bytes.
+     */
+    public GameHost(final int maxGames, final long maxMemory) {
+        this(newPool(), maxGames, maxMemory);
+    }
+
+    /**
+     * Constructs game host.
+     *
+     * @param executor  Executor which drains mailboxes of the games, e.g.
+     *                  <code>newPool()</code> or
+     *                  <code>newVirtualThreadExecutor()</code>.
+     * @param maxGames  Maximal number of games.
+     * @param maxMemory Maximal estimated memory of all the games, bytes.
+     */
+    public GameHost(
+            final Executor executor,
+            final int maxGames,
+            final long maxMemory
+    ) {
+        if (maxGames <= 0 || maxMemory <= 0) {
+            throw new IllegalArgumentException(
+                    "Limits of games and memory must be positive");
+        }
+
+        _executor = executor;
+        _maxGames = maxGames;
+        _maxMemory = maxMemory;
+        _games = new ConcurrentHashMap<>();
+        _rejected = new AtomicLong();
+        _moveStats = new TimingStats[Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors()) * 2];
+        for (int i = 0; i < _moveStats.length; ++i) {
+            _moveStats[i] = new TimingStats();
+        }
+    }
+
+    /**
+     * Creates pool with a thread per processor. Tasks are taken in FIFO
+     * order, so games are served fairly.
+     *
+     * @return Pool for games.
+     */
+    public static ExecutorService newPool() {
+        return new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors(),
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null,
+                true
+        );
+    }
+
+    /**
+     * Creates executor which starts a virtual thread per task if the runtime
+     * supports virtual threads.
+     *
+     * @return Executor or null if virtual threads are not supported.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.fine("Virtual threads are not supported");
+            return null;
+        }
+    }
+
+    /**
+     * Sets directory into which games are recorded. It is applied to games
+     * which are opened after it.
+     *
+     * @param directory Existing directory of replays or null to turn off
+     *                  recording.
+     */
+    public void setReplayDirectory(final Path directory) {
+        _replays = directory;
+    }
+
+    /**
+     * Estimates memory of a game on the field.
+     *
+     * @param field The game field.
+     * @return Estimated memory, bytes.
+     */
+    public static long estimateMemory(final Field field) {
+        return GAME_BYTES +
+                CELL_BYTES * field.width() * field.height() +
+                OBJECT_BYTES * field.objects().size();
+    }
+
+    /**
+     * Starts new game on the field.
+     *
+     * @param field The game field with situation placed on it, it must not be
+     *              used by other games.
+     * @return Started game.
+     * @throws RejectedExecutionException If the limit of games or memory is
+     *                                    reached.
+     */
+    public HostedGame open(final Field field)
+            throws RejectedExecutionException {
+        final long memory = estimateMemory(field);
+        final long id;
+        synchronized (this) {
+            if (_games.size() >= _maxGames) {
+                _rejected.incrementAndGet();
+                throw new RejectedExecutionException(
+                        "Limit of " + _maxGames + " games is reached");
+            }
+            if (_memory + memory > _maxMemory) {
+                _rejected.incrementAndGet();
+                throw new RejectedExecutionException(
+                        "Limit of " + _maxMemory + " bytes is reached");
+            }
+            _memory += memory;
+            id = _nextId++;
+        }
+
+        final Model model = new Model();
+        final Path replays = _replays;
+        if (replays != null) {
+            new ReplayRecorder(model, replays);
+        }
+        final Simulation simulation = new Simulation(model, _executor);
+        final HostedGame game =
+                new HostedGame(id, this, model, simulation, memory);
+        _games.put(id, game);
+        simulation.load(field);
+        return game;
+    }
+
+    /**
+     * Stops the game and releases its memory.
+     *
+     * @param game The game.
+     */
+    public void close(final HostedGame game) {
+        if (_games.remove(game.id()) == null) {
+            return;
+        }
+
+        game.simulation().stop();
+        synchronized (this) {
+            _memory -= game.memory();
+        }
+    }
+
+    /**
+     * Stops all the games.
+     */
+    public void closeAll() {
+        for (HostedGame game : new ArrayList<>(_games.values())) {
+            close(game);
+        }
+    }
+
+    /**
+     * Returns game by identifier.
+     *
+     * @param id Identifier of the game.
+     * @return The game or null if there is no such game.
+     */
+    public HostedGame game(final long id) {
+        return _games.get(id);
+    }
+
+    /**
+     * Returns number of running games.
+     *
+     * @return Number of games.
+     */
+    public int size() {
+        return _games.size();
+    }
+
+    /**
+     * Returns estimated memory of the running games.
+     *
+     * @return Estimated memory, bytes.
+     */
+    public synchronized long memory() {
+        return _memory;
+    }
+
+    /**
+     * Returns number of games which are rejected by admission control.
+     *
+     * @return Number of rejected games.
+     */
+    public long rejected() {
+        return _rejected.get();
+    }
+
+    /**
+     * Returns statistics of move durations of all the games, from the call
+     * of <code>HostedGame.move</code> to the end of the move.
+     *
+     * @return Move duration statistics.
+     */
+    public TimingStats moveStats() {
+        final TimingStats total = new TimingStats();
+        for (TimingStats stats : _moveStats) {
+            total.add(stats);
+        }
+        return total;
+    }
+
+    /**
+     * Records move duration. It is invoked by the thread which made the move.
+     *
+     * @param nanos Duration, ns.
+     */
+    void recordMove(final long nanos) {
+        _moveStats[(int) Thread.currentThread().getId() &
+                (_moveStats.length - 1)].record(nanos);
+    }
+}
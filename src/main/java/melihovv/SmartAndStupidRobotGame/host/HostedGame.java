@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.host;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+/**
+ * The <code>HostedGame</code> class defines a game which is run by the game
+ * host. The game is an actor: its simulation is the mailbox, commands of the
+ * game are executed one by one on the shared pool of the host.
+ */
+public class HostedGame {
+
+    // Identifier of the game in the host.
+    private final long _id;
+    // Host which runs the game.
+    private final GameHost _host;
+    // Model of the game.
+    private final Model _model;
+    // Simulation which owns the model.
+    private final Simulation _simulation;
+    // Estimated memory of the game, bytes.
+    private final long _memory;
+
+    /**
+     * Constructs hosted game.
+     *
+     * @param id         Identifier of the game in the host.
+     * @param host       Host which runs the game.
+     * @param model      Model of the game.
+     * @param simulation Simulation which owns the model.
+     * @param memory     Estimated memory of the game, bytes.
+     */
+    HostedGame(
+            final long id,
+            final GameHost host,
+            final Model model,
+            final Simulation simulation,
+            final long memory
+    ) {
+        _id = id;
+        _host = host;
+        _model = model;
+        _simulation = simulation;
+        _memory = memory;
+    }
+
+    /**
+     * Returns identifier of the game in the host.
+     *
+     * @return Identifier of the game.
+     */
+    public long id() {
+        return _id;
+    }
+
+    /**
+     * Makes move of the smart robot if game is not finished. Time from the
+     * call to the end of the move is recorded by the host. Can be invoked by
+     * any thread.
+     *
+     * @param dir Direction of the move.
+     */
+    public void move(final Direction dir) {
+        final long start = System.nanoTime();
+        _simulation.submit(model -> {
+            if (!model.isGameFinished()) {
+                model.makeMove(dir);
+            }
+            _host.recordMove(System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * Returns the latest published snapshot of the game. Can be invoked by
+     * any thread.
+     *
+     * @return Snapshot or null if the game is not started yet.
+     */
+    public FieldSnapshot snapshot() {
+        return _simulation.snapshot();
+    }
+
+    /**
+     * Returns simulation of the game, e.g. to submit commands or to add
+     * listeners.
+     *
+     * @return Simulation of the game.
+     */
+    public Simulation simulation() {
+        return _simulation;
+    }
+
+    /**
+     * Returns model of the game. It can be changed only by commands of the
+     * simulation.
+     *
+     * @return Model of the game.
+     */
+    public Model model() {
+        return _model;
+    }
+
+    /**
+     * Returns estimated memory of the game.
+     *
+     * @return Estimated memory, bytes.
+     */
+    public long memory() {
+        return _memory;
+    }
+
+    /**
+     * Stops the game and removes it from the host.
+     */
+    public void close() {
+        _host.close(this);
+    }
+}
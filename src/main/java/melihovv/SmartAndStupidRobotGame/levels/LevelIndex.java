@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.levels;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The <code>LevelIndex</code> class defines persistent index of situation
+ * files of a directory. Only files which were modified since the previous scan
+ * are validated again.
+ */
+public class LevelIndex {
+
+    // Version of the index file format.
+    private static final int VERSION = 1;
+    // Index entries by path relative to the directory.
+    private final Map<String, LevelInfo> _entries;
+    // Directory with situation files.
+    private final Path _dir;
+    // Index file.
+    private final Path _file;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            LevelIndex.class.getName()
+    );
+
+    /**
+     * Constructs level index.
+     *
+     * @param dir  Directory with situation files.
+     * @param file Index file.
+     */
+    public LevelIndex(final Path dir, final Path file) {
+        _dir = dir;
+        _file = file;
+        _entries = new TreeMap<>();
+    }
+
+    /**
+     * Loads index from the index file. Missing or damaged index file results
+     * in empty index, so all situation files will be validated.
+     */
+    public void load() {
+        _entries.clear();
+        if (!Files.exists(_file)) {
+            return;
+        }
+
+        try {
+            final String input = new String(
+                    Files.readAllBytes(_file),
+                    StandardCharsets.UTF_8
+            );
+            final JsonObject json = new JsonParser().parse(input)
+                    .getAsJsonObject();
+            if (json.get("version").getAsInt() != VERSION) {
+                return;
+            }
+
+            final JsonObject entries = json.get("entries").getAsJsonObject();
+            for (Map.Entry<String, JsonElement> e : entries.entrySet()) {
+                _entries.put(
+                        e.getKey(),
+                        LevelInfo.fromJson(e.getValue().getAsJsonObject())
+                );
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warning("Cannot read index " + _file + ": " + e.getMessage());
+            _entries.clear();
+        }
+    }
+
+    /**
+     * Saves index to the index file.
+     *
+     * @throws IOException If it is impossible to write file.
+     */
+    public void save() throws IOException {
+        final JsonObject entries = new JsonObject();
+        for (Map.Entry<String, LevelInfo> e : _entries.entrySet()) {
+            entries.add(e.getKey(), e.getValue().toJson());
+        }
+
+        final JsonObject json = new JsonObject();
+        json.addProperty("version", VERSION);
+        json.add("entries", entries);
+
+        final Path temp = _file.resolveSibling(_file.getFileName() + ".tmp");
+        Files.write(temp, json.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, _file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Walks the directory and validates in parallel all situation files which
+     * are new or were modified since the previous scan. Entries of removed
+     * files are dropped.
+     *
+     * @return Paths of the validated files.
+     * @throws IOException If it is impossible to walk the directory.
+     */
+    public List<String> rescan() throws IOException {
+        final Map<String, Long> files;
+        try (Stream<Path> paths = Files.walk(_dir)) {
+            files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.toString().endsWith(".json"))
+                    .collect(Collectors.toMap(
+                            p -> _dir.relativize(p).toString(),
+                            LevelIndex::mtime
+                    ));
+        }
+
+        _entries.keySet().retainAll(files.keySet());
+
+        final List<String> stale = files.keySet().stream()
+                .filter(p -> !_entries.containsKey(p) ||
+                        _entries.get(p).mtime() != files.get(p))
+                .sorted()
+                .collect(Collectors.toList());
+
+        final Map<String, LevelInfo> validated = new ConcurrentHashMap<>();
+        stale.parallelStream().forEach(p -> validated.put(
+                p,
+                validate(_dir.resolve(p), files.get(p))
+        ));
+        _entries.putAll(validated);
+
+        return stale;
+    }
+
+    /**
+     * Validates situation file with the same rules as used on game start.
+     *
+     * @param path  Path of the situation file.
+     * @param mtime Modification time of the file.
+     * @return Level info.
+     */
+    private static LevelInfo validate(final Path path, final long mtime) {
+        try {
+            return LevelInfo.valid(mtime, Situation.load(path.toString()));
+        } catch (IOException | RuntimeException e) {
+            return LevelInfo.invalid(
+                    mtime,
+                    e.getMessage() == null ?
+                            e.getClass().getSimpleName() :
+                            e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Returns modification time of the file.
+     *
+     * @param path Path of the file.
+     * @return Modification time of the file or -1 if it cannot be read.
+     */
+    private static long mtime(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns index entries by path relative to the directory.
+     *
+     * @return Index entries.
+     */
+    public Map<String, LevelInfo> entries() {
+        return _entries;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.levels;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>LevelIndexer</code> defines command line tool which validates all
+ * situation files of a directory and prints their metadata.
+ *
+ * Usage: <code>LevelIndexer directory [index file]</code>. By default index is
+ * stored in the ".situations-index" file of the directory.
+ */
+public class LevelIndexer {
+
+    // Default name of the index file.
+    private static final String INDEX_FILE = ".situations-index";
+
+    /**
+     * Main function.
+     *
+     * @param args Args.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println(
+                    "Usage: LevelIndexer directory [index file]");
+            System.exit(2);
+        }
+
+        final Path dir = Paths.get(args[0]);
+        if (!Files.isDirectory(dir)) {
+            System.err.println(dir + " is not a directory");
+            System.exit(2);
+        }
+        final Path file = args.length == 2 ?
+                Paths.get(args[1]) :
+                dir.resolve(INDEX_FILE);
+
+        final LevelIndex index = new LevelIndex(dir, file);
+        int invalid = 0;
+        try {
+            index.load();
+            final List<String> validated = index.rescan();
+            index.save();
+
+            for (Map.Entry<String, LevelInfo> e : index.entries().entrySet()) {
+                if (!e.getValue().isValid()) {
+                    ++invalid;
+                }
+                System.out.println(e.getKey() + ": " + e.getValue());
+            }
+            System.out.println(
+                    index.entries().size() + " files, " +
+                            validated.size() + " validated, " +
+                            invalid + " invalid"
+            );
+        } catch (IOException e) {
+            System.err.println("Cannot index " + dir + ": " + e.getMessage());
+            System.exit(2);
+        }
+
+        System.exit(invalid == 0 ? 0 : 1);
+    }
+}
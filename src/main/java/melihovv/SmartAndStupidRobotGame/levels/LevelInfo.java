@@ -0,0 +1,376 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.levels;
+
+import com.google.gson.JsonObject;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The <code>LevelInfo</code> class defines result of validation of one
+ * situation file and metadata extracted from it.
+ */
+public class LevelInfo {
+
+    // Wall bits of a cell.
+    private static final int NORTH = 1;
+    private static final int SOUTH = 2;
+    private static final int WEST = 4;
+    private static final int EAST = 8;
+    // Mire bit of a cell.
+    private static final int MIRE = 16;
+
+    // Modification time of the file.
+    private final long _mtime;
+    // Error message, null if file is valid.
+    private final String _error;
+    // Width of the field.
+    private final int _width;
+    // Height of the field.
+    private final int _height;
+    // Number of walls.
+    private final int _walls;
+    // Number of mires.
+    private final int _mires;
+    // If target is reachable by the smart robot.
+    private final boolean _isTargetReachable;
+
+    /**
+     * Constructs level info.
+     *
+     * @param mtime             Modification time of the file.
+     * @param error             Error message, null if file is valid.
+     * @param width             Width of the field.
+     * @param height            Height of the field.
+     * @param walls             Number of walls.
+     * @param mires             Number of mires.
+     * @param isTargetReachable If target is reachable by the smart robot.
+     */
+    private LevelInfo(
+            final long mtime,
+            final String error,
+            final int width,
+            final int height,
+            final int walls,
+            final int mires,
+            final boolean isTargetReachable
+    ) {
+        _mtime = mtime;
+        _error = error;
+        _width = width;
+        _height = height;
+        _walls = walls;
+        _mires = mires;
+        _isTargetReachable = isTargetReachable;
+    }
+
+    /**
+     * Returns info of a valid situation.
+     *
+     * @param mtime     Modification time of the file.
+     * @param situation Loaded situation.
+     * @return Level info.
+     * @throws IllegalArgumentException If field has more than
+     *                                  <code>Field.MAX_CELLS</code> cells.
+     */
+    public static LevelInfo valid(final long mtime, final Situation situation)
+            throws IllegalArgumentException {
+        return new LevelInfo(
+                mtime,
+                null,
+                (int) situation.size().getWidth(),
+                (int) situation.size().getHeight(),
+                situation.walls().size(),
+                situation.mires().size(),
+                isTargetReachable(situation)
+        );
+    }
+
+    /**
+     * Returns info of an invalid situation.
+     *
+     * @param mtime Modification time of the file.
+     * @param error Error message.
+     * @return Level info.
+     */
+    public static LevelInfo invalid(final long mtime, final String error) {
+        return new LevelInfo(mtime, error, 0, 0, 0, 0, false);
+    }
+
+    /**
+     * Checks if the smart robot can reach the target walking around walls and
+     * mires, i.e. in any season.
+     *
+     * @param situation Situation to check.
+     * @return Result of checking.
+     * @throws IllegalArgumentException If field has more than
+     *                                  <code>Field.MAX_CELLS</code> cells.
+     */
+    static boolean isTargetReachable(final Situation situation)
+            throws IllegalArgumentException {
+        final int width = (int) situation.size().getWidth();
+        final int height = (int) situation.size().getHeight();
+        if ((long) width * height > Field.MAX_CELLS) {
+            throw new IllegalArgumentException("Field is too large");
+        }
+        final int[] cells = new int[width * height];
+
+        for (MiddlePosition wall : situation.walls()) {
+            final Point p = wall.cellPos().pos();
+            final Direction dir = wall.direct();
+            final int[] offset = offset(dir);
+
+            cells[index(p.x, p.y, width)] |= bit(dir);
+            final int x = p.x + offset[0];
+            final int y = p.y + offset[1];
+            if (x >= 1 && x <= width && y >= 1 && y <= height) {
+                cells[index(x, y, width)] |= bit(dir.opposite());
+            }
+        }
+        for (CellPosition mire : situation.mires()) {
+            cells[index(mire.pos().x, mire.pos().y, width)] |= MIRE;
+        }
+
+        final Point from = situation.smartRobot().pos();
+        final Point to = situation.target().pos();
+        final boolean[] visited = new boolean[width * height];
+        final Deque<Point> queue = new ArrayDeque<>();
+        final Direction[] dirs = {
+                Direction.north(),
+                Direction.south(),
+                Direction.west(),
+                Direction.east(),
+        };
+
+        visited[index(from.x, from.y, width)] = true;
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            final Point p = queue.poll();
+            if (p.equals(to)) {
+                return true;
+            }
+
+            for (Direction dir : dirs) {
+                if ((cells[index(p.x, p.y, width)] & bit(dir)) != 0) {
+                    continue;
+                }
+
+                final int[] offset = offset(dir);
+                final int x = p.x + offset[0];
+                final int y = p.y + offset[1];
+                if (x < 1 || x > width || y < 1 || y > height) {
+                    continue;
+                }
+
+                final int i = index(x, y, width);
+                if (!visited[i] && (cells[i] & MIRE) == 0) {
+                    visited[i] = true;
+                    queue.add(new Point(x, y));
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns index of the cell in the row-major array of cells.
+     *
+     * @param x     Column of the cell, starting from 1.
+     * @param y     Row of the cell, starting from 1.
+     * @param width Width of the field.
+     * @return Index of the cell.
+     */
+    private static int index(final int x, final int y, final int width) {
+        return (y - 1) * width + x - 1;
+    }
+
+    /**
+     * Returns wall bit corresponding to direction <code>dir</code>.
+     *
+     * @param dir Direction.
+     * @return Wall bit.
+     */
+    private static int bit(final Direction dir) {
+        if (dir.equals(Direction.north())) {
+            return NORTH;
+        } else if (dir.equals(Direction.south())) {
+            return SOUTH;
+        } else if (dir.equals(Direction.west())) {
+            return WEST;
+        }
+        return EAST;
+    }
+
+    /**
+     * Returns offset of the neighbour cell in direction <code>dir</code>.
+     *
+     * @param dir Direction.
+     * @return Offset of the neighbour cell.
+     */
+    private static int[] offset(final Direction dir) {
+        final Point p = new CellPosition(new Point(0, 0)).next(dir).pos();
+        return new int[]{p.x, p.y};
+    }
+
+    /**
+     * Returns modification time of the file.
+     *
+     * @return Modification time of the file.
+     */
+    public long mtime() {
+        return _mtime;
+    }
+
+    /**
+     * Returns true if the situation file is valid, otherwise - false.
+     *
+     * @return True if the situation file is valid, otherwise - false.
+     */
+    public boolean isValid() {
+        return _error == null;
+    }
+
+    /**
+     * Returns error message, null if file is valid.
+     *
+     * @return Error message.
+     */
+    public String error() {
+        return _error;
+    }
+
+    /**
+     * Returns width of the field.
+     *
+     * @return Width of the field.
+     */
+    public int width() {
+        return _width;
+    }
+
+    /**
+     * Returns height of the field.
+     *
+     * @return Height of the field.
+     */
+    public int height() {
+        return _height;
+    }
+
+    /**
+     * Returns number of walls.
+     *
+     * @return Number of walls.
+     */
+    public int walls() {
+        return _walls;
+    }
+
+    /**
+     * Returns number of mires.
+     *
+     * @return Number of mires.
+     */
+    public int mires() {
+        return _mires;
+    }
+
+    /**
+     * Returns true if target is reachable by the smart robot, otherwise -
+     * false.
+     *
+     * @return True if target is reachable, otherwise - false.
+     */
+    public boolean isTargetReachable() {
+        return _isTargetReachable;
+    }
+
+    /**
+     * Converts level info to json.
+     *
+     * @return Json object.
+     */
+    public JsonObject toJson() {
+        final JsonObject json = new JsonObject();
+        json.addProperty("mtime", _mtime);
+        if (_error != null) {
+            json.addProperty("error", _error);
+        } else {
+            json.addProperty("width", _width);
+            json.addProperty("height", _height);
+            json.addProperty("walls", _walls);
+            json.addProperty("mires", _mires);
+            json.addProperty("reachable", _isTargetReachable);
+        }
+        return json;
+    }
+
+    /**
+     * Constructs level info from json.
+     *
+     * @param json Json object.
+     * @return Level info.
+     */
+    public static LevelInfo fromJson(final JsonObject json) {
+        final long mtime = json.get("mtime").getAsLong();
+        if (json.has("error")) {
+            return invalid(mtime, json.get("error").getAsString());
+        }
+        return new LevelInfo(
+                mtime,
+                null,
+                json.get("width").getAsInt(),
+                json.get("height").getAsInt(),
+                json.get("walls").getAsInt(),
+                json.get("mires").getAsInt(),
+                json.get("reachable").getAsBoolean()
+        );
+    }
+
+    /**
+     * Returns string representation of level info.
+     *
+     * @return String representation of level info.
+     */
+    @Override
+    public String toString() {
+        if (_error != null) {
+            return "invalid: " + _error;
+        }
+        return _width + "x" + _height +
+                ", walls: " + _walls +
+                ", mires: " + _mires +
+                ", target is " + (_isTargetReachable ? "" : "not ") +
+                "reachable";
+    }
+}
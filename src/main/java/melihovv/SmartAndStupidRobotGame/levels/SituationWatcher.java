@@ -0,0 +1,298 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.levels;
+
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.SituationDiff;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * The <code>SituationWatcher</code> class watches situation file and reparses
+ * it when it is changed. Editors usually write a file in several steps, so
+ * file is reparsed only after it stays unchanged for a while.
+ */
+public class SituationWatcher implements Runnable {
+
+    // Time after the last change after which file is reparsed, ms.
+    private static final long DEBOUNCE = 200;
+    // Watched file.
+    private final Path _path;
+    // Watch service.
+    private final WatchService _service;
+    // Watching thread.
+    private final Thread _thread;
+    // The last version of the situation which is applicable to the game.
+    private Situation _situation;
+    // List of the listeners.
+    private final List<SituationListener> _listenerList;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            SituationWatcher.class.getName()
+    );
+
+    /**
+     * Constructs situation watcher.
+     *
+     * @param path Path of the situation file.
+     * @throws IOException If it is impossible to watch file.
+     */
+    public SituationWatcher(final String path) throws IOException {
+        _path = Paths.get(path).toAbsolutePath();
+        _service = _path.getFileSystem().newWatchService();
+        _path.getParent().register(_service, ENTRY_CREATE, ENTRY_MODIFY);
+        _listenerList = new ArrayList<>();
+        _thread = new Thread(this, "Situation watcher");
+        _thread.setDaemon(true);
+
+        try {
+            _situation = Situation.load(_path.toString());
+        } catch (IOException | RuntimeException e) {
+            _service.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts watching.
+     */
+    public void start() {
+        _thread.start();
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void stop() {
+        try {
+            _service.close();
+        } catch (IOException e) {
+            log.warning("Cannot stop watching " + _path);
+        }
+    }
+
+    /**
+     * Waits for changes of the file and reparses it.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (!isChanged(_service.take())) {
+                    continue;
+                }
+
+                // Wait until file stays unchanged.
+                WatchKey key;
+                while ((key = _service.poll(DEBOUNCE, TimeUnit.MILLISECONDS))
+                        != null) {
+                    isChanged(key);
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.fine("Watching " + _path + " is stopped");
+        }
+    }
+
+    /**
+     * Checks if watch key has events of the watched file and resets it.
+     *
+     * @param key Watch key.
+     * @return Result of checking.
+     */
+    private boolean isChanged(final WatchKey key) {
+        boolean isChanged = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (_path.getFileName().equals(event.context())) {
+                isChanged = true;
+            }
+        }
+        key.reset();
+        return isChanged;
+    }
+
+    /**
+     * Reparses the file and notifies listeners.
+     */
+    private void reload() {
+        final Situation situation;
+        try {
+            situation = Situation.load(_path.toString());
+        } catch (IOException | RuntimeException e) {
+            log.info("Situation " + _path + " is invalid: " + e.getMessage());
+            fireSituationIsInvalid(new SituationEvent(
+                    this,
+                    null,
+                    e.getMessage() == null ?
+                            "Invalid situation file" :
+                            e.getMessage()
+            ));
+            return;
+        }
+
+        // Running game keeps the old field size until it is restarted, so
+        // the following changes are compared with the old situation.
+        final SituationDiff diff = new SituationDiff(_situation, situation);
+        if (diff.isApplicable()) {
+            _situation = situation;
+        }
+        if (!diff.isEmpty() || !diff.isApplicable()) {
+            fireSituationIsChanged(new SituationEvent(this, diff, null));
+        }
+    }
+
+    /**
+     * Returns path of the watched file.
+     *
+     * @return Path of the watched file.
+     */
+    public Path path() {
+        return _path;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Events.
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds listener <code>l</code> to the list of listeners.
+     *
+     * @param l The situation listener.
+     */
+    public synchronized void addListener(final SituationListener l) {
+        _listenerList.add(l);
+    }
+
+    /**
+     * Removes listener <code>l</code> from the list of listeners.
+     *
+     * @param l The situation listener.
+     */
+    public synchronized void removeListener(final SituationListener l) {
+        _listenerList.remove(l);
+    }
+
+    /**
+     * Notifies all the listeners that the situation is changed.
+     *
+     * @param e Situation event.
+     */
+    private synchronized void fireSituationIsChanged(final SituationEvent e) {
+        for (Object listener : _listenerList) {
+            ((SituationListener) listener).situationIsChanged(e);
+        }
+    }
+
+    /**
+     * Notifies all the listeners that the situation became invalid.
+     *
+     * @param e Situation event.
+     */
+    private synchronized void fireSituationIsInvalid(final SituationEvent e) {
+        for (Object listener : _listenerList) {
+            ((SituationListener) listener).situationIsInvalid(e);
+        }
+    }
+
+    /**
+     * Situation event.
+     */
+    public static class SituationEvent extends EventObject {
+
+        // Changes of the situation.
+        private final SituationDiff _diff;
+        // Error message.
+        private final String _message;
+
+        /**
+         * Constructs situation event.
+         *
+         * @param source  The object on which the Event initially occurred.
+         * @param diff    Changes of the situation.
+         * @param message Error message.
+         */
+        public SituationEvent(
+                final Object source,
+                final SituationDiff diff,
+                final String message
+        ) {
+            super(source);
+            _diff = diff;
+            _message = message;
+        }
+
+        /**
+         * Returns changes of the situation.
+         *
+         * @return Changes of the situation.
+         */
+        public SituationDiff diff() {
+            return _diff;
+        }
+
+        /**
+         * Returns error message.
+         *
+         * @return Error message.
+         */
+        public String message() {
+            return _message;
+        }
+    }
+
+    /**
+     * Situation listener interface. Listeners are invoked on the watching
+     * thread.
+     */
+    public interface SituationListener extends EventListener {
+
+        /**
+         * This method is invoked when situation file is changed.
+         *
+         * @param e Situation event.
+         */
+        void situationIsChanged(final SituationEvent e);
+
+        /**
+         * This method is invoked when changed situation file is invalid.
+         *
+         * @param e Situation event.
+         */
+        void situationIsInvalid(final SituationEvent e);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.metrics;
+
+import java.util.Locale;
+
+/**
+ * The <code>TimingStats</code> class collects statistics of durations: count,
+ * mean, maximum and percentiles. Durations are counted in histogram with
+ * buckets of fixed width, so recording does not allocate memory.
+ */
+public class TimingStats {
+
+    // Width of a bucket of the histogram, ns.
+    private static final long BUCKET = 100_000;
+    // Number of buckets, the last one counts all longer durations.
+    private static final int BUCKETS = 1000;
+    // Nanoseconds in a millisecond.
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+    // Histogram of durations.
+    private final long[] _histogram = new long[BUCKETS];
+    // Number of recorded durations.
+    private long _count;
+    // Sum of recorded durations, ns.
+    private long _total;
+    // Maximal recorded duration, ns.
+    private long _max;
+
+    /**
+     * Records duration.
+     *
+     * @param nanos Duration, ns.
+     */
+    public synchronized void record(final long nanos) {
+        final long duration = Math.max(0, nanos);
+        ++_histogram[(int) Math.min(BUCKETS - 1, duration / BUCKET)];
+        ++_count;
+        _total += duration;
+        _max = Math.max(_max, duration);
+    }
+
+    /**
+     * Returns number of recorded durations.
+     *
+     * @return Number of recorded durations.
+     */
+    public synchronized long count() {
+        return _count;
+    }
+
+    /**
+     * Returns mean duration.
+     *
+     * @return Mean duration, ms.
+     */
+    public synchronized double mean() {
+        return _count == 0 ? 0 : _total / NANOS_IN_MILLI / _count;
+    }
+
+    /**
+     * Returns maximal duration.
+     *
+     * @return Maximal duration, ms.
+     */
+    public synchronized double max() {
+        return _max / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns duration which is not exceeded by <code>p</code> percent of
+     * recorded durations. Precision is the width of histogram bucket.
+     *
+     * @param p Percent, from 0 to 100.
+     * @return Duration, ms.
+     */
+    public synchronized double percentile(final double p) {
+        if (_count == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(_count * p / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            seen += _histogram[i];
+            if (seen >= rank) {
+                return Math.min(_max, (i + 1) * BUCKET) / NANOS_IN_MILLI;
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Removes all recorded durations.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            _histogram[i] = 0;
+        }
+        _count = 0;
+        _total = 0;
+        _max = 0;
+    }
+
+    /**
+     * Adds durations recorded by other statistics, e.g. by statistics of
+     * another thread.
+     *
+     * @param other Other statistics.
+     */
+    public void add(final TimingStats other) {
+        final TimingStats copy = other.copy();
+        synchronized (this) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                _histogram[i] += copy._histogram[i];
+            }
+            _count += copy._count;
+            _total += copy._total;
+            _max = Math.max(_max, copy._max);
+        }
+    }
+
+    /**
+     * Returns copy of the statistics.
+     *
+     * @return Copy of the statistics.
+     */
+    public synchronized TimingStats copy() {
+        final TimingStats copy = new TimingStats();
+        System.arraycopy(_histogram, 0, copy._histogram, 0, BUCKETS);
+        copy._count = _count;
+        copy._total = _total;
+        copy._max = _max;
+        return copy;
+    }
+
+    /**
+     * Returns copy of the statistics and removes all recorded durations. It
+     * allows to get statistics of consecutive periods.
+     *
+     * @return Statistics since the previous reset.
+     */
+    public synchronized TimingStats drain() {
+        final TimingStats copy = copy();
+        reset();
+        return copy;
+    }
+
+    /**
+     * Returns short summary of the statistics.
+     *
+     * @return Summary of the statistics.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                Locale.ROOT,
+                "%d, mean %.1f ms, p99 %.1f ms, max %.1f ms",
+                _count,
+                mean(),
+                percentile(99),
+                max()
+        );
+    }
+}
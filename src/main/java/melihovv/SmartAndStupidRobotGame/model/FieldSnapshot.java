@@ -0,0 +1,548 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
+import melihovv.SmartAndStupidRobotGame.model.field.Mire;
+import melihovv.SmartAndStupidRobotGame.model.field.Wall;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
+
+/**
+ * The <code>FieldSnapshot</code> class defines immutable state of the game at
+ * some moment. Snapshot is created by the thread which owns the model and can
+ * be read by any other thread without locking.
+ *
+ * Static state of cells (walls and mires) is packed into one byte per cell.
+ * Cells are shared by consecutive snapshots while walls, mires and season are
+ * not changed, so snapshot after a robot move is cheap.
+ */
+public class FieldSnapshot {
+
+    // Cell has wall on its north side.
+    public static final int WALL_NORTH = 1;
+    // Cell has wall on its south side.
+    public static final int WALL_SOUTH = 2;
+    // Cell has wall on its west side.
+    public static final int WALL_WEST = 4;
+    // Cell has wall on its east side.
+    public static final int WALL_EAST = 8;
+    // Cell has mire.
+    public static final int MIRE = 16;
+    // Mire in the cell is frozen.
+    public static final int FROZEN = 32;
+
+    // Offset basis of 64-bit FNV-1a hash.
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    // Prime of 64-bit FNV-1a hash.
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // Field from which snapshot is taken, it is used only to detect changes.
+    private final Field _field;
+    // Version of the field.
+    private final int _fieldVersion;
+    // Number of the snapshot.
+    private final long _number;
+    // Width of the field.
+    private final int _width;
+    // Height of the field.
+    private final int _height;
+    // Flags of the cells in row-major order.
+    private final byte[] _cells;
+    // Active season.
+    private final Season _season;
+    // Position of the smart robot, 0 if there is no robot.
+    private final int _smartRobotX;
+    private final int _smartRobotY;
+    // Position of the stupid robot, 0 if there is no robot.
+    private final int _stupidRobotX;
+    private final int _stupidRobotY;
+    // Position of the target, 0 if there is no target.
+    private final int _targetX;
+    private final int _targetY;
+    // The number of steps the stupid robot skips.
+    private final int _stepsToSkip;
+    // Is game finished?
+    private final boolean _isGameFinished;
+    // Number of the turn.
+    private final long _turn;
+    // Number of turns between season changes, 0 if seasons are changed by
+    // time.
+    private final int _seasonTurns;
+    // Does the level have a seed?
+    private final boolean _isSeeded;
+    // State of the generator of random numbers, 0 if level has no seed.
+    private final long _randomState;
+
+    /**
+     * Takes snapshot of the model. Must be invoked by the thread which owns
+     * the model.
+     *
+     * @param model    Game model.
+     * @param previous Previous snapshot of the same model, its cells are
+     *                 reused if they are not changed. Can be null.
+     */
+    public FieldSnapshot(final Model model, final FieldSnapshot previous) {
+        final Field field = model.field();
+        _field = field;
+        _fieldVersion = field.version();
+        _number = previous == null ? 0 : previous._number + 1;
+        _width = field.width();
+        _height = field.height();
+        _season = model.seasonsManager().activeSeason();
+
+        if (previous != null &&
+                previous._field == field &&
+                previous._fieldVersion == _fieldVersion &&
+                previous._season == _season) {
+            _cells = previous._cells;
+        } else {
+            _cells = cells(field);
+        }
+
+        final CellPosition smartRobot = model.smartRobot() == null ?
+                null :
+                model.smartRobot().pos();
+        _smartRobotX = x(smartRobot);
+        _smartRobotY = y(smartRobot);
+
+        final CellPosition stupidRobot = model.stupidRobot() == null ?
+                null :
+                model.stupidRobot().pos();
+        _stupidRobotX = x(stupidRobot);
+        _stupidRobotY = y(stupidRobot);
+        _stepsToSkip = model.stupidRobot() == null ?
+                0 :
+                model.stupidRobot().stepsToSkip();
+
+        final CellPosition target = model.target() == null ?
+                null :
+                model.target().pos();
+        _targetX = x(target);
+        _targetY = y(target);
+
+        _isGameFinished = model.isGameFinished();
+        _turn = model.turn();
+        _seasonTurns = field.seasonTurns();
+        _isSeeded = field.random() != null;
+        _randomState = _isSeeded ? field.random().state() : 0;
+    }
+
+    /**
+     * Constructs snapshot of the same game as <code>base</code> from the
+     * state which is not taken from the model, e.g. by the history of turns
+     * or by a saved game. Cells of the snapshot are never reused by the
+     * model.
+     *
+     * @param base           Snapshot of the same game.
+     * @param cells          Flags of the cells, they must not be changed
+     *                       after construction.
+     * @param season         Active season.
+     * @param smartRobotX    Column of the smart robot.
+     * @param smartRobotY    Row of the smart robot.
+     * @param stupidRobotX   Column of the stupid robot.
+     * @param stupidRobotY   Row of the stupid robot.
+     * @param stepsToSkip    The number of steps the stupid robot skips.
+     * @param isGameFinished Is game finished?
+     * @param turn           Number of the turn.
+     * @param randomState    State of the generator of random numbers, it is
+     *                       ignored if level has no seed.
+     */
+    public FieldSnapshot(
+            final FieldSnapshot base,
+            final byte[] cells,
+            final Season season,
+            final int smartRobotX,
+            final int smartRobotY,
+            final int stupidRobotX,
+            final int stupidRobotY,
+            final int stepsToSkip,
+            final boolean isGameFinished,
+            final long turn,
+            final long randomState
+    ) {
+        _field = null;
+        _fieldVersion = 0;
+        _number = base._number;
+        _width = base._width;
+        _height = base._height;
+        _cells = cells;
+        _season = season;
+        _smartRobotX = smartRobotX;
+        _smartRobotY = smartRobotY;
+        _stupidRobotX = stupidRobotX;
+        _stupidRobotY = stupidRobotY;
+        _targetX = base._targetX;
+        _targetY = base._targetY;
+        _stepsToSkip = stepsToSkip;
+        _isGameFinished = isGameFinished;
+        _turn = turn;
+        _seasonTurns = base._seasonTurns;
+        _isSeeded = base._isSeeded;
+        _randomState = _isSeeded ? randomState : 0;
+    }
+
+    /**
+     * Packs walls and mires of the field into flags of cells. Wall is marked
+     * on both cells which it separates.
+     *
+     * @param field Game field.
+     * @return Flags of the cells.
+     */
+    private static byte[] cells(final Field field) {
+        final int width = field.width();
+        final int height = field.height();
+        final byte[] cells = new byte[width * height];
+
+        for (FieldObject obj : field.objects(Wall.class)) {
+            final MiddlePosition pos = ((Wall) obj).pos();
+            final Direction dir = pos.direct();
+            final int x = x(pos.cellPos());
+            final int y = y(pos.cellPos());
+
+            if (dir.equals(Direction.north())) {
+                mark(cells, width, height, x, y, WALL_NORTH);
+                mark(cells, width, height, x, y - 1, WALL_SOUTH);
+            } else if (dir.equals(Direction.south())) {
+                mark(cells, width, height, x, y, WALL_SOUTH);
+                mark(cells, width, height, x, y + 1, WALL_NORTH);
+            } else if (dir.equals(Direction.west())) {
+                mark(cells, width, height, x, y, WALL_WEST);
+                mark(cells, width, height, x - 1, y, WALL_EAST);
+            } else if (dir.equals(Direction.east())) {
+                mark(cells, width, height, x, y, WALL_EAST);
+                mark(cells, width, height, x + 1, y, WALL_WEST);
+            }
+        }
+
+        for (FieldObject obj : field.objects(Mire.class)) {
+            final Mire mire = (Mire) obj;
+            mark(
+                    cells,
+                    width,
+                    height,
+                    x(mire.pos()),
+                    y(mire.pos()),
+                    mire.isFrozen() ? MIRE | FROZEN : MIRE
+            );
+        }
+
+        return cells;
+    }
+
+    /**
+     * Sets <code>flags</code> of the cell if it is inside the field.
+     *
+     * @param cells  Flags of the cells.
+     * @param width  Width of the field.
+     * @param height Height of the field.
+     * @param x      Column of the cell.
+     * @param y      Row of the cell.
+     * @param flags  Flags to set.
+     */
+    private static void mark(
+            final byte[] cells,
+            final int width,
+            final int height,
+            final int x,
+            final int y,
+            final int flags
+    ) {
+        if (x >= 1 && x <= width && y >= 1 && y <= height) {
+            cells[(y - 1) * width + x - 1] |= flags;
+        }
+    }
+
+    /**
+     * Returns column of the cell.
+     *
+     * @param pos Position of the cell.
+     * @return Column of the cell or 0 if position is null.
+     */
+    private static int x(final CellPosition pos) {
+        return pos == null ? 0 : pos.pos().x;
+    }
+
+    /**
+     * Returns row of the cell.
+     *
+     * @param pos Position of the cell.
+     * @return Row of the cell or 0 if position is null.
+     */
+    private static int y(final CellPosition pos) {
+        return pos == null ? 0 : pos.pos().y;
+    }
+
+    /**
+     * Returns number of the snapshot. Each next snapshot of the same model
+     * has greater number.
+     *
+     * @return Number of the snapshot.
+     */
+    public long number() {
+        return _number;
+    }
+
+    /**
+     * Returns width of the field.
+     *
+     * @return Width of the field.
+     */
+    public int width() {
+        return _width;
+    }
+
+    /**
+     * Returns height of the field.
+     *
+     * @return Height of the field.
+     */
+    public int height() {
+        return _height;
+    }
+
+    /**
+     * Returns flags of the cell: walls on its sides, mire and if mire is
+     * frozen.
+     *
+     * @param x Column of the cell, from 1.
+     * @param y Row of the cell, from 1.
+     * @return Flags of the cell.
+     */
+    public int cell(final int x, final int y) {
+        return _cells[(y - 1) * _width + x - 1];
+    }
+
+    /**
+     * Returns flags of the cell by its index in row-major order.
+     *
+     * @param index Index of the cell, from 0.
+     * @return Flags of the cell.
+     */
+    public int cell(final int index) {
+        return _cells[index];
+    }
+
+    /**
+     * Returns flags of the cells in row-major order. The array is shared, it
+     * must not be changed.
+     *
+     * @return Flags of the cells.
+     */
+    byte[] cells() {
+        return _cells;
+    }
+
+    /**
+     * Returns true if snapshot has the same walls, mires and season as
+     * snapshot <code>other</code>, otherwise - false.
+     *
+     * @param other Other snapshot.
+     * @return True if static state of cells is the same.
+     */
+    public boolean hasSameCells(final FieldSnapshot other) {
+        return other != null &&
+                other._cells == _cells &&
+                other._season == _season;
+    }
+
+    /**
+     * Returns active season.
+     *
+     * @return Active season.
+     */
+    public Season season() {
+        return _season;
+    }
+
+    /**
+     * Returns column of the smart robot.
+     *
+     * @return Column of the smart robot or 0 if there is no robot.
+     */
+    public int smartRobotX() {
+        return _smartRobotX;
+    }
+
+    /**
+     * Returns row of the smart robot.
+     *
+     * @return Row of the smart robot or 0 if there is no robot.
+     */
+    public int smartRobotY() {
+        return _smartRobotY;
+    }
+
+    /**
+     * Returns column of the stupid robot.
+     *
+     * @return Column of the stupid robot or 0 if there is no robot.
+     */
+    public int stupidRobotX() {
+        return _stupidRobotX;
+    }
+
+    /**
+     * Returns row of the stupid robot.
+     *
+     * @return Row of the stupid robot or 0 if there is no robot.
+     */
+    public int stupidRobotY() {
+        return _stupidRobotY;
+    }
+
+    /**
+     * Returns column of the target.
+     *
+     * @return Column of the target or 0 if there is no target.
+     */
+    public int targetX() {
+        return _targetX;
+    }
+
+    /**
+     * Returns row of the target.
+     *
+     * @return Row of the target or 0 if there is no target.
+     */
+    public int targetY() {
+        return _targetY;
+    }
+
+    /**
+     * Returns the number of steps the stupid robot skips.
+     *
+     * @return The number of steps to skip.
+     */
+    public int stepsToSkip() {
+        return _stepsToSkip;
+    }
+
+    /**
+     * Returns true if game is finished, otherwise - false.
+     *
+     * @return True if game is finished.
+     */
+    public boolean isGameFinished() {
+        return _isGameFinished;
+    }
+
+    /**
+     * Returns number of the turn. Turns are moves of the smart robot in
+     * turn-based game and ticks in real-time game.
+     *
+     * @return Number of the turn.
+     */
+    public long turn() {
+        return _turn;
+    }
+
+    /**
+     * Returns number of turns between season changes.
+     *
+     * @return Number of turns between season changes, 0 if seasons are
+     * changed by time.
+     */
+    public int seasonTurns() {
+        return _seasonTurns;
+    }
+
+    /**
+     * Returns true if level has a seed, otherwise - false.
+     *
+     * @return True if level has a seed.
+     */
+    public boolean isSeeded() {
+        return _isSeeded;
+    }
+
+    /**
+     * Returns state of the generator of random numbers.
+     *
+     * @return State of the generator, 0 if level has no seed.
+     */
+    public long randomState() {
+        return _randomState;
+    }
+
+    /**
+     * Returns hash of the state: cells, positions, the number of steps to
+     * skip, is game finished and name of the season. The number of the turn
+     * is included only if seasons are changed by turns and state of the
+     * generator of random numbers only if level has a seed, so hashes of
+     * other games are not changed. The number of the snapshot is not
+     * included, so equal states of different games have equal hashes.
+     *
+     * @return 64-bit FNV-1a hash of the state.
+     */
+    public long contentHash() {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, _width);
+        hash = hash(hash, _height);
+        for (byte cell : _cells) {
+            hash = (hash ^ (cell & 0xff)) * FNV_PRIME;
+        }
+        hash = hash(hash, _smartRobotX);
+        hash = hash(hash, _smartRobotY);
+        hash = hash(hash, _stupidRobotX);
+        hash = hash(hash, _stupidRobotY);
+        hash = hash(hash, _targetX);
+        hash = hash(hash, _targetY);
+        hash = hash(hash, _stepsToSkip);
+        hash = hash(hash, _isGameFinished ? 1 : 0);
+        if (_season != null) {
+            for (char c : _season.getClass().getSimpleName().toCharArray()) {
+                hash = hash(hash, c);
+            }
+        }
+        if (_seasonTurns != 0) {
+            hash = hash(hash, _seasonTurns);
+            hash = hash(hash, (int) _turn);
+            hash = hash(hash, (int) (_turn >>> 32));
+        }
+        if (_isSeeded) {
+            hash = hash(hash, (int) _randomState);
+            hash = hash(hash, (int) (_randomState >>> 32));
+        }
+        return hash;
+    }
+
+    /**
+     * Adds bytes of the value to FNV-1a hash.
+     *
+     * @param hash  Hash.
+     * @param value Value.
+     * @return New hash.
+     */
+    private static long hash(long hash, final int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ (value >>> shift & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
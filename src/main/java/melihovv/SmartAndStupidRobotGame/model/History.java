@@ -0,0 +1,815 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+import melihovv.SmartAndStupidRobotGame.model.Simulation.SimulationEvent;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>History</code> class defines bounded history of turns of a game
+ * which can be rewound. State after each turn of the model is recorded and
+ * found by <code>Model.turn()</code>, changes between turns, e.g. seasons
+ * changed by time, are recorded with the next turn.
+ *
+ * Turns are stored as deltas in a ring buffer: moves of the robots, the
+ * number of steps to skip, season, number of the turn, state of the random
+ * generator and changed flags of cells (mires and frozen mires). Usual turn,
+ * when robots make one step each, takes one byte.
+ * Snapshots are kept as keyframes after each
+ * <code>keyframeInterval</code> bytes of deltas, so state at any turn is
+ * found by binary search of the keyframe and applying at most one interval
+ * of deltas. When the ring is full, the oldest keyframe and its deltas are
+ * dropped, so memory is bounded by about twice the capacity.
+ *
+ * History is filled and restored by the thread which owns the model, only
+ * the range of turns can be read by any thread.
+ */
+public class History implements Simulation.SimulationListener {
+
+    // Default capacity of the ring of deltas, bytes.
+    public static final int DEFAULT_CAPACITY = 1 << 22;
+    // Minimal capacity of the ring of deltas, bytes.
+    private static final int MIN_CAPACITY = 1 << 12;
+    // Maximal capacity of the ring of deltas, bytes.
+    private static final int MAX_CAPACITY = 1 << 30;
+    // Minimal number of bytes of deltas between keyframes.
+    private static final int MIN_KEYFRAME_INTERVAL = 1024;
+    // Robot stays in its cell.
+    private static final int STAY = 0;
+    // Robot moves to other cell which is not adjacent, its position follows.
+    private static final int JUMP = 7;
+    // Columns and rows changes of moves to north, south, west and east.
+    private static final int[] DX = {0, 0, 0, -1, 1};
+    private static final int[] DY = {0, -1, 1, 0, 0};
+    // Flags byte follows the moves.
+    private static final int MORE = 64;
+    // Number of the turn is incremented.
+    private static final int NEXT_TURN = 128;
+    // The number of steps to skip follows.
+    private static final int STEPS = 1;
+    // Game is finished or continued.
+    private static final int FINISHED = 2;
+    // Index of the season follows.
+    private static final int SEASON = 4;
+    // Changed cells follow.
+    private static final int CELLS = 8;
+    // Increment of the number of the turn follows.
+    private static final int TURN = 16;
+    // State of the random generator follows.
+    private static final int RANDOM = 32;
+    // Flags of walls of the cell.
+    private static final int WALLS = FieldSnapshot.WALL_NORTH |
+            FieldSnapshot.WALL_SOUTH |
+            FieldSnapshot.WALL_WEST |
+            FieldSnapshot.WALL_EAST;
+
+    // Game model.
+    private final Model _model;
+    // Ring of deltas, its length is a power of two.
+    private final byte[] _ring;
+    // Keyframes in order of turns, the first one is at the start of the ring.
+    private final List<Keyframe> _keyframes = new ArrayList<>();
+    // Offset of the oldest delta, offsets grow without wrapping.
+    private long _start;
+    // Offset after the latest delta.
+    private long _end;
+    // Offset after the delta of the current turn.
+    private long _currentEnd;
+    // Number of bytes of deltas between keyframes.
+    private int _keyframeInterval;
+    // Delta which is being encoded.
+    private byte[] _delta = new byte[64];
+    // Length of the delta which is being encoded.
+    private int _deltaLength;
+    // State of the current turn.
+    private FieldSnapshot _previous;
+    // Is the game edited, so turns before the edit cannot be restored?
+    private boolean _isEdited;
+    // Is the model being restored by the history?
+    private boolean _isRestoring;
+    // The oldest turn of the model, -1 if history is empty.
+    private volatile long _first = -1;
+    // The latest turn of the model, -1 if history is empty.
+    private volatile long _last = -1;
+    // The current turn of the model, it is less than the latest one after
+    // rewind.
+    private volatile long _current = -1;
+    // Number of bytes of deltas.
+    private volatile long _size;
+
+    /**
+     * Constructs history of the default capacity.
+     *
+     * @param model Game model.
+     */
+    public History(final Model model) {
+        this(model, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs history.
+     *
+     * @param model    Game model.
+     * @param capacity Capacity of the ring of deltas, bytes. It is rounded
+     *                 up to a power of two.
+     * @throws IllegalArgumentException If capacity is out of range.
+     */
+    public History(final Model model, final int capacity)
+            throws IllegalArgumentException {
+
+        if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(
+                    "Capacity must be from " + MIN_CAPACITY +
+                            " to " + MAX_CAPACITY
+            );
+        }
+
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) {
+            length <<= 1;
+        }
+        _model = model;
+        _ring = new byte[length];
+        _model.eventBus().subscribe(Model.EDITED, e -> {
+            if (!_isRestoring) {
+                _isEdited = true;
+            }
+        });
+    }
+
+    /**
+     * Returns the oldest turn which can be restored. Can be invoked by any
+     * thread.
+     *
+     * @return The oldest turn or -1 if history is empty.
+     */
+    public long first() {
+        return _first;
+    }
+
+    /**
+     * Returns the latest turn. Can be invoked by any thread.
+     *
+     * @return The latest turn or -1 if history is empty.
+     */
+    public long last() {
+        return _last;
+    }
+
+    /**
+     * Returns the current turn. It is less than the latest one after rewind
+     * until new turn is made, then later turns are dropped. Can be invoked
+     * by any thread.
+     *
+     * @return The current turn or -1 if history is empty.
+     */
+    public long current() {
+        return _current;
+    }
+
+    /**
+     * Returns the number of bytes of deltas. Can be invoked by any thread.
+     *
+     * @return Size of deltas, bytes.
+     */
+    public long size() {
+        return _size;
+    }
+
+    /**
+     * Returns number of keyframes.
+     *
+     * @return Number of keyframes.
+     */
+    public int keyframes() {
+        return _keyframes.size();
+    }
+
+    /**
+     * Starts history of the new game.
+     *
+     * @param e Simulation event.
+     */
+    @Override
+    public void gameIsStarted(final SimulationEvent e) {
+        _previous = null;
+        record(e.snapshot());
+    }
+
+    /**
+     * Records the turn.
+     *
+     * @param e Simulation event.
+     */
+    @Override
+    public void turnIsMade(final SimulationEvent e) {
+        record(e.snapshot());
+    }
+
+    /**
+     * Published snapshots are not recorded, a batch of commands can make
+     * several turns.
+     *
+     * @param e Simulation event.
+     */
+    @Override
+    public void snapshotIsPublished(final SimulationEvent e) {
+    }
+
+    /**
+     * Records state after the turn. If the current turn is not the latest
+     * one, later turns are dropped. State of the same turn as the current
+     * one is not recorded, history is started again from a state of other
+     * turn than the next one. Must be invoked by the thread which owns the
+     * model after each turn.
+     *
+     * @param snapshot Snapshot of the model.
+     */
+    public void record(final FieldSnapshot snapshot) {
+        if (snapshot == null || snapshot.smartRobotX() == 0) {
+            clear();
+            return;
+        }
+
+        if (_previous != null &&
+                !_isEdited &&
+                snapshot.turn() == _previous.turn()) {
+            return;
+        }
+        if (_previous == null ||
+                _isEdited ||
+                snapshot.turn() != _previous.turn() + 1 ||
+                !hasSameWalls(_previous, snapshot)) {
+            reset(snapshot);
+            return;
+        }
+
+        encode(_previous, snapshot);
+        _previous = snapshot;
+        if (_deltaLength == 0) {
+            return;
+        }
+
+        if (_current < _last) {
+            truncate();
+        }
+        if (_deltaLength > _ring.length / 4) {
+            reset(snapshot);
+            return;
+        }
+        while (_end + _deltaLength - _start > _ring.length) {
+            evict();
+        }
+
+        final int mask = _ring.length - 1;
+        for (int i = 0; i < _deltaLength; ++i) {
+            _ring[(int) (_end++ & mask)] = _delta[i];
+        }
+        _currentEnd = _end;
+        _size = _end - _start;
+        _last = snapshot.turn();
+        _current = _last;
+
+        if (_end - _keyframes.get(_keyframes.size() - 1)._offset >=
+                _keyframeInterval) {
+            _keyframes.add(new Keyframe(_last, _end, snapshot));
+        }
+    }
+
+    /**
+     * Returns state of the game at the turn. Must be invoked by the thread
+     * which owns the model.
+     *
+     * @param turn Turn from <code>first()</code> to <code>last()</code>.
+     * @return Snapshot of the state.
+     * @throws IllegalArgumentException If there is no such turn.
+     */
+    public FieldSnapshot snapshot(final long turn)
+            throws IllegalArgumentException {
+        return seek(turn).snapshot();
+    }
+
+    /**
+     * Returns the model to the state at the turn. Must be invoked by the
+     * thread which owns the model, e.g. by a command of the simulation.
+     *
+     * @param turn Turn from <code>first()</code> to <code>last()</code>.
+     * @throws IllegalArgumentException If there is no such turn.
+     */
+    public void restore(final long turn) throws IllegalArgumentException {
+        final Cursor cursor = seek(turn);
+        final FieldSnapshot state = cursor.snapshot();
+
+        _isRestoring = true;
+        try {
+            _model.restore(state);
+        } finally {
+            _isRestoring = false;
+        }
+
+        _previous = state;
+        _currentEnd = cursor._offset;
+        _current = turn;
+    }
+
+    /**
+     * Finds state at the turn from the nearest earlier keyframe.
+     *
+     * @param turn Turn.
+     * @return Cursor at the turn.
+     * @throws IllegalArgumentException If there is no such turn.
+     */
+    private Cursor seek(final long turn) throws IllegalArgumentException {
+        if (_keyframes.isEmpty() || turn < _first || turn > _last) {
+            throw new IllegalArgumentException("There is no turn " + turn);
+        }
+
+        int low = 0;
+        int high = _keyframes.size() - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (_keyframes.get(middle)._turn <= turn) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        final Keyframe keyframe = _keyframes.get(low);
+        final Cursor cursor = new Cursor(keyframe);
+        for (long t = keyframe._turn; t < turn; ++t) {
+            cursor.next();
+        }
+        return cursor;
+    }
+
+    /**
+     * Starts history from the state.
+     *
+     * @param snapshot Snapshot of the model.
+     */
+    private void reset(final FieldSnapshot snapshot) {
+        _isEdited = false;
+        _previous = snapshot;
+        _keyframes.clear();
+        _start = _end;
+        _currentEnd = _end;
+        _keyframeInterval = Math.min(
+                Math.max(MIN_KEYFRAME_INTERVAL, snapshot.cells().length),
+                _ring.length / 4
+        );
+        _keyframes.add(new Keyframe(snapshot.turn(), _end, snapshot));
+        _size = 0;
+        _first = snapshot.turn();
+        _last = _first;
+        _current = _first;
+    }
+
+    /**
+     * Drops all the turns.
+     */
+    private void clear() {
+        _previous = null;
+        _keyframes.clear();
+        _start = _end;
+        _size = 0;
+        _first = -1;
+        _last = -1;
+        _current = -1;
+    }
+
+    /**
+     * Drops turns after the current one.
+     */
+    private void truncate() {
+        while (_keyframes.get(_keyframes.size() - 1)._turn > _current) {
+            _keyframes.remove(_keyframes.size() - 1);
+        }
+        _end = _currentEnd;
+        _last = _current;
+    }
+
+    /**
+     * Drops the oldest keyframe and its deltas. At least one keyframe is
+     * kept, its deltas always fit the ring because keyframe interval and
+     * delta are not greater than quarter of the ring.
+     */
+    private void evict() {
+        _keyframes.remove(0);
+        final Keyframe first = _keyframes.get(0);
+        _start = first._offset;
+        _first = first._turn;
+    }
+
+    /**
+     * Returns true if the snapshots have the same size and walls, otherwise
+     * - false.
+     *
+     * @param a Snapshot.
+     * @param b Other snapshot.
+     * @return Have snapshots the same walls?
+     */
+    private static boolean hasSameWalls(
+            final FieldSnapshot a,
+            final FieldSnapshot b
+    ) {
+        if (a.width() != b.width() || a.height() != b.height()) {
+            return false;
+        }
+
+        final byte[] cellsA = a.cells();
+        final byte[] cellsB = b.cells();
+        if (cellsA == cellsB) {
+            return true;
+        }
+        for (int i = 0; i < cellsA.length; ++i) {
+            if (((cellsA[i] ^ cellsB[i]) & WALLS) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes delta between the states, delta is empty if states are equal.
+     *
+     * @param from Previous state.
+     * @param to   Next state.
+     */
+    private void encode(final FieldSnapshot from, final FieldSnapshot to) {
+        _deltaLength = 0;
+        final int smart = move(
+                from.smartRobotX(),
+                from.smartRobotY(),
+                to.smartRobotX(),
+                to.smartRobotY()
+        );
+        final int stupid = move(
+                from.stupidRobotX(),
+                from.stupidRobotY(),
+                to.stupidRobotX(),
+                to.stupidRobotY()
+        );
+
+        final int turns = (int) (to.turn() - from.turn());
+
+        int flags = 0;
+        if (turns > 1) {
+            flags |= TURN;
+        }
+        if (from.randomState() != to.randomState()) {
+            flags |= RANDOM;
+        }
+        if (from.stepsToSkip() != to.stepsToSkip()) {
+            flags |= STEPS;
+        }
+        if (from.isGameFinished() != to.isGameFinished()) {
+            flags |= FINISHED;
+        }
+        if (from.season() != to.season()) {
+            flags |= SEASON;
+        }
+        final byte[] fromCells = from.cells();
+        final byte[] toCells = to.cells();
+        if (fromCells != toCells) {
+            for (int i = 0; i < toCells.length; ++i) {
+                if (fromCells[i] != toCells[i]) {
+                    flags |= CELLS;
+                    break;
+                }
+            }
+        }
+
+        if (smart == STAY && stupid == STAY && turns == 0 && flags == 0) {
+            return;
+        }
+
+        write(smart |
+                stupid << 3 |
+                (flags != 0 ? MORE : 0) |
+                (turns == 1 ? NEXT_TURN : 0));
+        if (smart == JUMP) {
+            writeVarint(to.smartRobotX());
+            writeVarint(to.smartRobotY());
+        }
+        if (stupid == JUMP) {
+            writeVarint(to.stupidRobotX());
+            writeVarint(to.stupidRobotY());
+        }
+        if (flags == 0) {
+            return;
+        }
+
+        write(flags);
+        if ((flags & TURN) != 0) {
+            writeVarint(turns);
+        }
+        if ((flags & RANDOM) != 0) {
+            final long state = to.randomState();
+            for (int shift = 0; shift < 64; shift += 8) {
+                write((int) (state >>> shift));
+            }
+        }
+        if ((flags & STEPS) != 0) {
+            writeVarint(to.stepsToSkip());
+        }
+        if ((flags & SEASON) != 0) {
+            writeVarint(
+                    _model.seasonsManager().seasons().indexOf(to.season()) + 1
+            );
+        }
+        if ((flags & CELLS) != 0) {
+            int count = 0;
+            for (int i = 0; i < toCells.length; ++i) {
+                if (fromCells[i] != toCells[i]) {
+                    ++count;
+                }
+            }
+            writeVarint(count);
+
+            int previous = -1;
+            for (int i = 0; i < toCells.length; ++i) {
+                if (fromCells[i] != toCells[i]) {
+                    writeVarint(i - previous - 1);
+                    write(toCells[i]);
+                    previous = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns code of the robot move.
+     *
+     * @param fromX Column before the move.
+     * @param fromY Row before the move.
+     * @param toX   Column after the move.
+     * @param toY   Row after the move.
+     * @return <code>STAY</code>, direction from 1 to 4 or
+     * <code>JUMP</code>.
+     */
+    private static int move(
+            final int fromX,
+            final int fromY,
+            final int toX,
+            final int toY
+    ) {
+        for (int i = 0; i < DX.length; ++i) {
+            if (toX - fromX == DX[i] && toY - fromY == DY[i]) {
+                return i;
+            }
+        }
+        return JUMP;
+    }
+
+    /**
+     * Appends byte to the delta.
+     *
+     * @param b Byte.
+     */
+    private void write(final int b) {
+        if (_deltaLength == _delta.length) {
+            final byte[] delta = new byte[_delta.length * 2];
+            System.arraycopy(_delta, 0, delta, 0, _deltaLength);
+            _delta = delta;
+        }
+        _delta[_deltaLength++] = (byte) b;
+    }
+
+    /**
+     * Appends unsigned varint to the delta.
+     *
+     * @param value Not negative value.
+     */
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        write(value);
+    }
+
+    /**
+     * State of the game at the turn and offset of the next delta.
+     */
+    private final class Cursor {
+
+        // Keyframe from which state is found.
+        private final Keyframe _keyframe;
+        // Offset of the next delta.
+        private long _offset;
+        // Flags of the cells, they are copied from the keyframe on the first
+        // change.
+        private byte[] _cells;
+        // Are cells copied from the keyframe?
+        private boolean _isCopied;
+        // Index of the season, -1 if there is no season.
+        private int _season;
+        // Position of the smart robot.
+        private int _smartRobotX;
+        private int _smartRobotY;
+        // Position of the stupid robot.
+        private int _stupidRobotX;
+        private int _stupidRobotY;
+        // The number of steps the stupid robot skips.
+        private int _stepsToSkip;
+        // Is game finished?
+        private boolean _isGameFinished;
+        // Number of the turn.
+        private long _turn;
+        // State of the random generator.
+        private long _randomState;
+
+        /**
+         * Constructs cursor at the keyframe.
+         *
+         * @param keyframe Keyframe.
+         */
+        Cursor(final Keyframe keyframe) {
+            final FieldSnapshot snapshot = keyframe._snapshot;
+            _keyframe = keyframe;
+            _offset = keyframe._offset;
+            _cells = snapshot.cells();
+            _season = _model.seasonsManager().seasons()
+                    .indexOf(snapshot.season());
+            _smartRobotX = snapshot.smartRobotX();
+            _smartRobotY = snapshot.smartRobotY();
+            _stupidRobotX = snapshot.stupidRobotX();
+            _stupidRobotY = snapshot.stupidRobotY();
+            _stepsToSkip = snapshot.stepsToSkip();
+            _isGameFinished = snapshot.isGameFinished();
+            _turn = snapshot.turn();
+            _randomState = snapshot.randomState();
+        }
+
+        /**
+         * Applies the next delta.
+         */
+        void next() {
+            final int head = read();
+            final int smart = head & 7;
+            final int stupid = head >> 3 & 7;
+
+            if (smart == JUMP) {
+                _smartRobotX = readVarint();
+                _smartRobotY = readVarint();
+            } else {
+                _smartRobotX += DX[smart];
+                _smartRobotY += DY[smart];
+            }
+            if (stupid == JUMP) {
+                _stupidRobotX = readVarint();
+                _stupidRobotY = readVarint();
+            } else {
+                _stupidRobotX += DX[stupid];
+                _stupidRobotY += DY[stupid];
+            }
+            if ((head & NEXT_TURN) != 0) {
+                ++_turn;
+            }
+            if ((head & MORE) == 0) {
+                return;
+            }
+
+            final int flags = read();
+            if ((flags & TURN) != 0) {
+                _turn += readVarint();
+            }
+            if ((flags & RANDOM) != 0) {
+                _randomState = 0;
+                for (int shift = 0; shift < 64; shift += 8) {
+                    _randomState |= (long) read() << shift;
+                }
+            }
+            if ((flags & STEPS) != 0) {
+                _stepsToSkip = readVarint();
+            }
+            if ((flags & FINISHED) != 0) {
+                _isGameFinished = !_isGameFinished;
+            }
+            if ((flags & SEASON) != 0) {
+                _season = readVarint() - 1;
+            }
+            if ((flags & CELLS) != 0) {
+                if (!_isCopied) {
+                    _cells = _cells.clone();
+                    _isCopied = true;
+                }
+                final int count = readVarint();
+                int index = -1;
+                for (int i = 0; i < count; ++i) {
+                    index += readVarint() + 1;
+                    _cells[index] = (byte) read();
+                }
+            }
+        }
+
+        /**
+         * Returns snapshot of the state.
+         *
+         * @return Snapshot.
+         */
+        FieldSnapshot snapshot() {
+            if (_offset == _keyframe._offset) {
+                return _keyframe._snapshot;
+            }
+
+            final List<Season> seasons = _model.seasonsManager().seasons();
+            return new FieldSnapshot(
+                    _keyframe._snapshot,
+                    _cells,
+                    _season < 0 ? null : seasons.get(_season),
+                    _smartRobotX,
+                    _smartRobotY,
+                    _stupidRobotX,
+                    _stupidRobotY,
+                    _stepsToSkip,
+                    _isGameFinished,
+                    _turn,
+                    _randomState
+            );
+        }
+
+        /**
+         * Reads byte of the delta.
+         *
+         * @return Unsigned byte.
+         */
+        private int read() {
+            return _ring[(int) (_offset++ & (_ring.length - 1))] & 0xff;
+        }
+
+        /**
+         * Reads unsigned varint of the delta.
+         *
+         * @return Value.
+         */
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    /**
+     * Snapshot of the turn and offset of the next delta.
+     */
+    private static final class Keyframe {
+
+        // Turn.
+        private final long _turn;
+        // Offset of the delta of the next turn.
+        private final long _offset;
+        // State at the turn.
+        private final FieldSnapshot _snapshot;
+
+        /**
+         * Constructs keyframe.
+         *
+         * @param turn     Turn.
+         * @param offset   Offset of the delta of the next turn.
+         * @param snapshot State at the turn.
+         */
+        Keyframe(
+                final long turn,
+                final long offset,
+                final FieldSnapshot snapshot
+        ) {
+            _turn = turn;
+            _offset = offset;
+            _snapshot = snapshot;
+        }
+    }
+}
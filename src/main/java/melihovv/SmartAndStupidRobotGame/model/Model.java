@@ -24,16 +24,15 @@
 
 package melihovv.SmartAndStupidRobotGame.model;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import melihovv.SmartAndStupidRobotGame.events.Channel;
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
 import melihovv.SmartAndStupidRobotGame.model.field.*;
 import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot.SmartRobotActionEvent;
 import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot.StupidRobotActionEvent;
 import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
 import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
 import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
 import melihovv.SmartAndStupidRobotGame.model.seasons.Summer;
 import melihovv.SmartAndStupidRobotGame.model.seasons.Winter;
@@ -42,42 +41,79 @@ import melihovv.SmartAndStupidRobotGame.model.seasons.downfall.Rain;
 
 import java.awt.*;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 import java.util.logging.Logger;
 
 /**
- * The <code>Model</code> class defines game model.
+ * The <code>Model</code> class defines game model. Objects of the game
+ * publish events to the event bus of the model, rules of the game are its
+ * synchronous subscribers.
+ *
+ * The model does not flush the bus. Asynchronous subscribers get events only
+ * if the game is driven by an owner which flushes it, e.g.
+ * <code>Simulation</code>, or the caller invokes <code>flush</code> itself.
  */
 public class Model {
 
+    // Game over.
+    public static final Channel<ModelEvent> GAME_OVER =
+            Channel.of("Game over");
+    // Game is started on a new field.
+    public static final Channel<ModelEvent> STARTED =
+            Channel.of("Game started");
+    // Game is stopped or replaced, the field is not changed yet.
+    public static final Channel<ModelEvent> STOPPED =
+            Channel.of("Game stopped");
+    // Walls or mires are changed during the game.
+    public static final Channel<ModelEvent> EDITED =
+            Channel.of("Game edited");
+    // Moves of the smart robot and ticks of real-time game.
+    public static final Channel<InputEvent> INPUT = Channel.of("Input");
+
     // The game field.
-    private final Field _field;
+    private Field _field;
     // The target of the smart robots.
-    private final Target _target;
+    private Target _target;
     // If game is finished.
     private boolean _isGameFinished;
     // Logger.
     private static final Logger log = Logger.getLogger(Model.class.getName());
     // Seasons manager.
     private final SeasonsManager _manager;
-    // List of the listeners.
-    private final List<ModelListener> _listenerList;
-    // Seasons event.
-    private final ModelEvent _event;
+    // Bus of the game events.
+    private final EventBus _bus;
+    // The last snapshot of the game state.
+    private FieldSnapshot _snapshot;
+    // Does the stupid robot move by ticks instead of after the smart one?
+    private boolean _isRealTime;
+    // Number of the turn.
+    private long _turn;
 
     /**
-     * Constructs game model.
+     * Constructs game model which events are delivered by the shared delivery
+     * thread.
      */
     public Model() {
+        this(new EventBus());
+    }
+
+    /**
+     * Constructs game model.
+     *
+     * @param bus Bus of the game events.
+     */
+    public Model(final EventBus bus) {
+        _bus = bus;
         _field = new Field(new Dimension(10, 10));
+        _field.setEventBus(bus);
         _target = new Target(_field);
         _isGameFinished = false;
         _manager = new SeasonsManager(_field);
-        _event = new ModelEvent(this);
-        _listenerList = new ArrayList<>();
+
+        bus.subscribe(SmartRobot.MOVED, this::smartRobotMadeMove);
+        bus.subscribe(StupidRobot.CAUGHT, this::smartRobotIsCaught);
+        bus.subscribe(SeasonsManager.CHANGED, e -> identifyGameOver());
     }
 
     /**
@@ -90,246 +126,313 @@ public class Model {
     public void start(final String path)
             throws IOException, IllegalArgumentException {
 
-        _isGameFinished = false;
-
+        final Field field;
         try {
-            loadSituation(path);
+            field = Situation.load(path).createField(percent -> {
+            });
         } catch (Exception e) {
-            _manager.stop();
-            _manager.clearListeners();
-            _manager.removeAllSeasons();
-            smartRobot().clearListeners();
-            stupidRobot().clearListeners();
-            _field.clear();
+            stop();
             throw e;
         }
 
+        start(field);
+    }
+
+    /**
+     * Starts new game on the field which already has the situation placed on
+     * it. The field replaces the current one.
+     *
+     * @param field The game field.
+     */
+    public void start(final Field field) {
+        if (smartRobot() != null) {
+            _bus.publish(STOPPED, new ModelEvent(this, "Game is replaced"));
+        }
+        _isGameFinished = false;
+        _turn = 0;
+
         _manager.stop();
-        _manager.clearListeners();
         _manager.removeAllSeasons();
+
+        _field = field;
+        _field.setEventBus(_bus);
+        _target = (Target) field.object(Target.class);
+        _manager.setField(field);
+        _manager.setPeriod(field.seasonPeriod());
+
         _manager.addSeason(new Winter(-20, new ArrayList<>()));
         _manager.addSeason(new Summer(25, new ArrayList<Downfall>() {{
             add(new Rain());
         }}));
         _manager.start();
-        _manager.addListener(new SeasonsListener());
+        _bus.publish(STARTED, new ModelEvent(this, "Game is started"));
 
         identifyGameOver();
-        smartRobot().clearListeners();
-        stupidRobot().clearListeners();
-        smartRobot().addListener(new SmartRobotListener());
-        stupidRobot().addListener(new StupidRobotListener());
     }
 
     /**
-     * Identifies game over.
+     * Stops the game and clears the field.
      */
-    private void identifyGameOver() {
-        if (_isGameFinished) {
-            return;
-        }
-
-        CellPosition smRobPos = smartRobot().pos();
-        if (smRobPos.equals(_target.pos())) {
-            _isGameFinished = true;
-            log.info("Smart robot has reached target position");
-            _event.setMessage("Smart robot wins");
-            fireGameIsOver();
-        }
-
-        for (FieldObject mire : _field.objects(Mire.class)) {
-            if (smRobPos.equals(mire.pos()) && !((Mire) mire).isFrozen()) {
-                _isGameFinished = true;
-                log.info("Smart robot in mire");
-                _event.setMessage("Smart robot in mire, he lose");
-                fireGameIsOver();
-                break;
-            }
+    public void stop() {
+        if (smartRobot() != null) {
+            _bus.publish(STOPPED, new ModelEvent(this, "Game is stopped"));
         }
+        _manager.stop();
+        _manager.removeAllSeasons();
+        _field.clear();
     }
 
     /**
-     * Load game situation from file.
+     * Applies changes of walls and mires to the running game. Seasons and
+     * listeners are kept as is. Mires of downfall are not removed, and the
+     * one on the cell of an added mire becomes a mire of the level.
      *
-     * @param path Path of situation file.
-     * @throws IOException If it is impossible to read file.
-     * @throws IllegalArgumentException If json file is invalid.
+     * @param diff Changes of the situation.
+     * @throws IllegalArgumentException If the difference is not applicable.
      */
-    private void loadSituation(final String path)
-            throws IllegalArgumentException, IOException {
-
-        _field.clear();
+    public void apply(final SituationDiff diff)
+            throws IllegalArgumentException {
 
-        final String input = new String(Files.readAllBytes(Paths.get(path)));
-        final JsonParser parser = new JsonParser();
-        final JsonObject json = parser.parse(input).getAsJsonObject();
-
-        if (!json.has("field") ||
-                !json.has("target") ||
-                !json.has("smart robot") ||
-                !json.has("stupid robot")) {
-            throw new IllegalArgumentException("Invalid situation file");
-        }
-
-        // Add field size.
-        final JsonObject field = json.get("field").getAsJsonObject();
-        if (!field.has("size")) {
-            throw new IllegalArgumentException("Invalid situation file");
+        if (!diff.isApplicable()) {
+            throw new IllegalArgumentException(
+                    "Field size has changed, restart the game");
         }
 
-        final int width;
-        final int height;
-        {
-            final JsonArray size = field.get("size").getAsJsonArray();
-            width = size.get(0).getAsInt();
-            height = size.get(1).getAsInt();
-            if (width < 2 || height < 2) {
-                throw new IllegalArgumentException("Invalid situation file");
+        final Set<MiddlePosition> removedWalls =
+                new HashSet<>(diff.removedWalls());
+        for (FieldObject wall : _field.objects(Wall.class)) {
+            if (removedWalls.contains(wall.pos())) {
+                _field.removeObject(wall);
             }
-            _field.setSize(new Dimension(width, height));
+        }
+        for (MiddlePosition pos : diff.addedWalls()) {
+            _field.addObject(pos, new Wall(_field));
         }
 
-        // Add walls.
-        if (json.has("walls")) {
-            final JsonArray walls = json.get("walls").getAsJsonArray();
-            for (JsonElement temp : walls) {
-                JsonObject wall = temp.getAsJsonObject();
-
-                if (!wall.has("pos") || !wall.has("direction")) {
-                    throw new IllegalArgumentException(
-                            "Invalid situation file");
-                }
-
-                final JsonArray pos = wall.get("pos").getAsJsonArray();
-                final int x = pos.get(0).getAsInt();
-                final int y = pos.get(1).getAsInt();
-                if (!_field.contains(new Point(x, y))) {
-                    throw new IllegalArgumentException(
-                            "Invalid situation file");
+        // Mires of downfall are removed by their season.
+        final Season active = _manager.activeSeason();
+        for (CellPosition pos : diff.removedMires()) {
+            for (FieldObject mire : _field.objects(Mire.class, pos)) {
+                if (active == null || !active.isSpawned(mire)) {
+                    _field.removeObject(mire);
                 }
-
-                Direction dir;
-                switch (wall.get("direction").getAsString()) {
-                    case "north":
-                        dir = Direction.north();
-                        break;
-                    case "south":
-                        dir = Direction.south();
-                        break;
-                    case "west":
-                        dir = Direction.west();
-                        break;
-                    case "east":
-                        dir = Direction.east();
-                        break;
-                    default:
-                        throw new IllegalArgumentException(
-                                "Invalid situation file");
+            }
+        }
+        for (CellPosition pos : diff.addedMires()) {
+            // Mire of downfall on the cell becomes a mire of the level.
+            final List<FieldObject> existing = _field.objects(Mire.class, pos);
+            if (!existing.isEmpty()) {
+                if (active != null) {
+                    existing.forEach(active::release);
                 }
+                continue;
+            }
 
-                _field.addObject(
-                        new MiddlePosition(
-                                dir,
-                                new CellPosition(new Point(x, y))
-                        ),
-                        new Wall(_field)
-                );
+            final Mire mire = new Mire(_field);
+            if (active instanceof Winter) {
+                mire.freeze();
             }
+            _field.addObject(pos, mire);
         }
 
-        // Add mires.
-        if (json.has("mires")) {
-            final JsonArray mires = json.get("mires").getAsJsonArray();
-            for (JsonElement temp : mires) {
-                JsonObject mire = temp.getAsJsonObject();
+        stupidRobot().checkIfRobotIsInMire();
+        _bus.publish(EDITED, new ModelEvent(this, "Situation is changed"));
+        identifyGameOver();
+    }
 
-                if (!mire.has("pos")) {
-                    throw new IllegalArgumentException(
-                            "Invalid situation file");
-                }
+    /**
+     * Returns the running game to the earlier state of the same game, e.g.
+     * when the turns are rewound. Walls and the target are not changed. Mires
+     * which are absent in the current state are created by downfall of the
+     * restored season, because mires of the level are never removed while
+     * the game is not edited. Mires outside of the field are not in the
+     * snapshot, they are kept only if the restored season is the active one
+     * and has spawned them.
+     *
+     * @param state Snapshot of the earlier state.
+     * @throws IllegalArgumentException If the game is not started or the
+     *                                  snapshot has other field size.
+     */
+    public void restore(final FieldSnapshot state)
+            throws IllegalArgumentException {
+
+        if (smartRobot() == null ||
+                state.width() != _field.width() ||
+                state.height() != _field.height()) {
+            throw new IllegalArgumentException(
+                    "Snapshot does not belong to the game");
+        }
+
+        final Season active = _manager.activeSeason();
+        final List<Mire> spawned = new ArrayList<>();
+
+        final int width = _field.width();
+        final Mire[] mires = new Mire[width * _field.height()];
+        for (FieldObject obj : _field.objects(Mire.class)) {
+            final Mire mire = (Mire) obj;
+            final Point pos = mire.pos().pos();
+            if (_field.contains(pos)) {
+                mires[(pos.y - 1) * width + pos.x - 1] = mire;
+            } else if (active != null && active == state.season() &&
+                    active.isSpawned(mire)) {
+                spawned.add(mire);
+            } else {
+                _field.removeObject(mire);
+            }
+        }
 
-                final JsonArray pos = mire.get("pos").getAsJsonArray();
-                final int x = pos.get(0).getAsInt();
-                final int y = pos.get(1).getAsInt();
-                if (!_field.contains(new Point(x, y))) {
-                    throw new IllegalArgumentException(
-                            "Invalid situation file");
+        for (int i = 0; i < mires.length; ++i) {
+            final int flags = state.cell(i);
+            Mire mire = mires[i];
+            if ((flags & FieldSnapshot.MIRE) == 0) {
+                if (mire != null) {
+                    _field.removeObject(mire);
                 }
+                continue;
+            }
 
+            if (mire == null) {
+                mire = new Mire(_field);
                 _field.addObject(
-                        new CellPosition(new Point(x, y)),
-                        new Mire(_field)
+                        new CellPosition(new Point(
+                                i % width + 1,
+                                i / width + 1
+                        )),
+                        mire
                 );
+                spawned.add(mire);
+            } else if (active != null && active.isSpawned(mire)) {
+                spawned.add(mire);
             }
-        }
 
-        // Add target.
-        final JsonObject target = json.get("target").getAsJsonObject();
-        if (!target.has("pos")) {
-            throw new IllegalArgumentException("Invalid situation file");
-        }
-        {
-            final JsonArray pos = target.get("pos").getAsJsonArray();
-            final int x = pos.get(0).getAsInt();
-            final int y = pos.get(1).getAsInt();
-            if (!_field.contains(new Point(x, y))) {
-                throw new IllegalArgumentException("Invalid situation file");
+            if ((flags & FieldSnapshot.FROZEN) != 0) {
+                mire.freeze();
+            } else {
+                mire.unfreeze();
             }
-            _field.addObject(
-                    new CellPosition(new Point(x, y)),
-                    _target
-            );
+        }
+        if (state.season() != null) {
+            _manager.restore(state.season(), spawned);
         }
 
-        // Add stupid robot.
-        final JsonObject stRobot = json.get("stupid robot").getAsJsonObject();
-        if (!stRobot.has("pos")) {
-            throw new IllegalArgumentException("Invalid situation file");
+        smartRobot().setPos(new CellPosition(new Point(
+                state.smartRobotX(),
+                state.smartRobotY()
+        )));
+        stupidRobot().setPos(new CellPosition(new Point(
+                state.stupidRobotX(),
+                state.stupidRobotY()
+        )));
+        stupidRobot().setStepsToSkip(state.stepsToSkip());
+        _isGameFinished = state.isGameFinished();
+        _turn = state.turn();
+        if (_field.random() != null) {
+            _field.random().setState(state.randomState());
         }
-        {
-            final JsonArray pos = stRobot.get("pos").getAsJsonArray();
-            final int x = pos.get(0).getAsInt();
-            final int y = pos.get(1).getAsInt();
-            if (!_field.contains(new Point(x, y))) {
-                throw new IllegalArgumentException("Invalid situation file");
-            }
-            _field.addObject(
-                    new CellPosition(new Point(x, y)),
-                    new StupidRobot(_field)
-            );
+        _field.invalidate();
+
+        _bus.publish(EDITED, new ModelEvent(this, "Game is restored"));
+    }
+
+    /**
+     * Identifies game over.
+     */
+    private void identifyGameOver() {
+        if (_isGameFinished) {
+            return;
         }
 
-        // Add smart robot.
-        final JsonObject smRobot = json.get("smart robot").getAsJsonObject();
-        if (!smRobot.has("pos")) {
-            throw new IllegalArgumentException("Invalid situation file");
+        CellPosition smRobPos = smartRobot().pos();
+        if (smRobPos.equals(_target.pos())) {
+            _isGameFinished = true;
+            log.info("Smart robot has reached target position");
+            fireGameIsOver("Smart robot wins");
         }
-        {
-            final JsonArray pos = smRobot.get("pos").getAsJsonArray();
-            final int x = pos.get(0).getAsInt();
-            final int y = pos.get(1).getAsInt();
-            if (!_field.contains(new Point(x, y))) {
-                throw new IllegalArgumentException("Invalid situation file");
+
+        for (FieldObject mire : _field.objects(Mire.class)) {
+            if (smRobPos.equals(mire.pos()) && !((Mire) mire).isFrozen()) {
+                _isGameFinished = true;
+                log.info("Smart robot in mire");
+                fireGameIsOver("Smart robot in mire, he lose");
+                break;
             }
-            _field.addObject(
-                    new CellPosition(new Point(x, y)),
-                    new SmartRobot(_field)
-            );
         }
     }
 
     /**
      * Makes one game step: first the smart robot makes move, then the stupid
-     * one.
+     * one. In real-time game only the smart robot makes move.
      *
      * @param dir Direction in which smart robot make movement.
      */
     public void makeMove(final Direction dir) {
         if (!_isGameFinished) {
+            _bus.publish(INPUT, new InputEvent(this, dir, _isRealTime));
+            if (!_isRealTime) {
+                ++_turn;
+            }
             smartRobot().makeMove(dir);
+            if (!_isRealTime) {
+                changeSeasonByTurns();
+            }
+        }
+    }
+
+    /**
+     * Makes step by the stupid robot in real-time game.
+     */
+    public void tick() {
+        if (!_isGameFinished && stupidRobot() != null) {
+            _bus.publish(INPUT, new InputEvent(this, null, _isRealTime));
+            ++_turn;
+            stupidRobot().makeMove();
+            changeSeasonByTurns();
         }
     }
 
+    /**
+     * Changes season at the end of the turn if seasons of the level are
+     * changed by turns and it is time, so the game depends only on its
+     * inputs, not on time between them. The turn is counted before moves,
+     * so events of the moves already see the new turn.
+     */
+    private void changeSeasonByTurns() {
+        final int seasonTurns = _field.seasonTurns();
+        if (seasonTurns != 0 && _turn % seasonTurns == 0 && !_isGameFinished) {
+            _manager.tick();
+        }
+    }
+
+    /**
+     * Returns number of the turn. Turns are moves of the smart robot in
+     * turn-based game and ticks in real-time game.
+     *
+     * @return Number of the turn.
+     */
+    public long turn() {
+        return _turn;
+    }
+
+    /**
+     * Turns on or off real-time game. In real-time game the stupid robot
+     * moves by <code>tick()</code> instead of after each move of the smart
+     * robot.
+     *
+     * @param isRealTime Is game real-time?
+     */
+    public void setRealTime(final boolean isRealTime) {
+        _isRealTime = isRealTime;
+    }
+
+    /**
+     * Returns true if game is real-time, otherwise - false.
+     *
+     * @return True if game is real-time.
+     */
+    public boolean isRealTime() {
+        return _isRealTime;
+    }
+
     /**
      * Returns game field.
      *
@@ -384,43 +487,63 @@ public class Model {
         return _target;
     }
 
+    /**
+     * Returns bus of the game events.
+     *
+     * @return Event bus.
+     */
+    public EventBus eventBus() {
+        return _bus;
+    }
+
+    /**
+     * Takes snapshot of the game state. Must be invoked by the thread which
+     * changes the model, the snapshot itself can be read by any thread.
+     *
+     * @return Snapshot of the game state.
+     */
+    public FieldSnapshot snapshot() {
+        _snapshot = new FieldSnapshot(this, _snapshot);
+        return _snapshot;
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////
     // Events.
     ////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Adds listener <code>l</code> to the list of listeners.
+     * Publishes that the game is over.
      *
-     * @param l The seasons listener.
+     * @param message Game event message.
      */
-    public void addListener(final ModelListener l) {
-        _listenerList.add(l);
+    private void fireGameIsOver(final String message) {
+        _bus.publish(GAME_OVER, new ModelEvent(this, message));
     }
 
     /**
-     * Removes listener <code>l</code> from the list of listeners.
+     * Makes step by the stupid robot after the smart one if game is
+     * turn-based.
      *
-     * @param l The seasons listener.
+     * @param e The smart robot action event.
      */
-    public void removeListener(final ModelListener l) {
-        _listenerList.remove(l);
-    }
+    private void smartRobotMadeMove(final SmartRobotActionEvent e) {
+        log.fine("Smart robot made move");
+        identifyGameOver();
 
-    /**
-     * Removes all the listeners.
-     */
-    public void clearListeners() {
-        _listenerList.clear();
+        if (!_isGameFinished && !_isRealTime) {
+            stupidRobot().makeMove();
+        }
     }
 
     /**
-     * Notifies all the listers that the game is over.
+     * Finishes the game when the smart robot is caught.
+     *
+     * @param e The stupid robot action event.
      */
-    private void fireGameIsOver() {
-        for (Object listener : _listenerList) {
-            ((ModelListener) listener).gameIsOver(_event);
-        }
+    private void smartRobotIsCaught(final StupidRobotActionEvent e) {
+        log.info("Smart robot is caught");
+        _isGameFinished = true;
     }
 
     /**
@@ -449,63 +572,19 @@ public class Model {
         /**
          * Draws field object.
          *
-         * @param g         Graphics context.
-         * @param ltc       Left top corner of cell where to draw.
-         * @param constants Such constants as font size, cell size, etc.
-         * @param colors    Colors.
+         * @param g       Graphics context.
+         * @param x       Left side of cell where to draw.
+         * @param y       Top side of cell where to draw.
+         * @param context Cell size, font and colors.
          */
         @Override
         public void draw(
                 final Graphics g,
-                final Point ltc,
-                final Map<String, Integer> constants,
-                final Map<String, Color> colors
+                final int x,
+                final int y,
+                final RenderContext context
         ) {
-            Color preserved = g.getColor();
-            g.setColor(colors.get("font"));
-
-            g.drawString(
-                    "T",
-                    ltc.x + constants.get("cell size") / 3,
-                    ltc.y + constants.get("cell size") / 5 +
-                            constants.get("font size")
-            );
-
-            g.setColor(preserved);
-        }
-    }
-
-    /**
-     * Smart robot listener.
-     */
-    private class SmartRobotListener
-            implements SmartRobot.SmartRobotActionListener {
-
-        @Override
-        public void smartRobotMadeMove(final SmartRobotActionEvent e) {
-            log.fine("Smart robot made move");
-            identifyGameOver();
-
-            if (!_isGameFinished) {
-                stupidRobot().makeMove();
-            }
-        }
-    }
-
-    /**
-     * Stupid robot listener.
-     */
-    private class StupidRobotListener
-            implements StupidRobot.StupidRobotActionListener {
-
-        @Override
-        public void stupidRobotMadeMove(final StupidRobotActionEvent e) {
-        }
-
-        @Override
-        public void smartRobotIsCaught(final StupidRobotActionEvent e) {
-            log.info("Smart robot is caught");
-            _isGameFinished = true;
+            context.drawGlyph(g, RenderContext.Glyph.TARGET, x, y);
         }
     }
 
@@ -514,16 +593,19 @@ public class Model {
      */
     public static class ModelEvent extends EventObject {
 
-        private String _message;
+        // Game event message.
+        private final String _message;
 
         /**
          * Constructs a prototypical Event.
          *
-         * @param source The object on which the Event initially occurred.
+         * @param source  The object on which the Event initially occurred.
+         * @param message Game event message.
          * @throws IllegalArgumentException if source is null.
          */
-        public ModelEvent(final Object source) {
+        public ModelEvent(final Object source, final String message) {
             super(source);
+            _message = message;
         }
 
         /**
@@ -534,38 +616,53 @@ public class Model {
         public String message() {
             return _message;
         }
-
-        /**
-         * Sets game event message.
-         *
-         * @param message Game event message.
-         */
-        public void setMessage(String message) {
-            _message = message;
-        }
     }
 
     /**
-     * Model listener interface.
+     * Input event: move of the smart robot or tick of real-time game. It is
+     * published before the input is applied.
      */
-    public interface ModelListener extends EventListener {
+    public static class InputEvent extends EventObject {
+
+        // Direction of the move, null for tick.
+        private final Direction _direction;
+        // Is game real-time?
+        private final boolean _isRealTime;
 
         /**
-         * This method is invoked when game is over.
+         * Constructs input event.
          *
-         * @param e Model event.
+         * @param source     The object on which the Event initially occurred.
+         * @param direction  Direction of the move, null for tick.
+         * @param isRealTime Is game real-time?
+         * @throws IllegalArgumentException if source is null.
          */
-        void gameIsOver(final ModelEvent e);
-    }
+        public InputEvent(
+                final Object source,
+                final Direction direction,
+                final boolean isRealTime
+        ) {
+            super(source);
+            _direction = direction;
+            _isRealTime = isRealTime;
+        }
 
-    /**
-     * Season listener.
-     */
-    private class SeasonsListener implements SeasonsManager.SeasonsListener {
+        /**
+         * Returns direction of the move.
+         *
+         * @return Direction of the move, null for tick.
+         */
+        public Direction direction() {
+            return _direction;
+        }
 
-        @Override
-        public void seasonIsChanged(final SeasonsManager.SeasonsEvent e) {
-            identifyGameOver();
+        /**
+         * Returns true if game is real-time, otherwise - false.
+         *
+         * @return Is game real-time?
+         */
+        public boolean isRealTime() {
+            return _isRealTime;
         }
     }
 }
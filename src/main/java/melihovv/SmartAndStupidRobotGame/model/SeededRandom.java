@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+/**
+ * The <code>SeededRandom</code> class defines generator of random numbers of
+ * a deterministic game. Its whole state is one number, so it is saved with
+ * the game and restored exactly, unlike <code>java.util.Random</code>. The
+ * same seed always gives the same numbers on any JVM.
+ *
+ * The generator is SplitMix64.
+ */
+public class SeededRandom {
+
+    // Increment of the state, the golden ratio.
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+    // State.
+    private long _state;
+
+    /**
+     * Constructs generator.
+     *
+     * @param seed Seed.
+     */
+    public SeededRandom(final long seed) {
+        _state = seed;
+    }
+
+    /**
+     * Returns state of the generator.
+     *
+     * @return State.
+     */
+    public long state() {
+        return _state;
+    }
+
+    /**
+     * Sets state of the generator, e.g. when the game is restored.
+     *
+     * @param state State.
+     */
+    public void setState(final long state) {
+        _state = state;
+    }
+
+    /**
+     * Returns next random number.
+     *
+     * @return Random number.
+     */
+    public long nextLong() {
+        long z = _state += GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns next random number from 0 to <code>bound</code> exclusive.
+     *
+     * @param bound Upper bound, positive.
+     * @return Random number.
+     * @throws IllegalArgumentException If bound is not positive.
+     */
+    public int nextInt(final int bound) throws IllegalArgumentException {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        return (int) ((nextLong() >>> 1) % bound);
+    }
+}
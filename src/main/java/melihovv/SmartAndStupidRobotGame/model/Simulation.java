@@ -0,0 +1,645 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+import melihovv.SmartAndStupidRobotGame.concurrent.MpscQueue;
+import melihovv.SmartAndStupidRobotGame.concurrent.TimingWheel;
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
+
+import java.util.EventListener;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>Simulation</code> class owns the model exclusively. Other threads
+ * change the model only by commands: move, load and season tick. Commands are
+ * added to a lock-free queue and executed one by one by the executor of the
+ * simulation, so the model is always changed by a single thread at a time.
+ *
+ * After each batch of commands the simulation flushes the event bus of the
+ * model and publishes snapshot of the model, which can be read by any thread
+ * without locking.
+ *
+ * Seasons are changed by timer of the shared season clock, which submits
+ * season ticks to the simulation. If seasons of the level are changed by
+ * turns, the game is deterministic and the clock is not used.
+ *
+ * In real-time mode the game is driven by ticks at fixed rate: on each tick
+ * one queued move of the smart robot is made, then the stupid robot makes
+ * step, and seasons are changed after the number of ticks which corresponds
+ * to the season period.
+ */
+public class Simulation {
+
+    // Model.
+    private final Model _model;
+    // Executor which executes commands.
+    private final Executor _executor;
+    // Commands which are not executed yet.
+    private final MpscQueue<Command> _queue;
+    // Is queue draining scheduled on the executor?
+    private final AtomicBoolean _isScheduled;
+    // Drains queue, it is created once.
+    private final Runnable _drain;
+    // The latest published snapshot.
+    private volatile FieldSnapshot _snapshot;
+    // Season changing task.
+    private TimingWheel.Timeout _seasonClock;
+    // Time of the latest season change of the turn-based game, ns.
+    private long _seasonStart;
+    // Ticks per second in real-time mode, 0 if game is turn-based.
+    private volatile int _tickRate;
+    // Time between ticks, ns.
+    private volatile long _tickPeriod;
+    // Tick submitting task.
+    private ScheduledFuture<?> _ticker;
+    // Tick command, it is created once.
+    private final Command _tick;
+    // Number of ticks which are submitted but not executed yet.
+    private final AtomicInteger _pendingTicks;
+    // Moves of the smart robot which are made on the next ticks.
+    private final MpscQueue<Direction> _inputs;
+    // Number of ticks since the game start.
+    private long _tickCount;
+    // Number of ticks after which season is changed.
+    private long _ticksPerSeason;
+    // Duration of ticks.
+    private final TimingStats _tickStats;
+    // Number of ticks which took longer than tick period.
+    private final AtomicLong _overruns;
+    // Number of ticks which are skipped because previous one was late.
+    private final AtomicLong _skippedTicks;
+    // List of the listeners. It is copied on change, so listeners are
+    // notified without holding any lock.
+    private final List<SimulationListener> _listenerList;
+    // Shared thread which submits ticks of real-time games.
+    private static final ScheduledExecutorService TICKER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "Game tick");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                return thread;
+            });
+    // Nanoseconds in a second.
+    private static final long NANOS_IN_SECOND = 1_000_000_000;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            Simulation.class.getName()
+    );
+
+    /**
+     * Constructs simulation.
+     *
+     * @param model    Model, it must not be changed by anything else.
+     * @param executor Executor which executes commands. It must not execute
+     *                 two tasks at the same time, e.g. the EDT or a single
+     *                 thread executor.
+     */
+    public Simulation(final Model model, final Executor executor) {
+        _model = model;
+        _executor = executor;
+        _queue = new MpscQueue<>();
+        _isScheduled = new AtomicBoolean();
+        _drain = this::drain;
+        _tick = this::tick;
+        _pendingTicks = new AtomicInteger();
+        _inputs = new MpscQueue<>();
+        _tickStats = new TimingStats();
+        _overruns = new AtomicLong();
+        _skippedTicks = new AtomicLong();
+        _listenerList = new CopyOnWriteArrayList<>();
+        model.seasonsManager().setTimerEnabled(false);
+    }
+
+    /**
+     * Creates executor with a dedicated daemon thread for a simulation.
+     *
+     * @param name Name of the thread.
+     * @return Single thread executor.
+     */
+    public static ExecutorService dedicatedExecutor(final String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds command to the queue. Can be invoked by any thread.
+     *
+     * @param command Command.
+     */
+    public void submit(final Command command) {
+        _queue.offer(command);
+        if (_isScheduled.compareAndSet(false, true)) {
+            _executor.execute(_drain);
+        }
+    }
+
+    /**
+     * Makes move of the smart robot if game is not finished. In real-time
+     * mode the move is made on one of the next ticks.
+     *
+     * @param dir Direction of the move.
+     */
+    public void move(final Direction dir) {
+        if (_tickRate != 0) {
+            _inputs.offer(dir);
+            return;
+        }
+
+        submit(model -> {
+            if (!model.isGameFinished()) {
+                model.makeMove(dir);
+            }
+        });
+    }
+
+    /**
+     * Starts new game on the field and restarts the season clock.
+     *
+     * @param field The game field with situation placed on it.
+     */
+    public void load(final Field field) {
+        load(field, null, 0);
+    }
+
+    /**
+     * Starts new game on the field, then executes <code>setup</code> before
+     * any other command, e.g. to restore saved state of the game. Season
+     * clock continues from <code>seasonElapsed</code>.
+     *
+     * @param field         The game field with situation placed on it.
+     * @param setup         Command which changes the started game, can be
+     *                      null.
+     * @param seasonElapsed Time since the latest season change, ms.
+     */
+    public void load(
+            final Field field,
+            final Command setup,
+            final long seasonElapsed
+    ) {
+        submit(model -> {
+            model.start(field);
+            if (setup != null) {
+                setup.execute(model);
+            }
+            clearInputs();
+            if (_tickRate == 0) {
+                _tickCount = 0;
+                startSeasonClock(seasonElapsed);
+            } else {
+                updateTicksPerSeason(model);
+                _tickCount = seasonElapsed * _tickRate / 1000 %
+                        _ticksPerSeason;
+            }
+            _snapshot = model.snapshot();
+            fireGameIsStarted();
+        });
+    }
+
+    /**
+     * Changes season.
+     */
+    public void tickSeason() {
+        submit(model -> {
+            model.seasonsManager().tick();
+            _seasonStart = System.nanoTime();
+        });
+    }
+
+    /**
+     * Returns time since the latest season change. Must be invoked by the
+     * simulation thread, e.g. by a command.
+     *
+     * @return Time since the latest season change, ms.
+     */
+    public long seasonElapsed() {
+        final int tickRate = _tickRate;
+        final long elapsed = tickRate != 0 ?
+                _tickCount % _ticksPerSeason * 1000 / tickRate :
+                (System.nanoTime() - _seasonStart) / 1_000_000;
+        return Math.max(
+                0,
+                Math.min(elapsed, _model.seasonsManager().period())
+        );
+    }
+
+    /**
+     * Stops the game and the season clock.
+     */
+    public void stop() {
+        submit(model -> {
+            stopSeasonClock();
+            model.stop();
+        });
+    }
+
+    /**
+     * Turns on real-time mode: the game is driven by ticks at fixed rate.
+     *
+     * @param ticksPerSecond Tick rate.
+     */
+    public synchronized void startRealTime(final int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive");
+        }
+        stopTicker();
+
+        _tickRate = ticksPerSecond;
+        _tickPeriod = NANOS_IN_SECOND / ticksPerSecond;
+        submit(model -> {
+            model.setRealTime(true);
+            stopSeasonClock();
+            updateTicksPerSeason(model);
+        });
+
+        _ticker = TICKER.scheduleAtFixedRate(
+                this::submitTick,
+                _tickPeriod,
+                _tickPeriod,
+                TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Turns off real-time mode: the stupid robot moves after the smart one
+     * and seasons are changed by the season clock.
+     */
+    public synchronized void stopRealTime() {
+        if (_tickRate == 0) {
+            return;
+        }
+        stopTicker();
+
+        _tickRate = 0;
+        submit(model -> {
+            model.setRealTime(false);
+            clearInputs();
+            if (model.smartRobot() != null) {
+                startSeasonClock(0);
+            }
+        });
+    }
+
+    /**
+     * Returns tick rate.
+     *
+     * @return Ticks per second or 0 if game is turn-based.
+     */
+    public int tickRate() {
+        return _tickRate;
+    }
+
+    /**
+     * Returns statistics of tick durations.
+     *
+     * @return Tick duration statistics.
+     */
+    public TimingStats tickStats() {
+        return _tickStats;
+    }
+
+    /**
+     * Returns number of ticks which took longer than tick period.
+     *
+     * @return Number of overruns.
+     */
+    public long overruns() {
+        return _overruns.get();
+    }
+
+    /**
+     * Returns number of ticks which are skipped because the previous tick
+     * was not executed in time.
+     *
+     * @return Number of skipped ticks.
+     */
+    public long skippedTicks() {
+        return _skippedTicks.get();
+    }
+
+    /**
+     * Stops submitting ticks.
+     */
+    private void stopTicker() {
+        if (_ticker != null) {
+            _ticker.cancel(false);
+            _ticker = null;
+        }
+    }
+
+    /**
+     * Submits tick. It is invoked by the ticker thread. If the previous tick
+     * is not executed yet, the tick is skipped, so late ticks are not piled up
+     * in the queue.
+     */
+    private void submitTick() {
+        if (_pendingTicks.getAndIncrement() != 0) {
+            _pendingTicks.decrementAndGet();
+            _skippedTicks.incrementAndGet();
+            return;
+        }
+        submit(_tick);
+    }
+
+    /**
+     * Executes tick: makes one queued move of the smart robot, step of the
+     * stupid robot and changes season if it is time.
+     *
+     * @param model Model.
+     */
+    private void tick(final Model model) {
+        final long start = System.nanoTime();
+        try {
+            if (model.smartRobot() == null) {
+                return;
+            }
+
+            final Direction dir = _inputs.poll();
+            if (dir != null && !model.isGameFinished()) {
+                model.makeMove(dir);
+            }
+            model.tick();
+
+            if (++_tickCount % _ticksPerSeason == 0 &&
+                    model.field().seasonTurns() == 0) {
+                model.seasonsManager().tick();
+            }
+        } finally {
+            final long duration = System.nanoTime() - start;
+            _tickStats.record(duration);
+            if (duration > _tickPeriod) {
+                _overruns.incrementAndGet();
+            }
+            _pendingTicks.decrementAndGet();
+        }
+    }
+
+    /**
+     * Computes number of ticks after which season is changed by the season
+     * period of the level. It is invoked by the simulation thread.
+     *
+     * @param model Model.
+     */
+    private void updateTicksPerSeason(final Model model) {
+        _ticksPerSeason = Math.max(
+                1,
+                (long) model.seasonsManager().period() * _tickRate / 1000
+        );
+    }
+
+    /**
+     * Removes all queued moves. It is invoked by the simulation thread.
+     */
+    private void clearInputs() {
+        while (_inputs.poll() != null) {
+            // Moves of the previous game are dropped.
+        }
+    }
+
+    /**
+     * Returns the latest published snapshot. Can be invoked by any thread.
+     *
+     * @return Snapshot or null if no commands were executed yet.
+     */
+    public FieldSnapshot snapshot() {
+        return _snapshot;
+    }
+
+    /**
+     * Starts the season clock which submits season ticks. It is not started
+     * if seasons of the level are changed by turns.
+     *
+     * @param elapsed Time since the latest season change, ms.
+     */
+    private void startSeasonClock(final long elapsed) {
+        stopSeasonClock();
+        if (_model.field().seasonTurns() != 0) {
+            return;
+        }
+        final long period = _model.seasonsManager().period();
+        final long delay = Math.max(0, period - elapsed);
+        _seasonStart = System.nanoTime() - (period - delay) * 1_000_000;
+        _seasonClock = SeasonsManager.clock().scheduleAtFixedRate(
+                this::tickSeason,
+                delay,
+                period,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Stops the season clock.
+     */
+    private void stopSeasonClock() {
+        if (_seasonClock != null) {
+            _seasonClock.cancel();
+            _seasonClock = null;
+        }
+    }
+
+    /**
+     * Executes all queued commands and publishes snapshot.
+     */
+    private void drain() {
+        do {
+            boolean isChanged = false;
+            Command command;
+            while ((command = _queue.poll()) != null) {
+                final long turn = _model.turn();
+                try {
+                    command.execute(_model);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Command has failed", e);
+                }
+                isChanged = true;
+                // Several turns can be made by one batch, e.g. on fast key
+                // repeat, so turns are reported by commands.
+                if (_model.turn() != turn) {
+                    fireTurnIsMade();
+                }
+            }
+
+            if (isChanged) {
+                _model.eventBus().flush();
+                _snapshot = _model.snapshot();
+                fireSnapshotIsPublished();
+            }
+
+            _isScheduled.set(false);
+        } while (!_queue.isEmpty() && _isScheduled.compareAndSet(false, true));
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Events.
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds listener <code>l</code> to the list of listeners. Can be invoked
+     * by any thread, including a listener.
+     *
+     * @param l The simulation listener.
+     */
+    public void addListener(final SimulationListener l) {
+        _listenerList.add(l);
+    }
+
+    /**
+     * Removes listener <code>l</code> from the list of listeners. Can be
+     * invoked by any thread, including a listener.
+     *
+     * @param l The simulation listener.
+     */
+    public void removeListener(final SimulationListener l) {
+        _listenerList.remove(l);
+    }
+
+    /**
+     * Notifies all the listeners that the game is started.
+     */
+    private void fireGameIsStarted() {
+        final SimulationEvent e = new SimulationEvent(this, _snapshot);
+        for (SimulationListener listener : _listenerList) {
+            listener.gameIsStarted(e);
+        }
+    }
+
+    /**
+     * Notifies all the listeners that the number of the turn is changed.
+     */
+    private void fireTurnIsMade() {
+        final SimulationEvent e = new SimulationEvent(this, _model.snapshot());
+        for (SimulationListener listener : _listenerList) {
+            listener.turnIsMade(e);
+        }
+    }
+
+    /**
+     * Notifies all the listeners that new snapshot is published.
+     */
+    private void fireSnapshotIsPublished() {
+        final SimulationEvent e = new SimulationEvent(this, _snapshot);
+        for (SimulationListener listener : _listenerList) {
+            listener.snapshotIsPublished(e);
+        }
+    }
+
+    /**
+     * Command which changes the model.
+     */
+    public interface Command {
+
+        /**
+         * Executes command. It is invoked by the simulation thread.
+         *
+         * @param model Model.
+         */
+        void execute(final Model model);
+    }
+
+    /**
+     * Simulation event.
+     */
+    public static class SimulationEvent extends EventObject {
+
+        // Snapshot of the model.
+        private final FieldSnapshot _snapshot;
+
+        /**
+         * Constructs simulation event.
+         *
+         * @param source   The object on which the Event initially occurred.
+         * @param snapshot Snapshot of the model.
+         */
+        public SimulationEvent(
+                final Object source,
+                final FieldSnapshot snapshot
+        ) {
+            super(source);
+            _snapshot = snapshot;
+        }
+
+        /**
+         * Returns snapshot of the model.
+         *
+         * @return Snapshot of the model.
+         */
+        public FieldSnapshot snapshot() {
+            return _snapshot;
+        }
+    }
+
+    /**
+     * Simulation listener interface. Listeners are invoked on the simulation
+     * thread.
+     */
+    public interface SimulationListener extends EventListener {
+
+        /**
+         * This method is invoked when new game is started, before any other
+         * command is executed.
+         *
+         * @param e Simulation event.
+         */
+        void gameIsStarted(final SimulationEvent e);
+
+        /**
+         * This method is invoked after each command which changes the number
+         * of the turn of the model, e.g. a move or a tick. Its snapshot is
+         * not published, listener must not keep it if it is not needed.
+         *
+         * @param e Simulation event with the state after the command.
+         */
+        default void turnIsMade(final SimulationEvent e) {
+        }
+
+        /**
+         * This method is invoked when snapshot is published after a batch of
+         * commands.
+         *
+         * @param e Simulation event.
+         */
+        void snapshotIsPublished(final SimulationEvent e);
+    }
+}
@@ -0,0 +1,674 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+import com.google.gson.stream.JsonReader;
+import melihovv.SmartAndStupidRobotGame.model.field.*;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The <code>Situation</code> class defines the content of a situation file:
+ * field size, walls, mires, target and robots positions and optional time
+ * between season changes. It is validated on parsing, so a constructed
+ * situation can always be placed on a field.
+ */
+public class Situation {
+
+    // Number of objects after which progress is reported.
+    private static final int PROGRESS_STEP = 1024;
+    // Field size.
+    private final Dimension _size;
+    // Walls.
+    private final List<MiddlePosition> _walls;
+    // Mires.
+    private final List<CellPosition> _mires;
+    // Target position.
+    private final CellPosition _target;
+    // Stupid robot position.
+    private final CellPosition _stupidRobot;
+    // Smart robot position.
+    private final CellPosition _smartRobot;
+    // Time between season changes, ms, 0 for the default one.
+    private final int _seasonPeriod;
+    // Number of turns between season changes, 0 if seasons are changed by
+    // time.
+    private final int _seasonTurns;
+    // Seed of random numbers, null if situation has no seed.
+    private final Long _seed;
+
+    /**
+     * Constructs situation.
+     *
+     * @param size         Field size.
+     * @param walls        Walls.
+     * @param mires        Mires.
+     * @param target       Target position.
+     * @param stupidRobot  Stupid robot position.
+     * @param smartRobot   Smart robot position.
+     * @param seasonPeriod Time between season changes, ms, 0 for the default
+     *                     one.
+     * @param seasonTurns  Number of turns between season changes, 0 if
+     *                     seasons are changed by time.
+     * @param seed         Seed of random numbers, null if situation has no
+     *                     seed.
+     */
+    private Situation(
+            final Dimension size,
+            final List<MiddlePosition> walls,
+            final List<CellPosition> mires,
+            final CellPosition target,
+            final CellPosition stupidRobot,
+            final CellPosition smartRobot,
+            final int seasonPeriod,
+            final int seasonTurns,
+            final Long seed
+    ) {
+        _size = size;
+        _walls = Collections.unmodifiableList(walls);
+        _mires = Collections.unmodifiableList(mires);
+        _target = target;
+        _stupidRobot = stupidRobot;
+        _smartRobot = smartRobot;
+        _seasonPeriod = seasonPeriod;
+        _seasonTurns = seasonTurns;
+        _seed = seed;
+    }
+
+    /**
+     * Loads situation from file.
+     *
+     * @param path Path of situation file.
+     * @return Loaded situation.
+     * @throws IOException If it is impossible to read file.
+     * @throws IllegalArgumentException If json file is invalid.
+     */
+    public static Situation load(final String path)
+            throws IOException, IllegalArgumentException {
+        return load(path, percent -> {
+        });
+    }
+
+    /**
+     * Loads situation from file. The file is parsed as a stream, so the whole
+     * json tree is never kept in memory. Loading is cancelled if the current
+     * thread is interrupted.
+     *
+     * @param path     Path of situation file.
+     * @param progress Receives percent of the file which is already parsed.
+     * @return Loaded situation.
+     * @throws IOException If it is impossible to read file.
+     * @throws IllegalArgumentException If json file is invalid.
+     * @throws CancellationException If the current thread is interrupted.
+     */
+    public static Situation load(final String path, final IntConsumer progress)
+            throws IOException, IllegalArgumentException,
+            CancellationException {
+
+        final long length = Files.size(Paths.get(path));
+        try (CountingInputStream input = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(Paths.get(path))))
+        ) {
+            final JsonReader reader = new JsonReader(
+                    new InputStreamReader(input)
+            );
+            reader.setLenient(true);
+            return read(reader, () -> length == 0 ?
+                    100 :
+                    (int) (100 * input.count() / length), progress);
+        }
+    }
+
+    /**
+     * Reads situation from json stream.
+     *
+     * @param reader   Json stream.
+     * @param position Returns percent of the stream which is already read.
+     * @param progress Receives percent of the stream which is already read.
+     * @return Read situation.
+     * @throws IOException If it is impossible to read stream.
+     * @throws IllegalArgumentException If json is invalid.
+     */
+    private static Situation read(
+            final JsonReader reader,
+            final IntSupplier position,
+            final IntConsumer progress
+    ) throws IOException, IllegalArgumentException {
+
+        Point size = null;
+        Point target = null;
+        Point stupidRobot = null;
+        Point smartRobot = null;
+        int[] seasons = {0, 0};
+        Long seed = null;
+        final List<Point> walls = new ArrayList<>();
+        final List<Direction> directions = new ArrayList<>();
+        final List<Point> mires = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            checkCancelled();
+            progress.accept(position.getAsInt());
+
+            switch (reader.nextName()) {
+                case "field":
+                    size = readPos(reader, "size");
+                    break;
+                case "target":
+                    target = readPos(reader, "pos");
+                    break;
+                case "stupid robot":
+                    stupidRobot = readPos(reader, "pos");
+                    break;
+                case "smart robot":
+                    smartRobot = readPos(reader, "pos");
+                    break;
+                case "seasons":
+                    seasons = readSeasons(reader);
+                    break;
+                case "seed":
+                    seed = reader.nextLong();
+                    break;
+                case "walls":
+                    walls.clear();
+                    directions.clear();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readWall(reader, walls, directions);
+                        if (walls.size() % PROGRESS_STEP == 0) {
+                            checkCancelled();
+                            progress.accept(position.getAsInt());
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "mires":
+                    mires.clear();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        mires.add(readPos(reader, "pos"));
+                        if (mires.size() % PROGRESS_STEP == 0) {
+                            checkCancelled();
+                            progress.accept(position.getAsInt());
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        progress.accept(100);
+
+        if (size == null ||
+                target == null ||
+                smartRobot == null ||
+                stupidRobot == null ||
+                size.x < 2 ||
+                size.y < 2) {
+            throw new IllegalArgumentException("Invalid situation file");
+        }
+
+        // Size is checked before anything of that size is allocated, e.g. by
+        // the field or the indexer.
+        if ((long) size.x * size.y > Field.MAX_CELLS) {
+            throw new IllegalArgumentException(
+                    "Field must not have more than " + Field.MAX_CELLS +
+                            " cells");
+        }
+
+        final List<MiddlePosition> wallPositions = new ArrayList<>();
+        for (int i = 0; i < walls.size(); ++i) {
+            wallPositions.add(new MiddlePosition(
+                    directions.get(i),
+                    cellPos(walls.get(i), size)
+            ));
+        }
+
+        final List<CellPosition> mirePositions = new ArrayList<>();
+        for (Point mire : mires) {
+            mirePositions.add(cellPos(mire, size));
+        }
+
+        return new Situation(
+                new Dimension(size.x, size.y),
+                wallPositions,
+                mirePositions,
+                cellPos(target, size),
+                cellPos(stupidRobot, size),
+                cellPos(smartRobot, size),
+                seasons[0],
+                seasons[1],
+                seed
+        );
+    }
+
+    /**
+     * Reads json object with time and number of turns between season
+     * changes. Other keys are skipped.
+     *
+     * @param reader Json stream.
+     * @return Time between season changes, ms, and number of turns between
+     * them, 0 if they are not set.
+     * @throws IOException If it is impossible to read stream.
+     * @throws IllegalArgumentException If time or number is not positive.
+     */
+    private static int[] readSeasons(final JsonReader reader)
+            throws IOException, IllegalArgumentException {
+
+        final int[] seasons = {0, 0};
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            final int index = "period".equals(name) ? 0 :
+                    "turns".equals(name) ? 1 : -1;
+            if (index >= 0) {
+                seasons[index] = reader.nextInt();
+                if (seasons[index] <= 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid situation file");
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return seasons;
+    }
+
+    /**
+     * Reads json object which has array of two integers with key
+     * <code>key</code>. Other keys are skipped.
+     *
+     * @param reader Json stream.
+     * @param key    Key of the array.
+     * @return Two integers of the array.
+     * @throws IOException If it is impossible to read stream.
+     * @throws IllegalArgumentException If there is no such array.
+     */
+    private static Point readPos(final JsonReader reader, final String key)
+            throws IOException, IllegalArgumentException {
+
+        Point pos = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (key.equals(reader.nextName())) {
+                pos = readPoint(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (pos == null) {
+            throw new IllegalArgumentException("Invalid situation file");
+        }
+        return pos;
+    }
+
+    /**
+     * Reads wall and adds its position and direction to
+     * <code>walls</code> and <code>directions</code>.
+     *
+     * @param reader     Json stream.
+     * @param walls      Positions of walls.
+     * @param directions Directions of walls.
+     * @throws IOException If it is impossible to read stream.
+     * @throws IllegalArgumentException If wall is invalid.
+     */
+    private static void readWall(
+            final JsonReader reader,
+            final List<Point> walls,
+            final List<Direction> directions
+    ) throws IOException, IllegalArgumentException {
+
+        Point pos = null;
+        Direction dir = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "pos":
+                    pos = readPoint(reader);
+                    break;
+                case "direction":
+                    dir = direction(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (pos == null || dir == null) {
+            throw new IllegalArgumentException("Invalid situation file");
+        }
+        walls.add(pos);
+        directions.add(dir);
+    }
+
+    /**
+     * Reads json array and returns its first two integers. Other elements are
+     * skipped.
+     *
+     * @param reader Json stream.
+     * @return Two integers of the array.
+     * @throws IOException If it is impossible to read stream.
+     * @throws IllegalArgumentException If there are less than two elements.
+     */
+    private static Point readPoint(final JsonReader reader)
+            throws IOException, IllegalArgumentException {
+
+        final int[] values = new int[2];
+        int count = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count < values.length) {
+                values[count++] = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+
+        if (count < values.length) {
+            throw new IllegalArgumentException("Invalid situation file");
+        }
+        return new Point(values[0], values[1]);
+    }
+
+    /**
+     * Returns cell position <code>p</code> if it belongs to the field.
+     *
+     * @param p    Position.
+     * @param size Width and height of the field.
+     * @return Cell position.
+     * @throws IllegalArgumentException If position is outside the field.
+     */
+    private static CellPosition cellPos(final Point p, final Point size)
+            throws IllegalArgumentException {
+        if (p.x < 1 || p.x > size.x || p.y < 1 || p.y > size.y) {
+            throw new IllegalArgumentException("Invalid situation file");
+        }
+        return new CellPosition(p);
+    }
+
+    /**
+     * Returns direction by its name.
+     *
+     * @param name Name of direction.
+     * @return Direction.
+     * @throws IllegalArgumentException If name is unknown.
+     */
+    private static Direction direction(final String name)
+            throws IllegalArgumentException {
+        switch (name) {
+            case "north":
+                return Direction.north();
+            case "south":
+                return Direction.south();
+            case "west":
+                return Direction.west();
+            case "east":
+                return Direction.east();
+            default:
+                throw new IllegalArgumentException("Invalid situation file");
+        }
+    }
+
+    /**
+     * Throws exception if the current thread is interrupted.
+     *
+     * @throws CancellationException If the current thread is interrupted.
+     */
+    private static void checkCancelled() throws CancellationException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Loading is cancelled");
+        }
+    }
+
+    /**
+     * Creates new field and places situation on it. Creation is cancelled if
+     * the current thread is interrupted.
+     *
+     * @param progress Receives percent of the objects which are already
+     *                 placed.
+     * @return New field with the situation.
+     * @throws CancellationException If the current thread is interrupted.
+     */
+    public Field createField(final IntConsumer progress)
+            throws CancellationException {
+        final Field field = new Field(_size);
+        place(field, new Model.Target(field), progress);
+        return field;
+    }
+
+    /**
+     * Places situation on the field. The field is cleared before.
+     *
+     * @param field  The game field.
+     * @param target The target of the smart robot.
+     */
+    public void placeOn(final Field field, final Model.Target target) {
+        place(field, target, percent -> {
+        });
+    }
+
+    /**
+     * Places situation on the field. The field is cleared before.
+     *
+     * @param field    The game field.
+     * @param target   The target of the smart robot.
+     * @param progress Receives percent of the objects which are already
+     *                 placed.
+     * @throws CancellationException If the current thread is interrupted.
+     */
+    private void place(
+            final Field field,
+            final Model.Target target,
+            final IntConsumer progress
+    ) throws CancellationException {
+        field.clear();
+        field.setSize(_size);
+        field.setSeasonPeriod(_seasonPeriod);
+        field.setSeasonTurns(_seasonTurns);
+        field.setSeed(_seed);
+
+        final int total = _walls.size() + _mires.size();
+        int placed = 0;
+
+        for (MiddlePosition wall : _walls) {
+            field.addObject(wall, new Wall(field));
+            if (++placed % PROGRESS_STEP == 0) {
+                checkCancelled();
+                progress.accept(100 * placed / total);
+            }
+        }
+        for (CellPosition mire : _mires) {
+            field.addObject(mire, new Mire(field));
+            if (++placed % PROGRESS_STEP == 0) {
+                checkCancelled();
+                progress.accept(100 * placed / total);
+            }
+        }
+        field.addObject(_target, target);
+        field.addObject(_stupidRobot, new StupidRobot(field));
+        field.addObject(_smartRobot, new SmartRobot(field));
+        progress.accept(100);
+    }
+
+    /**
+     * Returns time between season changes.
+     *
+     * @return Time between season changes, ms, 0 for the default one.
+     */
+    public int seasonPeriod() {
+        return _seasonPeriod;
+    }
+
+    /**
+     * Returns number of turns between season changes.
+     *
+     * @return Number of turns between season changes, 0 if seasons are
+     * changed by time.
+     */
+    public int seasonTurns() {
+        return _seasonTurns;
+    }
+
+    /**
+     * Returns seed of random numbers.
+     *
+     * @return Seed, null if situation has no seed.
+     */
+    public Long seed() {
+        return _seed;
+    }
+
+    /**
+     * Returns field size.
+     *
+     * @return Field size.
+     */
+    public Dimension size() {
+        return _size;
+    }
+
+    /**
+     * Returns walls positions.
+     *
+     * @return Walls positions.
+     */
+    public List<MiddlePosition> walls() {
+        return _walls;
+    }
+
+    /**
+     * Returns mires positions.
+     *
+     * @return Mires positions.
+     */
+    public List<CellPosition> mires() {
+        return _mires;
+    }
+
+    /**
+     * Returns target position.
+     *
+     * @return Target position.
+     */
+    public CellPosition target() {
+        return _target;
+    }
+
+    /**
+     * Returns stupid robot position.
+     *
+     * @return Stupid robot position.
+     */
+    public CellPosition stupidRobot() {
+        return _stupidRobot;
+    }
+
+    /**
+     * Returns smart robot position.
+     *
+     * @return Smart robot position.
+     */
+    public CellPosition smartRobot() {
+        return _smartRobot;
+    }
+
+    /**
+     * The <code>CountingInputStream</code> defines input stream which counts
+     * read bytes.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        // Number of read bytes.
+        private long _count;
+
+        /**
+         * Constructs counting input stream.
+         *
+         * @param in Underlying input stream.
+         */
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Returns number of read bytes.
+         *
+         * @return Number of read bytes.
+         */
+        long count() {
+            return _count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                ++_count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                _count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            _count += skipped;
+            return skipped;
+        }
+    }
+}
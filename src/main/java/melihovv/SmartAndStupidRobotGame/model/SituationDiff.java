@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.model;
+
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The <code>SituationDiff</code> class defines difference between two
+ * versions of a situation: added and removed walls and mires.
+ */
+public class SituationDiff {
+
+    // Added walls.
+    private final List<MiddlePosition> _addedWalls;
+    // Removed walls.
+    private final List<MiddlePosition> _removedWalls;
+    // Added mires.
+    private final List<CellPosition> _addedMires;
+    // Removed mires.
+    private final List<CellPosition> _removedMires;
+    // If field size is the same in both versions.
+    private final boolean _isSameSize;
+
+    /**
+     * Constructs difference between situations <code>from</code> and
+     * <code>to</code>.
+     *
+     * @param from Previous version of the situation.
+     * @param to   New version of the situation.
+     */
+    public SituationDiff(final Situation from, final Situation to) {
+        _addedWalls = subtract(to.walls(), from.walls());
+        _removedWalls = subtract(from.walls(), to.walls());
+        _addedMires = subtract(to.mires(), from.mires());
+        _removedMires = subtract(from.mires(), to.mires());
+        _isSameSize = from.size().equals(to.size());
+    }
+
+    /**
+     * Returns elements of <code>a</code> which are not in <code>b</code>.
+     *
+     * @param a   Minuend.
+     * @param b   Subtrahend.
+     * @param <T> Type of elements.
+     * @return Elements of <code>a</code> which are not in <code>b</code>.
+     */
+    private static <T> List<T> subtract(final List<T> a, final List<T> b) {
+        final Set<T> subtrahend = new HashSet<>(b);
+        final Set<T> result = new LinkedHashSet<>();
+        for (T element : a) {
+            if (!subtrahend.contains(element)) {
+                result.add(element);
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(result));
+    }
+
+    /**
+     * Returns true if the difference can be applied to the running game,
+     * otherwise - false. It is impossible if field size has changed.
+     *
+     * @return True if the difference can be applied to the running game.
+     */
+    public boolean isApplicable() {
+        return _isSameSize;
+    }
+
+    /**
+     * Returns true if there is no difference in walls and mires, otherwise -
+     * false.
+     *
+     * @return True if there is no difference in walls and mires.
+     */
+    public boolean isEmpty() {
+        return _addedWalls.isEmpty() &&
+                _removedWalls.isEmpty() &&
+                _addedMires.isEmpty() &&
+                _removedMires.isEmpty();
+    }
+
+    /**
+     * Returns added walls.
+     *
+     * @return Added walls.
+     */
+    public List<MiddlePosition> addedWalls() {
+        return _addedWalls;
+    }
+
+    /**
+     * Returns removed walls.
+     *
+     * @return Removed walls.
+     */
+    public List<MiddlePosition> removedWalls() {
+        return _removedWalls;
+    }
+
+    /**
+     * Returns added mires.
+     *
+     * @return Added mires.
+     */
+    public List<CellPosition> addedMires() {
+        return _addedMires;
+    }
+
+    /**
+     * Returns removed mires.
+     *
+     * @return Removed mires.
+     */
+    public List<CellPosition> removedMires() {
+        return _removedMires;
+    }
+}
@@ -24,6 +24,8 @@
 
 package melihovv.SmartAndStupidRobotGame.model.field;
 
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
+import melihovv.SmartAndStupidRobotGame.model.SeededRandom;
 import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
 import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
@@ -46,6 +48,25 @@ public class Field implements CanMoveFieldObject<CellPosition> {
     private final Map<Class, List<FieldObject>> _objs;
     // Field dimension.
     private Dimension _dim;
+    // Number of changes of the field size and set of objects.
+    private int _version;
+    // Maximal number of cells of a field.
+    public static final int MAX_CELLS = 1 << 20;
+    // Immovable objects by cells, in row-major order, null until objects
+    // are looked up by cells.
+    private List<FieldObject>[] _cells;
+    // Bus to which objects of the field publish events, null until it is
+    // needed.
+    private EventBus _bus;
+    // Time between season changes of the level, ms, 0 for the default one.
+    private int _seasonPeriod;
+    // Number of turns between season changes, 0 if seasons are changed by
+    // time.
+    private int _seasonTurns;
+    // Seed of the level, null if level has no seed.
+    private Long _seed;
+    // Generator of random numbers of the level, null if level has no seed.
+    private SeededRandom _random;
     // Logger.
     private static final Logger log = Logger.getLogger(Field.class.getName());
     // Offsets used in freeCellAround() method.
@@ -66,13 +87,116 @@ public class Field implements CanMoveFieldObject<CellPosition> {
      *
      * @param dimension The dimension of the field.
      * @throws IllegalArgumentException If <code>dimension</code> isn't
-     *                                  positive.
+     *                                  positive or field has more than
+     *                                  <code>MAX_CELLS</code> cells.
      */
     public Field(final Dimension dimension) throws IllegalArgumentException {
         _objs = new LinkedHashMap<>();
         setSize(dimension);
     }
 
+    /**
+     * Returns bus to which objects of the field publish events. Field which
+     * is not played has its own bus, it is created on the first request.
+     *
+     * @return Event bus.
+     */
+    public EventBus eventBus() {
+        if (_bus == null) {
+            _bus = new EventBus();
+        }
+        return _bus;
+    }
+
+    /**
+     * Sets bus to which objects of the field publish events, e.g. the bus of
+     * the game which is played on the field.
+     *
+     * @param bus Event bus.
+     */
+    public void setEventBus(final EventBus bus) {
+        _bus = bus;
+    }
+
+    /**
+     * Returns time between season changes of the level which is placed on
+     * the field.
+     *
+     * @return Time between season changes, ms, 0 for the default one.
+     */
+    public int seasonPeriod() {
+        return _seasonPeriod;
+    }
+
+    /**
+     * Sets time between season changes of the level which is placed on the
+     * field.
+     *
+     * @param seasonPeriod Time between season changes, ms, 0 for the default
+     *                     one.
+     */
+    public void setSeasonPeriod(final int seasonPeriod) {
+        _seasonPeriod = seasonPeriod;
+    }
+
+    /**
+     * Returns number of turns between season changes of the level. If it is
+     * positive, the game is deterministic: all its time is counted in turns.
+     *
+     * @return Number of turns between season changes, 0 if seasons are
+     * changed by time.
+     */
+    public int seasonTurns() {
+        return _seasonTurns;
+    }
+
+    /**
+     * Sets number of turns between season changes of the level.
+     *
+     * @param seasonTurns Number of turns between season changes, 0 if
+     *                    seasons are changed by time.
+     * @throws IllegalArgumentException If <code>seasonTurns</code> is
+     *                                  negative.
+     */
+    public void setSeasonTurns(final int seasonTurns)
+            throws IllegalArgumentException {
+        if (seasonTurns < 0) {
+            throw new IllegalArgumentException(
+                    "Number of turns must not be negative"
+            );
+        }
+        _seasonTurns = seasonTurns;
+    }
+
+    /**
+     * Returns generator of random numbers of the level.
+     *
+     * @return Generator, null if level has no seed.
+     */
+    public SeededRandom random() {
+        return _random;
+    }
+
+    /**
+     * Returns seed of the level.
+     *
+     * @return Seed, null if level has no seed.
+     */
+    public Long seed() {
+        return _seed;
+    }
+
+    /**
+     * Sets seed of the level. Randomness of the game, e.g. rain spreading,
+     * comes only from the generator with this seed.
+     *
+     * @param seed Seed, null if level has no seed.
+     */
+    public void setSeed(final Long seed) {
+        _seed = seed;
+        _random = seed != null ? new SeededRandom(seed) : null;
+    }
+
     /**
      * Returns the dimension of the field.
      *
@@ -104,14 +228,20 @@ public class Field implements CanMoveFieldObject<CellPosition> {
      * Sets field size.
      *
      * @param dimension The dimension of the field that will be set.
-     * @throws IllegalArgumentException If <code>dimension</code> less than 2 or
-     *                                  any object became outside the field.
+     * @throws IllegalArgumentException If <code>dimension</code> less than 2,
+     *                                  field has more than
+     *                                  <code>MAX_CELLS</code> cells or any
+     *                                  object became outside the field.
      */
     public void setSize(final Dimension dimension) throws IllegalArgumentException {
         if (dimension.getWidth() < 2 || dimension.getHeight() < 2) {
             throw new IllegalArgumentException(
                     "Field size must be greater or equal 2");
         }
+        if ((long) dimension.width * dimension.height > MAX_CELLS) {
+            throw new IllegalArgumentException(
+                    "Field must not have more than " + MAX_CELLS + " cells");
+        }
 
         for (FieldObject obj : objects()) {
             if (obj.pos() instanceof CellPosition) {
@@ -130,6 +260,108 @@ public class Field implements CanMoveFieldObject<CellPosition> {
         }
 
         _dim = dimension;
+        ++_version;
+        _cells = null;
+    }
+
+    /**
+     * Returns index of immovable objects by cells. It is built on the first
+     * request, so fields which are only loaded or checked do not allocate
+     * it.
+     *
+     * @return Objects by cells.
+     */
+    @SuppressWarnings("unchecked")
+    private List<FieldObject>[] cells() {
+        if (_cells == null) {
+            _cells = new List[width() * height()];
+            for (FieldObject obj : objects()) {
+                index(obj);
+            }
+        }
+        return _cells;
+    }
+
+    /**
+     * Adds immovable object to the index by cells if it is built. Other
+     * objects are not indexed because they change position without notifying
+     * the field.
+     *
+     * @param obj Field object.
+     */
+    private void index(final FieldObject obj) {
+        final int i = cellIndex(obj.pos());
+        if (obj instanceof ImmovableObject && i != -1 && _cells != null) {
+            if (_cells[i] == null) {
+                _cells[i] = new ArrayList<>();
+            }
+            _cells[i].add(obj);
+        }
+    }
+
+    /**
+     * Removes immovable object from the index by cells if it is built.
+     *
+     * @param obj Field object.
+     */
+    private void unindex(final FieldObject obj) {
+        final int i = cellIndex(obj.pos());
+        if (obj instanceof ImmovableObject &&
+                i != -1 &&
+                _cells != null &&
+                _cells[i] != null) {
+            _cells[i].remove(obj);
+        }
+    }
+
+    /**
+     * Returns cell of the position. Cell of the middle position is the cell
+     * which side it is.
+     *
+     * @param pos Cell or middle position.
+     * @return Cell or null if position is neither cell nor middle one.
+     */
+    private static Point cell(final Object pos) {
+        if (pos instanceof CellPosition) {
+            return ((CellPosition) pos).pos();
+        } else if (pos instanceof MiddlePosition) {
+            return ((MiddlePosition) pos).cellPos().pos();
+        }
+        return null;
+    }
+
+    /**
+     * Returns index of the cell of position <code>pos</code> in the index by
+     * cells.
+     *
+     * @param pos Cell or middle position.
+     * @return Index of the cell or -1 if the cell is outside the field.
+     */
+    private int cellIndex(final Object pos) {
+        final Point p = cell(pos);
+        if (p == null || !contains(p)) {
+            return -1;
+        }
+        return (p.y - 1) * width() + p.x - 1;
+    }
+
+    /**
+     * Returns number of changes of the field size and set of objects. It
+     * allows to detect that something is added to or removed from the field.
+     * Objects movement is not counted.
+     *
+     * @return Number of changes.
+     */
+    public int version() {
+        return _version;
+    }
+
+    /**
+     * Counts change of the objects which is not their addition or removal,
+     * e.g. when the game is restored, so snapshots do not reuse cells.
+     */
+    public void invalidate() {
+        ++_version;
     }
 
     /**
@@ -151,6 +383,8 @@ public class Field implements CanMoveFieldObject<CellPosition> {
                 objList.add(obj);
                 _objs.put(objClass, objList);
             }
+            index(obj);
+            ++_version;
             return true;
         } else {
             log.warning("Cannot set pos " + pos + " to object " + obj);
@@ -174,7 +408,9 @@ public class Field implements CanMoveFieldObject<CellPosition> {
             success = _objs.get(objClass).remove(obj);
 
             if (success) {
+                unindex(obj);
                 obj.setPos(null);
+                ++_version;
             }
         }
 
@@ -278,6 +514,78 @@ public class Field implements CanMoveFieldObject<CellPosition> {
         return objList;
     }
 
+    /**
+     * Returns objects with type <code>objType</code> which are in the cells of
+     * rectangle <code>area</code>. Middle position belongs to the cell which
+     * side it is.
+     *
+     * @param objType Type of objects.
+     * @param area    Rectangle of cells, cells are numbered from 1.
+     * @return List of objects of type <code>objType</code> which are in the
+     * rectangle <code>area</code>.
+     */
+    public List<FieldObject> objects(final Class objType,
+                                     final Rectangle area) {
+        final List<FieldObject> objList = new ArrayList<>();
+        objects(objType, area, objList);
+        return objList;
+    }
+
+    /**
+     * Adds objects with type <code>objType</code> which are in the cells of
+     * rectangle <code>area</code> to the list <code>objList</code>. It allows
+     * to reuse the list, e.g. when objects are queried on each frame.
+     *
+     * @param objType Type of objects.
+     * @param area    Rectangle of cells, cells are numbered from 1.
+     * @param objList List to which objects are added.
+     */
+    public void objects(final Class objType,
+                        final Rectangle area,
+                        final List<FieldObject> objList) {
+        if (!_objs.containsKey(objType)) {
+            return;
+        }
+
+        final List<FieldObject> all = _objs.get(objType);
+        final int x1 = Math.max(1, area.x);
+        final int y1 = Math.max(1, area.y);
+        final int x2 = Math.min(width(), area.x + area.width - 1);
+        final int y2 = Math.min(height(), area.y + area.height - 1);
+        if (x1 > x2 || y1 > y2) {
+            return;
+        }
+
+        if (ImmovableObject.class.isAssignableFrom(objType) &&
+                (long) (x2 - x1 + 1) * (y2 - y1 + 1) < all.size()) {
+            final List<FieldObject>[] cells = cells();
+            for (int y = y1; y <= y2; ++y) {
+                for (int x = x1; x <= x2; ++x) {
+                    final List<FieldObject> objs =
+                            cells[(y - 1) * width() + x - 1];
+                    if (objs == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < objs.size(); ++i) {
+                        if (objs.get(i).getClass() == objType) {
+                            objList.add(objs.get(i));
+                        }
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < all.size(); ++i) {
+                final FieldObject obj = all.get(i);
+                final Point p = cell(obj.pos());
+                if (p != null &&
+                        p.x >= x1 && p.x <= x2 &&
+                        p.y >= y1 && p.y <= y2) {
+                    objList.add(obj);
+                }
+            }
+        }
+    }
+
     /**
      * Returns first object of type <code>objType</code>.
      *
@@ -312,6 +620,8 @@ public class Field implements CanMoveFieldObject<CellPosition> {
      */
     public void clear() {
         _objs.clear();
+        ++_version;
+        _cells = null;
     }
 
     /**
@@ -371,4 +681,33 @@ public class Field implements CanMoveFieldObject<CellPosition> {
         }
         return null;
     }
+
+    /**
+     * Returns random cell of the field which is not occupied by object of
+     * type <code>type</code> around cell with position <code>pos</code>.
+     *
+     * @param pos    Position of cell.
+     * @param type   Object type.
+     * @param random Generator of random numbers.
+     * @return Random free cell around cell with position <code>pos</code>
+     * or null if there is no such cell.
+     */
+    public CellPosition randomFreeCellAround(
+            final CellPosition pos,
+            final Class type,
+            final SeededRandom random
+    ) {
+        final CellPosition[] free = new CellPosition[_offsets.length];
+        int count = 0;
+        for (int[] offset : _offsets) {
+            final Point p = new Point(
+                    pos.pos().x + offset[0],
+                    pos.pos().y + offset[1]
+            );
+            if (contains(p) && objects(type, new CellPosition(p)).isEmpty()) {
+                free[count++] = new CellPosition(p);
+            }
+        }
+        return count != 0 ? free[random.nextInt(count)] : null;
+    }
 }
@@ -25,7 +25,6 @@
 package melihovv.SmartAndStupidRobotGame.model.field;
 
 import java.awt.*;
-import java.util.Map;
 
 /**
  * The <code>FieldObject</code> class defines game field object. It has
@@ -75,15 +74,15 @@ public abstract class FieldObject<Position> {
     /**
      * Draws field object.
      *
-     * @param g         Graphics context.
-     * @param ltc       Left top corner of cell where to draw.
-     * @param constants Such constants as font size, cell size, etc.
-     * @param colors    Colors.
+     * @param g       Graphics context.
+     * @param x       Left side of cell where to draw.
+     * @param y       Top side of cell where to draw.
+     * @param context Cell size, font and colors.
      */
     public abstract void draw(
             final Graphics g,
-            final Point ltc,
-            final Map<String, Integer> constants,
-            final Map<String, Color> colors
+            final int x,
+            final int y,
+            final RenderContext context
     );
 }
@@ -29,7 +29,6 @@ import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
 
 import java.awt.*;
 import java.util.List;
-import java.util.Map;
 
 /**
  * The <code>Mire</code> class defines mire on the field.
@@ -127,26 +126,26 @@ public class Mire extends ImmovableObject<CellPosition>
     /**
      * Draws field object.
      *
-     * @param g         Graphics context.
-     * @param ltc       Left top corner of cell where to draw.
-     * @param constants Such constants as font size, cell size, etc.
-     * @param colors    Colors.
+     * @param g       Graphics context.
+     * @param x       Left side of cell where to draw.
+     * @param y       Top side of cell where to draw.
+     * @param context Cell size, font and colors.
      */
     @Override
     public void draw(
             final Graphics g,
-            final Point ltc,
-            final Map<String, Integer> constants,
-            final Map<String, Color> colors
+            final int x,
+            final int y,
+            final RenderContext context
     ) {
         Color preserved = g.getColor();
-        g.setColor(colors.get("mire"));
+        g.setColor(context.mireColor());
 
         g.fillRect(
-                ltc.x + 1,
-                ltc.y + 1,
-                constants.get("cell size") - 1,
-                constants.get("cell size") - 1
+                x + 1,
+                y + 1,
+                context.cellSize() - 1,
+                context.cellSize() - 1
         );
 
         g.setColor(preserved);
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.model.field;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+/**
+ * The <code>RenderContext</code> class defines everything field objects need
+ * to draw themselves: cell size, font and colors of the active season. Values
+ * are computed once when cell size or season is changed, so drawing does not
+ * look up maps or allocate memory. Labels of robots and target are drawn as
+ * cached sprites.
+ *
+ * Context is not thread-safe, each drawing thread has its own context.
+ */
+public class RenderContext {
+
+    /**
+     * Labels of the field objects.
+     */
+    public enum Glyph {
+        TARGET("T", 3),
+        STUPID_ROBOT("St", 3),
+        SMART_ROBOT("Sm", 5);
+
+        // Text of the label.
+        private final String _text;
+        // Left offset of the label is cell size divided by this value.
+        private final int _leftDivisor;
+
+        /**
+         * Constructs label.
+         *
+         * @param text        Text of the label.
+         * @param leftDivisor Left offset of the label is cell size divided
+         *                    by this value.
+         */
+        Glyph(final String text, final int leftDivisor) {
+            _text = text;
+            _leftDivisor = leftDivisor;
+        }
+    }
+
+    // Cell size for which font is not scaled.
+    private static final int CELL_SIZE = 30;
+    // Font height for default cell size.
+    private static final int FONT_HEIGHT = 15;
+    // Number of labels.
+    private static final int GLYPHS = 3;
+    // Cell size.
+    private int _cellSize;
+    // Font height.
+    private int _fontSize;
+    // Font which is scaled.
+    private Font _baseFont;
+    // Font of labels.
+    private Font _font;
+    // Colors of the active season.
+    private Map<String, Color> _colors;
+    // Color of the field.
+    private Color _fieldColor;
+    // Color of the grid.
+    private Color _gridColor;
+    // Color of labels.
+    private Color _fontColor;
+    // Color of mires.
+    private Color _mireColor;
+    // Color of walls.
+    private Color _wallColor;
+    // Sprites of labels, they are drawn on demand.
+    private final BufferedImage[] _glyphs = new BufferedImage[GLYPHS];
+
+    /**
+     * Updates context. Nothing is recomputed if arguments are the same as
+     * previous ones.
+     *
+     * @param cellSize Cell size.
+     * @param baseFont Font for default cell size, it is scaled with cell.
+     * @param colors   Colors of the active season.
+     */
+    public void update(
+            final int cellSize,
+            final Font baseFont,
+            final Map<String, Color> colors
+    ) {
+        if (cellSize == _cellSize &&
+                baseFont == _baseFont &&
+                colors == _colors) {
+            return;
+        }
+
+        if (cellSize != _cellSize || baseFont != _baseFont) {
+            _cellSize = cellSize;
+            _fontSize = FONT_HEIGHT * cellSize / CELL_SIZE;
+            _baseFont = baseFont;
+            _font = baseFont.deriveFont(
+                    baseFont.getSize2D() * cellSize / CELL_SIZE
+            );
+        }
+
+        _colors = colors;
+        _fieldColor = colors.get("field");
+        _gridColor = colors.get("grid");
+        _fontColor = colors.get("font");
+        _mireColor = colors.get("mire");
+        _wallColor = colors.get("wall");
+
+        for (int i = 0; i < GLYPHS; ++i) {
+            _glyphs[i] = null;
+        }
+    }
+
+    /**
+     * Draws label in the cell with left top corner (<code>x</code>,
+     * <code>y</code>).
+     *
+     * @param g     Graphics context.
+     * @param glyph Label.
+     * @param x     Left side of the cell.
+     * @param y     Top side of the cell.
+     */
+    public void drawGlyph(
+            final Graphics g,
+            final Glyph glyph,
+            final int x,
+            final int y
+    ) {
+        BufferedImage sprite = _glyphs[glyph.ordinal()];
+        if (sprite == null) {
+            sprite = sprite(glyph);
+            _glyphs[glyph.ordinal()] = sprite;
+        }
+        g.drawImage(sprite, x, y, null);
+    }
+
+    /**
+     * Draws sprite of the label: transparent cell with label in it.
+     *
+     * @param glyph Label.
+     * @return Sprite of the label.
+     */
+    private BufferedImage sprite(final Glyph glyph) {
+        final BufferedImage sprite = new BufferedImage(
+                _cellSize,
+                _cellSize,
+                BufferedImage.TYPE_INT_ARGB
+        );
+
+        final Graphics g = sprite.getGraphics();
+        g.setFont(_font);
+        g.setColor(_fontColor);
+        g.drawString(
+                glyph._text,
+                _cellSize / glyph._leftDivisor,
+                _cellSize / 5 + _fontSize
+        );
+        g.dispose();
+
+        return sprite;
+    }
+
+    /**
+     * Returns cell size.
+     *
+     * @return Cell size.
+     */
+    public int cellSize() {
+        return _cellSize;
+    }
+
+    /**
+     * Returns font height.
+     *
+     * @return Font height.
+     */
+    public int fontSize() {
+        return _fontSize;
+    }
+
+    /**
+     * Returns font of labels.
+     *
+     * @return Font of labels.
+     */
+    public Font font() {
+        return _font;
+    }
+
+    /**
+     * Returns color of the field.
+     *
+     * @return Color of the field.
+     */
+    public Color fieldColor() {
+        return _fieldColor;
+    }
+
+    /**
+     * Returns color of the grid.
+     *
+     * @return Color of the grid.
+     */
+    public Color gridColor() {
+        return _gridColor;
+    }
+
+    /**
+     * Returns color of labels.
+     *
+     * @return Color of labels.
+     */
+    public Color fontColor() {
+        return _fontColor;
+    }
+
+    /**
+     * Returns color of mires.
+     *
+     * @return Color of mires.
+     */
+    public Color mireColor() {
+        return _mireColor;
+    }
+
+    /**
+     * Returns color of walls.
+     *
+     * @return Color of walls.
+     */
+    public Color wallColor() {
+        return _wallColor;
+    }
+}
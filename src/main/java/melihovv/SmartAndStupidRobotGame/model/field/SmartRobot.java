@@ -24,21 +24,21 @@
 
 package melihovv.SmartAndStupidRobotGame.model.field;
 
+import melihovv.SmartAndStupidRobotGame.events.Channel;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
 
 import java.awt.*;
-import java.util.*;
-import java.util.List;
+import java.util.EventObject;
 
 /**
  * The <code>SmartRobot</code> class defines the smart robot on the field.
  */
 public class SmartRobot extends AbstractRobot {
 
-    // List of the smart robot's listeners.
-    private final List<SmartRobotActionListener> _listenerList;
-    // The smart robot action event.
-    private final SmartRobotActionEvent _event;
+    // Moves of the smart robot.
+    public static final Channel<SmartRobotActionEvent> MOVED =
+            Channel.of("Smart robot moved");
 
     /**
      * Constructs the smart robot.
@@ -47,36 +47,24 @@ public class SmartRobot extends AbstractRobot {
      */
     public SmartRobot(final Field field) {
         super(field);
-        _listenerList = new ArrayList<>();
-        _event = new SmartRobotActionEvent(this);
     }
 
     /**
      * Draws field object.
      *
-     * @param g         Graphics context.
-     * @param ltc       Left top corner of cell where to draw.
-     * @param constants Such constants as font size, cell size, etc.
-     * @param colors    Colors.
+     * @param g       Graphics context.
+     * @param x       Left side of cell where to draw.
+     * @param y       Top side of cell where to draw.
+     * @param context Cell size, font and colors.
      */
     @Override
     public void draw(
             final Graphics g,
-            final Point ltc,
-            final Map<String, Integer> constants,
-            final Map<String, Color> colors
+            final int x,
+            final int y,
+            final RenderContext context
     ) {
-        Color preserved = g.getColor();
-        g.setColor(colors.get("font"));
-
-        g.drawString(
-                "Sm",
-                ltc.x + constants.get("cell size") / 5,
-                ltc.y + constants.get("cell size") / 5 +
-                        constants.get("font size")
-        );
-
-        g.setColor(preserved);
+        context.drawGlyph(g, RenderContext.Glyph.SMART_ROBOT, x, y);
     }
 
     /**
@@ -86,79 +74,60 @@ public class SmartRobot extends AbstractRobot {
      */
     public void makeMove(final Direction dir) {
         if (isMovePossible(dir)) {
+            final CellPosition from = _pos;
             if (_field.move(this, dir)) {
-                fireRobotMadeMove();
+                _field.eventBus().publish(
+                        MOVED,
+                        new SmartRobotActionEvent(this, from, _pos)
+                );
             }
         }
     }
 
 
-    ////////////////////////////////////////////////////////////////////////////
-    // Events.
-    ////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Adds the smart robot action listener <code>l</code> to the list of
-     * listeners.
-     *
-     * @param l The smart robot action listener.
-     */
-    public void addListener(final SmartRobotActionListener l) {
-        _listenerList.add(l);
-    }
-
-    /**
-     * Removes the smart robot action listener <code>l</code> from the list of
-     * listeners.
-     *
-     * @param l The smart robot action listener.
-     */
-    public void removeListener(final SmartRobotActionListener l) {
-        _listenerList.remove(l);
-    }
-
-    /**
-     * Removes all the smart robot action listeners.
-     */
-    public void clearListeners() {
-        _listenerList.clear();
-    }
-
-    /**
-     * Notifies all the listeners that the smart robot is made movement.
-     */
-    private void fireRobotMadeMove() {
-        for (Object listener : _listenerList) {
-            ((SmartRobotActionListener) listener).smartRobotMadeMove(_event);
-        }
-    }
-
     /**
      * The <code>SmartRobotActionEvent</code> defines the smart robot event.
      */
     public static class SmartRobotActionEvent extends EventObject {
 
+        // Position before movement.
+        private final CellPosition _from;
+        // Position after movement.
+        private final CellPosition _to;
+
         /**
          * Constructs the smart robot action event.
          *
          * @param source Source of event.
+         * @param from   Position before movement.
+         * @param to     Position after movement.
          */
-        public SmartRobotActionEvent(final Object source) {
+        public SmartRobotActionEvent(
+                final Object source,
+                final CellPosition from,
+                final CellPosition to
+        ) {
             super(source);
+            _from = from;
+            _to = to;
         }
-    }
 
-    /**
-     * The <code>SmartRobotActionListener</code> defines the smart robot action
-     * listener.
-     */
-    public interface SmartRobotActionListener extends EventListener {
+        /**
+         * Returns position of the smart robot before movement.
+         *
+         * @return Position before movement.
+         */
+        public CellPosition from() {
+            return _from;
+        }
 
         /**
-         * This method is invoked after the smart robot made movement.
+         * Returns position of the smart robot after movement.
          *
-         * @param e The smart robot action event.
+         * @return Position after movement.
          */
-        void smartRobotMadeMove(final SmartRobotActionEvent e);
+        public CellPosition to() {
+            return _to;
+        }
     }
 }
@@ -24,12 +24,13 @@
 
 package melihovv.SmartAndStupidRobotGame.model.field;
 
+import melihovv.SmartAndStupidRobotGame.events.Channel;
 import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
 import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
 
 import java.awt.*;
-import java.util.*;
+import java.util.EventObject;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -38,10 +39,12 @@ import java.util.logging.Logger;
  */
 public class StupidRobot extends AbstractRobot {
 
-    // List of the stupid robot's listeners.
-    private final List<StupidRobotActionListener> _listenerList;
-    // The stupid robot action event.
-    private final StupidRobotActionEvent _event;
+    // Moves of the stupid robot.
+    public static final Channel<StupidRobotActionEvent> MOVED =
+            Channel.of("Stupid robot moved");
+    // Catches of the smart robot.
+    public static final Channel<StupidRobotActionEvent> CAUGHT =
+            Channel.of("Smart robot is caught");
     // The number of steps to skip.
     private int _stepsToSkip = 0;
     // Logger.
@@ -56,36 +59,24 @@ public class StupidRobot extends AbstractRobot {
      */
     public StupidRobot(final Field field) {
         super(field);
-        _listenerList = new ArrayList<>();
-        _event = new StupidRobotActionEvent(this);
     }
 
     /**
      * Draws field object.
      *
-     * @param g         Graphics context.
-     * @param ltc       Left top corner of cell where to draw.
-     * @param constants Such constants as font size, cell size, etc.
-     * @param colors    Colors.
+     * @param g       Graphics context.
+     * @param x       Left side of cell where to draw.
+     * @param y       Top side of cell where to draw.
+     * @param context Cell size, font and colors.
      */
     @Override
     public void draw(
             final Graphics g,
-            final Point ltc,
-            final Map<String, Integer> constants,
-            final Map<String, Color> colors
+            final int x,
+            final int y,
+            final RenderContext context
     ) {
-        Color preserved = g.getColor();
-        g.setColor(colors.get("font"));
-
-        g.drawString(
-                "St",
-                ltc.x + constants.get("cell size") / 3,
-                ltc.y + constants.get("cell size") / 5 +
-                        constants.get("font size")
-        );
-
-        g.setColor(preserved);
+        context.drawGlyph(g, RenderContext.Glyph.STUPID_ROBOT, x, y);
     }
 
     /**
@@ -102,7 +93,7 @@ public class StupidRobot extends AbstractRobot {
 
         // Smart robot is in the same cell.
         if (_pos.equals(smRobPos)) {
-            fireSmartRobotIsCatched();
+            fireSmartRobotIsCaught(_pos, _pos);
             return;
         }
 
@@ -124,8 +115,9 @@ public class StupidRobot extends AbstractRobot {
                 );
 
                 if (nearWall.isEmpty()) {
+                    final CellPosition from = _pos;
                     setPos(smRobPos);
-                    fireSmartRobotIsCatched();
+                    fireSmartRobotIsCaught(from, smRobPos);
                 }
             } else if (smRobPos.pos().getY() == _pos.pos().getY()) {
                 // Robots are in the same row.
@@ -140,8 +132,9 @@ public class StupidRobot extends AbstractRobot {
                 );
 
                 if (nearWall.isEmpty()) {
+                    final CellPosition from = _pos;
                     setPos(smRobPos);
-                    fireSmartRobotIsCatched();
+                    fireSmartRobotIsCaught(from, smRobPos);
                 }
             }
         } else {
@@ -166,14 +159,36 @@ public class StupidRobot extends AbstractRobot {
             }
 
             if (isMovePossible(dir)) {
+                final CellPosition from = _pos;
                 if (_field.move(this, dir)) {
                     checkIfRobotIsInMire();
-                    fireRobotMadeMove();
+                    _field.eventBus().publish(
+                            MOVED,
+                            new StupidRobotActionEvent(this, from, _pos)
+                    );
                 }
             }
         }
     }
 
+    /**
+     * Returns the number of steps to skip.
+     *
+     * @return The number of steps to skip.
+     */
+    public int stepsToSkip() {
+        return _stepsToSkip;
+    }
+
+    /**
+     * Sets the number of steps to skip, e.g. when the game is restored.
+     *
+     * @param stepsToSkip The number of steps to skip.
+     */
+    public void setStepsToSkip(final int stepsToSkip) {
+        _stepsToSkip = stepsToSkip;
+    }
+
     /**
      * Checks is stupid robot in not frozen mire.
      */
@@ -209,54 +224,20 @@ public class StupidRobot extends AbstractRobot {
     }
 
 
-    ////////////////////////////////////////////////////////////////////////////
-    // Events.
-    ////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Adds the stupid robot action listener <code>l</code> to the list of
-     * listeners.
-     *
-     * @param l The stupid robot action listener.
-     */
-    public void addListener(final StupidRobotActionListener l) {
-        _listenerList.add(l);
-    }
-
     /**
-     * Removes the stupid robot action listener <code>l</code> from the list of
-     * listeners.
+     * Publishes that the stupid robot has caught the smart one.
      *
-     * @param l The stupid robot action listener.
-     */
-    public void removeListener(final StupidRobotActionListener l) {
-        _listenerList.remove(l);
-    }
-
-    /**
-     * Removes all the stupid robot action listeners.
-     */
-    public void clearListeners() {
-        _listenerList.clear();
-    }
-
-    /**
-     * Notifies all the listeners that the stupid robot is made movement.
-     */
-    private void fireRobotMadeMove() {
-        for (Object listener : _listenerList) {
-            ((StupidRobotActionListener) listener).stupidRobotMadeMove(_event);
-        }
-    }
-
-    /**
-     * Notifies all the listeners that the stupid robot has caught the smart
-     * one.
+     * @param from Position before movement.
+     * @param to   Position after movement.
      */
-    private void fireSmartRobotIsCatched() {
-        for (Object listener : _listenerList) {
-            ((StupidRobotActionListener) listener).smartRobotIsCaught(_event);
-        }
+    private void fireSmartRobotIsCaught(
+            final CellPosition from,
+            final CellPosition to
+    ) {
+        _field.eventBus().publish(
+                CAUGHT,
+                new StupidRobotActionEvent(this, from, to)
+        );
     }
 
     /**
@@ -264,34 +245,44 @@ public class StupidRobot extends AbstractRobot {
      */
     public static class StupidRobotActionEvent extends EventObject {
 
+        // Position before movement.
+        private final CellPosition _from;
+        // Position after movement.
+        private final CellPosition _to;
+
         /**
          * Constructs the stupid robot action event.
          *
          * @param source Source of event.
+         * @param from   Position before movement.
+         * @param to     Position after movement.
          */
-        public StupidRobotActionEvent(final Object source) {
+        public StupidRobotActionEvent(
+                final Object source,
+                final CellPosition from,
+                final CellPosition to
+        ) {
             super(source);
+            _from = from;
+            _to = to;
         }
-    }
-
-    /**
-     * The <code>SmartRobotActionListener</code> defines the stupid robot action
-     * listener.
-     */
-    public interface StupidRobotActionListener extends EventListener {
 
         /**
-         * This method is invoked after the stupid robot made movement.
+         * Returns position of the stupid robot before movement.
          *
-         * @param e The smart robot action event.
+         * @return Position before movement.
          */
-        void stupidRobotMadeMove(final StupidRobotActionEvent e);
+        public CellPosition from() {
+            return _from;
+        }
 
         /**
-         * This method is invoked when stupid robot has caught the smart one.
+         * Returns position of the stupid robot after movement.
          *
-         * @param e The smart robot action event.
+         * @return Position after movement.
          */
-        void smartRobotIsCaught(final StupidRobotActionEvent e);
+        public CellPosition to() {
+            return _to;
+        }
     }
 }
@@ -28,7 +28,6 @@ import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
 import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
 
 import java.awt.*;
-import java.util.Map;
 
 /**
  * The <code>Wall</code> class defines a wall on the field.
@@ -47,51 +46,32 @@ public class Wall extends ImmovableObject<MiddlePosition> {
     /**
      * Draws field object.
      *
-     * @param g         Graphics context.
-     * @param ltc       Left top corner of cell where to draw.
-     * @param constants Such constants as font size, cell size, etc.
-     * @param colors    Colors.
+     * @param g       Graphics context.
+     * @param x       Left side of cell where to draw.
+     * @param y       Top side of cell where to draw.
+     * @param context Cell size, font and colors.
      */
     @Override
     public void draw(
             final Graphics g,
-            final Point ltc,
-            final Map<String, Integer> constants,
-            final Map<String, Color> colors
+            final int x,
+            final int y,
+            final RenderContext context
     ) {
         Color preserved = g.getColor();
-        g.setColor(colors.get("wall"));
+        g.setColor(context.wallColor());
 
+        final int size = context.cellSize();
         Direction dir = _pos.direct();
 
         if (dir.equals(Direction.north())) {
-            g.drawLine(
-                    ltc.x + 1,
-                    ltc.y,
-                    ltc.x + constants.get("cell size") - 1,
-                    ltc.y
-            );
+            g.drawLine(x + 1, y, x + size - 1, y);
         } else if (dir.equals(Direction.south())) {
-            g.drawLine(
-                    ltc.x + 1,
-                    ltc.y + constants.get("cell size"),
-                    ltc.x + constants.get("cell size") - 1,
-                    ltc.y + constants.get("cell size")
-            );
+            g.drawLine(x + 1, y + size, x + size - 1, y + size);
         } else if (dir.equals(Direction.west())) {
-            g.drawLine(
-                    ltc.x,
-                    ltc.y + 1,
-                    ltc.x,
-                    ltc.y + constants.get("cell size") - 1
-            );
+            g.drawLine(x, y + 1, x, y + size - 1);
         } else if (dir.equals(Direction.east())) {
-            g.drawLine(
-                    ltc.x + constants.get("cell size"),
-                    ltc.y + 1,
-                    ltc.x + constants.get("cell size"),
-                    ltc.y + constants.get("cell size") - 1
-            );
+            g.drawLine(x + size, y + 1, x + size, y + size - 1);
         } else {
             throw new IllegalArgumentException(
                     "Direction must be north, south, west or east");
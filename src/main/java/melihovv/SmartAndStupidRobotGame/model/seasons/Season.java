@@ -25,6 +25,7 @@
 package melihovv.SmartAndStupidRobotGame.model.seasons;
 
 import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
 import melihovv.SmartAndStupidRobotGame.model.seasons.downfall.Downfall;
 
 import java.awt.*;
@@ -84,6 +85,34 @@ public abstract class Season {
         return _downfall;
     }
 
+    /**
+     * Returns true if the object is created by downfall of the season,
+     * otherwise - false.
+     *
+     * @param obj Field object.
+     * @return Is object created by downfall?
+     */
+    public boolean isSpawned(final FieldObject obj) {
+        for (Downfall downfall : _downfall) {
+            if (downfall.isSpawned(obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops tracking of the object by downfall of the season, e.g. when it
+     * becomes a part of the level.
+     *
+     * @param obj Field object.
+     */
+    public void release(final FieldObject obj) {
+        for (Downfall downfall : _downfall) {
+            downfall.release(obj);
+        }
+    }
+
     /**
      * Returns colors for field objects draw.
      *
@@ -24,32 +24,49 @@
 
 package melihovv.SmartAndStupidRobotGame.model.seasons;
 
+import melihovv.SmartAndStupidRobotGame.concurrent.TimingWheel;
+import melihovv.SmartAndStupidRobotGame.events.Channel;
 import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
 import melihovv.SmartAndStupidRobotGame.model.seasons.downfall.Downfall;
 
 import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.EventListener;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EventObject;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
- * The <code>Seasons</code> class defines the seasons manager.
+ * The <code>Seasons</code> class defines the seasons manager. Seasons of all
+ * the games are changed by timers of the shared season clock.
  */
-public class SeasonsManager implements ActionListener {
+public class SeasonsManager {
 
     // Seasons.
     private final List<Season> _seasons;
+    // Changes of the season, view needs only the latest one.
+    public static final Channel<SeasonsEvent> CHANGED =
+            Channel.latest("Season changed");
     // Index of active season.
     private int _activeSeasonIndex;
-    // List of the listeners.
-    private final List<SeasonsListener> _listenerList;
-    // Seasons event.
-    private final SeasonsEvent _event;
-    // Timer.
-    private final Timer _timer;
+    // Default time between season changes, ms.
+    public static final int DEFAULT_PERIOD = 5000;
+    // Duration of a tick of the season clock, ms.
+    private static final int CLOCK_TICK = 10;
+    // Shared clock which changes seasons of all the games.
+    private static final TimingWheel CLOCK = new TimingWheel(
+            "Season clock",
+            CLOCK_TICK,
+            TimeUnit.MILLISECONDS
+    );
+    // Time between season changes, ms.
+    private int _period;
+    // Timer of the season clock, null if seasons are not changed by it.
+    private TimingWheel.Timeout _timer;
+    // Does the timer change seasons?
+    private boolean _isTimerEnabled;
     // Game field.
     private Field _field;
 
@@ -60,10 +77,27 @@ public class SeasonsManager implements ActionListener {
     public SeasonsManager(final Field field) {
         _field = field;
         _seasons = new ArrayList<>();
-        _listenerList = new ArrayList<>();
-        _event = new SeasonsEvent(this);
         _activeSeasonIndex = 0;
-        _timer = new Timer(5000, this);
+        _period = DEFAULT_PERIOD;
+        _isTimerEnabled = true;
+    }
+
+    /**
+     * Returns shared clock which changes seasons of all the games.
+     *
+     * @return Season clock.
+     */
+    public static TimingWheel clock() {
+        return CLOCK;
+    }
+
+    /**
+     * Sets game field on which seasons influence.
+     *
+     * @param field Game field.
+     */
+    public void setField(final Field field) {
+        _field = field;
     }
 
     /**
@@ -83,21 +117,77 @@ public class SeasonsManager implements ActionListener {
     }
 
     /**
-     * Runs endless loop with season changing.
+     * Runs endless loop with season changing. Seasons are changed on the
+     * EDT. If seasons of the level are changed by turns, the timer is not
+     * started.
      */
     public void start() {
         activeSeason().influence(_field);
-        _timer.start();
+        if (_isTimerEnabled && _field.seasonTurns() == 0) {
+            stopTimer();
+            _timer = CLOCK.scheduleAtFixedRate(
+                    () -> SwingUtilities.invokeLater(this::timerTick),
+                    _period,
+                    _period,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Turns on or off the timer. If the timer is off, seasons are changed
+     * only by <code>tick()</code>, e.g. when they are driven by a simulation
+     * thread.
+     *
+     * @param isEnabled Does the timer change seasons?
+     */
+    public void setTimerEnabled(final boolean isEnabled) {
+        _isTimerEnabled = isEnabled;
+        if (!isEnabled) {
+            stopTimer();
+        }
+    }
+
+    /**
+     * Returns time between season changes.
+     *
+     * @return Time between season changes, ms.
+     */
+    public int period() {
+        return _period;
+    }
+
+    /**
+     * Sets time between season changes. It is applied on the next start.
+     *
+     * @param period Time between season changes, ms, or 0 for the default
+     *               one.
+     */
+    public void setPeriod(final int period) {
+        if (period < 0) {
+            throw new IllegalArgumentException("Period must not be negative");
+        }
+        _period = period == 0 ? DEFAULT_PERIOD : period;
     }
 
     /**
      * Stops season changing.
      */
     public void stop() {
-        _timer.stop();
+        stopTimer();
         _activeSeasonIndex = 0;
     }
 
+    /**
+     * Cancels timer of the season clock.
+     */
+    private void stopTimer() {
+        if (_timer != null) {
+            _timer.cancel();
+            _timer = null;
+        }
+    }
+
     /**
      * Returns active season.
      *
@@ -108,51 +198,61 @@ public class SeasonsManager implements ActionListener {
     }
 
 
-    ////////////////////////////////////////////////////////////////////////////
-    // Events.
-    ////////////////////////////////////////////////////////////////////////////
-
     /**
-     * Adds listener <code>l</code> to the list of listeners.
+     * Returns seasons in the order of changing.
      *
-     * @param l The seasons listener.
+     * @return Unmodifiable list of seasons.
      */
-    public void addListener(final SeasonsListener l) {
-        _listenerList.add(l);
+    public List<Season> seasons() {
+        return Collections.unmodifiableList(_seasons);
     }
 
     /**
-     * Removes listener <code>l</code> from the list of listeners.
+     * Makes the season active without influence, e.g. when the game is
+     * restored and the field already has its influence. Objects which are
+     * created by downfall of the season are replaced by <code>spawned</code>,
+     * downfall of other seasons has no objects.
      *
-     * @param l The seasons listener.
+     * @param season  Season of the manager.
+     * @param spawned Objects created by downfall of the season.
+     * @throws IllegalArgumentException If manager does not have season.
      */
-    public void removeListener(final SeasonsListener l) {
-        _listenerList.remove(l);
-    }
+    public void restore(
+            final Season season,
+            final Collection<? extends FieldObject> spawned
+    ) throws IllegalArgumentException {
+        final int index = _seasons.indexOf(season);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown season " + season);
+        }
 
-    /**
-     * Removes all the listeners.
-     */
-    public void clearListeners() {
-        _listenerList.clear();
+        _activeSeasonIndex = index;
+        for (Season s : _seasons) {
+            for (Downfall downfall : s.downfall()) {
+                downfall.setSpawned(
+                        s == season ?
+                                spawned :
+                                Collections.<FieldObject>emptyList()
+                );
+            }
+        }
     }
 
     /**
-     * Notifies all the listers that the season is changed.
+     * This method is invoked on the EDT by the timer each period.
      */
-    private void fireSeasonChanged() {
-        for (Object listener : _listenerList) {
-            ((SeasonsListener) listener).seasonIsChanged(_event);
+    private void timerTick() {
+        if (_timer == null) {
+            return;
         }
+        tick();
+        _field.eventBus().flush();
     }
 
     /**
-     * This method is invoked each 20 seconds.
-     *
-     * @param e Action event.
+     * Changes active season to the next one.
      */
-    @Override
-    public void actionPerformed(final ActionEvent e) {
+    public void tick() {
         if (_seasons.size() == 0) {
             return;
         }
@@ -171,9 +271,14 @@ public class SeasonsManager implements ActionListener {
         for (Downfall downfall : curSeason.downfall()) {
             temp.add(downfall.getClass().getSimpleName());
         }
-        _event.setDownfall(temp);
-        _event.setName(curSeason.getClass().getSimpleName());
-        fireSeasonChanged();
+        _field.eventBus().publish(
+                CHANGED,
+                new SeasonsEvent(
+                        this,
+                        curSeason.getClass().getSimpleName(),
+                        temp
+                )
+        );
     }
 
     /**
@@ -182,18 +287,26 @@ public class SeasonsManager implements ActionListener {
     public static class SeasonsEvent extends EventObject {
 
         // Season name.
-        private String _name;
+        private final String _name;
         // Downfall.
-        private List<String> _downfall;
+        private final List<String> _downfall;
 
         /**
          * Constructs a prototypical Event.
          *
-         * @param source The object on which the Event initially occurred.
+         * @param source   The object on which the Event initially occurred.
+         * @param name     Season name.
+         * @param downfall Downfall.
          * @throws IllegalArgumentException if source is null.
          */
-        public SeasonsEvent(final Object source) {
+        public SeasonsEvent(
+                final Object source,
+                final String name,
+                final List<String> downfall
+        ) {
             super(source);
+            _name = name;
+            _downfall = downfall;
         }
 
         /**
@@ -205,15 +318,6 @@ public class SeasonsManager implements ActionListener {
             return _name;
         }
 
-        /**
-         * Sets season name to <code>name</code>.
-         *
-         * @param name Season name to set.
-         */
-        public void setName(final String name) {
-            _name = name;
-        }
-
         /**
          * Returns downfall.
          *
@@ -222,27 +326,5 @@ public class SeasonsManager implements ActionListener {
         public List<String> downfall() {
             return _downfall;
         }
-
-        /**
-         * Sets downfall to <code>downfall</code>.
-         *
-         * @param downfall Downfall.
-         */
-        public void setDownfall(final List<String> downfall) {
-            _downfall = downfall;
-        }
-    }
-
-    /**
-     * Seasons listener.
-     */
-    public interface SeasonsListener extends EventListener {
-
-        /**
-         * This method is invoked when season is changed.
-         *
-         * @param e Seasons event.
-         */
-        void seasonIsChanged(final SeasonsEvent e);
     }
 }
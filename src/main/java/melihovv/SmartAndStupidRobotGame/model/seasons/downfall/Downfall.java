@@ -25,6 +25,9 @@
 package melihovv.SmartAndStupidRobotGame.model.seasons.downfall;
 
 import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
+
+import java.util.Collection;
 
 /**
  * The abstract <code>Downfall</code> class defines the abstract downfall.
@@ -43,4 +46,34 @@ public abstract class Downfall {
      * @param field The game field.
      */
     public abstract void cleanInfluence(final Field field);
+
+    /**
+     * Returns true if the object is created by the downfall, otherwise -
+     * false.
+     *
+     * @param obj Field object.
+     * @return Is object created by the downfall?
+     */
+    public boolean isSpawned(final FieldObject obj) {
+        return false;
+    }
+
+    /**
+     * Replaces objects which are created by the downfall, e.g. when the game
+     * is restored. They are removed by <code>cleanInfluence()</code>.
+     *
+     * @param objs Objects which are already on the field.
+     */
+    public void setSpawned(final Collection<? extends FieldObject> objs) {
+    }
+
+    /**
+     * Stops tracking of the object which is created by the downfall, e.g.
+     * when it becomes a part of the level. It is not removed by
+     * <code>cleanInfluence()</code> any more.
+     *
+     * @param obj Field object.
+     */
+    public void release(final FieldObject obj) {
+    }
 }
@@ -24,14 +24,18 @@
 
 package melihovv.SmartAndStupidRobotGame.model.seasons.downfall;
 
+import melihovv.SmartAndStupidRobotGame.model.SeededRandom;
 import melihovv.SmartAndStupidRobotGame.model.field.Field;
 import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
 import melihovv.SmartAndStupidRobotGame.model.field.Mire;
 import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot;
 import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The <code>Rain</code> class defines rain.
@@ -39,20 +43,36 @@ import java.util.List;
 public class Rain extends Downfall {
 
     // New mires which are created when it is raining.
-    private List<Mire> _mires = new ArrayList<>();
+    private final Set<Mire> _mires = new LinkedHashSet<>();
+
+    // Order of mires in which the seeded rain spreads.
+    private static final Comparator<FieldObject> ROW_MAJOR = Comparator
+            .comparingInt((FieldObject m) -> ((Mire) m).pos().pos().y)
+            .thenComparingInt(m -> ((Mire) m).pos().pos().x);
 
     /**
-     * Influences on the field and on the field objects.
+     * Influences on the field and on the field objects. If level has a seed,
+     * mires spread to random free cells in row-major order of mires, so the
+     * result depends only on the field and on the seed.
      *
      * @param field The game field.
      */
     @Override
     public void influence(final Field field) {
-        for (FieldObject mire : field.objects(Mire.class)) {
-            CellPosition pos = field.freeCellAround(
-                    ((Mire) mire).pos(),
-                    Mire.class
-            );
+        final SeededRandom random = field.random();
+        final List<FieldObject> mires = field.objects(Mire.class);
+        if (random != null) {
+            mires.sort(ROW_MAJOR);
+        }
+
+        for (FieldObject mire : mires) {
+            CellPosition pos = random != null ?
+                    field.randomFreeCellAround(
+                            ((Mire) mire).pos(),
+                            Mire.class,
+                            random
+                    ) :
+                    field.freeCellAround(((Mire) mire).pos(), Mire.class);
 
             if (pos != null) {
                 Mire newMire = new Mire(field);
@@ -72,6 +92,42 @@ public class Rain extends Downfall {
     @Override
     public void cleanInfluence(final Field field) {
         _mires.forEach(field::removeObject);
+        _mires.clear();
         ((StupidRobot) field.object(StupidRobot.class)).checkIfRobotIsInMire();
     }
+
+    /**
+     * Returns true if the object is a mire created by the rain, otherwise -
+     * false.
+     *
+     * @param obj Field object.
+     * @return Is object created by the rain?
+     */
+    @Override
+    public boolean isSpawned(final FieldObject obj) {
+        return _mires.contains(obj);
+    }
+
+    /**
+     * Replaces mires which are created by the rain.
+     *
+     * @param objs Mires which are already on the field.
+     */
+    @Override
+    public void setSpawned(final Collection<? extends FieldObject> objs) {
+        _mires.clear();
+        for (FieldObject obj : objs) {
+            _mires.add((Mire) obj);
+        }
+    }
+
+    /**
+     * Stops tracking of the mire which is created by the rain.
+     *
+     * @param obj Field object.
+     */
+    @Override
+    public void release(final FieldObject obj) {
+        _mires.remove(obj);
+    }
 }
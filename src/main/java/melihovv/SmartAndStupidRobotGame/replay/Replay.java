@@ -0,0 +1,303 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.replay;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The <code>Replay</code> class defines a recorded game: header and records
+ * of the inputs. Replay which is not ended, e.g. because the server has
+ * crashed, is read up to its last complete record.
+ */
+public class Replay {
+
+    // Initial capacity of the records.
+    private static final int CAPACITY = 256;
+    // Hash of the level, see <code>FieldSnapshot.contentHash()</code>.
+    private final long _levelHash;
+    // Start time, ms since the epoch.
+    private final long _startTime;
+    // Is game real-time at start?
+    private final boolean _isRealTime;
+    // Name of the initial season.
+    private final String _season;
+    // Number of turns between season changes, 0 if seasons are changed by
+    // time.
+    private int _seasonTurns;
+    // Seed of the level, null if level has no seed.
+    private Long _seed;
+    // Kinds of the records.
+    private byte[] _kinds;
+    // Time of the records since the previous one, ms.
+    private long[] _elapsed;
+    // Number of records without the end.
+    private int _size;
+    // Is replay ended?
+    private boolean _isEnded;
+    // Status of the end.
+    private int _status;
+    // Number of inputs by the end.
+    private long _inputs;
+    // Hash of the final state.
+    private long _finalHash;
+
+    /**
+     * Constructs replay without records.
+     *
+     * @param levelHash  Hash of the level.
+     * @param startTime  Start time, ms since the epoch.
+     * @param isRealTime Is game real-time at start?
+     * @param season     Name of the initial season.
+     */
+    private Replay(
+            final long levelHash,
+            final long startTime,
+            final boolean isRealTime,
+            final String season
+    ) {
+        _levelHash = levelHash;
+        _startTime = startTime;
+        _isRealTime = isRealTime;
+        _season = season;
+        _kinds = new byte[CAPACITY];
+        _elapsed = new long[CAPACITY];
+    }
+
+    /**
+     * Reads replay file.
+     *
+     * @param file Replay file.
+     * @return Replay.
+     * @throws IOException If it is impossible to read file.
+     * @throws IllegalArgumentException If file is not a replay.
+     */
+    public static Replay read(final Path file)
+            throws IOException, IllegalArgumentException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Reads replay.
+     *
+     * @param in Buffer with replay.
+     * @return Replay.
+     * @throws IllegalArgumentException If buffer does not contain replay.
+     */
+    public static Replay read(final ByteBuffer in)
+            throws IllegalArgumentException {
+        final Replay replay;
+        try {
+            if (in.getInt() != ReplayFormat.MAGIC) {
+                throw new IllegalArgumentException("It is not a replay");
+            }
+            final long version = ReplayFormat.readVarint(in);
+            if (version < 1 || version > ReplayFormat.VERSION) {
+                throw new IllegalArgumentException(
+                        "Unsupported version " + version);
+            }
+            final long levelHash = in.getLong();
+            final long startTime = ReplayFormat.readVarint(in);
+            final boolean isRealTime = in.get() != 0;
+            replay = new Replay(
+                    levelHash,
+                    startTime,
+                    isRealTime,
+                    ReplayFormat.readString(in)
+            );
+            if (version >= 2) {
+                replay._seasonTurns = (int) ReplayFormat.readVarint(in);
+                final boolean isSeeded = in.get() != 0;
+                final long seed = in.getLong();
+                replay._seed = isSeeded ? seed : null;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Header is truncated");
+        }
+
+        while (in.hasRemaining()) {
+            final int position = in.position();
+            try {
+                final long record = ReplayFormat.readVarint(in);
+                final int kind = (int) (record &
+                        ((1 << ReplayFormat.KIND_BITS) - 1));
+                if (kind == ReplayFormat.END) {
+                    replay._status = (int) ReplayFormat.readVarint(in);
+                    replay._inputs = ReplayFormat.readVarint(in);
+                    replay._finalHash = in.getLong();
+                    replay._isEnded = true;
+                    break;
+                }
+                replay.add(kind, record >>> ReplayFormat.KIND_BITS);
+            } catch (BufferUnderflowException e) {
+                // The last record is not complete.
+                in.position(position);
+                break;
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * Adds record.
+     *
+     * @param kind    Kind of the record.
+     * @param elapsed Time since the previous record, ms.
+     */
+    private void add(final int kind, final long elapsed) {
+        if (_size == _kinds.length) {
+            _kinds = Arrays.copyOf(_kinds, 2 * _size);
+            _elapsed = Arrays.copyOf(_elapsed, 2 * _size);
+        }
+        _kinds[_size] = (byte) kind;
+        _elapsed[_size] = elapsed;
+        ++_size;
+    }
+
+    /**
+     * Returns hash of the level.
+     *
+     * @return Hash of the state of the game on start.
+     */
+    public long levelHash() {
+        return _levelHash;
+    }
+
+    /**
+     * Returns start time.
+     *
+     * @return Start time, ms since the epoch.
+     */
+    public long startTime() {
+        return _startTime;
+    }
+
+    /**
+     * Returns true if game is real-time at start, otherwise - false.
+     *
+     * @return Is game real-time at start?
+     */
+    public boolean isRealTime() {
+        return _isRealTime;
+    }
+
+    /**
+     * Returns name of the initial season.
+     *
+     * @return Name of the season, empty if there is no season.
+     */
+    public String season() {
+        return _season;
+    }
+
+    /**
+     * Returns number of turns between season changes.
+     *
+     * @return Number of turns between season changes, 0 if seasons are
+     * changed by time.
+     */
+    public int seasonTurns() {
+        return _seasonTurns;
+    }
+
+    /**
+     * Returns seed of the level.
+     *
+     * @return Seed, null if level has no seed.
+     */
+    public Long seed() {
+        return _seed;
+    }
+
+    /**
+     * Returns number of records without the end.
+     *
+     * @return Number of records.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns kind of the record, see <code>ReplayFormat</code>.
+     *
+     * @param index Index of the record.
+     * @return Kind of the record.
+     */
+    public int kind(final int index) {
+        return _kinds[index];
+    }
+
+    /**
+     * Returns time of the record since the previous one.
+     *
+     * @param index Index of the record.
+     * @return Time since the previous record, ms.
+     */
+    public long elapsed(final int index) {
+        return _elapsed[index];
+    }
+
+    /**
+     * Returns true if replay is ended, otherwise - false.
+     *
+     * @return Is replay ended?
+     */
+    public boolean isEnded() {
+        return _isEnded;
+    }
+
+    /**
+     * Returns status of the end, see <code>ReplayFormat</code>.
+     *
+     * @return Status of the end.
+     */
+    public int status() {
+        return _status;
+    }
+
+    /**
+     * Returns number of inputs which is written at the end.
+     *
+     * @return Number of inputs.
+     */
+    public long inputs() {
+        return _inputs;
+    }
+
+    /**
+     * Returns hash of the final state.
+     *
+     * @return Hash of the final state, see
+     * <code>FieldSnapshot.contentHash()</code>.
+     */
+    public long finalHash() {
+        return _finalHash;
+    }
+}
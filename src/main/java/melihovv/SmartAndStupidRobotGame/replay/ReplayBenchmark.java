@@ -0,0 +1,421 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.replay;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The <code>ReplayBenchmark</code> class measures performance of the model on
+ * recorded games: all the replays of the corpus are played without view, so
+ * the mixture of walls, mires and season changes is the one which players
+ * make. It reports inputs per second, allocated bytes per input and GC
+ * pauses, and compares them with the stored baseline.
+ *
+ * Usage: <code>ReplayBenchmark levels replays baseline [--update]
+ * [--threshold percent]</code>, where levels is a situation file or a
+ * directory with them. If there is no baseline or <code>--update</code> is
+ * given, the results are stored as the baseline. Exit code is 1 if
+ * throughput or allocation is worse than the baseline by more than the
+ * threshold or a replay is not verified.
+ */
+public final class ReplayBenchmark {
+
+    // Number of passes over the corpus before measuring.
+    private static final int WARMUP = 3;
+    // Number of measured passes over the corpus.
+    private static final int PASSES = 5;
+    // Default allowed regression, percent.
+    private static final double THRESHOLD = 10;
+    // Allocation which is allowed above the baseline in any case, bytes per
+    // input, so nearly zero baseline does not fail on noise.
+    private static final double ALLOCATION_SLACK = 8;
+    // Keys of the baseline.
+    private static final String INPUTS = "inputs";
+    private static final String THROUGHPUT = "inputsPerSecond";
+    private static final String ALLOCATION = "bytesPerInput";
+    private static final String GC_PAUSE = "gcPauseP99Millis";
+    // Nanoseconds in a second.
+    private static final double NANOS_IN_SECOND = 1e9;
+    // Durations of GC pauses.
+    private final TimingStats _gcPauses;
+    // Do GC pauses of the measured passes are recorded?
+    private volatile boolean _isRecording;
+
+    /**
+     * Constructs benchmark and starts listening GC notifications.
+     */
+    private ReplayBenchmark() {
+        _gcPauses = new TimingStats();
+        final NotificationListener listener = this::gcIsFinished;
+        for (GarbageCollectorMXBean gc :
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(
+                        listener,
+                        null,
+                        null
+                );
+            }
+        }
+    }
+
+    /**
+     * Main function.
+     *
+     * @param args Levels, replays, baseline and options.
+     * @throws IOException If it is impossible to read levels or replays, or
+     *                     to write baseline.
+     */
+    public static void main(final String[] args) throws IOException {
+        boolean isUpdate = false;
+        double threshold = THRESHOLD;
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if ("--update".equals(args[i])) {
+                isUpdate = true;
+            } else if ("--threshold".equals(args[i]) && i + 1 < args.length) {
+                threshold = Double.parseDouble(args[++i]);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 3) {
+            System.err.println("Usage: ReplayBenchmark levels replays " +
+                    "baseline [--update] [--threshold percent]");
+            System.exit(2);
+        }
+
+        final Map<Long, Situation> levels = levels(Paths.get(paths.get(0)));
+        final List<Replay> corpus = new ArrayList<>();
+        final List<Situation> corpusLevels = new ArrayList<>();
+        int skipped = 0;
+        for (Path file : ReplayPlayer.files(Paths.get(paths.get(1)))) {
+            final Replay replay;
+            try {
+                replay = Replay.read(file);
+            } catch (IllegalArgumentException e) {
+                ++skipped;
+                continue;
+            }
+            final Situation level = levels.get(replay.levelHash());
+            if (level == null || !replay.isEnded() ||
+                    replay.status() == ReplayFormat.EDITED) {
+                ++skipped;
+                continue;
+            }
+            corpus.add(replay);
+            corpusLevels.add(level);
+        }
+        if (corpus.isEmpty()) {
+            System.err.println("There are no replays of the levels");
+            System.exit(2);
+        }
+
+        final Properties result = new ReplayBenchmark().run(
+                corpus,
+                corpusLevels
+        );
+        System.out.printf(
+                Locale.US,
+                "%d replays (%d skipped), %s inputs: %s inputs/s, " +
+                        "%s bytes/input, GC pause p99 %s ms%n",
+                corpus.size(),
+                skipped,
+                result.getProperty(INPUTS),
+                result.getProperty(THROUGHPUT),
+                result.getProperty(ALLOCATION),
+                result.getProperty(GC_PAUSE)
+        );
+        if (result.getProperty("mismatches") != null) {
+            System.out.println(result.getProperty("mismatches") +
+                    " replays are not verified");
+            System.exit(1);
+        }
+
+        final Path baselineFile = Paths.get(paths.get(2));
+        if (isUpdate || !Files.exists(baselineFile)) {
+            try (OutputStream out = Files.newOutputStream(baselineFile)) {
+                result.store(out, "Replay benchmark baseline");
+            }
+            System.out.println("Baseline is stored to " + baselineFile);
+            return;
+        }
+
+        final Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        System.exit(compare(baseline, result, threshold) ? 0 : 1);
+    }
+
+    /**
+     * Reads levels and indexes them by hash.
+     *
+     * @param path Situation file or directory with them.
+     * @return Levels by hashes.
+     * @throws IOException If it is impossible to read levels.
+     */
+    private static Map<Long, Situation> levels(final Path path)
+            throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> stream =
+                         Files.newDirectoryStream(path, "*.json")) {
+                for (Path file : stream) {
+                    files.add(file);
+                }
+            }
+        } else {
+            files.add(path);
+        }
+
+        final Map<Long, Situation> levels = new HashMap<>();
+        for (Path file : files) {
+            try {
+                final Situation level = Situation.load(file.toString());
+                levels.put(
+                        ReplayPlayer.levelHash(level.createField(percent -> {
+                        })),
+                        level
+                );
+            } catch (IllegalArgumentException e) {
+                System.err.println("Level " + file + " is skipped: " +
+                        e.getMessage());
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Plays the corpus: warm-up passes and then measured passes. Games are
+     * started before each pass, so only inputs are measured.
+     *
+     * @param corpus Replays.
+     * @param levels Levels of the replays.
+     * @return Results.
+     */
+    private Properties run(
+            final List<Replay> corpus,
+            final List<Situation> levels
+    ) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final boolean isAllocationMeasured =
+                threads instanceof com.sun.management.ThreadMXBean &&
+                        ((com.sun.management.ThreadMXBean) threads)
+                                .isThreadAllocatedMemorySupported();
+        final long thread = Thread.currentThread().getId();
+
+        long inputs = 0;
+        double bestThroughput = 0;
+        double minAllocation = Double.MAX_VALUE;
+        int mismatches = 0;
+        for (int pass = 0; pass < WARMUP + PASSES; ++pass) {
+            final List<Model> models = new ArrayList<>(corpus.size());
+            for (int i = 0; i < corpus.size(); ++i) {
+                models.add(ReplayPlayer.start(
+                        corpus.get(i),
+                        levels.get(i).createField(percent -> {
+                        })
+                ));
+            }
+            System.gc();
+
+            final boolean isMeasured = pass >= WARMUP;
+            _isRecording = isMeasured;
+            final long allocated = isAllocationMeasured ?
+                    ((com.sun.management.ThreadMXBean) threads)
+                            .getThreadAllocatedBytes(thread) :
+                    0;
+            final long start = System.nanoTime();
+            inputs = 0;
+            for (int i = 0; i < corpus.size(); ++i) {
+                inputs += ReplayPlayer.run(corpus.get(i), models.get(i));
+            }
+            final long nanos = System.nanoTime() - start;
+            final long bytes = isAllocationMeasured ?
+                    ((com.sun.management.ThreadMXBean) threads)
+                            .getThreadAllocatedBytes(thread) - allocated :
+                    0;
+            _isRecording = false;
+
+            if (isMeasured) {
+                bestThroughput = Math.max(
+                        bestThroughput,
+                        inputs * NANOS_IN_SECOND / nanos
+                );
+                minAllocation = Math.min(
+                        minAllocation,
+                        (double) bytes / Math.max(1, inputs)
+                );
+            } else {
+                for (int i = 0; i < corpus.size(); ++i) {
+                    final Replay replay = corpus.get(i);
+                    if (replay.finalHash() != new FieldSnapshot(
+                            models.get(i),
+                            null
+                    ).contentHash()) {
+                        ++mismatches;
+                    }
+                }
+            }
+        }
+
+        final Properties result = new Properties();
+        result.setProperty(INPUTS, Long.toString(inputs));
+        result.setProperty(THROUGHPUT, format(bestThroughput));
+        result.setProperty(
+                ALLOCATION,
+                isAllocationMeasured ? format(minAllocation) : "-1"
+        );
+        result.setProperty(GC_PAUSE, format(_gcPauses.percentile(0.99)));
+        if (mismatches != 0) {
+            result.setProperty("mismatches", Integer.toString(mismatches));
+        }
+        return result;
+    }
+
+    /**
+     * Compares results with the baseline and prints regressions.
+     *
+     * @param baseline  Baseline.
+     * @param result    Results.
+     * @param threshold Allowed regression, percent.
+     * @return True if there are no regressions.
+     */
+    private static boolean compare(
+            final Properties baseline,
+            final Properties result,
+            final double threshold
+    ) {
+        if (!result.getProperty(INPUTS).equals(
+                baseline.getProperty(INPUTS))) {
+            System.out.println("Corpus has changed, baseline has " +
+                    baseline.getProperty(INPUTS) + " inputs, " +
+                    "update baseline");
+            return false;
+        }
+
+        boolean isPassed = true;
+        final double throughput = value(result, THROUGHPUT);
+        final double baseThroughput = value(baseline, THROUGHPUT);
+        System.out.printf(
+                Locale.US,
+                "Throughput %+.1f%% of baseline%n",
+                100 * (throughput / baseThroughput - 1)
+        );
+        if (throughput < baseThroughput * (1 - threshold / 100)) {
+            System.out.println("Throughput has regressed");
+            isPassed = false;
+        }
+
+        final double allocation = value(result, ALLOCATION);
+        final double baseAllocation = value(baseline, ALLOCATION);
+        if (allocation >= 0 && baseAllocation >= 0) {
+            System.out.printf(
+                    Locale.US,
+                    "Allocation %+.1f bytes/input of baseline%n",
+                    allocation - baseAllocation
+            );
+            if (allocation > baseAllocation * (1 + threshold / 100) +
+                    ALLOCATION_SLACK) {
+                System.out.println("Allocation has regressed");
+                isPassed = false;
+            }
+        }
+        return isPassed;
+    }
+
+    /**
+     * Records duration of GC pause of the measured passes.
+     *
+     * @param notification GC notification.
+     * @param handback     Not used.
+     */
+    private void gcIsFinished(
+            final Notification notification,
+            final Object handback
+    ) {
+        if (!_isRecording || !GarbageCollectionNotificationInfo
+                .GARBAGE_COLLECTION_NOTIFICATION
+                .equals(notification.getType())) {
+            return;
+        }
+
+        final GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData()
+                );
+        // Concurrent cycles do not stop the game.
+        if (!info.getGcName().contains("Concurrent")) {
+            _gcPauses.record(info.getGcInfo().getDuration() * 1_000_000);
+        }
+    }
+
+    /**
+     * Returns numeric value of the key.
+     *
+     * @param properties Results.
+     * @param key        Key.
+     * @return Value.
+     */
+    private static double value(final Properties properties, final String key) {
+        return Double.parseDouble(properties.getProperty(key, "-1"));
+    }
+
+    /**
+     * Formats value with one decimal.
+     *
+     * @param value Value.
+     * @return Formatted value.
+     */
+    private static String format(final double value) {
+        return String.format(Locale.US, "%.1f", value);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.replay;
+
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The <code>ReplayFormat</code> class defines binary format of replays.
+ * Replay starts with header: signature (int), version, hash of the level
+ * (long), start time (ms since the epoch), is game real-time (byte), name
+ * of the initial season, number of turns between season changes (0 if
+ * seasons are changed by time), has level a seed (byte) and the seed (long).
+ * Replays of version 1 have no fields after the season, their games are not
+ * deterministic.
+ *
+ * Each input is one record: time since the previous record in milliseconds
+ * shifted left by 3 bits and ORed with the kind of the record, written as
+ * varint. So an input which comes within 2 seconds of the previous one takes
+ * 2 bytes. Seasons which are changed by turns are not recorded, they follow
+ * from the inputs. The last record is <code>END</code>, it is followed by the status,
+ * the number of inputs and hash of the final state (long).
+ *
+ * Unsigned integers are written as varints: 7 bits per byte, the least
+ * significant group first, high bit is set on all bytes except the last.
+ */
+public final class ReplayFormat {
+
+    // Signature of replay: "SSRR".
+    public static final int MAGIC = 0x53535252;
+    // Version of the format.
+    public static final int VERSION = 2;
+    // Moves of the smart robot.
+    public static final int NORTH = 0;
+    public static final int SOUTH = 1;
+    public static final int WEST = 2;
+    public static final int EAST = 3;
+    // Tick of real-time game.
+    public static final int TICK = 4;
+    // Change of the season.
+    public static final int SEASON = 5;
+    // Real-time mode is turned on or off.
+    public static final int REAL_TIME = 6;
+    // End of the replay.
+    public static final int END = 7;
+    // Number of bits of the kind of a record.
+    public static final int KIND_BITS = 3;
+    // Game is over.
+    public static final int FINISHED = 0;
+    // Game is stopped or replaced before it is over.
+    public static final int STOPPED = 1;
+    // Situation is changed during the game, replay cannot be played.
+    public static final int EDITED = 2;
+    // Maximal length of a varint.
+    public static final int MAX_VARINT = 10;
+    // Maximal length of a string.
+    private static final int MAX_STRING = 64;
+    // Directions by kinds.
+    private static final Direction[] DIRECTIONS = {
+            Direction.north(),
+            Direction.south(),
+            Direction.west(),
+            Direction.east(),
+    };
+
+    /**
+     * Constructor is hidden, class has only static methods.
+     */
+    private ReplayFormat() {
+    }
+
+    /**
+     * Returns kind of the move record.
+     *
+     * @param dir Direction of the move.
+     * @return Kind of the record.
+     */
+    public static int kind(final Direction dir) {
+        for (int i = 0; i < DIRECTIONS.length; ++i) {
+            if (DIRECTIONS[i].equals(dir)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction " + dir);
+    }
+
+    /**
+     * Returns direction of the move record.
+     *
+     * @param kind Kind of the record.
+     * @return Direction or null if it is not a move.
+     */
+    public static Direction direction(final int kind) {
+        return kind >= 0 && kind < DIRECTIONS.length ? DIRECTIONS[kind] : null;
+    }
+
+    /**
+     * Writes unsigned varint.
+     *
+     * @param out      Buffer with at least <code>MAX_VARINT</code> bytes
+     *                 after <code>position</code>.
+     * @param position Position in the buffer.
+     * @param value    Non-negative value.
+     * @return Position after the varint.
+     */
+    public static int writeVarint(
+            final byte[] out,
+            final int position,
+            final long value
+    ) {
+        int pos = position;
+        long rest = value;
+        while ((rest & ~0x7fL) != 0) {
+            out[pos++] = (byte) (rest & 0x7f | 0x80);
+            rest >>>= 7;
+        }
+        out[pos++] = (byte) rest;
+        return pos;
+    }
+
+    /**
+     * Writes int in big-endian order.
+     *
+     * @param out      Buffer with at least 4 bytes after
+     *                 <code>position</code>.
+     * @param position Position in the buffer.
+     * @param value    Value.
+     * @return Position after the int.
+     */
+    public static int writeInt(
+            final byte[] out,
+            final int position,
+            final int value
+    ) {
+        for (int i = 0; i < 4; ++i) {
+            out[position + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return position + 4;
+    }
+
+    /**
+     * Writes long in big-endian order.
+     *
+     * @param out      Buffer with at least 8 bytes after
+     *                 <code>position</code>.
+     * @param position Position in the buffer.
+     * @param value    Value.
+     * @return Position after the long.
+     */
+    public static int writeLong(
+            final byte[] out,
+            final int position,
+            final long value
+    ) {
+        for (int i = 0; i < 8; ++i) {
+            out[position + i] = (byte) (value >>> (56 - 8 * i));
+        }
+        return position + 8;
+    }
+
+    /**
+     * Returns UTF-8 bytes of the string truncated to the maximal length.
+     *
+     * @param value String.
+     * @return Bytes of the string.
+     */
+    public static byte[] stringBytes(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_STRING) {
+            return bytes;
+        }
+        final byte[] truncated = new byte[MAX_STRING];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_STRING);
+        return truncated;
+    }
+
+    /**
+     * Reads unsigned varint.
+     *
+     * @param in Buffer.
+     * @return Value.
+     * @throws BufferUnderflowException If varint is truncated.
+     * @throws IllegalArgumentException If varint is too long.
+     */
+    public static long readVarint(final ByteBuffer in)
+            throws BufferUnderflowException, IllegalArgumentException {
+        long value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT; shift += 7) {
+            final byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    /**
+     * Reads string: length (varint) and UTF-8 bytes.
+     *
+     * @param in Buffer.
+     * @return String.
+     * @throws BufferUnderflowException If string is truncated.
+     * @throws IllegalArgumentException If string is too long.
+     */
+    public static String readString(final ByteBuffer in)
+            throws BufferUnderflowException, IllegalArgumentException {
+        final long length = readVarint(in);
+        if (length > MAX_STRING) {
+            throw new IllegalArgumentException("String is too long");
+        }
+        final byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.replay;
+
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>ReplayPlayer</code> class plays replays without view at maximal
+ * speed: inputs are applied to a new model one by one, times of the records
+ * are ignored. Replay is verified if hash of the final state is the same as
+ * the recorded one.
+ *
+ * Usage: <code>ReplayPlayer situation replay...</code>, where replay is a
+ * replay file or a directory with replay files. Replays of other levels are
+ * skipped.
+ */
+public final class ReplayPlayer {
+
+    /**
+     * Constructor is hidden, class has only static methods.
+     */
+    private ReplayPlayer() {
+    }
+
+    /**
+     * Main function. Exit code is 1 if any replay is not verified.
+     *
+     * @param args Path of the situation file and paths of replays.
+     * @throws IOException If it is impossible to read level or replays.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ReplayPlayer situation replay...");
+            System.exit(2);
+        }
+
+        final Situation level = Situation.load(args[0]);
+        int played = 0;
+        int skipped = 0;
+        int failed = 0;
+        long inputs = 0;
+        long nanos = 0;
+        for (int i = 1; i < args.length; ++i) {
+            for (Path file : files(Paths.get(args[i]))) {
+                final Result result;
+                try {
+                    result = play(
+                            Replay.read(file),
+                            level.createField(percent -> {
+                            })
+                    );
+                } catch (IllegalArgumentException e) {
+                    System.out.println(file + ": " + e.getMessage());
+                    ++skipped;
+                    continue;
+                }
+
+                ++played;
+                inputs += result.inputs();
+                nanos += result.nanos();
+                if (!result.isVerified()) {
+                    ++failed;
+                }
+                System.out.println(file + ": " + result);
+            }
+        }
+
+        System.out.printf(
+                "Played %d, skipped %d, failed %d, %d inputs, %.0f inputs/s%n",
+                played,
+                skipped,
+                failed,
+                inputs,
+                nanos == 0 ? 0 : inputs * 1e9 / nanos
+        );
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Returns replay files: the file itself or files of the directory with
+     * replay extension, ordered by name.
+     *
+     * @param path File or directory.
+     * @return Replay files.
+     * @throws IOException If it is impossible to list directory.
+     */
+    public static List<Path> files(final Path path) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                path,
+                "*" + ReplayRecorder.EXTENSION
+        )) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Plays replay on the field with its level.
+     *
+     * @param replay Replay.
+     * @param field  New field with the situation of the replay.
+     * @return Result of playing.
+     * @throws IllegalArgumentException If replay is recorded on another
+     *                                  level or cannot be played.
+     */
+    public static Result play(final Replay replay, final Field field)
+            throws IllegalArgumentException {
+        final Model model = start(replay, field);
+        final long start = System.nanoTime();
+        final long inputs = run(replay, model);
+        final long nanos = System.nanoTime() - start;
+
+        return new Result(
+                replay,
+                inputs,
+                nanos,
+                new FieldSnapshot(model, null).contentHash()
+        );
+    }
+
+    /**
+     * Returns hash of the level, which replays recorded on it have.
+     *
+     * @param field New field with the situation of the level.
+     * @return Hash of the state of the game on start.
+     */
+    public static long levelHash(final Field field) {
+        final Model model = newModel();
+        model.start(field);
+        return new FieldSnapshot(model, null).contentHash();
+    }
+
+    /**
+     * Starts game of the replay on new model. Number of turns between season
+     * changes and seed are taken from the replay.
+     *
+     * @param replay Replay.
+     * @param field  New field with the situation of the replay.
+     * @return Model with started game.
+     * @throws IllegalArgumentException If replay is recorded on another
+     *                                  level or cannot be played.
+     */
+    public static Model start(final Replay replay, final Field field)
+            throws IllegalArgumentException {
+        if (replay.isEnded() && replay.status() == ReplayFormat.EDITED) {
+            throw new IllegalArgumentException(
+                    "Situation is changed during the game");
+        }
+
+        final Model model = newModel();
+        model.setRealTime(replay.isRealTime());
+        field.setSeasonTurns(replay.seasonTurns());
+        field.setSeed(replay.seed());
+        model.start(field);
+
+        if (new FieldSnapshot(model, null).contentHash() !=
+                replay.levelHash()) {
+            throw new IllegalArgumentException(
+                    "Replay is recorded on another level");
+        }
+        final Season season = model.seasonsManager().activeSeason();
+        if (!replay.season().equals(
+                season == null ? "" : season.getClass().getSimpleName())) {
+            throw new IllegalArgumentException(
+                    "Replay starts in season " + replay.season());
+        }
+        return model;
+    }
+
+    /**
+     * Applies records of the replay to the model.
+     *
+     * @param replay Replay.
+     * @param model  Model with started game of the replay.
+     * @return Number of applied inputs.
+     */
+    public static long run(final Replay replay, final Model model) {
+        long inputs = 0;
+        for (int i = 0; i < replay.size(); ++i) {
+            final int kind = replay.kind(i);
+            switch (kind) {
+                case ReplayFormat.TICK:
+                    model.tick();
+                    ++inputs;
+                    break;
+                case ReplayFormat.SEASON:
+                    model.seasonsManager().tick();
+                    break;
+                case ReplayFormat.REAL_TIME:
+                    model.setRealTime(!model.isRealTime());
+                    break;
+                default:
+                    model.makeMove(ReplayFormat.direction(kind));
+                    ++inputs;
+                    break;
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Creates model which delivers events in place and changes seasons only
+     * by records.
+     *
+     * @return New model.
+     */
+    private static Model newModel() {
+        final Model model = new Model(new EventBus(Runnable::run));
+        model.seasonsManager().setTimerEnabled(false);
+        return model;
+    }
+
+    /**
+     * Result of playing a replay.
+     */
+    public static class Result {
+
+        // Played replay.
+        private final Replay _replay;
+        // Number of played inputs.
+        private final long _inputs;
+        // Duration of playing, ns.
+        private final long _nanos;
+        // Hash of the final state.
+        private final long _finalHash;
+
+        /**
+         * Constructs result.
+         *
+         * @param replay    Played replay.
+         * @param inputs    Number of played inputs.
+         * @param nanos     Duration of playing, ns.
+         * @param finalHash Hash of the final state.
+         */
+        Result(
+                final Replay replay,
+                final long inputs,
+                final long nanos,
+                final long finalHash
+        ) {
+            _replay = replay;
+            _inputs = inputs;
+            _nanos = nanos;
+            _finalHash = finalHash;
+        }
+
+        /**
+         * Returns number of played inputs.
+         *
+         * @return Number of inputs.
+         */
+        public long inputs() {
+            return _inputs;
+        }
+
+        /**
+         * Returns duration of playing.
+         *
+         * @return Duration, ns.
+         */
+        public long nanos() {
+            return _nanos;
+        }
+
+        /**
+         * Returns hash of the final state.
+         *
+         * @return Hash of the final state.
+         */
+        public long finalHash() {
+            return _finalHash;
+        }
+
+        /**
+         * Returns true if replay is ended and the final state is the same as
+         * the recorded one, otherwise - false.
+         *
+         * @return Is replay verified?
+         */
+        public boolean isVerified() {
+            return _replay.isEnded() &&
+                    _replay.inputs() == _inputs &&
+                    _replay.finalHash() == _finalHash;
+        }
+
+        @Override
+        public String toString() {
+            if (!_replay.isEnded()) {
+                return _inputs + " inputs, not ended";
+            }
+            return String.format(
+                    "%d inputs, %s, %s",
+                    _inputs,
+                    _replay.status() == ReplayFormat.FINISHED ?
+                            "finished" :
+                            "stopped",
+                    isVerified() ? "verified" : "MISMATCH"
+            );
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.replay;
+
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
+import melihovv.SmartAndStupidRobotGame.events.EventBus.Subscriber;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Model.InputEvent;
+import melihovv.SmartAndStupidRobotGame.model.Model.ModelEvent;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot;
+import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot.StupidRobotActionEvent;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager.SeasonsEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>ReplayRecorder</code> class records each game of the model into
+ * its own replay file. Recorder is a synchronous subscriber of the event bus
+ * of the model, it only appends a few bytes to its buffer, so it does not
+ * slow down moves. Filled buffer is passed to the shared writer thread which
+ * appends it to the file.
+ */
+public class ReplayRecorder {
+
+    // Size of the buffer which is passed to the writer when it is filled.
+    private static final int CHUNK = 4096;
+    // Extension of replay files.
+    public static final String EXTENSION = ".replay";
+    // Shared thread which writes replays of all the games.
+    private static final ExecutorService WRITER =
+            Simulation.dedicatedExecutor("Replay writer");
+    // Number of started replays, it makes file names unique.
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    // Nanoseconds in a millisecond.
+    private static final long NANOS_IN_MILLI = 1_000_000;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            ReplayRecorder.class.getName()
+    );
+    // Recorded model.
+    private final Model _model;
+    // Directory of replays.
+    private final Path _directory;
+    // File of the current replay, null if game is not recorded.
+    private Path _file;
+    // Encoded records which are not passed to the writer yet.
+    private byte[] _buffer;
+    // Number of bytes in the buffer.
+    private int _size;
+    // Time of the previous record, ns.
+    private long _time;
+    // Number of recorded inputs.
+    private long _inputs;
+    // Is game real-time by the records?
+    private boolean _isRealTime;
+    // Season by the records.
+    private Season _season;
+    // Subscribers of the event bus.
+    private final Subscriber<ModelEvent> _started;
+    private final Subscriber<ModelEvent> _stopped;
+    private final Subscriber<ModelEvent> _edited;
+    private final Subscriber<ModelEvent> _gameOver;
+    private final Subscriber<InputEvent> _input;
+    private final Subscriber<SeasonsEvent> _seasonChanged;
+    private final Subscriber<StupidRobotActionEvent> _smartRobotCaught;
+
+    /**
+     * Constructs recorder and subscribes it to the events of the model. Games
+     * which are started after it are recorded.
+     *
+     * @param model     Recorded model.
+     * @param directory Directory of replays, it must exist.
+     */
+    public ReplayRecorder(final Model model, final Path directory) {
+        _model = model;
+        _directory = directory;
+        _buffer = new byte[CHUNK];
+        _started = e -> begin();
+        _stopped = e -> end(ReplayFormat.STOPPED);
+        _edited = e -> end(ReplayFormat.EDITED);
+        _gameOver = e -> end(ReplayFormat.FINISHED);
+        _input = this::input;
+        _seasonChanged = e -> season();
+        _smartRobotCaught = e -> end(ReplayFormat.FINISHED);
+
+        final EventBus bus = model.eventBus();
+        bus.subscribe(Model.STARTED, _started);
+        bus.subscribe(Model.STOPPED, _stopped);
+        bus.subscribe(Model.EDITED, _edited);
+        bus.subscribe(Model.GAME_OVER, _gameOver);
+        bus.subscribe(Model.INPUT, _input);
+        bus.subscribe(SeasonsManager.CHANGED, _seasonChanged);
+        bus.subscribe(StupidRobot.CAUGHT, _smartRobotCaught);
+    }
+
+    /**
+     * Stops recording: the current replay is ended as stopped and recorder is
+     * unsubscribed. Must be invoked by the thread which changes the model.
+     */
+    public void close() {
+        end(ReplayFormat.STOPPED);
+
+        final EventBus bus = _model.eventBus();
+        bus.unsubscribe(Model.STARTED, _started);
+        bus.unsubscribe(Model.STOPPED, _stopped);
+        bus.unsubscribe(Model.EDITED, _edited);
+        bus.unsubscribe(Model.GAME_OVER, _gameOver);
+        bus.unsubscribe(Model.INPUT, _input);
+        bus.unsubscribe(SeasonsManager.CHANGED, _seasonChanged);
+        bus.unsubscribe(StupidRobot.CAUGHT, _smartRobotCaught);
+    }
+
+    /**
+     * Returns file of the current replay.
+     *
+     * @return File or null if game is not recorded.
+     */
+    public Path file() {
+        return _file;
+    }
+
+    /**
+     * Starts new replay with header.
+     */
+    private void begin() {
+        end(ReplayFormat.STOPPED);
+
+        final long now = System.currentTimeMillis();
+        _file = _directory.resolve(
+                now + "-" + SEQUENCE.incrementAndGet() + EXTENSION
+        );
+        _time = System.nanoTime();
+        _inputs = 0;
+        _isRealTime = _model.isRealTime();
+        _season = _model.seasonsManager().activeSeason();
+        final byte[] season = ReplayFormat.stringBytes(
+                _season == null ? "" : _season.getClass().getSimpleName()
+        );
+
+        final Long seed = _model.field().seed();
+
+        ensure(4 + 4 * ReplayFormat.MAX_VARINT + 2 * 8 + 2 + season.length);
+        _size = ReplayFormat.writeInt(_buffer, _size, ReplayFormat.MAGIC);
+        _size = ReplayFormat.writeVarint(
+                _buffer,
+                _size,
+                ReplayFormat.VERSION
+        );
+        _size = ReplayFormat.writeLong(
+                _buffer,
+                _size,
+                new FieldSnapshot(_model, null).contentHash()
+        );
+        _size = ReplayFormat.writeVarint(_buffer, _size, now);
+        _buffer[_size++] = (byte) (_isRealTime ? 1 : 0);
+        _size = ReplayFormat.writeVarint(_buffer, _size, season.length);
+        System.arraycopy(season, 0, _buffer, _size, season.length);
+        _size += season.length;
+        _size = ReplayFormat.writeVarint(
+                _buffer,
+                _size,
+                _model.field().seasonTurns()
+        );
+        _buffer[_size++] = (byte) (seed != null ? 1 : 0);
+        _size = ReplayFormat.writeLong(
+                _buffer,
+                _size,
+                seed != null ? seed : 0
+        );
+    }
+
+    /**
+     * Records input of the model.
+     *
+     * @param e Input event.
+     */
+    private void input(final InputEvent e) {
+        if (_file == null) {
+            return;
+        }
+
+        if (e.direction() == null) {
+            record(ReplayFormat.TICK);
+        } else {
+            if (e.isRealTime() != _isRealTime) {
+                _isRealTime = e.isRealTime();
+                record(ReplayFormat.REAL_TIME);
+            }
+            record(ReplayFormat.kind(e.direction()));
+        }
+        ++_inputs;
+        if (_size >= CHUNK) {
+            write(false);
+        }
+    }
+
+    /**
+     * Records change of the season, if it is not recorded yet. Game over can
+     * be published by the rules of the model before the recorder receives
+     * the change, so the change is recorded by whichever comes first.
+     * Seasons which are changed by turns are not recorded.
+     */
+    private void season() {
+        if (_file == null) {
+            return;
+        }
+
+        final Season season = _model.seasonsManager().activeSeason();
+        if (season != _season) {
+            _season = season;
+            if (_model.field().seasonTurns() == 0) {
+                record(ReplayFormat.SEASON);
+            }
+        }
+    }
+
+    /**
+     * Ends the current replay and passes it to the writer.
+     *
+     * @param status Status of the end.
+     */
+    private void end(final int status) {
+        if (_file == null) {
+            return;
+        }
+
+        if (status != ReplayFormat.EDITED) {
+            season();
+        }
+        record(ReplayFormat.END);
+        ensure(2 * ReplayFormat.MAX_VARINT + 8);
+        _size = ReplayFormat.writeVarint(_buffer, _size, status);
+        _size = ReplayFormat.writeVarint(_buffer, _size, _inputs);
+        _size = ReplayFormat.writeLong(
+                _buffer,
+                _size,
+                status == ReplayFormat.EDITED ?
+                        0 :
+                        new FieldSnapshot(_model, null).contentHash()
+        );
+        write(true);
+    }
+
+    /**
+     * Appends record with time since the previous one.
+     *
+     * @param kind Kind of the record.
+     */
+    private void record(final int kind) {
+        final long now = System.nanoTime();
+        final long elapsed = Math.max(0, (now - _time) / NANOS_IN_MILLI);
+        _time += elapsed * NANOS_IN_MILLI;
+
+        ensure(ReplayFormat.MAX_VARINT);
+        _size = ReplayFormat.writeVarint(
+                _buffer,
+                _size,
+                elapsed << ReplayFormat.KIND_BITS | kind
+        );
+    }
+
+    /**
+     * Grows buffer if it has less than <code>size</code> free bytes.
+     *
+     * @param size Required size.
+     */
+    private void ensure(final int size) {
+        if (_buffer.length - _size < size) {
+            _buffer = Arrays.copyOf(
+                    _buffer,
+                    Math.max(2 * _buffer.length, _size + size)
+            );
+        }
+    }
+
+    /**
+     * Passes the buffer to the writer thread.
+     *
+     * @param isEnd Is replay ended?
+     */
+    private void write(final boolean isEnd) {
+        final Path file = _file;
+        final byte[] chunk = Arrays.copyOf(_buffer, _size);
+        _size = 0;
+        if (isEnd) {
+            _file = null;
+        }
+
+        WRITER.execute(() -> {
+            try {
+                Files.write(
+                        file,
+                        chunk,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND
+                );
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Cannot write replay " + file, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.save;
+
+import melihovv.SmartAndStupidRobotGame.concurrent.TimingWheel;
+import melihovv.SmartAndStupidRobotGame.metrics.TimingStats;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>Autosave</code> class periodically saves the game of a
+ * simulation to a file. The simulation thread only captures state of the
+ * game, which takes microseconds. Whether the game is changed is checked,
+ * and the state is encoded and written, by the shared writer thread, so
+ * autosave never stalls play. Timers are scheduled on the shared season
+ * clock.
+ */
+public class Autosave {
+
+    // Default time between autosaves, ms.
+    public static final long DEFAULT_PERIOD = 10_000;
+    // Shared thread which checks changes and writes files.
+    private static final ExecutorService WRITER =
+            Simulation.dedicatedExecutor("Autosave writer");
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            Autosave.class.getName()
+    );
+    // Simulation which game is saved.
+    private final Simulation _simulation;
+    // File of the autosave.
+    private final Path _file;
+    // Is autosave in progress, from the check to the end of writing?
+    private final AtomicBoolean _isPending;
+    // Duration of state capturing by the simulation thread.
+    private final TimingStats _captureStats;
+    // Hash of the saved state, it is used only by the writer thread.
+    private long _savedHash;
+    // Path of the level file of the game, can be null.
+    private volatile String _level;
+    // Timer of the clock, null if autosave is stopped.
+    private TimingWheel.Timeout _timer;
+
+    /**
+     * Constructs autosave. It is started by <code>start()</code>.
+     *
+     * @param simulation Simulation which game is saved.
+     * @param file       File of the autosave.
+     */
+    public Autosave(final Simulation simulation, final Path file) {
+        _simulation = simulation;
+        _file = file;
+        _isPending = new AtomicBoolean();
+        _captureStats = new TimingStats();
+    }
+
+    /**
+     * Starts saving the game periodically.
+     *
+     * @param period Time between autosaves, ms.
+     */
+    public synchronized void start(final long period) {
+        stop();
+        _timer = SeasonsManager.clock().scheduleAtFixedRate(
+                this::autosave,
+                period,
+                period,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Stops saving the game. Autosave which is in progress is finished.
+     */
+    public synchronized void stop() {
+        if (_timer != null) {
+            _timer.cancel();
+            _timer = null;
+        }
+    }
+
+    /**
+     * Sets path of the level file of the game, it is stored in the file.
+     *
+     * @param level Path of the level file, can be null.
+     */
+    public void setLevel(final String level) {
+        _level = level;
+    }
+
+    /**
+     * Returns file of the autosave.
+     *
+     * @return File of the autosave.
+     */
+    public Path file() {
+        return _file;
+    }
+
+    /**
+     * Returns statistics of state capturing by the simulation thread.
+     *
+     * @return Capture duration statistics.
+     */
+    public TimingStats captureStats() {
+        return _captureStats;
+    }
+
+    /**
+     * Saves the game now if it is changed since the latest autosave. Can be
+     * invoked by any thread.
+     */
+    public void autosave() {
+        if (_isPending.compareAndSet(false, true)) {
+            WRITER.execute(this::check);
+        }
+    }
+
+    /**
+     * Captures state if the game is changed. It is invoked by the writer
+     * thread.
+     */
+    private void check() {
+        final FieldSnapshot snapshot = _simulation.snapshot();
+        if (snapshot == null || snapshot.smartRobotX() == 0) {
+            _isPending.set(false);
+            return;
+        }
+
+        final long hash = snapshot.contentHash();
+        if (hash == _savedHash) {
+            _isPending.set(false);
+            return;
+        }
+        _simulation.submit(model -> capture(model, hash));
+    }
+
+    /**
+     * Captures state of the game and passes it to the writer. It is invoked
+     * by the simulation thread.
+     *
+     * @param model Game model.
+     * @param hash  Hash of the state which is checked.
+     */
+    private void capture(final Model model, final long hash) {
+        if (model.smartRobot() == null) {
+            _isPending.set(false);
+            return;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final SavedGame game = SavedGame.capture(
+                    model,
+                    _level,
+                    _simulation.seasonElapsed()
+            );
+            _captureStats.record(System.nanoTime() - start);
+            WRITER.execute(() -> write(game, hash));
+        } catch (RuntimeException e) {
+            // Writer does not run, so the next change must be checked again.
+            log.log(Level.WARNING, "Cannot capture game", e);
+            _isPending.set(false);
+        }
+    }
+
+    /**
+     * Writes the game to the file. It is invoked by the writer thread.
+     *
+     * @param game Saved game.
+     * @param hash Hash of the state which is checked.
+     */
+    private void write(final SavedGame game, final long hash) {
+        try {
+            game.save(_file);
+            _savedHash = hash;
+            log.fine("Game is saved to " + _file);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot save game to " + _file, e);
+        } finally {
+            _isPending.set(false);
+        }
+    }
+}
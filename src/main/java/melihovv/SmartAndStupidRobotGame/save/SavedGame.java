@@ -0,0 +1,546 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.save;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.field.Field;
+import melihovv.SmartAndStupidRobotGame.model.field.FieldObject;
+import melihovv.SmartAndStupidRobotGame.model.field.Mire;
+import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot;
+import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot;
+import melihovv.SmartAndStupidRobotGame.model.field.Wall;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+import melihovv.SmartAndStupidRobotGame.model.seasons.Season;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>SavedGame</code> class defines state of a game in progress which
+ * can be saved to a file and restored after restart: the field, robots, the
+ * number of steps the stupid robot skips, active season and time since its
+ * change, mires which are created by rain and, for deterministic games, the
+ * number of the turn and state of the random generator.
+ *
+ * State is captured by the thread which owns the model, it only copies flags
+ * of the cells, so it takes microseconds. Encoding and writing can be done by
+ * any other thread.
+ *
+ * File is a header with positions followed by one byte of flags per cell,
+ * see <code>FieldSnapshot</code>, and CRC32 of all the previous bytes. File
+ * is replaced atomically, so a crash during saving keeps the previous one.
+ */
+public class SavedGame {
+
+    // Extension of saved games.
+    public static final String EXTENSION = ".save";
+    // Magic number of saved games, "SSRS".
+    private static final int MAGIC = 0x53535253;
+    // Version of the format.
+    private static final int VERSION = 2;
+    // Cell has mire which is created by rain, it is stored only in files.
+    private static final int SPAWNED = 128;
+    // Size of the header without path of the level, bytes.
+    private static final int HEADER = 4 + 1 + 4 * 11 + 8 + 1 + 2;
+    // Size of the fields which are added in version 2, bytes.
+    private static final int DETERMINISM = 4 + 1 + 8 + 8;
+    // Size of the checksum, bytes.
+    private static final int CHECKSUM = 4;
+    // Path of the level file, empty if it is unknown.
+    private final String _level;
+    // Width of the field.
+    private final int _width;
+    // Height of the field.
+    private final int _height;
+    // Flags of the cells in row-major order.
+    private final byte[] _cells;
+    // Time between season changes, ms.
+    private final int _seasonPeriod;
+    // Index of active season.
+    private final int _seasonIndex;
+    // Time since the latest season change, ms.
+    private final long _seasonElapsed;
+    // Position of the smart robot.
+    private final int _smartRobotX;
+    private final int _smartRobotY;
+    // Position of the stupid robot.
+    private final int _stupidRobotX;
+    private final int _stupidRobotY;
+    // Position of the target.
+    private final int _targetX;
+    private final int _targetY;
+    // The number of steps the stupid robot skips.
+    private final int _stepsToSkip;
+    // Is game finished?
+    private final boolean _isGameFinished;
+    // Number of turns between season changes, 0 if seasons are changed by
+    // time.
+    private final int _seasonTurns;
+    // Does the level have a seed?
+    private final boolean _isSeeded;
+    // State of the random generator, 0 if level has no seed.
+    private final long _randomState;
+    // Number of the turn.
+    private final long _turn;
+
+    /**
+     * Constructs saved game.
+     *
+     * @param level          Path of the level file, empty if it is unknown.
+     * @param width          Width of the field.
+     * @param height         Height of the field.
+     * @param cells          Flags of the cells.
+     * @param seasonPeriod   Time between season changes, ms.
+     * @param seasonIndex    Index of active season.
+     * @param seasonElapsed  Time since the latest season change, ms.
+     * @param positions      Columns and rows of the smart robot, the stupid
+     *                       robot and the target.
+     * @param stepsToSkip    The number of steps the stupid robot skips.
+     * @param isGameFinished Is game finished?
+     * @param seasonTurns    Number of turns between season changes, 0 if
+     *                       seasons are changed by time.
+     * @param isSeeded       Does the level have a seed?
+     * @param randomState    State of the random generator.
+     * @param turn           Number of the turn.
+     */
+    private SavedGame(
+            final String level,
+            final int width,
+            final int height,
+            final byte[] cells,
+            final int seasonPeriod,
+            final int seasonIndex,
+            final long seasonElapsed,
+            final int[] positions,
+            final int stepsToSkip,
+            final boolean isGameFinished,
+            final int seasonTurns,
+            final boolean isSeeded,
+            final long randomState,
+            final long turn
+    ) {
+        _level = level;
+        _width = width;
+        _height = height;
+        _cells = cells;
+        _seasonPeriod = seasonPeriod;
+        _seasonIndex = seasonIndex;
+        _seasonElapsed = seasonElapsed;
+        _smartRobotX = positions[0];
+        _smartRobotY = positions[1];
+        _stupidRobotX = positions[2];
+        _stupidRobotY = positions[3];
+        _targetX = positions[4];
+        _targetY = positions[5];
+        _stepsToSkip = stepsToSkip;
+        _isGameFinished = isGameFinished;
+        _seasonTurns = seasonTurns;
+        _isSeeded = isSeeded;
+        _randomState = randomState;
+        _turn = turn;
+    }
+
+    /**
+     * Captures state of the running game. Must be invoked by the thread which
+     * owns the model. Mires outside of the field are not saved, they are
+     * spawned again by the next downfall.
+     *
+     * @param model         Game model.
+     * @param level         Path of the level file, can be null.
+     * @param seasonElapsed Time since the latest season change, ms.
+     * @return Saved game.
+     * @throws IllegalStateException If the game is not started.
+     */
+    public static SavedGame capture(
+            final Model model,
+            final String level,
+            final long seasonElapsed
+    ) throws IllegalStateException {
+        if (model.smartRobot() == null) {
+            throw new IllegalStateException("Game is not started");
+        }
+
+        final FieldSnapshot snapshot = model.snapshot();
+        final int width = snapshot.width();
+        final byte[] cells = new byte[width * snapshot.height()];
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = (byte) snapshot.cell(i);
+        }
+
+        final Season season = snapshot.season();
+        if (season != null) {
+            for (FieldObject obj : model.field().objects(Mire.class)) {
+                final Point pos = ((Mire) obj).pos().pos();
+                if (season.isSpawned(obj) && model.field().contains(pos)) {
+                    cells[(pos.y - 1) * width + pos.x - 1] |= SPAWNED;
+                }
+            }
+        }
+
+        return new SavedGame(
+                level == null ? "" : level,
+                width,
+                snapshot.height(),
+                cells,
+                model.seasonsManager().period(),
+                model.seasonsManager().seasons().indexOf(season),
+                seasonElapsed,
+                new int[]{
+                        snapshot.smartRobotX(),
+                        snapshot.smartRobotY(),
+                        snapshot.stupidRobotX(),
+                        snapshot.stupidRobotY(),
+                        snapshot.targetX(),
+                        snapshot.targetY()
+                },
+                snapshot.stepsToSkip(),
+                snapshot.isGameFinished(),
+                snapshot.seasonTurns(),
+                snapshot.isSeeded(),
+                snapshot.randomState(),
+                snapshot.turn()
+        );
+    }
+
+    /**
+     * Creates new field with walls, mires of the level, target and robots of
+     * the saved game. Mires which are created by rain are added by
+     * <code>restore()</code>.
+     *
+     * @return New field.
+     */
+    public Field createField() {
+        final Field field = new Field(new Dimension(_width, _height));
+        field.setSeasonPeriod(_seasonPeriod);
+        field.setSeasonTurns(_seasonTurns);
+        field.setSeed(_isSeeded ? _randomState : null);
+
+        for (int y = 1; y <= _height; ++y) {
+            for (int x = 1; x <= _width; ++x) {
+                final int flags = _cells[(y - 1) * _width + x - 1];
+                final CellPosition pos = position(x, y);
+
+                // Wall between cells is marked on both, it is added once.
+                if (y == 1 && (flags & FieldSnapshot.WALL_NORTH) != 0) {
+                    addWall(field, Direction.north(), pos);
+                }
+                if (x == 1 && (flags & FieldSnapshot.WALL_WEST) != 0) {
+                    addWall(field, Direction.west(), pos);
+                }
+                if ((flags & FieldSnapshot.WALL_SOUTH) != 0) {
+                    addWall(field, Direction.south(), pos);
+                }
+                if ((flags & FieldSnapshot.WALL_EAST) != 0) {
+                    addWall(field, Direction.east(), pos);
+                }
+
+                if ((flags & FieldSnapshot.MIRE) != 0 &&
+                        (flags & SPAWNED) == 0) {
+                    field.addObject(pos, new Mire(field));
+                }
+            }
+        }
+
+        field.addObject(position(_targetX, _targetY), new Model.Target(field));
+        field.addObject(
+                position(_stupidRobotX, _stupidRobotY),
+                new StupidRobot(field)
+        );
+        field.addObject(
+                position(_smartRobotX, _smartRobotY),
+                new SmartRobot(field)
+        );
+        return field;
+    }
+
+    /**
+     * Restores state of the game which is started on the field of
+     * <code>createField()</code>. Must be invoked by the thread which owns
+     * the model, e.g. as setup command of <code>Simulation.load()</code>.
+     *
+     * @param model Game model.
+     * @throws IllegalArgumentException If the game does not match.
+     */
+    public void restore(final Model model) throws IllegalArgumentException {
+        final List<Season> seasons = model.seasonsManager().seasons();
+        if (_seasonIndex >= seasons.size()) {
+            throw new IllegalArgumentException(
+                    "Game has no season " + _seasonIndex);
+        }
+
+        final byte[] cells = new byte[_cells.length];
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = (byte) (_cells[i] & ~SPAWNED);
+        }
+
+        model.restore(new FieldSnapshot(
+                model.snapshot(),
+                cells,
+                _seasonIndex < 0 ? null : seasons.get(_seasonIndex),
+                _smartRobotX,
+                _smartRobotY,
+                _stupidRobotX,
+                _stupidRobotY,
+                _stepsToSkip,
+                _isGameFinished,
+                _turn,
+                _randomState
+        ));
+    }
+
+    /**
+     * Encodes saved game.
+     *
+     * @return Bytes of the file.
+     */
+    public byte[] toBytes() {
+        final byte[] level = _level.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER + DETERMINISM + level.length + _cells.length + CHECKSUM
+        );
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putInt(_width);
+        buffer.putInt(_height);
+        buffer.putInt(_seasonPeriod);
+        buffer.putInt(_seasonIndex);
+        buffer.putLong(_seasonElapsed);
+        buffer.putInt(_smartRobotX);
+        buffer.putInt(_smartRobotY);
+        buffer.putInt(_stupidRobotX);
+        buffer.putInt(_stupidRobotY);
+        buffer.putInt(_targetX);
+        buffer.putInt(_targetY);
+        buffer.putInt(_stepsToSkip);
+        buffer.put((byte) (_isGameFinished ? 1 : 0));
+        buffer.putInt(_seasonTurns);
+        buffer.put((byte) (_isSeeded ? 1 : 0));
+        buffer.putLong(_randomState);
+        buffer.putLong(_turn);
+        buffer.putShort((short) level.length);
+        buffer.put(level);
+        buffer.put(_cells);
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Decodes saved game.
+     *
+     * @param buffer Bytes of the file.
+     * @return Saved game.
+     * @throws IllegalArgumentException If the bytes are not a saved game or
+     *                                  they are damaged.
+     */
+    public static SavedGame read(final ByteBuffer buffer)
+            throws IllegalArgumentException {
+        try {
+            final int start = buffer.position();
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("It is not a saved game");
+            }
+            final int version = buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException(
+                        "Unsupported version " + version);
+            }
+
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int seasonPeriod = buffer.getInt();
+            final int seasonIndex = buffer.getInt();
+            final long seasonElapsed = buffer.getLong();
+            final int[] positions = new int[6];
+            for (int i = 0; i < positions.length; ++i) {
+                positions[i] = buffer.getInt();
+            }
+            final int stepsToSkip = buffer.getInt();
+            final boolean isGameFinished = buffer.get() != 0;
+            // Games of version 1 are not deterministic.
+            int seasonTurns = 0;
+            boolean isSeeded = false;
+            long randomState = 0;
+            long turn = 0;
+            if (version >= 2) {
+                seasonTurns = buffer.getInt();
+                isSeeded = buffer.get() != 0;
+                randomState = buffer.getLong();
+                turn = buffer.getLong();
+                if (seasonTurns < 0 || turn < 0) {
+                    throw new IllegalArgumentException("Turns are invalid");
+                }
+            }
+
+            final byte[] level = new byte[buffer.getShort() & 0xffff];
+            buffer.get(level);
+            if (width <= 0 ||
+                    height <= 0 ||
+                    (long) width * height > buffer.remaining()) {
+                throw new IllegalArgumentException("Field size is invalid");
+            }
+            final byte[] cells = new byte[width * height];
+            buffer.get(cells);
+
+            final byte[] content = new byte[buffer.position() - start];
+            final ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(start);
+            duplicate.get(content);
+            final CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                throw new IllegalArgumentException("Saved game is damaged");
+            }
+
+            return new SavedGame(
+                    new String(level, StandardCharsets.UTF_8),
+                    width,
+                    height,
+                    cells,
+                    seasonPeriod,
+                    seasonIndex,
+                    seasonElapsed,
+                    positions,
+                    stepsToSkip,
+                    isGameFinished,
+                    seasonTurns,
+                    isSeeded,
+                    randomState,
+                    turn
+            );
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Saved game is truncated");
+        }
+    }
+
+    /**
+     * Reads saved game from the file.
+     *
+     * @param file Path of the file.
+     * @return Saved game.
+     * @throws IOException              If it is impossible to read file.
+     * @throws IllegalArgumentException If the file is not a saved game or it
+     *                                  is damaged.
+     */
+    public static SavedGame load(final Path file)
+            throws IOException, IllegalArgumentException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Writes saved game to the file. Bytes are written to a temporary file
+     * which then replaces the file.
+     *
+     * @param file Path of the file.
+     * @throws IOException If it is impossible to write file.
+     */
+    public void save(final Path file) throws IOException {
+        final Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        final Path temp = Files.createTempFile(
+                dir,
+                file.getFileName().toString(),
+                ".tmp"
+        );
+        try {
+            Files.write(temp, toBytes());
+            Files.move(
+                    temp,
+                    file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+            );
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds wall to the field.
+     *
+     * @param field Game field.
+     * @param dir   Side of the cell.
+     * @param pos   Position of the cell.
+     */
+    private static void addWall(
+            final Field field,
+            final Direction dir,
+            final CellPosition pos
+    ) {
+        field.addObject(new MiddlePosition(dir, pos), new Wall(field));
+    }
+
+    /**
+     * Returns position of the cell.
+     *
+     * @param x Column of the cell.
+     * @param y Row of the cell.
+     * @return Position of the cell.
+     */
+    private static CellPosition position(final int x, final int y) {
+        return new CellPosition(new Point(x, y));
+    }
+
+    /**
+     * Returns path of the level file.
+     *
+     * @return Path of the level file, empty if it is unknown.
+     */
+    public String level() {
+        return _level;
+    }
+
+    /**
+     * Returns time since the latest season change.
+     *
+     * @return Time since the latest season change, ms.
+     */
+    public long seasonElapsed() {
+        return _seasonElapsed;
+    }
+
+    /**
+     * Returns true if game is finished, otherwise - false.
+     *
+     * @return Is game finished?
+     */
+    public boolean isGameFinished() {
+        return _isGameFinished;
+    }
+}
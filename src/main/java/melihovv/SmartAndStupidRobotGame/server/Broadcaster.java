@@ -0,0 +1,329 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.server;
+
+import melihovv.SmartAndStupidRobotGame.events.EventBus;
+import melihovv.SmartAndStupidRobotGame.events.EventBus.Subscriber;
+import melihovv.SmartAndStupidRobotGame.host.HostedGame;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Model.ModelEvent;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.Simulation.SimulationEvent;
+import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot;
+import melihovv.SmartAndStupidRobotGame.model.field.SmartRobot.SmartRobotActionEvent;
+import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot;
+import melihovv.SmartAndStupidRobotGame.model.field.StupidRobot.StupidRobotActionEvent;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager.SeasonsEvent;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * The <code>Broadcaster</code> class encodes events of each tick of the game
+ * once for all the spectators. Events of the moves, the seasons and the game
+ * over are collected by synchronous subscribers of the event bus of the game,
+ * and when the tick ends they are written to a read-only buffer together with
+ * the cells changed in the tick. Spectators write duplicates of the buffer,
+ * so the tick is never encoded per connection.
+ *
+ * The first frame after attaching is full state, because events of the tick
+ * in which the broadcaster is attached can be missed.
+ */
+class Broadcaster implements Simulation.SimulationListener {
+
+    // Initial size of the buffer of events.
+    private static final int BUFFER = 256;
+    // The game.
+    private final HostedGame _game;
+    // Receives encoded frames, it is invoked by the thread of the game.
+    private final Consumer<Frame> _sink;
+    // Events of the current tick, it is used only by the thread of the game.
+    private ByteBuffer _events;
+    // Number of events of the current tick.
+    private int _count;
+    // Snapshot of the previous frame.
+    private FieldSnapshot _previous;
+    // Subscribers of the event bus.
+    private final Subscriber<SmartRobotActionEvent> _smartRobotMoved;
+    private final Subscriber<StupidRobotActionEvent> _stupidRobotMoved;
+    private final Subscriber<StupidRobotActionEvent> _smartRobotCaught;
+    private final Subscriber<SeasonsEvent> _seasonChanged;
+    private final Subscriber<ModelEvent> _gameOver;
+
+    /**
+     * Constructs broadcaster.
+     *
+     * @param game The game.
+     * @param sink Receives encoded frames, it is invoked by the thread of the
+     *             game.
+     */
+    Broadcaster(final HostedGame game, final Consumer<Frame> sink) {
+        _game = game;
+        _sink = sink;
+        _events = ByteBuffer.allocate(BUFFER);
+        _smartRobotMoved = e -> move(
+                Protocol.SMART_ROBOT_MOVED,
+                e.from(),
+                e.to()
+        );
+        _stupidRobotMoved = e -> move(
+                Protocol.STUPID_ROBOT_MOVED,
+                e.from(),
+                e.to()
+        );
+        _smartRobotCaught = e -> move(
+                Protocol.SMART_ROBOT_CAUGHT,
+                e.from(),
+                e.to()
+        );
+        _seasonChanged = e -> text(Protocol.SEASON_CHANGED, e.name());
+        _gameOver = e -> text(Protocol.GAME_OVER, e.message());
+    }
+
+    /**
+     * Starts collecting events of the game. Subscribers are added by the
+     * thread of the game, so the first frame is sent when the command is
+     * executed.
+     */
+    void attach() {
+        _game.simulation().submit(model -> {
+            final EventBus bus = model.eventBus();
+            bus.subscribe(SmartRobot.MOVED, _smartRobotMoved);
+            bus.subscribe(StupidRobot.MOVED, _stupidRobotMoved);
+            bus.subscribe(StupidRobot.CAUGHT, _smartRobotCaught);
+            bus.subscribe(SeasonsManager.CHANGED, _seasonChanged);
+            bus.subscribe(Model.GAME_OVER, _gameOver);
+            _game.simulation().addListener(this);
+        });
+    }
+
+    /**
+     * Stops collecting events of the game.
+     */
+    void detach() {
+        _game.simulation().submit(model -> {
+            _game.simulation().removeListener(this);
+            final EventBus bus = model.eventBus();
+            bus.unsubscribe(SmartRobot.MOVED, _smartRobotMoved);
+            bus.unsubscribe(StupidRobot.MOVED, _stupidRobotMoved);
+            bus.unsubscribe(StupidRobot.CAUGHT, _smartRobotCaught);
+            bus.unsubscribe(SeasonsManager.CHANGED, _seasonChanged);
+            bus.unsubscribe(Model.GAME_OVER, _gameOver);
+        });
+    }
+
+    /**
+     * Encodes full state of the snapshot into read-only buffer.
+     *
+     * @param snapshot Snapshot.
+     * @return Read-only buffer with the frame.
+     */
+    static ByteBuffer full(final FieldSnapshot snapshot) {
+        final ByteBuffer out = ByteBuffer.allocateDirect(
+                Protocol.maxUpdateSize(snapshot)
+        );
+        Protocol.writeFull(out, snapshot);
+        out.flip();
+        return out.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void gameIsStarted(final SimulationEvent e) {
+        // Field is replaced, so spectators need full state.
+        _previous = null;
+    }
+
+    @Override
+    public void snapshotIsPublished(final SimulationEvent e) {
+        final FieldSnapshot snapshot = e.snapshot();
+        if (_previous == null ||
+                _previous.width() != snapshot.width() ||
+                _previous.height() != snapshot.height()) {
+            _sink.accept(new Frame(snapshot, full(snapshot), true));
+        } else {
+            _sink.accept(new Frame(snapshot, events(snapshot), false));
+        }
+
+        _previous = snapshot;
+        _events.clear();
+        _count = 0;
+    }
+
+    /**
+     * Encodes events of the tick and cells changed since the previous frame.
+     *
+     * @param snapshot Snapshot at the end of the tick.
+     * @return Read-only buffer with the frame.
+     */
+    private ByteBuffer events(final FieldSnapshot snapshot) {
+        final int cells = snapshot.width() * snapshot.height();
+        final boolean isChanged = !snapshot.hasSameCells(_previous);
+
+        final ByteBuffer out = ByteBuffer.allocateDirect(
+                Protocol.HEADER + 8 + 8 + 4 + _events.position() + 4 +
+                        (isChanged ? 5 * cells : 0) + 2
+        );
+        out.putInt(0);
+        out.put(Protocol.EVENTS);
+        out.putLong(snapshot.number());
+        out.putLong(_previous.number());
+        out.putInt(_count);
+        _events.flip();
+        out.put(_events);
+
+        final int countPosition = out.position();
+        out.putInt(0);
+        int count = 0;
+        if (isChanged) {
+            for (int i = 0; i < cells; ++i) {
+                if (snapshot.cell(i) != _previous.cell(i)) {
+                    out.putInt(i);
+                    out.put((byte) snapshot.cell(i));
+                    ++count;
+                }
+            }
+        }
+        out.putInt(countPosition, count);
+
+        out.put((byte) snapshot.stepsToSkip());
+        out.put((byte) (snapshot.isGameFinished() ? 1 : 0));
+        Protocol.end(out, 0);
+        out.flip();
+        return out.asReadOnlyBuffer();
+    }
+
+    /**
+     * Adds move event.
+     *
+     * @param type Type of the event.
+     * @param from Position before movement.
+     * @param to   Position after movement.
+     */
+    private void move(
+            final byte type,
+            final CellPosition from,
+            final CellPosition to
+    ) {
+        ensure(1 + 4 * 4);
+        _events.put(type);
+        _events.putInt(from.pos().x);
+        _events.putInt(from.pos().y);
+        _events.putInt(to.pos().x);
+        _events.putInt(to.pos().y);
+        ++_count;
+    }
+
+    /**
+     * Adds event with text.
+     *
+     * @param type Type of the event.
+     * @param text Text of the event.
+     */
+    private void text(final byte type, final String text) {
+        ensure(1 + 1 + 4 * text.length());
+        _events.put(type);
+        Protocol.writeString(_events, text == null ? "" : text);
+        ++_count;
+    }
+
+    /**
+     * Grows buffer of events if it has less than <code>size</code> bytes
+     * remaining.
+     *
+     * @param size Required size.
+     */
+    private void ensure(final int size) {
+        if (_events.remaining() >= size) {
+            return;
+        }
+
+        final ByteBuffer events = ByteBuffer.allocate(
+                Math.max(2 * _events.capacity(), _events.position() + size)
+        );
+        _events.flip();
+        events.put(_events);
+        _events = events;
+    }
+
+    /**
+     * Encoded frame of a tick.
+     */
+    static class Frame {
+
+        // Snapshot at the end of the tick.
+        private final FieldSnapshot _snapshot;
+        // Read-only buffer with the frame, spectators write its duplicates.
+        private final ByteBuffer _buffer;
+        // Is it full state?
+        private final boolean _isFull;
+
+        /**
+         * Constructs frame.
+         *
+         * @param snapshot Snapshot at the end of the tick.
+         * @param buffer   Read-only buffer with the frame.
+         * @param isFull   Is it full state?
+         */
+        Frame(
+                final FieldSnapshot snapshot,
+                final ByteBuffer buffer,
+                final boolean isFull
+        ) {
+            _snapshot = snapshot;
+            _buffer = buffer;
+            _isFull = isFull;
+        }
+
+        /**
+         * Returns snapshot at the end of the tick.
+         *
+         * @return Snapshot.
+         */
+        FieldSnapshot snapshot() {
+            return _snapshot;
+        }
+
+        /**
+         * Returns read-only buffer with the frame.
+         *
+         * @return Buffer with the frame.
+         */
+        ByteBuffer buffer() {
+            return _buffer;
+        }
+
+        /**
+         * Returns true if frame is full state, otherwise - false.
+         *
+         * @return Is it full state?
+         */
+        boolean isFull() {
+            return _isFull;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.server;
+
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>GameClient</code> class defines blocking client of the game
+ * server. It applies updates to its copy of the game state and acknowledges
+ * them. States of the recent updates are kept, because delta is based on the
+ * update which server knows is received, not on the latest one.
+ *
+ * Spectator does not acknowledge updates, it applies events of each tick to
+ * its state instead.
+ */
+public class GameClient implements Closeable {
+
+    // Number of kept states of the recent updates.
+    private static final int HISTORY = 64;
+    // Channel.
+    private final SocketChannel _channel;
+    // Read buffer.
+    private ByteBuffer _in;
+    // Write buffer.
+    private final ByteBuffer _out;
+    // Identifier of the joined game.
+    private long _gameId;
+    // Tick of the latest update.
+    private long _tick;
+    // Width of the field.
+    private int _width;
+    // Height of the field.
+    private int _height;
+    // Flags of the cells of the latest update.
+    private byte[] _cells;
+    // Flags of the cells of the recent updates by ticks.
+    private final Map<Long, byte[]> _history;
+    // Positions of the robots and the target: smart x, y, stupid x, y,
+    // target x, y.
+    private final int[] _positions;
+    // The number of steps the stupid robot skips.
+    private int _stepsToSkip;
+    // Is game finished?
+    private boolean _isGameFinished;
+    // Name of the active season.
+    private String _season;
+    // Number of received bytes.
+    private long _received;
+    // Is it a spectator?
+    private boolean _isSpectator;
+    // Message of the game over, null if game is not over.
+    private String _gameOver;
+
+    /**
+     * Connects to the game server.
+     *
+     * @param address Address of the server.
+     * @throws IOException If it is impossible to connect.
+     */
+    public GameClient(final InetSocketAddress address) throws IOException {
+        _channel = SocketChannel.open(address);
+        _channel.socket().setTcpNoDelay(true);
+        _in = ByteBuffer.allocate(4096);
+        _in.flip();
+        _out = ByteBuffer.allocate(64);
+        _history = new LinkedHashMap<Long, byte[]>() {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Long, byte[]> eldest
+            ) {
+                return size() > HISTORY;
+            }
+        };
+        _positions = new int[6];
+    }
+
+    /**
+     * Joins the game and receives its full state.
+     *
+     * @param gameId Identifier of the game or <code>NEW_GAME</code>.
+     * @return Identifier of the joined game.
+     * @throws IOException If connection has failed or server has refused.
+     */
+    public long join(final long gameId) throws IOException {
+        _out.clear();
+        Protocol.writeLong(_out, Protocol.JOIN, gameId);
+        send();
+
+        while (update() != Protocol.FULL) {
+            // Updates of the previous game are skipped.
+        }
+        return _gameId;
+    }
+
+    /**
+     * Watches the game as spectator and receives its full state.
+     *
+     * @param gameId Identifier of the game.
+     * @return Identifier of the watched game.
+     * @throws IOException If connection has failed or server has refused.
+     */
+    public long watch(final long gameId) throws IOException {
+        _isSpectator = true;
+        _out.clear();
+        Protocol.writeLong(_out, Protocol.WATCH, gameId);
+        send();
+
+        byte type;
+        do {
+            type = update();
+        } while (type != Protocol.WELCOME);
+        while (update() != Protocol.FULL) {
+            // Events of the previous game are skipped.
+        }
+        return _gameId;
+    }
+
+    /**
+     * Moves the smart robot.
+     *
+     * @param dir Direction of the move.
+     * @throws IOException If connection has failed.
+     */
+    public void move(final Direction dir) throws IOException {
+        _out.clear();
+        Protocol.writeMove(_out, dir);
+        send();
+    }
+
+    /**
+     * Receives next message, applies update and acknowledges it.
+     *
+     * @return Type of the message.
+     * @throws IOException If connection has failed or server has sent error.
+     */
+    public byte update() throws IOException {
+        final ByteBuffer frame = frame();
+        final byte type = frame.get();
+        switch (type) {
+            case Protocol.WELCOME:
+                _gameId = frame.getLong();
+                _history.clear();
+                _gameOver = null;
+                break;
+            case Protocol.FULL:
+                readFull(frame);
+                break;
+            case Protocol.DELTA:
+                readDelta(frame);
+                break;
+            case Protocol.EVENTS:
+                readEvents(frame);
+                break;
+            case Protocol.ERROR:
+                final byte[] bytes = new byte[frame.remaining()];
+                frame.get(bytes);
+                throw new IOException(new String(
+                        bytes,
+                        StandardCharsets.UTF_8
+                ));
+            default:
+                throw new IOException("Unknown message " + type);
+        }
+        return type;
+    }
+
+    /**
+     * Reads full state.
+     *
+     * @param frame Payload of the message.
+     * @throws IOException If connection has failed.
+     */
+    private void readFull(final ByteBuffer frame) throws IOException {
+        _tick = frame.getLong();
+        _width = frame.getInt();
+        _height = frame.getInt();
+        _cells = new byte[_width * _height];
+        frame.get(_cells);
+        readState(frame);
+        acknowledge();
+    }
+
+    /**
+     * Reads delta and applies it to the state of its base.
+     *
+     * @param frame Payload of the message.
+     * @throws IOException If connection has failed or base is unknown.
+     */
+    private void readDelta(final ByteBuffer frame) throws IOException {
+        final long tick = frame.getLong();
+        final byte[] base = _history.get(frame.getLong());
+        if (base == null) {
+            throw new IOException("Base of delta is unknown");
+        }
+
+        final int count = frame.getInt();
+        final byte[] cells = count == 0 ? base : base.clone();
+        for (int i = 0; i < count; ++i) {
+            final int index = frame.getInt();
+            cells[index] = frame.get();
+        }
+
+        _tick = tick;
+        _cells = cells;
+        readState(frame);
+        acknowledge();
+    }
+
+    /**
+     * Reads events of a tick and applies them to the state.
+     *
+     * @param frame Payload of the message.
+     * @throws IOException If events do not follow the state.
+     */
+    private void readEvents(final ByteBuffer frame) throws IOException {
+        final long tick = frame.getLong();
+        if (frame.getLong() != _tick) {
+            throw new IOException("Events do not follow tick " + _tick);
+        }
+
+        final int events = frame.getInt();
+        for (int i = 0; i < events; ++i) {
+            final byte type = frame.get();
+            switch (type) {
+                case Protocol.SMART_ROBOT_MOVED:
+                    frame.position(frame.position() + 8);
+                    _positions[0] = frame.getInt();
+                    _positions[1] = frame.getInt();
+                    break;
+                case Protocol.STUPID_ROBOT_MOVED:
+                case Protocol.SMART_ROBOT_CAUGHT:
+                    frame.position(frame.position() + 8);
+                    _positions[2] = frame.getInt();
+                    _positions[3] = frame.getInt();
+                    break;
+                case Protocol.SEASON_CHANGED:
+                    _season = Protocol.readString(frame);
+                    break;
+                case Protocol.GAME_OVER:
+                    _gameOver = Protocol.readString(frame);
+                    break;
+                default:
+                    throw new IOException("Unknown event " + type);
+            }
+        }
+
+        final int count = frame.getInt();
+        for (int i = 0; i < count; ++i) {
+            final int index = frame.getInt();
+            _cells[index] = frame.get();
+        }
+
+        _tick = tick;
+        _stepsToSkip = frame.get();
+        _isGameFinished = frame.get() != 0;
+    }
+
+    /**
+     * Reads state which does not belong to cells.
+     *
+     * @param frame Payload of the message.
+     */
+    private void readState(final ByteBuffer frame) {
+        for (int i = 0; i < _positions.length; ++i) {
+            _positions[i] = frame.getInt();
+        }
+        _stepsToSkip = frame.get();
+        _isGameFinished = frame.get() != 0;
+        final byte[] name = new byte[frame.get()];
+        frame.get(name);
+        _season = new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remembers state of the update and acknowledges it.
+     *
+     * @throws IOException If connection has failed.
+     */
+    private void acknowledge() throws IOException {
+        if (_isSpectator) {
+            return;
+        }
+
+        _history.put(_tick, _cells);
+        _out.clear();
+        Protocol.writeLong(_out, Protocol.ACK, _tick);
+        send();
+    }
+
+    /**
+     * Reads next frame.
+     *
+     * @return Frame without length, positioned on the type.
+     * @throws IOException If connection has failed.
+     */
+    private ByteBuffer frame() throws IOException {
+        fill(4);
+        final int length = _in.getInt();
+        if (length <= 0 || length > Protocol.MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        if (_in.capacity() < length) {
+            final ByteBuffer in = ByteBuffer.allocate(length);
+            in.put(_in);
+            in.flip();
+            _in = in;
+        }
+        fill(length);
+
+        final ByteBuffer frame = _in.slice();
+        frame.limit(length);
+        _in.position(_in.position() + length);
+        return frame;
+    }
+
+    /**
+     * Reads from channel until read buffer has <code>count</code> bytes.
+     *
+     * @param count Number of bytes.
+     * @throws IOException If connection has failed.
+     */
+    private void fill(final int count) throws IOException {
+        if (_in.remaining() >= count) {
+            return;
+        }
+
+        _in.compact();
+        while (_in.position() < count) {
+            final int read = _channel.read(_in);
+            if (read < 0) {
+                throw new IOException("Connection is closed by server");
+            }
+            _received += read;
+        }
+        _in.flip();
+    }
+
+    /**
+     * Writes the write buffer.
+     *
+     * @throws IOException If connection has failed.
+     */
+    private void send() throws IOException {
+        _out.flip();
+        while (_out.hasRemaining()) {
+            _channel.write(_out);
+        }
+    }
+
+    /**
+     * Returns identifier of the joined game.
+     *
+     * @return Identifier of the game.
+     */
+    public long gameId() {
+        return _gameId;
+    }
+
+    /**
+     * Returns tick of the latest update.
+     *
+     * @return Tick of the update.
+     */
+    public long tick() {
+        return _tick;
+    }
+
+    /**
+     * Returns width of the field.
+     *
+     * @return Width of the field.
+     */
+    public int width() {
+        return _width;
+    }
+
+    /**
+     * Returns height of the field.
+     *
+     * @return Height of the field.
+     */
+    public int height() {
+        return _height;
+    }
+
+    /**
+     * Returns flags of the cell, see <code>FieldSnapshot</code>.
+     *
+     * @param x Column of the cell, from 1.
+     * @param y Row of the cell, from 1.
+     * @return Flags of the cell.
+     */
+    public int cell(final int x, final int y) {
+        return _cells[(y - 1) * _width + x - 1];
+    }
+
+    /**
+     * Returns column of the smart robot.
+     *
+     * @return Column of the smart robot, 0 if there is no robot.
+     */
+    public int smartRobotX() {
+        return _positions[0];
+    }
+
+    /**
+     * Returns row of the smart robot.
+     *
+     * @return Row of the smart robot, 0 if there is no robot.
+     */
+    public int smartRobotY() {
+        return _positions[1];
+    }
+
+    /**
+     * Returns column of the stupid robot.
+     *
+     * @return Column of the stupid robot, 0 if there is no robot.
+     */
+    public int stupidRobotX() {
+        return _positions[2];
+    }
+
+    /**
+     * Returns row of the stupid robot.
+     *
+     * @return Row of the stupid robot, 0 if there is no robot.
+     */
+    public int stupidRobotY() {
+        return _positions[3];
+    }
+
+    /**
+     * Returns column of the target.
+     *
+     * @return Column of the target, 0 if there is no target.
+     */
+    public int targetX() {
+        return _positions[4];
+    }
+
+    /**
+     * Returns row of the target.
+     *
+     * @return Row of the target, 0 if there is no target.
+     */
+    public int targetY() {
+        return _positions[5];
+    }
+
+    /**
+     * Returns the number of steps the stupid robot skips.
+     *
+     * @return The number of steps to skip.
+     */
+    public int stepsToSkip() {
+        return _stepsToSkip;
+    }
+
+    /**
+     * Returns true if game is finished, otherwise - false.
+     *
+     * @return Is game finished?
+     */
+    public boolean isGameFinished() {
+        return _isGameFinished;
+    }
+
+    /**
+     * Returns name of the active season.
+     *
+     * @return Name of the season, empty if there is no season.
+     */
+    public String season() {
+        return _season;
+    }
+
+    /**
+     * Returns message of the game over which spectator has received.
+     *
+     * @return Message or null if game is not over.
+     */
+    public String gameOver() {
+        return _gameOver;
+    }
+
+    /**
+     * Returns number of received bytes.
+     *
+     * @return Number of received bytes.
+     */
+    public long received() {
+        return _received;
+    }
+
+    /**
+     * Closes connection.
+     *
+     * @throws IOException If it is impossible to close connection.
+     */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+}
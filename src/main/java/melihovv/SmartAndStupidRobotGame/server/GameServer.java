@@ -0,0 +1,894 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.server;
+
+import melihovv.SmartAndStupidRobotGame.concurrent.MpscQueue;
+import melihovv.SmartAndStupidRobotGame.host.GameHost;
+import melihovv.SmartAndStupidRobotGame.host.HostedGame;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.Simulation.SimulationEvent;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>GameServer</code> class exposes games of the game host over TCP.
+ * All the connections are served by one thread with a non-blocking selector
+ * loop.
+ *
+ * Simulations of the games notify the loop when they publish snapshot, the
+ * loop then sends update to each client of the game. Update contains only
+ * cells which are changed since the last update acknowledged by the client,
+ * so updates can be skipped while a slow client is still receiving the
+ * previous one, without resending anything.
+ *
+ * Spectators of a game share the frames of its broadcaster: each tick is
+ * encoded once into a read-only buffer and each spectator writes its own
+ * duplicate. Spectator which falls behind loses its queued frames and
+ * receives full state instead.
+ */
+public class GameServer implements Runnable {
+
+    // Size of the read buffer of a connection.
+    private static final int READ_BUFFER = 256;
+    // Maximal number of updates which are sent but not acknowledged.
+    private static final int MAX_UNACKED = 32;
+    // Maximal number of frames queued for a spectator.
+    private static final int MAX_FRAMES = 64;
+    // Empty array of buffers.
+    private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+    // Host of the games.
+    private final GameHost _host;
+    // Level of new games.
+    private final Situation _level;
+    // Selector.
+    private final Selector _selector;
+    // Listening channel.
+    private final ServerSocketChannel _server;
+    // Served games by identifiers, it is used only by the loop thread.
+    private final Map<Long, ServedGame> _games;
+    // Games which have published new snapshot.
+    private final MpscQueue<ServedGame> _changed;
+    // Is the selector woken up and not yet selected again?
+    private final AtomicBoolean _isWokenUp;
+    // Thread of the loop.
+    private final Thread _thread;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            GameServer.class.getName()
+    );
+
+    /**
+     * Constructs game server which listens on the address.
+     *
+     * @param host    Host of the games.
+     * @param level   Level of new games.
+     * @param address Address to listen, port 0 for any free port.
+     * @throws IOException If it is impossible to listen.
+     */
+    public GameServer(
+            final GameHost host,
+            final Situation level,
+            final InetSocketAddress address
+    ) throws IOException {
+        _host = host;
+        _level = level;
+        _games = new HashMap<>();
+        _changed = new MpscQueue<>();
+        _isWokenUp = new AtomicBoolean();
+        _selector = Selector.open();
+        _server = ServerSocketChannel.open();
+        try {
+            _server.bind(address, 1024);
+            _server.configureBlocking(false);
+            _server.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            _server.close();
+            _selector.close();
+            throw e;
+        }
+        _thread = new Thread(this, "Game server");
+    }
+
+    /**
+     * Starts game server on localhost.
+     *
+     * @param args Port, path of the situation file of new games and
+     *             optional directory into which games are recorded.
+     * @throws IOException If it is impossible to read level or listen.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println(
+                    "Usage: GameServer <port> <situation file> [replays]");
+            System.exit(1);
+        }
+
+        final GameHost host = new GameHost(10_000, 1L << 30);
+        if (args.length == 3) {
+            host.setReplayDirectory(
+                    Files.createDirectories(Paths.get(args[2]))
+            );
+        }
+        final GameServer server = new GameServer(
+                host,
+                Situation.load(args[1]),
+                new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(args[0])
+                )
+        );
+        log.info("Listening on port " + server.port());
+        server.run();
+    }
+
+    /**
+     * Starts the loop thread.
+     */
+    public void start() {
+        _thread.start();
+    }
+
+    /**
+     * Stops the loop and closes all the connections.
+     */
+    public void stop() {
+        try {
+            _selector.close();
+        } catch (IOException e) {
+            log.warning("Cannot close selector");
+        }
+    }
+
+    /**
+     * Returns port on which the server listens.
+     *
+     * @return Port.
+     */
+    public int port() {
+        return _server.socket().getLocalPort();
+    }
+
+    /**
+     * Serves connections until the server is stopped.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                _selector.select();
+                _isWokenUp.set(false);
+
+                final Iterator<SelectionKey> keys =
+                        _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(key);
+                    } catch (IOException | RuntimeException e) {
+                        log.log(Level.FINE, "Connection is closed", e);
+                        close(key);
+                    }
+                }
+
+                ServedGame game;
+                while ((game = _changed.poll()) != null) {
+                    game._isChanged.set(false);
+                    update(game);
+                    broadcast(game);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            log.fine("Server is stopped");
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Server has failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Handles ready operations of the key.
+     *
+     * @param key Selection key.
+     * @throws IOException If connection has failed.
+     */
+    private void handle(final SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        final Connection connection = (Connection) key.attachment();
+        if (key.isReadable()) {
+            read(connection);
+        }
+        if (key.isValid() && key.isWritable()) {
+            if (connection._isSpectator) {
+                writeFrames(connection);
+            } else {
+                write(connection);
+            }
+        }
+    }
+
+    /**
+     * Accepts new connection.
+     *
+     * @throws IOException If it is impossible to accept.
+     */
+    private void accept() throws IOException {
+        final SocketChannel channel = _server.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        final Connection connection = new Connection(channel);
+        connection._key = channel.register(
+                _selector,
+                SelectionKey.OP_READ,
+                connection
+        );
+    }
+
+    /**
+     * Reads and handles messages of the connection.
+     *
+     * @param connection Connection.
+     * @throws IOException If connection has failed or message is invalid.
+     */
+    private void read(final Connection connection) throws IOException {
+        final ByteBuffer in = connection._in;
+        if (connection._channel.read(in) < 0) {
+            throw new IOException("Connection is closed by client");
+        }
+
+        in.flip();
+        while (in.remaining() >= 4) {
+            final int length = in.getInt(in.position());
+            if (length <= 0 || length > in.capacity() - 4) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+
+            in.getInt();
+            final int end = in.position() + length;
+            handle(connection, in.get(), in);
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    /**
+     * Handles message of the client.
+     *
+     * @param connection Connection.
+     * @param type       Type of the message.
+     * @param in         Payload of the message.
+     * @throws IOException If message is invalid.
+     */
+    private void handle(
+            final Connection connection,
+            final byte type,
+            final ByteBuffer in
+    ) throws IOException {
+        if (connection._isSpectator && type != Protocol.WATCH) {
+            throw new IOException("Spectator cannot send message " + type);
+        }
+
+        switch (type) {
+            case Protocol.JOIN:
+                join(connection, in.getLong());
+                break;
+            case Protocol.WATCH:
+                watch(connection, in.getLong());
+                break;
+            case Protocol.MOVE:
+                if (connection._game != null) {
+                    connection._game._game.move(Protocol.direction(in.get()));
+                }
+                break;
+            case Protocol.ACK:
+                acknowledge(connection, in.getLong());
+                break;
+            default:
+                throw new IOException("Unknown message " + type);
+        }
+    }
+
+    /**
+     * Joins connection to the game. New game is opened if identifier is
+     * <code>NEW_GAME</code>.
+     *
+     * @param connection Connection.
+     * @param id         Identifier of the game.
+     * @throws IOException If connection has failed.
+     */
+    private void join(final Connection connection, final long id)
+            throws IOException {
+        leave(connection);
+
+        ServedGame game = _games.get(id);
+        if (game == null && id == Protocol.NEW_GAME) {
+            try {
+                game = open();
+            } catch (RejectedExecutionException e) {
+                error(connection, e.getMessage());
+                return;
+            }
+        }
+        if (game == null) {
+            error(connection, "There is no game " + id);
+            return;
+        }
+
+        connection._game = game;
+        connection._base = null;
+        connection._unacked.clear();
+        game._connections.add(connection);
+
+        final ByteBuffer out = connection.buffer(9 + Protocol.HEADER);
+        Protocol.writeLong(out, Protocol.WELCOME, game._game.id());
+        flush(connection);
+        send(connection);
+    }
+
+    /**
+     * Adds connection to spectators of the game. Spectator receives full
+     * state of the last broadcast frame, or the first frame if the game is
+     * not broadcast yet.
+     *
+     * @param connection Connection.
+     * @param id         Identifier of the game.
+     * @throws IOException If connection has failed or it is a player.
+     */
+    private void watch(final Connection connection, final long id)
+            throws IOException {
+        if (!connection._isSpectator && connection._game != null) {
+            throw new IOException("Player cannot watch game");
+        }
+        connection._isSpectator = true;
+        leave(connection);
+
+        final ServedGame game = _games.get(id);
+        if (game == null) {
+            error(connection, "There is no game " + id);
+            return;
+        }
+
+        connection._game = game;
+        game._spectators.add(connection);
+        if (game._broadcaster == null) {
+            game._broadcaster = new Broadcaster(game._game, game::frame);
+            game._broadcaster.attach();
+        }
+
+        final ByteBuffer welcome = ByteBuffer.allocate(9 + Protocol.HEADER);
+        Protocol.writeLong(welcome, Protocol.WELCOME, game._game.id());
+        welcome.flip();
+        connection._frames.addLast(welcome);
+        if (game._lastFrame == null) {
+            connection._needsFull = true;
+        } else {
+            connection._needsFull = false;
+            connection._frames.addLast(game.full().duplicate());
+        }
+        writeFrames(connection);
+    }
+
+    /**
+     * Sends update of the game to its clients. Failed connection is closed,
+     * so a client which drops does not affect others.
+     *
+     * @param game Served game.
+     */
+    private void update(final ServedGame game) {
+        // Closed connection leaves the list, so it is iterated backwards.
+        for (int i = game._connections.size() - 1; i >= 0; --i) {
+            final Connection connection = game._connections.get(i);
+            try {
+                send(connection);
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.FINE, "Connection is closed", e);
+                close(connection._key);
+            }
+        }
+    }
+
+    /**
+     * Sends frames of the broadcaster of the game to its spectators. Failed
+     * connection is closed, so a spectator which drops does not affect
+     * others.
+     *
+     * @param game Served game.
+     */
+    private void broadcast(final ServedGame game) {
+        Broadcaster.Frame frame;
+        while ((frame = game._frames.poll()) != null) {
+            game._lastFrame = frame;
+            for (Connection connection : game._spectators) {
+                enqueue(game, connection, frame);
+            }
+        }
+        // Closed connection leaves the list, so it is iterated backwards.
+        for (int i = game._spectators.size() - 1; i >= 0; --i) {
+            final Connection connection = game._spectators.get(i);
+            if (!connection._key.isValid() || connection._frames.isEmpty()) {
+                continue;
+            }
+            try {
+                writeFrames(connection);
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.FINE, "Connection is closed", e);
+                close(connection._key);
+            }
+        }
+    }
+
+    /**
+     * Queues duplicate of the frame for the spectator. If too many frames
+     * are queued, they are dropped and the spectator receives full state.
+     *
+     * @param game       Served game.
+     * @param connection Connection of the spectator.
+     * @param frame      Frame.
+     */
+    private void enqueue(
+            final ServedGame game,
+            final Connection connection,
+            final Broadcaster.Frame frame
+    ) {
+        final ArrayDeque<ByteBuffer> frames = connection._frames;
+        if (frames.size() >= MAX_FRAMES) {
+            drop(connection);
+            connection._needsFull = true;
+        }
+
+        if (connection._needsFull) {
+            connection._needsFull = false;
+            frames.addLast(game.full().duplicate());
+        } else {
+            frames.addLast(frame.buffer().duplicate());
+        }
+    }
+
+    /**
+     * Drops queued frames of the spectator except the one which is being
+     * written.
+     *
+     * @param connection Connection of the spectator.
+     */
+    private static void drop(final Connection connection) {
+        final ArrayDeque<ByteBuffer> frames = connection._frames;
+        final ByteBuffer head = frames.peekFirst();
+        frames.clear();
+        if (head != null && head.position() != 0 && head.hasRemaining()) {
+            frames.addLast(head);
+        }
+    }
+
+    /**
+     * Writes queued frames of the spectator by one gathering write.
+     *
+     * @param connection Connection of the spectator.
+     * @throws IOException If connection has failed.
+     */
+    private void writeFrames(final Connection connection) throws IOException {
+        final ArrayDeque<ByteBuffer> frames = connection._frames;
+        if (!frames.isEmpty()) {
+            connection._channel.write(frames.toArray(NO_BUFFERS));
+            while (!frames.isEmpty() && !frames.peekFirst().hasRemaining()) {
+                frames.pollFirst();
+            }
+        }
+
+        connection._key.interestOps(
+                frames.isEmpty() ?
+                        SelectionKey.OP_READ :
+                        SelectionKey.OP_READ | SelectionKey.OP_WRITE
+        );
+    }
+
+    /**
+     * Opens new game in the host.
+     *
+     * @return Served game.
+     * @throws RejectedExecutionException If host does not admit new game.
+     */
+    private ServedGame open() throws RejectedExecutionException {
+        final HostedGame hosted = _host.open(_level.createField(percent -> {
+        }));
+        final ServedGame game = new ServedGame(hosted);
+        hosted.simulation().addListener(game);
+        _games.put(hosted.id(), game);
+        return game;
+    }
+
+    /**
+     * Removes connection from its game. Broadcaster of the game is detached
+     * when its last spectator leaves, the game is closed when its last player
+     * or spectator leaves.
+     *
+     * @param connection Connection.
+     */
+    private void leave(final Connection connection) {
+        final ServedGame game = connection._game;
+        if (game == null) {
+            return;
+        }
+
+        connection._game = null;
+        if (connection._isSpectator) {
+            drop(connection);
+            game._spectators.remove(connection);
+            if (game._spectators.isEmpty()) {
+                game._broadcaster.detach();
+                game._broadcaster = null;
+                game._lastFrame = null;
+            }
+        } else {
+            game._connections.remove(connection);
+        }
+
+        if (game._connections.isEmpty() && game._spectators.isEmpty()) {
+            _games.remove(game._game.id());
+            game._game.close();
+        }
+    }
+
+    /**
+     * Remembers the last acknowledged update of the client, next updates are
+     * deltas since it.
+     *
+     * @param connection Connection.
+     * @param tick       Tick of the update.
+     */
+    private void acknowledge(final Connection connection, final long tick) {
+        while (!connection._unacked.isEmpty() &&
+                connection._unacked.peekFirst().number() <= tick) {
+            final FieldSnapshot snapshot = connection._unacked.pollFirst();
+            if (snapshot.number() == tick) {
+                connection._base = snapshot;
+            }
+        }
+    }
+
+    /**
+     * Sends update of the game to the client. If the previous update is not
+     * written yet, the client is updated when it is written.
+     *
+     * @param connection Connection.
+     * @throws IOException If connection has failed.
+     */
+    private void send(final Connection connection) throws IOException {
+        if (connection._game == null) {
+            return;
+        }
+        if (connection._out != null && connection._out.hasRemaining()) {
+            connection._isChanged = true;
+            return;
+        }
+
+        final FieldSnapshot snapshot =
+                connection._game._game.snapshot();
+        if (snapshot == null ||
+                !connection._unacked.isEmpty() &&
+                        connection._unacked.peekLast() == snapshot ||
+                connection._unacked.isEmpty() &&
+                        connection._base == snapshot) {
+            return;
+        }
+
+        if (connection._unacked.size() == MAX_UNACKED) {
+            connection._unacked.pollFirst();
+        }
+        connection._unacked.addLast(snapshot);
+
+        final ByteBuffer out =
+                connection.buffer(Protocol.maxUpdateSize(snapshot));
+        Protocol.writeUpdate(out, connection._base, snapshot);
+        flush(connection);
+    }
+
+    /**
+     * Sends error to the client.
+     *
+     * @param connection Connection.
+     * @param message    Error message.
+     * @throws IOException If connection has failed.
+     */
+    private void error(final Connection connection, final String message)
+            throws IOException {
+        if (connection._isSpectator) {
+            final ByteBuffer out = ByteBuffer.allocate(
+                    Protocol.HEADER + 4 * message.length()
+            );
+            Protocol.writeError(out, message);
+            out.flip();
+            connection._frames.addLast(out);
+            writeFrames(connection);
+            return;
+        }
+
+        final ByteBuffer out = connection.buffer(
+                Protocol.HEADER + 4 * message.length()
+        );
+        Protocol.writeError(out, message);
+        flush(connection);
+    }
+
+    /**
+     * Writes filled output buffer of the connection. If it is not written
+     * completely, the rest is written when channel is ready.
+     *
+     * @param connection Connection.
+     * @throws IOException If connection has failed.
+     */
+    private void flush(final Connection connection) throws IOException {
+        connection._out.flip();
+        write(connection);
+    }
+
+    /**
+     * Writes the rest of the output buffer.
+     *
+     * @param connection Connection.
+     * @throws IOException If connection has failed.
+     */
+    private void write(final Connection connection) throws IOException {
+        connection._channel.write(connection._out);
+        if (connection._out.hasRemaining()) {
+            connection._key.interestOps(
+                    SelectionKey.OP_READ | SelectionKey.OP_WRITE
+            );
+            return;
+        }
+
+        connection._key.interestOps(SelectionKey.OP_READ);
+        if (connection._isChanged) {
+            connection._isChanged = false;
+            send(connection);
+        }
+    }
+
+    /**
+     * Closes connection of the key.
+     *
+     * @param key Selection key.
+     */
+    private void close(final SelectionKey key) {
+        final Connection connection = (Connection) key.attachment();
+        if (connection != null) {
+            leave(connection);
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.fine("Cannot close connection");
+        }
+    }
+
+    /**
+     * Closes all the connections and the listening channel.
+     */
+    private void closeAll() {
+        for (ServedGame game : _games.values()) {
+            game._connections.clear();
+            game._spectators.clear();
+        }
+        try {
+            _server.close();
+            for (SelectionKey key : new ArrayList<>(_selector.keys())) {
+                key.channel().close();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.fine("Cannot close connections");
+        }
+    }
+
+    /**
+     * Game served by the server. It notifies the loop when the game
+     * publishes snapshot.
+     */
+    private class ServedGame implements Simulation.SimulationListener {
+
+        // The game.
+        private final HostedGame _game;
+        // Connections of the clients of the game.
+        private final List<Connection> _connections;
+        // Is game in the queue of changed games?
+        private final AtomicBoolean _isChanged;
+        // Connections of the spectators of the game.
+        private final List<Connection> _spectators;
+        // Broadcaster of the game, null if there are no spectators.
+        private Broadcaster _broadcaster;
+        // Frames of the broadcaster which are not sent yet.
+        private final MpscQueue<Broadcaster.Frame> _frames;
+        // The last sent frame, null if no frames are sent yet.
+        private Broadcaster.Frame _lastFrame;
+        // Frame of which the full state is encoded.
+        private Broadcaster.Frame _fullFrame;
+        // Full state of the last sent frame, it is shared by the spectators.
+        private ByteBuffer _full;
+
+        /**
+         * Constructs served game.
+         *
+         * @param game The game.
+         */
+        ServedGame(final HostedGame game) {
+            _game = game;
+            _connections = new ArrayList<>();
+            _isChanged = new AtomicBoolean();
+            _spectators = new ArrayList<>();
+            _frames = new MpscQueue<>();
+        }
+
+        /**
+         * Returns full state of the last sent frame. It is encoded once per
+         * frame, when the first spectator needs it.
+         *
+         * @return Read-only buffer with full state.
+         */
+        ByteBuffer full() {
+            if (_fullFrame != _lastFrame) {
+                _fullFrame = _lastFrame;
+                _full = _lastFrame.isFull() ?
+                        _lastFrame.buffer() :
+                        Broadcaster.full(_lastFrame.snapshot());
+            }
+            return _full;
+        }
+
+        /**
+         * Queues frame of the broadcaster. It is invoked by the thread of
+         * the game.
+         *
+         * @param frame Frame.
+         */
+        void frame(final Broadcaster.Frame frame) {
+            _frames.offer(frame);
+            change();
+        }
+
+        @Override
+        public void gameIsStarted(final SimulationEvent e) {
+            change();
+        }
+
+        @Override
+        public void snapshotIsPublished(final SimulationEvent e) {
+            change();
+        }
+
+        /**
+         * Notifies the loop that the game is changed.
+         */
+        private void change() {
+            if (!_isChanged.compareAndSet(false, true)) {
+                return;
+            }
+            _changed.offer(this);
+            if (_isWokenUp.compareAndSet(false, true)) {
+                _selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Connection of a client.
+     */
+    private static class Connection {
+
+        // Channel.
+        private final SocketChannel _channel;
+        // Selection key of the channel.
+        private SelectionKey _key;
+        // Read buffer.
+        private final ByteBuffer _in;
+        // Write buffer, it is in read mode while it is written.
+        private ByteBuffer _out;
+        // Joined game.
+        private ServedGame _game;
+        // The last update acknowledged by the client.
+        private FieldSnapshot _base;
+        // Updates which are sent but not acknowledged yet.
+        private final ArrayDeque<FieldSnapshot> _unacked;
+        // Is game changed while the previous update was written?
+        private boolean _isChanged;
+        // Is it a spectator?
+        private boolean _isSpectator;
+        // Frames which are queued for the spectator.
+        private final ArrayDeque<ByteBuffer> _frames;
+        // Does the spectator need full state instead of the next frame?
+        private boolean _needsFull;
+
+        /**
+         * Constructs connection.
+         *
+         * @param channel Channel.
+         */
+        Connection(final SocketChannel channel) {
+            _channel = channel;
+            _in = ByteBuffer.allocate(READ_BUFFER);
+            _unacked = new ArrayDeque<>();
+            _frames = new ArrayDeque<>();
+        }
+
+        /**
+         * Returns write buffer with at least <code>size</code> bytes
+         * remaining. Bytes which are not written yet are kept at its
+         * beginning.
+         *
+         * @param size Required size.
+         * @return Write buffer in write mode.
+         */
+        ByteBuffer buffer(final int size) {
+            final int pending = _out == null ? 0 : _out.remaining();
+            if (_out == null || _out.capacity() < pending + size) {
+                final ByteBuffer out = ByteBuffer.allocateDirect(
+                        pending + size
+                );
+                if (_out != null) {
+                    out.put(_out);
+                }
+                _out = out;
+            } else {
+                _out.compact();
+            }
+            return _out;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package melihovv.SmartAndStupidRobotGame.server;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The <code>Protocol</code> class defines binary protocol of the game server.
+ * Each message is a frame: length of the rest of the frame (int), type of
+ * the message (byte) and payload.
+ *
+ * Client sends <code>JOIN</code> with identifier of the game or
+ * <code>NEW_GAME</code>, then <code>MOVE</code> and <code>ACK</code> of each
+ * received update. Server answers <code>WELCOME</code> with identifier of
+ * the game, sends <code>FULL</code> state on join and then
+ * <code>DELTA</code> updates with the cells which are changed since the last
+ * acknowledged update.
+ *
+ * State of an update: tick, robot and target positions, the number of steps
+ * the stupid robot skips, is game finished and name of the season.
+ *
+ * Spectator sends <code>WATCH</code> instead of <code>JOIN</code> and does
+ * not acknowledge updates. It receives <code>FULL</code> state and then
+ * <code>EVENTS</code> of each tick, which are the same for all the
+ * spectators of the game.
+ */
+public final class Protocol {
+
+    // Joins game: identifier of the game (long).
+    public static final byte JOIN = 1;
+    // Moves the smart robot: direction (byte).
+    public static final byte MOVE = 2;
+    // Acknowledges update: tick (long).
+    public static final byte ACK = 3;
+    // Watches game as spectator: identifier of the game (long).
+    public static final byte WATCH = 4;
+    // Game is joined: identifier of the game (long).
+    public static final byte WELCOME = 10;
+    // Full state: tick (long), width (int), height (int), flags of the cells
+    // (bytes), state.
+    public static final byte FULL = 11;
+    // Changes: tick (long), tick of the base (long), number of changed cells
+    // (int), index (int) and flags (byte) of each cell, state.
+    public static final byte DELTA = 12;
+    // Error: message.
+    public static final byte ERROR = 13;
+    // Events of a tick: tick (long), previous tick (long), number of events
+    // (int), events, number of changed cells (int), index (int) and flags
+    // (byte) of each cell, the number of steps the stupid robot skips (byte),
+    // is game finished (byte).
+    public static final byte EVENTS = 14;
+    // Event of the smart robot move: from x, y, to x, y (int).
+    public static final byte SMART_ROBOT_MOVED = 1;
+    // Event of the stupid robot move: from x, y, to x, y (int).
+    public static final byte STUPID_ROBOT_MOVED = 2;
+    // Event of the smart robot catch: from x, y, to x, y (int).
+    public static final byte SMART_ROBOT_CAUGHT = 3;
+    // Event of season change: name.
+    public static final byte SEASON_CHANGED = 4;
+    // Event of game over: message.
+    public static final byte GAME_OVER = 5;
+    // Identifier which requests new game.
+    public static final long NEW_GAME = -1;
+    // Maximal length of a frame.
+    public static final int MAX_FRAME = 16 * 1024 * 1024;
+    // Length of frame header: length and type.
+    public static final int HEADER = 5;
+    // Maximal length of season name.
+    private static final int MAX_NAME = 64;
+    // Maximal length of state without cells.
+    private static final int STATE = 6 * 4 + 2 + 1 + MAX_NAME;
+    // Length of a changed cell of delta: index and flags.
+    private static final int CELL = 5;
+    // Directions by codes.
+    private static final Direction[] DIRECTIONS = {
+            Direction.north(),
+            Direction.south(),
+            Direction.west(),
+            Direction.east(),
+    };
+
+    /**
+     * Constructor is hidden, class has only static methods.
+     */
+    private Protocol() {
+    }
+
+    /**
+     * Returns code of direction.
+     *
+     * @param dir Direction.
+     * @return Code of direction.
+     */
+    public static byte code(final Direction dir) {
+        for (byte i = 0; i < DIRECTIONS.length; ++i) {
+            if (DIRECTIONS[i].equals(dir)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction");
+    }
+
+    /**
+     * Returns direction by code.
+     *
+     * @param code Code of direction.
+     * @return Direction.
+     * @throws IllegalArgumentException If code is unknown.
+     */
+    public static Direction direction(final int code)
+            throws IllegalArgumentException {
+        if (code < 0 || code >= DIRECTIONS.length) {
+            throw new IllegalArgumentException("Unknown direction " + code);
+        }
+        return DIRECTIONS[code];
+    }
+
+    /**
+     * Returns maximal length of update frame of the snapshot, full or delta.
+     *
+     * @param snapshot Snapshot.
+     * @return Maximal length of the frame.
+     */
+    public static int maxUpdateSize(final FieldSnapshot snapshot) {
+        return HEADER + 8 + 8 + 4 + 4 +
+                snapshot.width() * snapshot.height() + STATE;
+    }
+
+    /**
+     * Writes update frame: delta since <code>base</code> or full state if
+     * there is no base, the field size is changed or full state is shorter.
+     * Buffer must have <code>maxUpdateSize</code> bytes remaining.
+     *
+     * @param out      Buffer.
+     * @param base     The last snapshot which client has acknowledged, can be
+     *                 null.
+     * @param snapshot Snapshot.
+     */
+    public static void writeUpdate(
+            final ByteBuffer out,
+            final FieldSnapshot base,
+            final FieldSnapshot snapshot
+    ) {
+        final int cells = snapshot.width() * snapshot.height();
+        if (base == null ||
+                base.width() != snapshot.width() ||
+                base.height() != snapshot.height()) {
+            writeFull(out, snapshot);
+            return;
+        }
+
+        final int start = out.position();
+        out.putInt(0);
+        out.put(DELTA);
+        out.putLong(snapshot.number());
+        out.putLong(base.number());
+        final int countPosition = out.position();
+        out.putInt(0);
+
+        int count = 0;
+        if (!snapshot.hasSameCells(base)) {
+            // Full state is shorter if more than a fifth of cells is changed.
+            final int limit = cells / CELL;
+            for (int i = 0; i < cells; ++i) {
+                if (snapshot.cell(i) == base.cell(i)) {
+                    continue;
+                }
+                if (++count > limit) {
+                    out.position(start);
+                    writeFull(out, snapshot);
+                    return;
+                }
+                out.putInt(i);
+                out.put((byte) snapshot.cell(i));
+            }
+        }
+
+        out.putInt(countPosition, count);
+        writeState(out, snapshot);
+        end(out, start);
+    }
+
+    /**
+     * Writes full state frame.
+     *
+     * @param out      Buffer.
+     * @param snapshot Snapshot.
+     */
+    public static void writeFull(
+            final ByteBuffer out,
+            final FieldSnapshot snapshot
+    ) {
+        final int start = out.position();
+        out.putInt(0);
+        out.put(FULL);
+        out.putLong(snapshot.number());
+        out.putInt(snapshot.width());
+        out.putInt(snapshot.height());
+        final int cells = snapshot.width() * snapshot.height();
+        for (int i = 0; i < cells; ++i) {
+            out.put((byte) snapshot.cell(i));
+        }
+        writeState(out, snapshot);
+        end(out, start);
+    }
+
+    /**
+     * Writes frame with long payload, e.g. join or acknowledgement.
+     *
+     * @param out   Buffer.
+     * @param type  Type of the message.
+     * @param value Payload.
+     */
+    public static void writeLong(
+            final ByteBuffer out,
+            final byte type,
+            final long value
+    ) {
+        out.putInt(1 + 8);
+        out.put(type);
+        out.putLong(value);
+    }
+
+    /**
+     * Writes move frame.
+     *
+     * @param out Buffer.
+     * @param dir Direction of the move.
+     */
+    public static void writeMove(final ByteBuffer out, final Direction dir) {
+        out.putInt(1 + 1);
+        out.put(MOVE);
+        out.put(code(dir));
+    }
+
+    /**
+     * Writes error frame.
+     *
+     * @param out     Buffer.
+     * @param message Error message.
+     */
+    public static void writeError(final ByteBuffer out, final String message) {
+        final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        out.putInt(1 + bytes.length);
+        out.put(ERROR);
+        out.put(bytes);
+    }
+
+    /**
+     * Writes string: length (byte) and UTF-8 bytes, which are truncated to
+     * <code>MAX_NAME</code>.
+     *
+     * @param out   Buffer.
+     * @param value String.
+     */
+    public static void writeString(final ByteBuffer out, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        final int length = Math.min(bytes.length, MAX_NAME);
+        out.put((byte) length);
+        out.put(bytes, 0, length);
+    }
+
+    /**
+     * Reads string which is written by <code>writeString</code>.
+     *
+     * @param in Buffer.
+     * @return String.
+     */
+    public static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.get()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes state of the snapshot which does not belong to cells.
+     *
+     * @param out      Buffer.
+     * @param snapshot Snapshot.
+     */
+    private static void writeState(
+            final ByteBuffer out,
+            final FieldSnapshot snapshot
+    ) {
+        out.putInt(snapshot.smartRobotX());
+        out.putInt(snapshot.smartRobotY());
+        out.putInt(snapshot.stupidRobotX());
+        out.putInt(snapshot.stupidRobotY());
+        out.putInt(snapshot.targetX());
+        out.putInt(snapshot.targetY());
+        out.put((byte) snapshot.stepsToSkip());
+        out.put((byte) (snapshot.isGameFinished() ? 1 : 0));
+
+        writeString(
+                out,
+                snapshot.season() == null ?
+                        "" :
+                        snapshot.season().getClass().getSimpleName()
+        );
+    }
+
+    /**
+     * Writes length of the frame which starts at <code>start</code>.
+     *
+     * @param out   Buffer.
+     * @param start Position of the frame.
+     */
+    static void end(final ByteBuffer out, final int start) {
+        out.putInt(start, out.position() - start - 4);
+    }
+}
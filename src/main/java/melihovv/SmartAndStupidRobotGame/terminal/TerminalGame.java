@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.terminal;
+
+import melihovv.SmartAndStupidRobotGame.Campaign;
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.Simulation;
+import melihovv.SmartAndStupidRobotGame.model.Simulation.SimulationEvent;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+/**
+ * The <code>TerminalGame</code> defines command line game which is drawn in
+ * the terminal. It does not need display, so it can be played or watched over
+ * SSH. The model is owned by a simulation thread.
+ *
+ * Usage: <code>TerminalGame situation</code>. Moves are read from the standard
+ * input: "w", "a", "s" and "d" followed by Enter, "q" quits.
+ */
+public class TerminalGame {
+
+    // Model.
+    private final Model _model;
+    // Simulation which owns the model.
+    private final Simulation _simulation;
+    // Renderer.
+    private final TerminalRenderer _renderer;
+    // Message of the game over.
+    private volatile String _message;
+    // Logger.
+    private static final Logger log = Logger.getLogger(
+            TerminalGame.class.getName()
+    );
+
+    /**
+     * Constructs terminal game.
+     */
+    private TerminalGame() {
+        _model = new Model();
+        // The message is rendered with snapshot of the same tick.
+        _model.eventBus().subscribe(
+                Model.GAME_OVER,
+                e -> _message = e.message()
+        );
+        _simulation = new Simulation(
+                _model,
+                Simulation.dedicatedExecutor("Simulation")
+        );
+        _simulation.addListener(new SimulationListener());
+        _renderer = new TerminalRenderer(System.out);
+    }
+
+    /**
+     * Main function.
+     *
+     * @param args Args.
+     */
+    public static void main(final String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: TerminalGame situation");
+            System.exit(2);
+        }
+
+        final TerminalGame game = new TerminalGame();
+        try {
+            game._simulation.load(Campaign.load(args[0], percent -> {
+            }));
+            game.play();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot load " + args[0] + ": " +
+                    e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            System.exit(2);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Reads moves from the standard input until it is closed.
+     *
+     * @throws IOException If it is impossible to read input.
+     * @throws InterruptedException If the game is interrupted.
+     */
+    private void play() throws IOException, InterruptedException {
+        final BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in)
+        );
+
+        String line;
+        while ((line = in.readLine()) != null && !line.startsWith("q")) {
+            for (char c : line.toCharArray()) {
+                final Direction dir = direction(c);
+                if (dir != null) {
+                    _simulation.move(dir);
+                }
+            }
+        }
+
+        // Wait until all moves are drawn.
+        final CountDownLatch drawn = new CountDownLatch(1);
+        _simulation.submit(model -> {
+            render(model.snapshot());
+            drawn.countDown();
+        });
+        drawn.await();
+    }
+
+    /**
+     * Returns direction of the key.
+     *
+     * @param c Key.
+     * @return Direction or null if it is not a move key.
+     */
+    private static Direction direction(final char c) {
+        switch (Character.toLowerCase(c)) {
+            case 'w':
+                return Direction.north();
+            case 's':
+                return Direction.south();
+            case 'a':
+                return Direction.west();
+            case 'd':
+                return Direction.east();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Draws the game. It is invoked by the simulation thread.
+     *
+     * @param snapshot Snapshot of the model.
+     */
+    private void render(final FieldSnapshot snapshot) {
+        String status = snapshot.season() == null ?
+                "" :
+                snapshot.season().getClass().getSimpleName();
+        if (snapshot.isGameFinished()) {
+            status += ". " + (_message == null ? "Game is over" : _message);
+        }
+
+        try {
+            _renderer.render(snapshot, status);
+        } catch (IOException e) {
+            log.warning("Cannot draw the game: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Simulation listener, draws each published snapshot.
+     */
+    private class SimulationListener
+            implements Simulation.SimulationListener {
+
+        @Override
+        public void gameIsStarted(final SimulationEvent e) {
+        }
+
+        @Override
+        public void snapshotIsPublished(final SimulationEvent e) {
+            render(e.snapshot());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.terminal;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The <code>TerminalRenderer</code> class draws the game as characters with
+ * ANSI escape sequences. Only characters which are changed since the previous
+ * frame are written, so the game can be watched over slow links.
+ *
+ * Each cell takes two characters and is surrounded by walls: "--" and "|".
+ * Corners of cells are drawn as "+". Mires are drawn with background color:
+ * yellow for usual mires and cyan for frozen ones.
+ */
+public class TerminalRenderer {
+
+    // Width of a cell in characters.
+    private static final int CELL_WIDTH = 2;
+    // Style: default colors.
+    private static final byte PLAIN = 0;
+    // Style: background of mire.
+    private static final byte MIRE = 1;
+    // Style: background of frozen mire.
+    private static final byte FROZEN = 2;
+    // Style: label, it is combined with background.
+    private static final byte LABEL = 4;
+    // Output.
+    private final Appendable _out;
+    // Output buffer, it is reused between frames.
+    private final StringBuilder _buffer = new StringBuilder();
+    // Width and height of the screen in characters.
+    private int _columns;
+    private int _rows;
+    // Characters and styles of the current frame.
+    private char[] _chars = new char[0];
+    private byte[] _styles = new byte[0];
+    // Characters and styles of the previous frame.
+    private char[] _prevChars = new char[0];
+    private byte[] _prevStyles = new byte[0];
+    // Is the whole screen redrawn on the next frame?
+    private boolean _isReset = true;
+
+    /**
+     * Constructs terminal renderer.
+     *
+     * @param out Output, it is flushed after each frame if it is flushable.
+     */
+    public TerminalRenderer(final Appendable out) {
+        _out = out;
+    }
+
+    /**
+     * Draws the whole screen on the next frame, e.g. after terminal is
+     * cleared by someone else.
+     */
+    public void reset() {
+        _isReset = true;
+    }
+
+    /**
+     * Draws snapshot. Only changes since the previous frame are written.
+     *
+     * @param snapshot Snapshot of the model.
+     * @param status   Status line which is drawn under the field.
+     * @throws IOException If it is impossible to write output.
+     */
+    public void render(final FieldSnapshot snapshot, final String status)
+            throws IOException {
+        resize(snapshot.width() * (CELL_WIDTH + 1) + 1,
+                snapshot.height() * 2 + 2);
+        fill(snapshot, status);
+
+        _buffer.setLength(0);
+        if (_isReset) {
+            _buffer.append("\033[0m\033[2J");
+        }
+
+        int style = -1;
+        int cursor = -1;
+        for (int i = 0; i < _chars.length; ++i) {
+            if (!_isReset &&
+                    _chars[i] == _prevChars[i] &&
+                    _styles[i] == _prevStyles[i]) {
+                continue;
+            }
+
+            if (cursor != i || i % _columns == 0) {
+                _buffer.append("\033[")
+                        .append(i / _columns + 1)
+                        .append(';')
+                        .append(i % _columns + 1)
+                        .append('H');
+            }
+            if (_styles[i] != style) {
+                style = _styles[i];
+                appendStyle(style);
+            }
+            _buffer.append(_chars[i]);
+            cursor = i + 1;
+        }
+
+        if (style != -1 && style != PLAIN) {
+            appendStyle(PLAIN);
+        }
+        if (_buffer.length() != 0) {
+            // Park cursor under the screen.
+            _buffer.append("\033[").append(_rows + 1).append(";1H");
+        }
+        _isReset = false;
+
+        final char[] chars = _prevChars;
+        _prevChars = _chars;
+        _chars = chars;
+        final byte[] styles = _prevStyles;
+        _prevStyles = _styles;
+        _styles = styles;
+
+        _out.append(_buffer);
+        if (_out instanceof Flushable) {
+            ((Flushable) _out).flush();
+        }
+    }
+
+    /**
+     * Changes size of the screen. Whole screen is redrawn if size is changed.
+     *
+     * @param columns Width of the screen in characters.
+     * @param rows    Height of the screen in characters.
+     */
+    private void resize(final int columns, final int rows) {
+        if (columns == _columns && rows == _rows) {
+            return;
+        }
+
+        _columns = columns;
+        _rows = rows;
+        _chars = new char[columns * rows];
+        _styles = new byte[columns * rows];
+        _prevChars = new char[columns * rows];
+        _prevStyles = new byte[columns * rows];
+        _isReset = true;
+    }
+
+    /**
+     * Fills characters and styles of the current frame.
+     *
+     * @param snapshot Snapshot of the model.
+     * @param status   Status line.
+     */
+    private void fill(final FieldSnapshot snapshot, final String status) {
+        Arrays.fill(_chars, ' ');
+        Arrays.fill(_styles, PLAIN);
+
+        for (int y = 1; y <= snapshot.height(); ++y) {
+            for (int x = 1; x <= snapshot.width(); ++x) {
+                final int cell = snapshot.cell(x, y);
+                final int left = (x - 1) * (CELL_WIDTH + 1);
+                final int top = (y - 1) * 2;
+
+                put(left, top, '+', PLAIN);
+                put(left + CELL_WIDTH + 1, top, '+', PLAIN);
+                put(left, top + 2, '+', PLAIN);
+                put(left + CELL_WIDTH + 1, top + 2, '+', PLAIN);
+
+                if ((cell & FieldSnapshot.WALL_NORTH) != 0) {
+                    put(left + 1, top, '-', PLAIN);
+                    put(left + 2, top, '-', PLAIN);
+                }
+                if ((cell & FieldSnapshot.WALL_SOUTH) != 0) {
+                    put(left + 1, top + 2, '-', PLAIN);
+                    put(left + 2, top + 2, '-', PLAIN);
+                }
+                if ((cell & FieldSnapshot.WALL_WEST) != 0) {
+                    put(left, top + 1, '|', PLAIN);
+                }
+                if ((cell & FieldSnapshot.WALL_EAST) != 0) {
+                    put(left + CELL_WIDTH + 1, top + 1, '|', PLAIN);
+                }
+
+                final byte background =
+                        (cell & FieldSnapshot.FROZEN) != 0 ? FROZEN :
+                                (cell & FieldSnapshot.MIRE) != 0 ? MIRE :
+                                        PLAIN;
+                put(left + 1, top + 1, ' ', background);
+                put(left + 2, top + 1, ' ', background);
+            }
+        }
+
+        label(snapshot.targetX(), snapshot.targetY(), " T");
+        label(snapshot.stupidRobotX(), snapshot.stupidRobotY(), "St");
+        label(snapshot.smartRobotX(), snapshot.smartRobotY(), "Sm");
+
+        final int statusRow = _rows - 1;
+        for (int i = 0; i < status.length() && i < _columns; ++i) {
+            put(i, statusRow, status.charAt(i), PLAIN);
+        }
+    }
+
+    /**
+     * Puts label of the field object into cell (<code>x</code>,
+     * <code>y</code>). Background of the cell is preserved.
+     *
+     * @param x     Column of the cell, 0 if there is no object.
+     * @param y     Row of the cell, 0 if there is no object.
+     * @param label Label, two characters.
+     */
+    private void label(final int x, final int y, final String label) {
+        if (x == 0) {
+            return;
+        }
+
+        final int i = (y - 1) * 2 + 1;
+        final int j = (x - 1) * (CELL_WIDTH + 1) + 1;
+        for (int k = 0; k < CELL_WIDTH; ++k) {
+            final int index = i * _columns + j + k;
+            _chars[index] = label.charAt(k);
+            _styles[index] |= LABEL;
+        }
+    }
+
+    /**
+     * Puts character to the current frame.
+     *
+     * @param column Column of the screen.
+     * @param row    Row of the screen.
+     * @param c      Character.
+     * @param style  Style of the character.
+     */
+    private void put(
+            final int column,
+            final int row,
+            final char c,
+            final byte style
+    ) {
+        final int index = row * _columns + column;
+        _chars[index] = c;
+        _styles[index] = style;
+    }
+
+    /**
+     * Appends escape sequence which sets style.
+     *
+     * @param style Style.
+     */
+    private void appendStyle(final int style) {
+        _buffer.append("\033[0");
+        if ((style & LABEL) != 0) {
+            _buffer.append(";1;31");
+        } else if (style != PLAIN) {
+            _buffer.append(";30");
+        }
+        if ((style & FROZEN) != 0) {
+            _buffer.append(";46");
+        } else if ((style & MIRE) != 0) {
+            _buffer.append(";43");
+        }
+        _buffer.append('m');
+    }
+}
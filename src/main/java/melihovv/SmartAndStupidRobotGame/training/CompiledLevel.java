@@ -0,0 +1,322 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.training;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.field.position.MiddlePosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * The <code>CompiledLevel</code> class defines situation packed into arrays
+ * for games which are stepped without the model, e.g. by
+ * <code>VectorEnv</code>.
+ *
+ * Cells are indexed in row-major order of the field with a border of one
+ * cell on each side, so index of cell (x, y) is
+ * <code>y * stride() + x</code>. Robots can get onto the border by sliding
+ * over frozen mires and rain can create mires there, as in the model.
+ *
+ * Wall is marked on both cells which it separates, including cells of the
+ * border, so it blocks moves in both directions as in the model.
+ */
+public final class CompiledLevel {
+
+    // Offsets of columns and rows of cells around a cell, in the order of
+    // <code>Field.freeCellAround()</code>.
+    static final int[] AROUND_DX = {-1, 0, 1, 1, 1, 0, -1, -1};
+    static final int[] AROUND_DY = {-1, -1, -1, 0, 1, 1, 1, 0};
+    // Flags of walls by actions, see <code>VectorEnv.direction()</code>.
+    static final int[] WALLS = {
+            FieldSnapshot.WALL_NORTH,
+            FieldSnapshot.WALL_SOUTH,
+            FieldSnapshot.WALL_WEST,
+            FieldSnapshot.WALL_EAST,
+    };
+    // Width of the field.
+    private final int _width;
+    // Height of the field.
+    private final int _height;
+    // Number of cells in a row with the border.
+    private final int _stride;
+    // Flags of walls on the sides of the cells.
+    private final byte[] _walls;
+    // Number of mires of the level in the cells, 0 or 1.
+    private final byte[] _mires;
+    // Cells of mires in the order of the level.
+    private final int[] _mireCells;
+    // Cells of mires in row-major order.
+    private final int[] _sortedMireCells;
+    // Offsets of cell indexes by actions.
+    private final int[] _offsets;
+    // Cell of the target.
+    private final int _target;
+    // Cell of the smart robot on start.
+    private final int _smartRobot;
+    // Cell of the stupid robot on start.
+    private final int _stupidRobot;
+    // Number of turns between season changes, 0 if seasons are not changed.
+    private final int _seasonTurns;
+    // Seed of the level, null if level has no seed.
+    private final Long _seed;
+
+    /**
+     * Compiles situation.
+     *
+     * @param situation   Situation.
+     * @param seasonTurns Number of turns between season changes if the
+     *                    situation changes seasons by time, 0 to not change
+     *                    them.
+     * @throws IllegalArgumentException If <code>seasonTurns</code> is
+     *                                  negative.
+     */
+    public CompiledLevel(final Situation situation, final int seasonTurns)
+            throws IllegalArgumentException {
+        if (seasonTurns < 0) {
+            throw new IllegalArgumentException(
+                    "Number of turns must not be negative"
+            );
+        }
+
+        final Dimension size = situation.size();
+        _width = size.width;
+        _height = size.height;
+        _stride = _width + 2;
+        _walls = new byte[_stride * (_height + 2)];
+        _mires = new byte[_walls.length];
+        _offsets = new int[]{-_stride, _stride, -1, 1};
+
+        for (MiddlePosition wall : situation.walls()) {
+            // Opposite actions differ in the lowest bit.
+            final int action = VectorEnv.action(wall.direct());
+            final int cell = cell(wall.cellPos());
+            _walls[cell] |= WALLS[action];
+            _walls[cell + _offsets[action]] |= WALLS[action ^ 1];
+        }
+
+        // Mire is not added to the cell which already has one, as in the
+        // field.
+        final int[] mireCells = new int[situation.mires().size()];
+        int count = 0;
+        for (CellPosition mire : situation.mires()) {
+            final int cell = cell(mire);
+            if (_mires[cell] == 0) {
+                _mires[cell] = 1;
+                mireCells[count++] = cell;
+            }
+        }
+        _mireCells = Arrays.copyOf(mireCells, count);
+        _sortedMireCells = _mireCells.clone();
+        Arrays.sort(_sortedMireCells);
+
+        _target = cell(situation.target());
+        _smartRobot = cell(situation.smartRobot());
+        _stupidRobot = cell(situation.stupidRobot());
+        _seasonTurns = situation.seasonTurns() != 0 ?
+                situation.seasonTurns() :
+                seasonTurns;
+        _seed = situation.seed();
+    }
+
+    /**
+     * Returns index of the cell.
+     *
+     * @param pos Position of the cell.
+     * @return Index of the cell.
+     */
+    private int cell(final CellPosition pos) {
+        return pos.pos().y * _stride + pos.pos().x;
+    }
+
+    /**
+     * Returns width of the field.
+     *
+     * @return Width of the field.
+     */
+    public int width() {
+        return _width;
+    }
+
+    /**
+     * Returns height of the field.
+     *
+     * @return Height of the field.
+     */
+    public int height() {
+        return _height;
+    }
+
+    /**
+     * Returns number of cells in a row with the border.
+     *
+     * @return Width of the field plus 2.
+     */
+    public int stride() {
+        return _stride;
+    }
+
+    /**
+     * Returns number of cells with the border.
+     *
+     * @return Number of cells.
+     */
+    public int cells() {
+        return _walls.length;
+    }
+
+    /**
+     * Returns column of the cell.
+     *
+     * @param cell Index of the cell.
+     * @return Column of the cell, 0 and <code>width() + 1</code> are on the
+     * border.
+     */
+    public int x(final int cell) {
+        return cell % _stride;
+    }
+
+    /**
+     * Returns row of the cell.
+     *
+     * @param cell Index of the cell.
+     * @return Row of the cell, 0 and <code>height() + 1</code> are on the
+     * border.
+     */
+    public int y(final int cell) {
+        return cell / _stride;
+    }
+
+    /**
+     * Returns true if the cell is inside the field, otherwise - false.
+     *
+     * @param cell Index of the cell.
+     * @return True if the cell is not on the border.
+     */
+    public boolean contains(final int cell) {
+        final int x = cell % _stride;
+        final int y = cell / _stride;
+        return x >= 1 && x <= _width && y >= 1 && y <= _height;
+    }
+
+    /**
+     * Returns flags of walls on the sides of the cell.
+     *
+     * @param cell Index of the cell.
+     * @return Flags of walls, see <code>FieldSnapshot</code>.
+     */
+    public int walls(final int cell) {
+        return _walls[cell];
+    }
+
+    /**
+     * Returns offset of the cell index by the action.
+     *
+     * @param action Action, see <code>VectorEnv.direction()</code>.
+     * @return Offset of the cell index.
+     */
+    public int offset(final int action) {
+        return _offsets[action];
+    }
+
+    /**
+     * Returns number of mires of the level in the cells. The array is
+     * shared, it must not be changed.
+     *
+     * @return Number of mires by cells.
+     */
+    byte[] mires() {
+        return _mires;
+    }
+
+    /**
+     * Returns cells of mires in the order of the level. The array is shared,
+     * it must not be changed.
+     *
+     * @return Cells of mires.
+     */
+    int[] mireCells() {
+        return _mireCells;
+    }
+
+    /**
+     * Returns cells of mires in row-major order. The array is shared, it
+     * must not be changed.
+     *
+     * @return Cells of mires.
+     */
+    int[] sortedMireCells() {
+        return _sortedMireCells;
+    }
+
+    /**
+     * Returns cell of the target.
+     *
+     * @return Index of the cell.
+     */
+    public int target() {
+        return _target;
+    }
+
+    /**
+     * Returns cell of the smart robot on start.
+     *
+     * @return Index of the cell.
+     */
+    public int smartRobot() {
+        return _smartRobot;
+    }
+
+    /**
+     * Returns cell of the stupid robot on start.
+     *
+     * @return Index of the cell.
+     */
+    public int stupidRobot() {
+        return _stupidRobot;
+    }
+
+    /**
+     * Returns number of turns between season changes.
+     *
+     * @return Number of turns, 0 if seasons are not changed.
+     */
+    public int seasonTurns() {
+        return _seasonTurns;
+    }
+
+    /**
+     * Returns seed of the level.
+     *
+     * @return Seed, null if level has no seed.
+     */
+    public Long seed() {
+        return _seed;
+    }
+}
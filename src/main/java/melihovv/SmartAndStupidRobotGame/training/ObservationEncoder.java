@@ -0,0 +1,385 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.training;
+
+import melihovv.SmartAndStupidRobotGame.model.FieldSnapshot;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * The <code>ObservationEncoder</code> class defines encoder of the games of
+ * <code>VectorEnv</code> into stacked planes of floats, e.g. to feed a neural
+ * network. Each plane has one value per cell: walls on the north, south, west
+ * and east sides, cells of the field, mires, frozen mires, target, smart
+ * robot, stupid robot and the number of steps it skips divided by 3.
+ *
+ * Planes cover either the whole field of the largest level of the pool with
+ * its border, cell (x, y) has index <code>y * width() + x</code>, or a
+ * square crop centered on the smart robot. Games follow each other, planes
+ * of a game follow each other.
+ *
+ * Encoding is incremental: if mires and level of a game are not changed
+ * since the previous encoding, only the cells of the robots are rewritten,
+ * and a crop is rewritten only if the smart robot has moved. So the same
+ * array or buffer must be passed on each step, otherwise
+ * <code>invalidate()</code> must be invoked before. Encoding allocates no
+ * memory.
+ */
+public class ObservationEncoder {
+
+    // Planes.
+    public static final int WALL_NORTH = 0;
+    public static final int WALL_SOUTH = 1;
+    public static final int WALL_WEST = 2;
+    public static final int WALL_EAST = 3;
+    public static final int FIELD = 4;
+    public static final int MIRE = 5;
+    public static final int FROZEN_MIRE = 6;
+    public static final int TARGET = 7;
+    public static final int SMART_ROBOT = 8;
+    public static final int STUPID_ROBOT = 9;
+    public static final int STEPS_TO_SKIP = 10;
+    // Number of planes.
+    public static final int PLANES = 11;
+    // Flags of walls by wall planes.
+    private static final int[] WALLS = {
+            FieldSnapshot.WALL_NORTH,
+            FieldSnapshot.WALL_SOUTH,
+            FieldSnapshot.WALL_WEST,
+            FieldSnapshot.WALL_EAST,
+    };
+    // The number of steps the stupid robot skips after getting into mire.
+    private static final float MAX_STEPS_TO_SKIP = 3;
+
+    // Encoded games.
+    private final VectorEnv _env;
+    // Distance from the center of the crop to its sides, 0 if the whole
+    // field is encoded.
+    private final int _radius;
+    // Width of the planes.
+    private final int _width;
+    // Height of the planes.
+    private final int _height;
+    // Number of floats of a game.
+    private final int _size;
+    // Encoded versions of the games, -1 if a game is not encoded.
+    private final int[] _version;
+    // Encoded cells of the smart robots.
+    private final int[] _smartRobot;
+    // Encoded cells of the stupid robots.
+    private final int[] _stupidRobot;
+    // Array which is being written, null if buffer is written.
+    private float[] _array;
+    // Buffer which is being written, null if array is written.
+    private FloatBuffer _buffer;
+    // Number of written floats by the latest encoding.
+    private long _written;
+
+    /**
+     * Constructs encoder.
+     *
+     * @param env    Encoded games.
+     * @param radius Distance from the smart robot to the sides of the crop,
+     *               0 to encode the whole field.
+     * @throws IllegalArgumentException If radius is negative.
+     */
+    public ObservationEncoder(final VectorEnv env, final int radius)
+            throws IllegalArgumentException {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must not be negative");
+        }
+
+        _env = env;
+        _radius = radius;
+        if (radius != 0) {
+            _width = 2 * radius + 1;
+            _height = _width;
+        } else {
+            int width = 0;
+            int height = 0;
+            for (CompiledLevel level : env.levels()) {
+                width = Math.max(width, level.stride());
+                height = Math.max(height, level.cells() / level.stride());
+            }
+            _width = width;
+            _height = height;
+        }
+        _size = PLANES * _width * _height;
+
+        final int count = env.count();
+        _version = new int[count];
+        _smartRobot = new int[count];
+        _stupidRobot = new int[count];
+        invalidate();
+    }
+
+    /**
+     * Returns width of the planes.
+     *
+     * @return Width of the planes.
+     */
+    public int width() {
+        return _width;
+    }
+
+    /**
+     * Returns height of the planes.
+     *
+     * @return Height of the planes.
+     */
+    public int height() {
+        return _height;
+    }
+
+    /**
+     * Returns number of floats of a game.
+     *
+     * @return <code>PLANES * width() * height()</code>.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns number of floats which are written by the latest encoding.
+     *
+     * @return Number of written floats.
+     */
+    public long written() {
+        return _written;
+    }
+
+    /**
+     * Makes the next encoding write all the planes, e.g. when other array
+     * is passed.
+     */
+    public void invalidate() {
+        Arrays.fill(_version, -1);
+    }
+
+    /**
+     * Encodes the games into the array.
+     *
+     * @param out Array of at least <code>count() * size()</code> floats.
+     * @throws IllegalArgumentException If array is too small.
+     */
+    public void encode(final float[] out) throws IllegalArgumentException {
+        if (out.length < (long) _env.count() * _size) {
+            throw new IllegalArgumentException("Array is too small");
+        }
+        _array = out;
+        encode();
+        _array = null;
+    }
+
+    /**
+     * Encodes the games into the buffer, e.g. a view of a direct byte
+     * buffer. Position of the buffer is not changed.
+     *
+     * @param out Buffer of at least <code>count() * size()</code> floats.
+     * @throws IllegalArgumentException If buffer is too small.
+     */
+    public void encode(final FloatBuffer out) throws IllegalArgumentException {
+        if (out.limit() < (long) _env.count() * _size) {
+            throw new IllegalArgumentException("Buffer is too small");
+        }
+        _buffer = out;
+        encode();
+        _buffer = null;
+    }
+
+    /**
+     * Encodes the games which are changed since the previous encoding.
+     */
+    private void encode() {
+        _written = 0;
+        for (int i = 0; i < _env.count(); ++i) {
+            final int version = _env.version(i);
+            final int smart = _env.smartRobot(i);
+            if (version != _version[i] ||
+                    (_radius != 0 && smart != _smartRobot[i])) {
+                encodeAll(i);
+            } else {
+                encodeRobots(i);
+            }
+            _version[i] = version;
+            _smartRobot[i] = smart;
+            _stupidRobot[i] = _env.stupidRobot(i);
+        }
+    }
+
+    /**
+     * Writes all the planes of the game.
+     *
+     * @param i Index of the game.
+     */
+    private void encodeAll(final int i) {
+        final CompiledLevel level = _env.level(i);
+        final int base = i * _size;
+        final int area = _width * _height;
+        final int smart = _env.smartRobot(i);
+        final int stupid = _env.stupidRobot(i);
+        final boolean isWinter = _env.season(i) == VectorEnv.WINTER;
+        final float steps = _env.stepsToSkip(i) / MAX_STEPS_TO_SKIP;
+        final int left = _radius != 0 ? level.x(smart) - _radius : 0;
+        final int top = _radius != 0 ? level.y(smart) - _radius : 0;
+
+        for (int y = 0; y < _height; ++y) {
+            for (int x = 0; x < _width; ++x) {
+                final int index = base + y * _width + x;
+                final int cell = cell(level, left + x, top + y);
+                if (cell < 0) {
+                    for (int p = 0; p < PLANES; ++p) {
+                        put(index + p * area, 0);
+                    }
+                    continue;
+                }
+
+                final int walls = level.walls(cell);
+                for (int p = 0; p < WALLS.length; ++p) {
+                    put(index + p * area, (walls & WALLS[p]) != 0 ? 1 : 0);
+                }
+                final boolean isMire = _env.hasMire(i, cell);
+                put(index + FIELD * area, level.contains(cell) ? 1 : 0);
+                put(index + MIRE * area, isMire ? 1 : 0);
+                put(index + FROZEN_MIRE * area, isMire && isWinter ? 1 : 0);
+                put(index + TARGET * area, cell == level.target() ? 1 : 0);
+                put(index + SMART_ROBOT * area, cell == smart ? 1 : 0);
+                put(index + STUPID_ROBOT * area, cell == stupid ? 1 : 0);
+                put(index + STEPS_TO_SKIP * area, cell == stupid ? steps : 0);
+            }
+        }
+        _written += _size;
+    }
+
+    /**
+     * Rewrites planes of the robots in the cells which they have left and
+     * entered. Smart robot of a crop is always in its center.
+     *
+     * @param i Index of the game.
+     */
+    private void encodeRobots(final int i) {
+        final CompiledLevel level = _env.level(i);
+        final int base = i * _size;
+        final int area = _width * _height;
+        final int smart = _env.smartRobot(i);
+
+        if (_radius == 0 && smart != _smartRobot[i]) {
+            put(base + SMART_ROBOT * area + index(level, _smartRobot[i]), 0);
+            put(base + SMART_ROBOT * area + index(level, smart), 1);
+            _written += 2;
+        }
+
+        // Skip counter changes without moves, so it is always rewritten.
+        final int left = _radius != 0 ? level.x(smart) - _radius : 0;
+        final int top = _radius != 0 ? level.y(smart) - _radius : 0;
+        final int from = index(level, _stupidRobot[i], left, top);
+        if (from >= 0) {
+            put(base + STUPID_ROBOT * area + from, 0);
+            put(base + STEPS_TO_SKIP * area + from, 0);
+            _written += 2;
+        }
+        final int to = index(level, _env.stupidRobot(i), left, top);
+        if (to >= 0) {
+            put(base + STUPID_ROBOT * area + to, 1);
+            put(
+                    base + STEPS_TO_SKIP * area + to,
+                    _env.stepsToSkip(i) / MAX_STEPS_TO_SKIP
+            );
+            _written += 2;
+        }
+    }
+
+    /**
+     * Returns cell of the level at the column and row of the planes.
+     *
+     * @param level Level.
+     * @param x     Column, 0 is the west border.
+     * @param y     Row, 0 is the north border.
+     * @return Index of the cell or -1 if it is outside the border.
+     */
+    private static int cell(
+            final CompiledLevel level,
+            final int x,
+            final int y
+    ) {
+        final int stride = level.stride();
+        if (x < 0 || x >= stride || y < 0 || y >= level.cells() / stride) {
+            return -1;
+        }
+        return y * stride + x;
+    }
+
+    /**
+     * Returns index of the cell in the planes of the whole field.
+     *
+     * @param level Level.
+     * @param cell  Index of the cell.
+     * @return Index in a plane.
+     */
+    private int index(final CompiledLevel level, final int cell) {
+        return level.y(cell) * _width + level.x(cell);
+    }
+
+    /**
+     * Returns index of the cell in the planes of the whole field or of the
+     * crop with the top left corner at the column and row of the level.
+     *
+     * @param level Level.
+     * @param cell  Index of the cell.
+     * @param left  Column of the left side of the crop.
+     * @param top   Row of the top side of the crop.
+     * @return Index in a plane or -1 if the cell is outside the crop.
+     */
+    private int index(
+            final CompiledLevel level,
+            final int cell,
+            final int left,
+            final int top
+    ) {
+        final int x = level.x(cell) - left;
+        final int y = level.y(cell) - top;
+        if (x < 0 || x >= _width || y < 0 || y >= _height) {
+            return -1;
+        }
+        return y * _width + x;
+    }
+
+    /**
+     * Writes value to the array or buffer which is being encoded.
+     *
+     * @param index Index of the float.
+     * @param value Value.
+     */
+    private void put(final int index, final float value) {
+        if (_array != null) {
+            _array[index] = value;
+        } else {
+            _buffer.put(index, value);
+        }
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.training;
+
+import melihovv.SmartAndStupidRobotGame.model.SeededRandom;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>QLearning</code> class defines trainer of the smart robot on a
+ * level by tabular Q-learning. Workers play games of their own
+ * <code>VectorEnv</code> with epsilon-greedy policy and update the shared
+ * <code>QTable</code> without locks (Hogwild), so lost updates only slow
+ * learning down.
+ *
+ * Level is learned when the greedy policy of the table wins it. The first
+ * worker checks it periodically, and the number of steps which all the
+ * workers have made by then shows how hard the level is.
+ *
+ * Usage: <code>QLearning levels [--steps n] [--workers n]
+ * [--season-turns n] [--save directory]</code>, where levels is a situation
+ * file or a directory with them.
+ */
+public class QLearning {
+
+    // Default share of random actions.
+    public static final float DEFAULT_EXPLORATION = 0.1f;
+    // Default part of the difference which is applied by an update.
+    public static final float DEFAULT_LEARNING_RATE = 0.5f;
+    // Default discount of the value of the next state.
+    public static final float DEFAULT_DISCOUNT = 0.95f;
+    // Default number of games of a worker.
+    public static final int DEFAULT_GAMES = 16;
+    // Default maximal number of turns of a game.
+    public static final int DEFAULT_MAX_TURNS = 200;
+    // Default number of steps of all the games.
+    private static final long DEFAULT_STEPS = 50_000_000;
+    // Default number of turns between season changes of levels which change
+    // seasons by time.
+    private static final int DEFAULT_SEASON_TURNS = 3;
+    // Number of steps of the games of a worker between checks whether
+    // training is over.
+    private static final int CHUNK = 4096;
+    // Scale of the probability of a random action.
+    private static final int PROBABILITY_SCALE = 1 << 24;
+    // Nanoseconds in a millisecond.
+    private static final double NANOS_IN_MILLI = 1e6;
+
+    // Table which is learned.
+    private final QTable _table;
+    // Share of random actions.
+    private float _exploration;
+    // Part of the difference which is applied by an update.
+    private float _learningRate;
+    // Discount of the value of the next state.
+    private float _discount;
+    // Number of workers.
+    private int _workers;
+    // Number of games of a worker.
+    private int _games;
+    // Maximal number of turns of a game.
+    private int _maxTurns;
+    // Seed of generators of the workers.
+    private long _seed;
+    // Number of steps of all the games of the current training.
+    private final AtomicLong _steps = new AtomicLong();
+    // Number of finished games of the current training.
+    private final AtomicLong _episodes = new AtomicLong();
+    // Number of steps when the level is learned, -1 if it is not learned.
+    private volatile long _learnedSteps;
+    // Is the current training over?
+    private volatile boolean _isStopped;
+
+    /**
+     * Constructs trainer with default parameters and one worker per
+     * processor.
+     *
+     * @param table Table which is learned.
+     */
+    public QLearning(final QTable table) {
+        _table = table;
+        _exploration = DEFAULT_EXPLORATION;
+        _learningRate = DEFAULT_LEARNING_RATE;
+        _discount = DEFAULT_DISCOUNT;
+        _workers = Runtime.getRuntime().availableProcessors();
+        _games = DEFAULT_GAMES;
+        _maxTurns = DEFAULT_MAX_TURNS;
+    }
+
+    /**
+     * Returns table which is learned.
+     *
+     * @return Table.
+     */
+    public QTable table() {
+        return _table;
+    }
+
+    /**
+     * Sets share of random actions.
+     *
+     * @param exploration Probability of a random action, from 0 to 1.
+     * @throws IllegalArgumentException If probability is out of range.
+     */
+    public void setExploration(final float exploration)
+            throws IllegalArgumentException {
+        if (!(exploration >= 0 && exploration <= 1)) {
+            throw new IllegalArgumentException(
+                    "Probability must be from 0 to 1"
+            );
+        }
+        _exploration = exploration;
+    }
+
+    /**
+     * Sets part of the difference between target and value which is applied
+     * by an update.
+     *
+     * @param learningRate Learning rate, from 0 to 1.
+     * @throws IllegalArgumentException If rate is out of range.
+     */
+    public void setLearningRate(final float learningRate)
+            throws IllegalArgumentException {
+        if (!(learningRate > 0 && learningRate <= 1)) {
+            throw new IllegalArgumentException("Rate must be from 0 to 1");
+        }
+        _learningRate = learningRate;
+    }
+
+    /**
+     * Sets discount of the value of the next state.
+     *
+     * @param discount Discount, from 0 to 1.
+     * @throws IllegalArgumentException If discount is out of range.
+     */
+    public void setDiscount(final float discount)
+            throws IllegalArgumentException {
+        if (!(discount >= 0 && discount <= 1)) {
+            throw new IllegalArgumentException(
+                    "Discount must be from 0 to 1"
+            );
+        }
+        _discount = discount;
+    }
+
+    /**
+     * Sets number of workers and games of each of them.
+     *
+     * @param workers Number of workers.
+     * @param games   Number of games of a worker.
+     * @throws IllegalArgumentException If numbers are not positive.
+     */
+    public void setWorkers(final int workers, final int games)
+            throws IllegalArgumentException {
+        if (workers <= 0 || games <= 0) {
+            throw new IllegalArgumentException("Numbers must be positive");
+        }
+        _workers = workers;
+        _games = games;
+    }
+
+    /**
+     * Sets maximal number of turns of a game, after it the game is restarted
+     * without reward.
+     *
+     * @param maxTurns Maximal number of turns.
+     * @throws IllegalArgumentException If number is not positive.
+     */
+    public void setMaxTurns(final int maxTurns)
+            throws IllegalArgumentException {
+        if (maxTurns <= 0) {
+            throw new IllegalArgumentException("Number must be positive");
+        }
+        _maxTurns = maxTurns;
+    }
+
+    /**
+     * Sets seed of generators of the workers. Workers race for the table,
+     * so training with the same seed is repeated exactly only by one
+     * worker.
+     *
+     * @param seed Seed.
+     */
+    public void setSeed(final long seed) {
+        _seed = seed;
+    }
+
+    /**
+     * Trains until the level is learned or the games make the number of
+     * steps. Training can be continued by the next invocation. If the level
+     * is learned, the greedy policy of the table wins it.
+     *
+     * @param maxSteps Maximal number of steps of all the games.
+     * @return Result of training.
+     * @throws InterruptedException If thread is interrupted while waiting
+     *                              for the workers.
+     */
+    public Result train(final long maxSteps) throws InterruptedException {
+        _steps.set(0);
+        _episodes.set(0);
+
+        final long start = System.nanoTime();
+        final VectorEnv evaluation = new VectorEnv(
+                Collections.singletonList(_table.level()),
+                1,
+                _maxTurns
+        );
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                _workers,
+                r -> {
+                    final Thread thread = new Thread(r, "Q-learning");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        try {
+            while (true) {
+                _learnedSteps = -1;
+                _isStopped = false;
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int w = 0; w < _workers; ++w) {
+                    final int worker = w;
+                    futures.add(executor.submit(() -> work(worker, maxSteps)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+
+                // Other workers update the table until they see the stop, so
+                // the policy is checked again when all of them are stopped.
+                if (_learnedSteps < 0 || isWon(evaluation)) {
+                    break;
+                }
+                _learnedSteps = -1;
+                if (_steps.get() >= maxSteps) {
+                    break;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        } finally {
+            _isStopped = true;
+            executor.shutdownNow();
+        }
+
+        return new Result(
+                _steps.get(),
+                _episodes.get(),
+                _learnedSteps,
+                System.nanoTime() - start
+        );
+    }
+
+    /**
+     * Plays games of the worker and updates the table.
+     *
+     * @param worker   Index of the worker.
+     * @param maxSteps Maximal number of steps of all the games.
+     */
+    private void work(final int worker, final long maxSteps) {
+        final VectorEnv env = new VectorEnv(
+                Collections.singletonList(_table.level()),
+                _games,
+                _maxTurns
+        );
+        final VectorEnv evaluation = worker == 0 ?
+                new VectorEnv(
+                        Collections.singletonList(_table.level()),
+                        1,
+                        _maxTurns
+                ) :
+                null;
+        final SeededRandom random = new SeededRandom(_seed + worker);
+        final int threshold = (int) (_exploration * PROBABILITY_SCALE);
+        final int[] states = new int[_games];
+        final int[] actions = new int[_games];
+        final float[] rewards = env.rewards();
+        final boolean[] dones = env.dones();
+
+        env.reset();
+        for (int i = 0; i < _games; ++i) {
+            states[i] = _table.state(env, i);
+        }
+        while (!_isStopped) {
+            long episodes = 0;
+            int chunk = 0;
+            for (; chunk < CHUNK; chunk += _games) {
+                for (int i = 0; i < _games; ++i) {
+                    // Ties are broken randomly, otherwise unexplored states
+                    // always lead in the same direction.
+                    final int first = random.nextInt(VectorEnv.ACTIONS);
+                    actions[i] = random.nextInt(PROBABILITY_SCALE) < threshold ?
+                            first :
+                            _table.action(states[i], first);
+                }
+                env.step(actions);
+                for (int i = 0; i < _games; ++i) {
+                    final int next = _table.state(env, i);
+                    // State after the finished game is the start of the
+                    // next one, so it is not bootstrapped.
+                    final float target = dones[i] ?
+                            rewards[i] :
+                            rewards[i] + _discount * _table.max(next);
+                    _table.update(states[i], actions[i], target, _learningRate);
+                    states[i] = next;
+                    if (dones[i]) {
+                        ++episodes;
+                    }
+                }
+            }
+
+            _episodes.addAndGet(episodes);
+            final long steps = _steps.addAndGet(chunk);
+            if (evaluation != null && isWon(evaluation)) {
+                _learnedSteps = steps;
+                _isStopped = true;
+            }
+            if (steps >= maxSteps) {
+                _isStopped = true;
+            }
+        }
+    }
+
+    /**
+     * Plays game by the greedy policy of the table.
+     *
+     * @param env Single game on the level of the table.
+     * @return True if the smart robot reaches the target, otherwise - false.
+     */
+    private boolean isWon(final VectorEnv env) {
+        final int[] action = new int[1];
+        env.reset();
+        do {
+            action[0] = _table.action(_table.state(env, 0), 0);
+            env.step(action);
+        } while (!env.dones()[0]);
+        return env.rewards()[0] == VectorEnv.WIN_REWARD;
+    }
+
+    /**
+     * Main function.
+     *
+     * @param args Levels and options.
+     * @throws IOException          If it is impossible to read levels or to
+     *                              write tables.
+     * @throws InterruptedException If thread is interrupted.
+     */
+    public static void main(final String[] args)
+            throws IOException, InterruptedException {
+        long steps = DEFAULT_STEPS;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int seasonTurns = DEFAULT_SEASON_TURNS;
+        Path save = null;
+        Path levels = null;
+        for (int i = 0; i < args.length; ++i) {
+            if ("--steps".equals(args[i]) && i + 1 < args.length) {
+                steps = Long.parseLong(args[++i]);
+            } else if ("--workers".equals(args[i]) && i + 1 < args.length) {
+                workers = Integer.parseInt(args[++i]);
+            } else if ("--season-turns".equals(args[i]) &&
+                    i + 1 < args.length) {
+                seasonTurns = Integer.parseInt(args[++i]);
+            } else if ("--save".equals(args[i]) && i + 1 < args.length) {
+                save = Paths.get(args[++i]);
+            } else if (levels == null) {
+                levels = Paths.get(args[i]);
+            }
+        }
+        if (levels == null) {
+            System.err.println("Usage: QLearning levels [--steps n] " +
+                    "[--workers n] [--season-turns n] [--save directory]");
+            System.exit(2);
+        }
+
+        for (Path file : files(levels)) {
+            final CompiledLevel level;
+            try {
+                level = new CompiledLevel(
+                        Situation.load(file.toString()),
+                        seasonTurns
+                );
+            } catch (IllegalArgumentException e) {
+                System.err.println("Level " + file + " is skipped: " +
+                        e.getMessage());
+                continue;
+            }
+
+            final QLearning trainer = new QLearning(new QTable(level));
+            trainer.setWorkers(workers, DEFAULT_GAMES);
+            final Result result = trainer.train(steps);
+            System.out.printf(
+                    Locale.US,
+                    "%s: %s, %d steps, %d games, %.0f ms%n",
+                    file.getFileName(),
+                    result.isLearned() ?
+                            "learned after " + result.learnedSteps() +
+                                    " steps" :
+                            "not learned",
+                    result.steps(),
+                    result.episodes(),
+                    result.elapsed() / NANOS_IN_MILLI
+            );
+            if (save != null) {
+                Files.createDirectories(save);
+                trainer.table().save(save.resolve(
+                        file.getFileName().toString().replaceAll(
+                                "\\.json$",
+                                ""
+                        ) + ".qtable"
+                ));
+            }
+        }
+    }
+
+    /**
+     * Returns situation files of the path.
+     *
+     * @param path Situation file or directory with them.
+     * @return Sorted files.
+     * @throws IOException If it is impossible to read directory.
+     */
+    private static List<Path> files(final Path path) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream =
+                     Files.newDirectoryStream(path, "*.json")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Result of training.
+     */
+    public static class Result {
+
+        // Number of steps of all the games.
+        private final long _steps;
+        // Number of finished games.
+        private final long _episodes;
+        // Number of steps when the level is learned, -1 if it is not
+        // learned.
+        private final long _learnedSteps;
+        // Duration of training, ns.
+        private final long _elapsed;
+
+        /**
+         * Constructs result.
+         *
+         * @param steps        Number of steps of all the games.
+         * @param episodes     Number of finished games.
+         * @param learnedSteps Number of steps when the level is learned, -1
+         *                     if it is not learned.
+         * @param elapsed      Duration of training, ns.
+         */
+        public Result(
+                final long steps,
+                final long episodes,
+                final long learnedSteps,
+                final long elapsed
+        ) {
+            _steps = steps;
+            _episodes = episodes;
+            _learnedSteps = learnedSteps;
+            _elapsed = elapsed;
+        }
+
+        /**
+         * Returns number of steps of all the games.
+         *
+         * @return Number of steps.
+         */
+        public long steps() {
+            return _steps;
+        }
+
+        /**
+         * Returns number of finished games.
+         *
+         * @return Number of games.
+         */
+        public long episodes() {
+            return _episodes;
+        }
+
+        /**
+         * Returns true if the level is learned, otherwise - false.
+         *
+         * @return Is level learned?
+         */
+        public boolean isLearned() {
+            return _learnedSteps >= 0;
+        }
+
+        /**
+         * Returns number of steps of all the games when the greedy policy
+         * has won the level first. The more steps, the harder the level.
+         *
+         * @return Number of steps, -1 if the level is not learned.
+         */
+        public long learnedSteps() {
+            return _learnedSteps;
+        }
+
+        /**
+         * Returns duration of training.
+         *
+         * @return Duration, ns.
+         */
+        public long elapsed() {
+            return _elapsed;
+        }
+    }
+}
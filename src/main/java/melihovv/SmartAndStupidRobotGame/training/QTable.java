@@ -0,0 +1,297 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.training;
+
+import melihovv.SmartAndStupidRobotGame.model.Model;
+import melihovv.SmartAndStupidRobotGame.model.field.position.CellPosition;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+import melihovv.SmartAndStupidRobotGame.model.seasons.SeasonsManager;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The <code>QTable</code> class defines values of the actions of the smart
+ * robot in the states of a level, e.g. which are learned by
+ * <code>QLearning</code>. The greedy policy of the table can make moves of
+ * the model: <code>model.makeMove(table.direction(model))</code>.
+ *
+ * State is packed from the cells of the robots, the number of steps the
+ * stupid robot skips and the phase of seasons: index of the season times
+ * <code>seasonTurns()</code> of the level plus turns since its start. Mires
+ * which are created by rain are not a part of the state. Values of a state
+ * follow each other, one per action of <code>VectorEnv</code>.
+ *
+ * Values are read and written without synchronization, so workers which
+ * share the table may lose some of the updates of each other.
+ */
+public class QTable {
+
+    // Signature of the file.
+    private static final int MAGIC = 0x53535251;
+    // Version of the file.
+    private static final int VERSION = 1;
+    // Size of the header of the file: signature, version, number of cells,
+    // skip counters and phases.
+    private static final int HEADER = 17;
+    // Number of values of the skip counter.
+    private static final int SKIP_STATES = VectorEnv.MIRE_STEPS + 1;
+
+    // Level.
+    private final CompiledLevel _level;
+    // Number of phases of seasons.
+    private final int _phases;
+    // Values of the actions.
+    private final float[] _values;
+
+    /**
+     * Constructs table with zero values.
+     *
+     * @param level Level.
+     * @throws IllegalArgumentException If level is too large for a table.
+     */
+    public QTable(final CompiledLevel level) throws IllegalArgumentException {
+        _level = level;
+        _phases = level.seasonTurns() != 0 ? 2 * level.seasonTurns() : 1;
+        final long size = (long) level.cells() * level.cells() *
+                SKIP_STATES * _phases * VectorEnv.ACTIONS;
+        if (size > Integer.MAX_VALUE - HEADER) {
+            throw new IllegalArgumentException("Level is too large");
+        }
+        _values = new float[(int) size];
+    }
+
+    /**
+     * Returns level.
+     *
+     * @return Level.
+     */
+    public CompiledLevel level() {
+        return _level;
+    }
+
+    /**
+     * Returns number of states.
+     *
+     * @return Number of states.
+     */
+    public int states() {
+        return _values.length / VectorEnv.ACTIONS;
+    }
+
+    /**
+     * Returns packed state.
+     *
+     * @param smartRobot  Cell of the smart robot.
+     * @param stupidRobot Cell of the stupid robot.
+     * @param stepsToSkip The number of steps the stupid robot skips.
+     * @param season      Index of the season, <code>VectorEnv.WINTER</code>
+     *                    or <code>VectorEnv.SUMMER</code>.
+     * @param turn        Number of turns since start of the game.
+     * @return Index of the state.
+     */
+    public int state(
+            final int smartRobot,
+            final int stupidRobot,
+            final int stepsToSkip,
+            final int season,
+            final long turn
+    ) {
+        final int seasonTurns = _level.seasonTurns();
+        final int phase = seasonTurns != 0 ?
+                season * seasonTurns + (int) (turn % seasonTurns) :
+                0;
+        return ((smartRobot * _level.cells() + stupidRobot) * SKIP_STATES +
+                stepsToSkip) * _phases + phase;
+    }
+
+    /**
+     * Returns packed state of the game.
+     *
+     * @param env Games on the level of the table.
+     * @param i   Index of the game.
+     * @return Index of the state.
+     */
+    public int state(final VectorEnv env, final int i) {
+        return state(
+                env.smartRobot(i),
+                env.stupidRobot(i),
+                env.stepsToSkip(i),
+                env.season(i),
+                env.turn(i)
+        );
+    }
+
+    /**
+     * Returns value of the action in the state.
+     *
+     * @param state  Index of the state.
+     * @param action Action, see <code>VectorEnv.direction()</code>.
+     * @return Value.
+     */
+    public float value(final int state, final int action) {
+        return _values[state * VectorEnv.ACTIONS + action];
+    }
+
+    /**
+     * Returns the largest value of the actions in the state.
+     *
+     * @param state Index of the state.
+     * @return Value of the best action.
+     */
+    public float max(final int state) {
+        return value(state, action(state, 0));
+    }
+
+    /**
+     * Returns action with the largest value in the state. Ties are resolved
+     * in favor of the first action starting from <code>first</code>.
+     *
+     * @param state Index of the state.
+     * @param first Action which is checked first.
+     * @return The best action.
+     */
+    public int action(final int state, final int first) {
+        final int offset = state * VectorEnv.ACTIONS;
+        int best = first;
+        for (int k = 1; k < VectorEnv.ACTIONS; ++k) {
+            final int action = (first + k) % VectorEnv.ACTIONS;
+            if (_values[offset + action] > _values[offset + best]) {
+                best = action;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves value of the action in the state towards the target.
+     *
+     * @param state  Index of the state.
+     * @param action Action.
+     * @param target Target value.
+     * @param rate   Part of the difference which is applied.
+     */
+    public void update(
+            final int state,
+            final int action,
+            final float target,
+            final float rate
+    ) {
+        final int index = state * VectorEnv.ACTIONS + action;
+        _values[index] += rate * (target - _values[index]);
+    }
+
+    /**
+     * Returns direction of the best move of the smart robot of the model.
+     * The model must be started with the level of the table and change
+     * seasons by the same number of turns.
+     *
+     * @param model Model.
+     * @return Direction of the move.
+     */
+    public Direction direction(final Model model) {
+        final SeasonsManager manager = model.seasonsManager();
+        final int season = manager.seasons().indexOf(manager.activeSeason());
+        final int state = state(
+                cell(model.smartRobot().pos()),
+                cell(model.stupidRobot().pos()),
+                model.stupidRobot().stepsToSkip(),
+                Math.max(season, 0),
+                model.turn()
+        );
+        return VectorEnv.direction(action(state, 0));
+    }
+
+    /**
+     * Returns index of the cell of the level.
+     *
+     * @param pos Position of the cell.
+     * @return Index of the cell.
+     */
+    private int cell(final CellPosition pos) {
+        return pos.pos().y * _level.stride() + pos.pos().x;
+    }
+
+    /**
+     * Writes table to the file.
+     *
+     * @param file Path of the file.
+     * @throws IOException If it is impossible to write file.
+     */
+    public void save(final Path file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER + _values.length * Float.BYTES
+        );
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putInt(_level.cells());
+        buffer.putInt(SKIP_STATES);
+        buffer.putInt(_phases);
+        buffer.asFloatBuffer().put(_values);
+        Files.write(file, buffer.array());
+    }
+
+    /**
+     * Reads table of the level from the file.
+     *
+     * @param file  Path of the file.
+     * @param level Level.
+     * @return Table.
+     * @throws IOException              If it is impossible to read file.
+     * @throws IllegalArgumentException If the file is not a table of the
+     *                                  level.
+     */
+    public static QTable load(final Path file, final CompiledLevel level)
+            throws IOException, IllegalArgumentException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        final QTable table = new QTable(level);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("It is not a table");
+            }
+            final int version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(
+                        "Unsupported version " + version);
+            }
+            if (buffer.getInt() != level.cells() ||
+                    buffer.getInt() != SKIP_STATES ||
+                    buffer.getInt() != table._phases ||
+                    buffer.remaining() !=
+                            table._values.length * Float.BYTES) {
+                throw new IllegalArgumentException(
+                        "Table is learned on another level");
+            }
+            buffer.asFloatBuffer().get(table._values);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Table is truncated");
+        }
+        return table;
+    }
+}
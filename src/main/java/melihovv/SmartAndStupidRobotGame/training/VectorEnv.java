@@ -0,0 +1,743 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alexander Melihov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package melihovv.SmartAndStupidRobotGame.training;
+
+import melihovv.SmartAndStupidRobotGame.model.SeededRandom;
+import melihovv.SmartAndStupidRobotGame.model.Situation;
+import melihovv.SmartAndStupidRobotGame.model.navigation.Direction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>VectorEnv</code> class defines many independent turn-based games
+ * which are stepped together, e.g. to train agents. State of the games is
+ * kept in arrays, one element per game, and the rules of the model are
+ * applied to them directly: there are no field objects, events or seasons
+ * manager, so a step of a game takes tens of nanoseconds.
+ *
+ * Games follow the rules of the deterministic model: seasons are changed by
+ * turns and rain of levels with a seed spreads by their generator, so a game
+ * has the same states as the model with the same level and moves. Finished
+ * games are restarted on the next level of the pool.
+ *
+ * Results of a step are written to arrays which are allocated once:
+ * observations (<code>OBSERVATION_SIZE</code> ints per game), rewards and
+ * done flags. Observation of a finished game is the start of its next game.
+ *
+ * Environment is not thread safe, each thread must use its own one.
+ */
+public class VectorEnv {
+
+    // Number of actions: moves to north, south, west and east.
+    public static final int ACTIONS = 4;
+    // Offsets of the observation of a game.
+    public static final int SMART_ROBOT_X = 0;
+    public static final int SMART_ROBOT_Y = 1;
+    public static final int STUPID_ROBOT_X = 2;
+    public static final int STUPID_ROBOT_Y = 3;
+    public static final int STEPS_TO_SKIP = 4;
+    public static final int SEASON = 5;
+    public static final int SEASON_TURN = 6;
+    public static final int LEVEL = 7;
+    // Number of ints of the observation of a game.
+    public static final int OBSERVATION_SIZE = 8;
+    // Seasons in the order of the model.
+    public static final int WINTER = 0;
+    public static final int SUMMER = 1;
+    // Reward when the smart robot reaches the target.
+    public static final float WIN_REWARD = 1;
+    // Reward when the smart robot gets into mire or is caught.
+    public static final float LOSS_REWARD = -1;
+    // The number of steps the stupid robot skips after getting into mire.
+    static final int MIRE_STEPS = 3;
+    // Directions by actions.
+    private static final Direction[] DIRECTIONS = {
+            Direction.north(),
+            Direction.south(),
+            Direction.west(),
+            Direction.east(),
+    };
+    // Game is not over.
+    private static final int PLAYING = 0;
+    // Smart robot has reached the target.
+    private static final int WON = 1;
+    // Smart robot is in mire or is caught.
+    private static final int LOST = 2;
+
+    // Levels of the pool.
+    private final CompiledLevel[] _levels;
+    // Number of games.
+    private final int _count;
+    // Maximal number of turns of a game, 0 if it is not limited.
+    private final int _maxTurns;
+    // Number of cells of the largest level.
+    private final int _maxCells;
+    // Number of mires of the level with most mires.
+    private final int _maxMires;
+    // Index of the level of the next restarted game.
+    private int _nextLevel;
+    // Levels of the games.
+    private final int[] _level;
+    // Cells of the smart robots.
+    private final int[] _smartRobot;
+    // Cells of the stupid robots.
+    private final int[] _stupidRobot;
+    // The number of steps the stupid robots skip.
+    private final int[] _stepsToSkip;
+    // Turns of the games.
+    private final int[] _turn;
+    // Seasons of the games.
+    private final byte[] _season;
+    // States of generators of the games of levels with a seed.
+    private final long[] _randomState;
+    // Number of mires in the cells, <code>_maxCells</code> per game.
+    private final byte[] _mires;
+    // Cells of mires which are created by rain, <code>_maxMires</code> per
+    // game.
+    private final int[] _spawned;
+    // Number of mires which are created by rain.
+    private final int[] _spawnedCount;
+    // Number of changes of mires and levels of the games.
+    private final int[] _version;
+    // Generator which steps states of the games.
+    private final SeededRandom _random = new SeededRandom(0);
+    // Observations of the games.
+    private final int[] _observations;
+    // Rewards of the latest step.
+    private final float[] _rewards;
+    // Are games finished by the latest step?
+    private final boolean[] _dones;
+    // Number of steps of all the games.
+    private long _steps;
+
+    /**
+     * Constructs games and starts them on the levels of the pool in turn.
+     *
+     * @param levels   Pool of levels.
+     * @param count    Number of games.
+     * @param maxTurns Maximal number of turns of a game, after it the game is
+     *                 done without reward. 0 if it is not limited.
+     * @throws IllegalArgumentException If pool is empty or numbers are not
+     *                                  positive.
+     */
+    public VectorEnv(
+            final List<CompiledLevel> levels,
+            final int count,
+            final int maxTurns
+    ) throws IllegalArgumentException {
+        if (levels.isEmpty() || count <= 0 || maxTurns < 0) {
+            throw new IllegalArgumentException(
+                    "Pool must not be empty, numbers must be positive"
+            );
+        }
+
+        _levels = levels.toArray(new CompiledLevel[levels.size()]);
+        _count = count;
+        _maxTurns = maxTurns;
+        int maxCells = 0;
+        int maxMires = 0;
+        for (CompiledLevel level : _levels) {
+            maxCells = Math.max(maxCells, level.cells());
+            maxMires = Math.max(maxMires, level.mireCells().length);
+        }
+        _maxCells = maxCells;
+        _maxMires = maxMires;
+
+        _level = new int[count];
+        _smartRobot = new int[count];
+        _stupidRobot = new int[count];
+        _stepsToSkip = new int[count];
+        _turn = new int[count];
+        _season = new byte[count];
+        _randomState = new long[count];
+        _mires = new byte[count * maxCells];
+        _spawned = new int[count * maxMires];
+        _spawnedCount = new int[count];
+        _version = new int[count];
+        _observations = new int[count * OBSERVATION_SIZE];
+        _rewards = new float[count];
+        _dones = new boolean[count];
+        reset();
+    }
+
+    /**
+     * Compiles situations of the pool.
+     *
+     * @param situations  Situations.
+     * @param seasonTurns Number of turns between season changes of
+     *                    situations which change seasons by time, 0 to not
+     *                    change them.
+     * @return Compiled levels.
+     */
+    public static List<CompiledLevel> compile(
+            final List<Situation> situations,
+            final int seasonTurns
+    ) {
+        final CompiledLevel[] levels = new CompiledLevel[situations.size()];
+        for (int i = 0; i < levels.length; ++i) {
+            levels[i] = new CompiledLevel(situations.get(i), seasonTurns);
+        }
+        return Arrays.asList(levels);
+    }
+
+    /**
+     * Returns direction of the action.
+     *
+     * @param action Action from 0 to <code>ACTIONS - 1</code>.
+     * @return Direction of the move.
+     */
+    public static Direction direction(final int action) {
+        return DIRECTIONS[action];
+    }
+
+    /**
+     * Returns action of the direction.
+     *
+     * @param dir Direction of the move.
+     * @return Action.
+     * @throws IllegalArgumentException If direction is unknown.
+     */
+    public static int action(final Direction dir)
+            throws IllegalArgumentException {
+        for (int i = 0; i < DIRECTIONS.length; ++i) {
+            if (DIRECTIONS[i].equals(dir)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction " + dir);
+    }
+
+    /**
+     * Restarts all the games. Levels of the pool are taken from the first
+     * one.
+     */
+    public void reset() {
+        _nextLevel = 0;
+        for (int i = 0; i < _count; ++i) {
+            start(i);
+            _rewards[i] = 0;
+            _dones[i] = false;
+        }
+    }
+
+    /**
+     * Makes one turn of each game: the smart robot makes move, then the
+     * stupid one, then season is changed if it is time. Finished games are
+     * restarted.
+     *
+     * @param actions Actions of the smart robots, one per game.
+     * @throws IllegalArgumentException If number of actions is not equal to
+     *                                  number of games.
+     */
+    public void step(final int[] actions) throws IllegalArgumentException {
+        if (actions.length != _count) {
+            throw new IllegalArgumentException(
+                    "Number of actions must be " + _count
+            );
+        }
+
+        for (int i = 0; i < _count; ++i) {
+            final int result = turn(i, actions[i]);
+            if (result != PLAYING ||
+                    (_maxTurns != 0 && _turn[i] >= _maxTurns)) {
+                _rewards[i] = result == WON ? WIN_REWARD :
+                        result == LOST ? LOSS_REWARD : 0;
+                _dones[i] = true;
+                start(i);
+            } else {
+                _rewards[i] = 0;
+                _dones[i] = false;
+                observe(i);
+            }
+        }
+        _steps += _count;
+    }
+
+    /**
+     * Makes turn of the game.
+     *
+     * @param i      Index of the game.
+     * @param action Action of the smart robot.
+     * @return State of the game after the turn.
+     */
+    private int turn(final int i, final int action) {
+        final CompiledLevel level = _levels[_level[i]];
+        final int base = i * _maxCells;
+        ++_turn[i];
+
+        int result = PLAYING;
+        final int from = _smartRobot[i];
+        if (isMovePossible(level, from, action)) {
+            final int to = move(level, base, from, action, _season[i]);
+            _smartRobot[i] = to;
+            result = gameOver(level, base, to, _season[i]);
+            if (result == PLAYING) {
+                result = moveStupidRobot(i, level, base);
+            }
+        }
+
+        final int seasonTurns = level.seasonTurns();
+        if (result == PLAYING &&
+                seasonTurns != 0 &&
+                _turn[i] % seasonTurns == 0) {
+            changeSeason(i, level, base);
+            result = gameOver(level, base, _smartRobot[i], _season[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if robot can move from the cell, otherwise - false: there
+     * is no wall on its way and the next cell is inside the field.
+     *
+     * @param level  Level.
+     * @param from   Cell of the robot.
+     * @param action Direction of the move.
+     * @return Is move possible?
+     */
+    private static boolean isMovePossible(
+            final CompiledLevel level,
+            final int from,
+            final int action
+    ) {
+        return (level.walls(from) & CompiledLevel.WALLS[action]) == 0 &&
+                level.contains(from + level.offset(action));
+    }
+
+    /**
+     * Moves robot to the next cell. Robot slides over frozen mire if there is
+     * mire in the cell before or after it.
+     *
+     * @param level  Level.
+     * @param base   Offset of cells of the game.
+     * @param from   Cell of the robot.
+     * @param action Direction of the move.
+     * @param season Season of the game.
+     * @return Cell of the robot after the move.
+     */
+    private int move(
+            final CompiledLevel level,
+            final int base,
+            final int from,
+            final int action,
+            final int season
+    ) {
+        final int offset = level.offset(action);
+        final int to = from + offset;
+        if (season == WINTER &&
+                _mires[base + to] != 0 &&
+                (_mires[base + to + offset] != 0 ||
+                        _mires[base + from] != 0)) {
+            return to + offset;
+        }
+        return to;
+    }
+
+    /**
+     * Returns state of the game by the cell of the smart robot.
+     *
+     * @param level  Level.
+     * @param base   Offset of cells of the game.
+     * @param smart  Cell of the smart robot.
+     * @param season Season of the game.
+     * @return <code>WON</code>, <code>LOST</code> or <code>PLAYING</code>.
+     */
+    private int gameOver(
+            final CompiledLevel level,
+            final int base,
+            final int smart,
+            final int season
+    ) {
+        if (smart == level.target()) {
+            return WON;
+        }
+        if (season != WINTER && _mires[base + smart] != 0) {
+            return LOST;
+        }
+        return PLAYING;
+    }
+
+    /**
+     * Makes step by the stupid robot: it catches the smart robot in the same
+     * or the adjacent cell, otherwise comes closer, horizontally first.
+     *
+     * @param i     Index of the game.
+     * @param level Level.
+     * @param base  Offset of cells of the game.
+     * @return <code>LOST</code> if the smart robot is caught, otherwise -
+     * <code>PLAYING</code>.
+     */
+    private int moveStupidRobot(
+            final int i,
+            final CompiledLevel level,
+            final int base
+    ) {
+        if (_stepsToSkip[i] != 0) {
+            --_stepsToSkip[i];
+            return PLAYING;
+        }
+
+        final int stupid = _stupidRobot[i];
+        final int smart = _smartRobot[i];
+        if (stupid == smart) {
+            return LOST;
+        }
+
+        final int dx = level.x(smart) - level.x(stupid);
+        final int dy = level.y(smart) - level.y(stupid);
+        final int action;
+        if (dx == 0) {
+            action = dy < 0 ? 0 : 1;
+        } else {
+            action = dx > 0 ? 3 : 2;
+        }
+
+        if (Math.abs(dx) + Math.abs(dy) == 1) {
+            if ((level.walls(stupid) & CompiledLevel.WALLS[action]) == 0) {
+                _stupidRobot[i] = smart;
+                return LOST;
+            }
+        } else if (isMovePossible(level, stupid, action)) {
+            final int to = move(level, base, stupid, action, _season[i]);
+            _stupidRobot[i] = to;
+            _stepsToSkip[i] = _season[i] != WINTER && _mires[base + to] != 0 ?
+                    MIRE_STEPS :
+                    0;
+        }
+        return PLAYING;
+    }
+
+    /**
+     * Changes season of the game. Mires are frozen in winter, in summer rain
+     * creates mire around each mire of the level.
+     *
+     * @param i     Index of the game.
+     * @param level Level.
+     * @param base  Offset of cells of the game.
+     */
+    private void changeSeason(
+            final int i,
+            final CompiledLevel level,
+            final int base
+    ) {
+        final int spawnedBase = i * _maxMires;
+        ++_version[i];
+        if (_season[i] == WINTER) {
+            _season[i] = SUMMER;
+            if (level.seed() != null) {
+                _random.setState(_randomState[i]);
+                for (int mire : level.sortedMireCells()) {
+                    spawn(i, base, randomFreeCellAround(level, base, mire));
+                }
+                _randomState[i] = _random.state();
+            } else {
+                for (int mire : level.mireCells()) {
+                    spawn(i, base, freeCellAround(level, base, mire));
+                }
+            }
+            _stepsToSkip[i] = _mires[base + _stupidRobot[i]] != 0 ?
+                    MIRE_STEPS :
+                    0;
+        } else {
+            _season[i] = WINTER;
+            for (int j = 0; j < _spawnedCount[i]; ++j) {
+                --_mires[base + _spawned[spawnedBase + j]];
+            }
+            _spawnedCount[i] = 0;
+            _stepsToSkip[i] = 0;
+        }
+    }
+
+    /**
+     * Adds mire which is created by rain.
+     *
+     * @param i    Index of the game.
+     * @param base Offset of cells of the game.
+     * @param cell Cell of the mire, -1 if there is no free cell.
+     */
+    private void spawn(
+            final int i,
+            final int base,
+            final int cell
+    ) {
+        if (cell >= 0) {
+            ++_mires[base + cell];
+            _spawned[i * _maxMires + _spawnedCount[i]++] = cell;
+        }
+    }
+
+    /**
+     * Returns the first cell without mire around the cell, as
+     * <code>Field.freeCellAround()</code>. Cells of mires of the level are
+     * inside the field, so cells around them are inside the border.
+     *
+     * @param level Level.
+     * @param base  Offset of cells of the game.
+     * @param cell  Cell of mire.
+     * @return Free cell or -1 if there is no such cell.
+     */
+    private int freeCellAround(
+            final CompiledLevel level,
+            final int base,
+            final int cell
+    ) {
+        for (int k = 0; k < CompiledLevel.AROUND_DX.length; ++k) {
+            final int around = cell +
+                    CompiledLevel.AROUND_DY[k] * level.stride() +
+                    CompiledLevel.AROUND_DX[k];
+            if (_mires[base + around] == 0) {
+                return around;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns random cell of the field without mire around the cell, as
+     * <code>Field.randomFreeCellAround()</code>.
+     *
+     * @param level Level.
+     * @param base  Offset of cells of the game.
+     * @param cell  Cell of mire.
+     * @return Free cell or -1 if there is no such cell.
+     */
+    private int randomFreeCellAround(
+            final CompiledLevel level,
+            final int base,
+            final int cell
+    ) {
+        int count = 0;
+        for (int k = 0; k < CompiledLevel.AROUND_DX.length; ++k) {
+            final int around = cell +
+                    CompiledLevel.AROUND_DY[k] * level.stride() +
+                    CompiledLevel.AROUND_DX[k];
+            if (level.contains(around) && _mires[base + around] == 0) {
+                ++count;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+
+        int chosen = _random.nextInt(count);
+        for (int k = 0; ; ++k) {
+            final int around = cell +
+                    CompiledLevel.AROUND_DY[k] * level.stride() +
+                    CompiledLevel.AROUND_DX[k];
+            if (level.contains(around) &&
+                    _mires[base + around] == 0 &&
+                    chosen-- == 0) {
+                return around;
+            }
+        }
+    }
+
+    /**
+     * Starts new game on the next level of the pool.
+     *
+     * @param i Index of the game.
+     */
+    private void start(final int i) {
+        final int index = _nextLevel;
+        _nextLevel = (_nextLevel + 1) % _levels.length;
+
+        final CompiledLevel level = _levels[index];
+        final int base = i * _maxCells;
+        _level[i] = index;
+        _smartRobot[i] = level.smartRobot();
+        _stupidRobot[i] = level.stupidRobot();
+        _stepsToSkip[i] = 0;
+        _turn[i] = 0;
+        _season[i] = WINTER;
+        _randomState[i] = level.seed() != null ? level.seed() : 0;
+        System.arraycopy(level.mires(), 0, _mires, base, level.cells());
+        _spawnedCount[i] = 0;
+        ++_version[i];
+        observe(i);
+    }
+
+    /**
+     * Writes observation of the game.
+     *
+     * @param i Index of the game.
+     */
+    private void observe(final int i) {
+        final CompiledLevel level = _levels[_level[i]];
+        final int offset = i * OBSERVATION_SIZE;
+        final int seasonTurns = level.seasonTurns();
+        _observations[offset + SMART_ROBOT_X] = level.x(_smartRobot[i]);
+        _observations[offset + SMART_ROBOT_Y] = level.y(_smartRobot[i]);
+        _observations[offset + STUPID_ROBOT_X] = level.x(_stupidRobot[i]);
+        _observations[offset + STUPID_ROBOT_Y] = level.y(_stupidRobot[i]);
+        _observations[offset + STEPS_TO_SKIP] = _stepsToSkip[i];
+        _observations[offset + SEASON] = _season[i];
+        _observations[offset + SEASON_TURN] = seasonTurns != 0 ?
+                _turn[i] % seasonTurns :
+                0;
+        _observations[offset + LEVEL] = _level[i];
+    }
+
+    /**
+     * Returns number of games.
+     *
+     * @return Number of games.
+     */
+    public int count() {
+        return _count;
+    }
+
+    /**
+     * Returns level of the game.
+     *
+     * @param i Index of the game.
+     * @return Level.
+     */
+    public CompiledLevel level(final int i) {
+        return _levels[_level[i]];
+    }
+
+    /**
+     * Returns cell of the smart robot.
+     *
+     * @param i Index of the game.
+     * @return Index of the cell, see <code>CompiledLevel</code>.
+     */
+    public int smartRobot(final int i) {
+        return _smartRobot[i];
+    }
+
+    /**
+     * Returns cell of the stupid robot.
+     *
+     * @param i Index of the game.
+     * @return Index of the cell, see <code>CompiledLevel</code>.
+     */
+    public int stupidRobot(final int i) {
+        return _stupidRobot[i];
+    }
+
+    /**
+     * Returns the number of steps the stupid robot skips.
+     *
+     * @param i Index of the game.
+     * @return The number of steps to skip.
+     */
+    public int stepsToSkip(final int i) {
+        return _stepsToSkip[i];
+    }
+
+    /**
+     * Returns season of the game.
+     *
+     * @param i Index of the game.
+     * @return <code>WINTER</code> or <code>SUMMER</code>.
+     */
+    public int season(final int i) {
+        return _season[i];
+    }
+
+    /**
+     * Returns turn of the game.
+     *
+     * @param i Index of the game.
+     * @return Number of turns since start of the game.
+     */
+    public int turn(final int i) {
+        return _turn[i];
+    }
+
+    /**
+     * Returns true if there is mire in the cell, otherwise - false.
+     *
+     * @param i    Index of the game.
+     * @param cell Index of the cell, see <code>CompiledLevel</code>.
+     * @return Is there mire?
+     */
+    public boolean hasMire(final int i, final int cell) {
+        return _mires[i * _maxCells + cell] != 0;
+    }
+
+    /**
+     * Returns number of changes of mires and level of the game. It allows
+     * to detect that only robots have moved since the previous step.
+     *
+     * @param i Index of the game.
+     * @return Number of changes.
+     */
+    public int version(final int i) {
+        return _version[i];
+    }
+
+    /**
+     * Returns levels of the pool.
+     *
+     * @return Unmodifiable list of levels.
+     */
+    public List<CompiledLevel> levels() {
+        return Collections.unmodifiableList(Arrays.asList(_levels));
+    }
+
+    /**
+     * Returns observations of the games, <code>OBSERVATION_SIZE</code> ints
+     * per game. The array is overwritten by each step.
+     *
+     * @return Observations.
+     */
+    public int[] observations() {
+        return _observations;
+    }
+
+    /**
+     * Returns rewards of the latest step. The array is overwritten by each
+     * step.
+     *
+     * @return Rewards.
+     */
+    public float[] rewards() {
+        return _rewards;
+    }
+
+    /**
+     * Returns true for games which are finished by the latest step. The
+     * array is overwritten by each step.
+     *
+     * @return Done flags.
+     */
+    public boolean[] dones() {
+        return _dones;
+    }
+
+    /**
+     * Returns number of steps of all the games.
+     *
+     * @return Number of steps.
+     */
+    public long steps() {
+        return _steps;
+    }
+}